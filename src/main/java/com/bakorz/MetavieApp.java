@@ -20,6 +20,9 @@ import javafx.stage.Stage;
  */
 public class MetavieApp extends Application {
 
+    /** Local media cache, flushed on shutdown */
+    private MediaRepo fileMediaRepo;
+
     /** Service for managing media catalog operations */
     private CatalogService catalogService;
 
@@ -32,26 +35,60 @@ public class MetavieApp extends Application {
     /** Current user ID (hardcoded for demo purposes) */
     private static final String CURRENT_USER_ID = "user001";
 
+    /** System property selecting the watch list store ("csv" or "mapped") */
+    private static final String WATCH_STORE_PROPERTY = "metavie.watchStore";
+
+    /** System property selecting the embedded database for all repositories ("jdbc") */
+    private static final String STORE_PROPERTY = "metavie.store";
+
+    /** System property selecting the media cache store ("csv", "lazy", "lsm" or "offheap") */
+    private static final String MEDIA_STORE_PROPERTY = "metavie.mediaStore";
+
     /**
      * Initializes all services and repositories before the application starts.
      * Sets up MAL and TMDB API connections with client credentials.
      * Creates service instances with proper dependency injection.
+     * The watch list store is chosen with -Dmetavie.watchStore=mapped|csv and
+     * the media cache store with -Dmetavie.mediaStore=offheap|lsm|lazy|csv.
+     * -Dmetavie.store=jdbc keeps media, favorites and the watch list in the
+     * embedded database instead.
      */
     @Override
     public void init() {
-        FileMediaRepo fileMediaRepo = new FileMediaRepo();
-        FileFavoriteRepo fileFavoriteRepo = new FileFavoriteRepo();
-        FileWatchRepo fileWatchRepo = new FileWatchRepo();
+        boolean jdbc = "jdbc".equalsIgnoreCase(System.getProperty(STORE_PROPERTY));
+        String mediaStore = System.getProperty(MEDIA_STORE_PROPERTY, "csv");
+        if (jdbc) {
+            fileMediaRepo = new JdbcMediaRepo();
+        } else if ("lazy".equalsIgnoreCase(mediaStore)) {
+            fileMediaRepo = new LazyFileMediaRepo();
+        } else if ("lsm".equalsIgnoreCase(mediaStore)) {
+            fileMediaRepo = new LsmMediaRepo();
+        } else if ("offheap".equalsIgnoreCase(mediaStore)) {
+            fileMediaRepo = new OffHeapMediaRepo();
+        } else {
+            fileMediaRepo = new FileMediaRepo();
+        }
+        FavoriteRepo favoriteRepo = jdbc ? new JdbcFavoriteRepo() : new FileFavoriteRepo();
+        WatchRepo watchRepo;
+        if (jdbc) {
+            watchRepo = new JdbcWatchRepo();
+        } else if ("mapped".equalsIgnoreCase(System.getProperty(WATCH_STORE_PROPERTY))) {
+            watchRepo = new MappedWatchRepo();
+        } else {
+            watchRepo = new FileWatchRepo();
+        }
 
         String malClientId = "your_mal_client_id_here";
         String tmdbApiKey = "your_tmdb_api_key_here";
 
-        MalMediaRepo malMediaRepo = new MalMediaRepo(malClientId);
-        TmdbMediaRepo tmdbMediaRepo = new TmdbMediaRepo(tmdbApiKey);
+        // One pooled HTTP client for both APIs, so connections are reused across calls
+        HttpTransport httpTransport = HttpTransport.shared();
+        MalMediaRepo malMediaRepo = new MalMediaRepo(malClientId, httpTransport);
+        TmdbMediaRepo tmdbMediaRepo = new TmdbMediaRepo(tmdbApiKey, httpTransport);
 
         catalogService = new CatalogService(malMediaRepo, tmdbMediaRepo, fileMediaRepo);
-        favoriteService = new FavoriteService(fileFavoriteRepo);
-        trackingService = new TrackingService(fileWatchRepo);
+        favoriteService = new FavoriteService(favoriteRepo);
+        trackingService = new TrackingService(watchRepo);
 
         System.out.println("Metavie services initialized successfully!");
     }
@@ -89,10 +126,14 @@ public class MetavieApp extends Application {
     /**
      * Called when the application is about to stop.
      * Performs cleanup operations before shutdown.
+     * Flushes any media cache writes still pending in the current batch window.
      */
     @Override
     public void stop() {
         System.out.println("Metavie application closing...");
+        if (fileMediaRepo != null) {
+            fileMediaRepo.flush();
+        }
     }
 
     /**
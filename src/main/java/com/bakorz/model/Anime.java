@@ -6,6 +6,8 @@ import java.util.List;
  * Represents an Anime media item with specific anime-related attributes.
  * Extends MediaItem and includes information from MyAnimeList API.
  * Contains details like episodes, studios, MAL rankings, and airing status.
+ * The type, status, source and season labels are canonicalized through the
+ * shared label dictionary; studios are kept as given.
  * 
  * @author Bakorz
  * @version 1.0
@@ -26,7 +28,7 @@ public class Anime extends MediaItem {
     /** Source material (Manga, Light Novel, Original, etc.) */
     private String source;
 
-    /** List of animation studios */
+    /** Animation studios */
     private List<String> studios;
 
     /** MyAnimeList ID */
@@ -89,17 +91,17 @@ public class Anime extends MediaItem {
             int malRank, int malPopularity,
             String season, int year, int duration) {
         super(id, title, description, genres, rating, releaseDate, posterUrl, backdropUrl);
-        this.animeType = animeType;
+        this.animeType = StringDictionary.LABELS.canonical(animeType);
         this.episodes = episodes;
-        this.status = status;
+        this.status = StringDictionary.LABELS.canonical(status);
         this.aired = aired;
-        this.source = source;
+        this.source = StringDictionary.LABELS.canonical(source);
         this.studios = studios;
         this.malId = malId;
         this.malScore = malScore;
         this.malRank = malRank;
         this.malPopularity = malPopularity;
-        this.season = season;
+        this.season = StringDictionary.LABELS.canonical(season);
         this.year = year;
         this.duration = duration;
     }
@@ -131,7 +133,7 @@ public class Anime extends MediaItem {
      * @param animeType Anime type to set
      */
     public void setAnimeType(String animeType) {
-        this.animeType = animeType;
+        this.animeType = StringDictionary.LABELS.canonical(animeType);
     }
 
     /**
@@ -167,7 +169,7 @@ public class Anime extends MediaItem {
      * @param status Airing status to set
      */
     public void setStatus(String status) {
-        this.status = status;
+        this.status = StringDictionary.LABELS.canonical(status);
     }
 
     /**
@@ -203,7 +205,7 @@ public class Anime extends MediaItem {
      * @param source Source material to set
      */
     public void setSource(String source) {
-        this.source = source;
+        this.source = StringDictionary.LABELS.canonical(source);
     }
 
     /**
@@ -311,7 +313,7 @@ public class Anime extends MediaItem {
      * @param season Season to set
      */
     public void setSeason(String season) {
-        this.season = season;
+        this.season = StringDictionary.LABELS.canonical(season);
     }
 
     /**
@@ -0,0 +1,210 @@
+package com.bakorz.model;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compresses media descriptions, the largest text of the model, for storage
+ * in memory and in the data files.
+ * Descriptions are deflated with a preset dictionary of words and phrases
+ * common in MAL synopses and TMDB overviews, so even short texts compress
+ * well. Texts too short to gain are stored as plain UTF-8.
+ * Decompressed texts are kept in a small cache of the most recently used
+ * descriptions, keyed by the identity of their compressed bytes, so a
+ * description read repeatedly while it is displayed is inflated once.
+ * Compressed arrays are never modified once created.
+ * All methods are thread-safe.
+ *
+ * <pre>
+ * compressed = PLAIN utf8Bytes
+ *            | DEFLATED utf8Length:varint rawDeflateBytes
+ * </pre>
+ *
+ * @author Bakorz
+ * @version 1.0
+ */
+public final class DescriptionCodec {
+    /** Format byte of a description stored as plain UTF-8 */
+    private static final byte PLAIN = 0;
+
+    /** Format byte of a description deflated with PRESET_DICTIONARY */
+    private static final byte DEFLATED = 1;
+
+    /** Shortest UTF-8 text worth deflating */
+    private static final int MIN_DEFLATE_LENGTH = 48;
+
+    /** Number of decompressed descriptions kept in the cache */
+    private static final int CACHE_SIZE = 64;
+
+    /**
+     * Preset dictionary shared by all descriptions. Deflate finds matches at
+     * short distances more cheaply, so the most common strings come last.
+     * Changing it makes existing DEFLATED data unreadable; add a new format
+     * byte for a new dictionary instead.
+     */
+    private static final byte[] PRESET_DICTIONARY = String.join("",
+            "[Written by MAL Rewrite] (Source: Crunchyroll) (Source: Funimation) (Source: ANN) ",
+            "Based on the manga by Based on the novel by Based on the true story of adaptation of the light novel ",
+            "The second season of The final season of the anime series. The story follows sequel to the film ",
+            "high school students an ordinary high school student a young boy a young girl a young woman a young man ",
+            "detective mystery murder investigation police officer secret agent government conspiracy ",
+            "magic demon king sword hero adventure fantasy kingdom princess dragon monster hunter guild ",
+            "his father her mother their family brother sister daughter son husband wife best friend ",
+            "school club classmates teacher student council tournament team championship dream ",
+            "discovers that finds himself finds herself must decide whether soon learns that begins to ",
+            "a mysterious the mysterious a strange power the power of the world of the city of ",
+            "love story romance falls in love relationship life after death war soldiers battle against ",
+            "together with along with in order to as well as at the same time one day when the ",
+            "years later years ago the past the future the truth about everything changes forever ",
+            "however, but when with the help of in the end, there is a who has been that he is that she is ",
+            "the first time for the first time of the most from the new of his of her of their ",
+            " and the  of the  in the  to the  with the  for the  on the  is a  that the  in a  of a ",
+            " his  her  their  they  she  he  who  which  when  where  after  before  into  from  about  ",
+            " the  and  of  to  a  in  is  that  with  for  as  an  by  on  be  are  has  was  ")
+            .getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * Reused deflater of each thread. Descriptions are compressed as they are
+     * parsed, on the request and cache threads, so the default level is used;
+     * on texts this short the best level gains next to nothing.
+     */
+    private static final ThreadLocal<Deflater> DEFLATERS = ThreadLocal.withInitial(
+            () -> new Deflater(Deflater.DEFAULT_COMPRESSION, true));
+
+    /** Reused inflater of each thread */
+    private static final ThreadLocal<Inflater> INFLATERS = ThreadLocal.withInitial(() -> new Inflater(true));
+
+    /** Recently decompressed descriptions by compressed array, in access order */
+    private static final Map<byte[], String> CACHE = new LinkedHashMap<byte[], String>(CACHE_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<byte[], String> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    private DescriptionCodec() {
+    }
+
+    /**
+     * Compresses a description.
+     *
+     * @param text Description, may be null
+     * @return Compressed description, or null for null
+     */
+    public static byte[] compress(String text) {
+        if (text == null) {
+            return null;
+        }
+
+        byte[] utf8 = text.getBytes(StandardCharsets.UTF_8);
+        if (utf8.length >= MIN_DEFLATE_LENGTH) {
+            byte[] deflated = deflate(utf8);
+            if (deflated.length < utf8.length) {
+                return deflated;
+            }
+        }
+
+        byte[] plain = new byte[utf8.length + 1];
+        plain[0] = PLAIN;
+        System.arraycopy(utf8, 0, plain, 1, utf8.length);
+        return plain;
+    }
+
+    private static byte[] deflate(byte[] utf8) {
+        Deflater deflater = DEFLATERS.get();
+        deflater.reset();
+        deflater.setDictionary(PRESET_DICTIONARY);
+        deflater.setInput(utf8);
+        deflater.finish();
+
+        byte[] out = new byte[utf8.length + 16];
+        out[0] = DEFLATED;
+        int length = 1 + writeVarint(out, 1, utf8.length);
+        while (!deflater.finished()) {
+            if (length == out.length) {
+                out = Arrays.copyOf(out, out.length * 2);
+            }
+            length += deflater.deflate(out, length, out.length - length);
+        }
+        return Arrays.copyOf(out, length);
+    }
+
+    /**
+     * Decompresses a description, using the cache of recent descriptions.
+     *
+     * @param compressed Array returned by compress, may be null
+     * @return Description, or null for null
+     */
+    public static String decompress(byte[] compressed) {
+        if (compressed == null) {
+            return null;
+        }
+        if (compressed[0] == PLAIN) {
+            return new String(compressed, 1, compressed.length - 1, StandardCharsets.UTF_8);
+        }
+
+        synchronized (CACHE) {
+            String cached = CACHE.get(compressed);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        String text = inflate(compressed);
+        synchronized (CACHE) {
+            CACHE.put(compressed, text);
+        }
+        return text;
+    }
+
+    private static String inflate(byte[] compressed) {
+        if (compressed[0] != DEFLATED) {
+            throw new IllegalArgumentException("Unknown description format " + compressed[0]);
+        }
+
+        int[] position = { 1 };
+        byte[] utf8 = new byte[readVarint(compressed, position)];
+        Inflater inflater = INFLATERS.get();
+        inflater.reset();
+        inflater.setDictionary(PRESET_DICTIONARY);
+        inflater.setInput(compressed, position[0], compressed.length - position[0]);
+        try {
+            int length = 0;
+            while (length < utf8.length) {
+                int inflated = inflater.inflate(utf8, length, utf8.length - length);
+                if (inflated == 0 && (inflater.finished() || inflater.needsInput())) {
+                    throw new IllegalArgumentException("Truncated description");
+                }
+                length += inflated;
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Corrupt description: " + e.getMessage(), e);
+        }
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    private static int writeVarint(byte[] out, int offset, int value) {
+        int length = 0;
+        while ((value & ~0x7F) != 0) {
+            out[offset + length++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out[offset + length++] = (byte) value;
+        return length;
+    }
+
+    private static int readVarint(byte[] in, int[] position) {
+        int value = 0;
+        for (int shift = 0;; shift += 7) {
+            byte b = in[position[0]++];
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+}
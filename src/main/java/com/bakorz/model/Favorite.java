@@ -5,6 +5,8 @@ package com.bakorz.model;
  * Stores the relationship between a user and their favorited media.
  * Includes media source and type information to handle cross-platform data
  * correctly.
+ * Source and type labels are canonicalized, so the many favorites of a large
+ * data set share one instance of each.
  * 
  * @author Bakorz
  * @version 1.0
@@ -43,7 +45,7 @@ public class Favorite {
         this.favoriteId = favoriteId;
         this.userId = userId;
         this.mediaId = mediaId;
-        this.mediaSource = mediaSource;
+        this.mediaSource = StringDictionary.LABELS.canonical(mediaSource);
     }
 
     /**
@@ -59,8 +61,8 @@ public class Favorite {
         this.favoriteId = favoriteId;
         this.userId = userId;
         this.mediaId = mediaId;
-        this.mediaSource = mediaSource;
-        this.mediaType = mediaType;
+        this.mediaSource = StringDictionary.LABELS.canonical(mediaSource);
+        this.mediaType = StringDictionary.LABELS.canonical(mediaType);
     }
 
     // Getters and Setters with documentation
@@ -134,7 +136,7 @@ public class Favorite {
      * @param mediaSource Media source to set
      */
     public void setMediaSource(String mediaSource) {
-        this.mediaSource = mediaSource;
+        this.mediaSource = StringDictionary.LABELS.canonical(mediaSource);
     }
 
     /**
@@ -152,7 +154,7 @@ public class Favorite {
      * @param mediaType Media type to set
      */
     public void setMediaType(String mediaType) {
-        this.mediaType = mediaType;
+        this.mediaType = StringDictionary.LABELS.canonical(mediaType);
     }
 
     /**
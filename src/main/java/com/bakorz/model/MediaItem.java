@@ -7,6 +7,10 @@ import java.util.List;
  * This class serves as the parent for all specific media types (Anime, Movie,
  * TVShow).
  * Contains common attributes and methods shared across all media types.
+ * Genres are stored as ordinals of the shared genre dictionary, so each
+ * distinct genre name is held once however many items carry it.
+ * The description, usually the largest field, is held compressed by
+ * DescriptionCodec and decompressed only when it is read.
  * 
  * @author Bakorz
  * @version 1.0
@@ -18,11 +22,11 @@ public abstract class MediaItem {
     /** Title of the media item */
     protected String title;
 
-    /** Description or synopsis of the media item */
-    protected String description;
+    /** Description or synopsis of the media item, compressed by DescriptionCodec */
+    protected byte[] compressedDescription;
 
-    /** List of genres associated with the media item */
-    protected List<String> genres;
+    /** Genres associated with the media item, as ordinals of StringDictionary.GENRES */
+    protected int[] genreOrdinals;
 
     /** Rating score of the media item (0-10) */
     protected double rating;
@@ -58,8 +62,8 @@ public abstract class MediaItem {
             double rating, String releaseDate, String posterUrl, String backdropUrl) {
         this.id = id;
         this.title = title;
-        this.description = description;
-        this.genres = genres;
+        this.compressedDescription = DescriptionCodec.compress(description);
+        this.genreOrdinals = StringDictionary.GENRES.encode(genres);
         this.rating = rating;
         this.releaseDate = releaseDate;
         this.posterUrl = posterUrl;
@@ -117,7 +121,7 @@ public abstract class MediaItem {
      * @return The media description
      */
     public String getDescription() {
-        return description;
+        return DescriptionCodec.decompress(compressedDescription);
     }
 
     /**
@@ -126,25 +130,46 @@ public abstract class MediaItem {
      * @param description The media description to set
      */
     public void setDescription(String description) {
-        this.description = description;
+        this.compressedDescription = DescriptionCodec.compress(description);
+    }
+
+    /**
+     * Gets the description as compressed by DescriptionCodec, without
+     * decompressing it. The array must not be modified.
+     * 
+     * @return The compressed description, or null if there is none
+     */
+    public byte[] getCompressedDescription() {
+        return compressedDescription;
+    }
+
+    /**
+     * Sets the description from bytes compressed by DescriptionCodec.
+     * The array must not be modified afterwards.
+     * 
+     * @param compressedDescription The compressed description to set
+     */
+    public void setCompressedDescription(byte[] compressedDescription) {
+        this.compressedDescription = compressedDescription;
     }
 
     /**
      * Gets the list of genres for the media item.
      * 
-     * @return List of genre names
+     * @return Read-only list of genre names
      */
     public List<String> getGenres() {
-        return genres;
+        return StringDictionary.GENRES.decode(genreOrdinals);
     }
 
     /**
      * Sets the list of genres for the media item.
+     * Genre names are interned in the shared genre dictionary.
      * 
      * @param genres List of genre names to set
      */
     public void setGenres(List<String> genres) {
-        this.genres = genres;
+        this.genreOrdinals = StringDictionary.GENRES.encode(genres);
     }
 
     /**
@@ -0,0 +1,209 @@
+package com.bakorz.model;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Thread-safe dictionary that interns repeated strings of the model, such as
+ * genres and media sources, as dense int ordinals.
+ * Each distinct value is stored once; media items keep compact ordinal arrays
+ * instead of their own lists of strings, and low-cardinality labels are
+ * replaced by their canonical instance. Ordinals are never reused, so a
+ * dictionary only grows. It is therefore only used for small, closed
+ * vocabularies; open-ended names such as creators, studios and networks are
+ * kept as plain strings, and a dictionary can be given a capacity past which
+ * canonical() stops interning new values.
+ * Lookups of known values take no lock; adding a new value is synchronized.
+ *
+ * @author Bakorz
+ * @version 1.0
+ */
+public final class StringDictionary {
+    /** Most distinct values interned as labels */
+    static final int LABEL_CAPACITY = 1024;
+
+    /** Genre names shared by all media items */
+    public static final StringDictionary GENRES = new StringDictionary();
+
+    /**
+     * Short labels: media sources and types, anime types, statuses and
+     * seasons. Bounded, since the values come from external data.
+     */
+    public static final StringDictionary LABELS = new StringDictionary(LABEL_CAPACITY);
+
+    /** Ordinal array shared by all empty lists */
+    private static final int[] EMPTY = new int[0];
+
+    /** Ordinal used for null list elements */
+    private static final int NULL_ORDINAL = -1;
+
+    /** Ordinal of each value */
+    private final Map<String, Integer> ordinals;
+
+    /** Value of each ordinal; replaced by a larger copy when full */
+    private volatile String[] values;
+
+    /** Number of values in the dictionary, guarded by this */
+    private int size;
+
+    /** Most values the dictionary holds */
+    private final int capacity;
+
+    /**
+     * Creates an empty dictionary without a capacity.
+     */
+    public StringDictionary() {
+        this(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Creates an empty dictionary holding at most the given number of values.
+     *
+     * @param capacity Most distinct values the dictionary holds
+     */
+    public StringDictionary(int capacity) {
+        this.ordinals = new ConcurrentHashMap<>();
+        this.values = new String[Math.min(16, capacity)];
+        this.capacity = capacity;
+    }
+
+    /**
+     * Gets the ordinal of a value, adding the value if it is new.
+     *
+     * @param value Value to look up, may be null
+     * @return Ordinal of the value, or -1 for null
+     * @throws IllegalStateException if the value is new and the dictionary is full
+     */
+    public int ordinalOf(String value) {
+        if (value == null) {
+            return NULL_ORDINAL;
+        }
+        Integer ordinal = ordinals.get(value);
+        if (ordinal != null) {
+            return ordinal;
+        }
+        int added = add(value);
+        if (added == NULL_ORDINAL) {
+            throw new IllegalStateException("Dictionary is full at " + capacity + " values");
+        }
+        return added;
+    }
+
+    /**
+     * Adds a value if it is new and the dictionary has room.
+     *
+     * @return Ordinal of the value, or -1 if the dictionary is full
+     */
+    private synchronized int add(String value) {
+        Integer existing = ordinals.get(value);
+        if (existing != null) {
+            return existing;
+        }
+        if (size == capacity) {
+            return NULL_ORDINAL;
+        }
+
+        String[] current = values;
+        if (size == current.length) {
+            current = Arrays.copyOf(current, (int) Math.min((long) size * 2, capacity));
+        }
+        current[size] = value;
+        // Publish the array before the ordinal, so readers of the ordinal see the value
+        values = current;
+        ordinals.put(value, size);
+        return size++;
+    }
+
+    /**
+     * Gets the value of an ordinal.
+     *
+     * @param ordinal Ordinal returned by ordinalOf
+     * @return Value of the ordinal, or null for -1
+     */
+    public String valueOf(int ordinal) {
+        return ordinal == NULL_ORDINAL ? null : values[ordinal];
+    }
+
+    /**
+     * Gets the canonical instance of a value, so equal values share one String.
+     * Once the dictionary is full, new values are returned as they are.
+     *
+     * @param value Value to canonicalize, may be null
+     * @return Shared instance equal to the value, the value itself if the
+     *         dictionary is full, or null
+     */
+    public String canonical(String value) {
+        if (value == null) {
+            return null;
+        }
+        Integer ordinal = ordinals.get(value);
+        if (ordinal == null) {
+            ordinal = add(value);
+        }
+        return ordinal == NULL_ORDINAL ? value : values[ordinal];
+    }
+
+    /**
+     * Encodes a list of values as an array of ordinals.
+     *
+     * @param list Values to encode, may be null
+     * @return Ordinals of the values in order, or null for a null list
+     */
+    public int[] encode(List<String> list) {
+        if (list == null) {
+            return null;
+        }
+        if (list.isEmpty()) {
+            return EMPTY;
+        }
+
+        int[] encoded = new int[list.size()];
+        int i = 0;
+        for (String value : list) {
+            encoded[i++] = ordinalOf(value);
+        }
+        return encoded;
+    }
+
+    /**
+     * Returns a read-only list view of an array of ordinals.
+     *
+     * @param encoded Ordinals returned by encode, may be null
+     * @return List of the values, or null for a null array
+     */
+    public List<String> decode(int[] encoded) {
+        return encoded == null ? null : new OrdinalList(this, encoded);
+    }
+
+    /**
+     * Gets the number of distinct values in the dictionary.
+     *
+     * @return Number of values
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Read-only list of the values of an ordinal array.
+     */
+    private static final class OrdinalList extends AbstractList<String> implements RandomAccess {
+        private final StringDictionary dictionary;
+        private final int[] ordinals;
+
+        private OrdinalList(StringDictionary dictionary, int[] ordinals) {
+            this.dictionary = dictionary;
+            this.ordinals = ordinals;
+        }
+
+        @Override
+        public String get(int index) {
+            return dictionary.valueOf(ordinals[index]);
+        }
+
+        @Override
+        public int size() {
+            return ordinals.length;
+        }
+    }
+}
@@ -6,6 +6,8 @@ import java.util.List;
  * Represents a TV Show media item with specific television-related attributes.
  * Extends MediaItem and includes information from TMDB API.
  * Contains details like seasons, episodes, creators, and airing status.
+ * The status label is canonicalized through the shared label dictionary;
+ * creators and networks are kept as given.
  * 
  * @author Bakorz
  * @version 1.0
@@ -29,7 +31,7 @@ public class TVShow extends MediaItem {
     /** Date of last episode aired */
     private String lastAirDate;
 
-    /** List of broadcasting networks */
+    /** Broadcasting networks */
     private List<String> networks;
 
     /** Average runtime per episode in minutes */
@@ -79,7 +81,7 @@ public class TVShow extends MediaItem {
         this.numberOfSeasons = numberOfSeasons;
         this.numberOfEpisodes = numberOfEpisodes;
         this.creators = creators;
-        this.status = status;
+        this.status = StringDictionary.LABELS.canonical(status);
         this.firstAirDate = firstAirDate;
         this.lastAirDate = lastAirDate;
         this.networks = networks;
@@ -169,7 +171,7 @@ public class TVShow extends MediaItem {
      * @param status Airing status to set
      */
     public void setStatus(String status) {
-        this.status = status;
+        this.status = StringDictionary.LABELS.canonical(status);
     }
 
     /**
@@ -4,6 +4,7 @@ package com.bakorz.model;
  * Represents a watch list entry for a user's currently watching media.
  * Links a user to a media item they are tracking.
  * Includes media source information for cross-platform tracking.
+ * The source label is canonicalized, so entries share one instance of it.
  * 
  * @author Bakorz
  * @version 1.0
@@ -111,7 +112,7 @@ public class WatchEntry {
      * @param mediaSource Media source to set
      */
     public void setMediaSource(String mediaSource) {
-        this.mediaSource = mediaSource;
+        this.mediaSource = StringDictionary.LABELS.canonical(mediaSource);
     }
 
     /**
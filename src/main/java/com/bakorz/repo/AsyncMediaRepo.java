@@ -0,0 +1,143 @@
+package com.bakorz.repo;
+
+import com.bakorz.model.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Asynchronous counterpart of the MediaRepo query methods.
+ * Each method starts its work and returns at once with a future of the
+ * result, so callers can run several queries concurrently, combine them,
+ * apply timeouts or cancel them without a thread per query.
+ * Failures are handled as in MediaRepo: they are logged and the future
+ * completes with an empty result.
+ * The MAL and TMDB repositories provide non-blocking implementations;
+ * adapt() runs any blocking MediaRepo, such as the local cache, on an
+ * executor.
+ *
+ * @author Bakorz
+ * @version 1.0
+ */
+public interface AsyncMediaRepo {
+
+    /**
+     * Searches for media items by title.
+     *
+     * @param title Title search query
+     * @return Future of the list of matching MediaItems
+     */
+    CompletableFuture<List<MediaItem>> searchByTitle(String title);
+
+    /**
+     * Retrieves a media item by its unique identifier.
+     *
+     * @param id Media item ID
+     * @return Future of an Optional containing the MediaItem if found
+     */
+    CompletableFuture<Optional<MediaItem>> getById(String id);
+
+    /**
+     * Retrieves a cached MAL or TMDB item by its source and numeric ID, as
+     * MediaRepo.getBySourceId does.
+     *
+     * @param source Source of the item
+     * @param id     Numeric ID of the item at its source
+     * @return Future of an Optional containing the MediaItem if found
+     */
+    default CompletableFuture<Optional<MediaItem>> getBySourceId(SourceKey source, int id) {
+        return getById(source.format(id));
+    }
+
+    /**
+     * Retrieves a movie by its unique identifier.
+     *
+     * @param id Movie ID
+     * @return Future of an Optional containing the Movie if found
+     */
+    CompletableFuture<Optional<Movie>> getMovieById(String id);
+
+    /**
+     * Retrieves a TV show by its unique identifier.
+     *
+     * @param id TV show ID
+     * @return Future of an Optional containing the TVShow if found
+     */
+    CompletableFuture<Optional<TVShow>> getTVShowById(String id);
+
+    /**
+     * Retrieves an anime by its unique identifier.
+     *
+     * @param id Anime ID
+     * @return Future of an Optional containing the Anime if found
+     */
+    CompletableFuture<Optional<Anime>> getAnimeById(String id);
+
+    /**
+     * Retrieves media items by genre.
+     *
+     * @param genre Genre name
+     * @return Future of the list of MediaItems in the specified genre
+     */
+    CompletableFuture<List<MediaItem>> getByGenre(String genre);
+
+    /**
+     * Retrieves top-rated media items.
+     *
+     * @param limit Maximum number of results
+     * @return Future of the list of top-rated MediaItems
+     */
+    CompletableFuture<List<MediaItem>> getTopRated(int limit);
+
+    /**
+     * Retrieves latest movies.
+     *
+     * @param limit Maximum number of results
+     * @return Future of the list of latest Movies
+     */
+    CompletableFuture<List<Movie>> getLatestMovies(int limit);
+
+    /**
+     * Retrieves latest TV shows.
+     *
+     * @param limit Maximum number of results
+     * @return Future of the list of latest TVShows
+     */
+    CompletableFuture<List<TVShow>> getLatestTVShows(int limit);
+
+    /**
+     * Retrieves several media items by their unique identifiers, with all
+     * lookups in flight at once. IDs that are not found are skipped.
+     *
+     * @param ids Media item IDs
+     * @return Future of the list of found MediaItems, in the order of the
+     *         given IDs
+     */
+    default CompletableFuture<List<MediaItem>> getAllByIds(Collection<String> ids) {
+        List<CompletableFuture<Optional<MediaItem>>> lookups = new ArrayList<>();
+        for (String id : ids) {
+            lookups.add(getById(id));
+        }
+        return CompletableFuture.allOf(lookups.toArray(new CompletableFuture<?>[0])).thenApply(done -> {
+            List<MediaItem> results = new ArrayList<>();
+            for (CompletableFuture<Optional<MediaItem>> lookup : lookups) {
+                lookup.join().ifPresent(results::add);
+            }
+            return results;
+        });
+    }
+
+    /**
+     * Adapts a blocking repository by running each query on an executor.
+     *
+     * @param repo     Blocking repository, such as FileMediaRepo
+     * @param executor Executor the queries run on
+     * @return Asynchronous view of the repository
+     */
+    static AsyncMediaRepo adapt(MediaRepo repo, Executor executor) {
+        return new BlockingMediaRepoAdapter(repo, executor);
+    }
+}
@@ -0,0 +1,126 @@
+package com.bakorz.repo;
+
+import com.bakorz.model.*;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.function.Supplier;
+
+/**
+ * AsyncMediaRepo over a blocking MediaRepo.
+ * Runs each query on an executor, for repositories that have no
+ * non-blocking implementation of their own, such as the local file cache.
+ * Exceptions thrown by a query, such as UnsupportedOperationException,
+ * complete its future exceptionally. Cancelling a future interrupts its
+ * query if it is running, which aborts a blocking HTTP request, and skips
+ * it if it has not started.
+ *
+ * @author Bakorz
+ * @version 1.0
+ */
+final class BlockingMediaRepoAdapter implements AsyncMediaRepo {
+    /** Repository the queries are delegated to */
+    private final MediaRepo repo;
+
+    /** Executor the queries run on */
+    private final Executor executor;
+
+    /**
+     * Creates an adapter.
+     *
+     * @param repo     Blocking repository
+     * @param executor Executor the queries run on
+     */
+    BlockingMediaRepoAdapter(MediaRepo repo, Executor executor) {
+        this.repo = repo;
+        this.executor = executor;
+    }
+
+    @Override
+    public CompletableFuture<List<MediaItem>> searchByTitle(String title) {
+        return submit(() -> repo.searchByTitle(title));
+    }
+
+    @Override
+    public CompletableFuture<Optional<MediaItem>> getById(String id) {
+        return submit(() -> repo.getById(id));
+    }
+
+    @Override
+    public CompletableFuture<Optional<MediaItem>> getBySourceId(SourceKey source, int id) {
+        return submit(() -> repo.getBySourceId(source, id));
+    }
+
+    @Override
+    public CompletableFuture<Optional<Movie>> getMovieById(String id) {
+        return submit(() -> repo.getMovieById(id));
+    }
+
+    @Override
+    public CompletableFuture<Optional<TVShow>> getTVShowById(String id) {
+        return submit(() -> repo.getTVShowById(id));
+    }
+
+    @Override
+    public CompletableFuture<Optional<Anime>> getAnimeById(String id) {
+        return submit(() -> repo.getAnimeById(id));
+    }
+
+    @Override
+    public CompletableFuture<List<MediaItem>> getByGenre(String genre) {
+        return submit(() -> repo.getByGenre(genre));
+    }
+
+    @Override
+    public CompletableFuture<List<MediaItem>> getTopRated(int limit) {
+        return submit(() -> repo.getTopRated(limit));
+    }
+
+    @Override
+    public CompletableFuture<List<Movie>> getLatestMovies(int limit) {
+        return submit(() -> repo.getLatestMovies(limit));
+    }
+
+    @Override
+    public CompletableFuture<List<TVShow>> getLatestTVShows(int limit) {
+        return submit(() -> repo.getLatestTVShows(limit));
+    }
+
+    /**
+     * Retrieves several media items with one bulk lookup on the executor,
+     * rather than one task per ID.
+     */
+    @Override
+    public CompletableFuture<List<MediaItem>> getAllByIds(Collection<String> ids) {
+        return submit(() -> repo.getAllByIds(ids));
+    }
+
+    /**
+     * Runs a query on the executor as a task that cancelling the returned
+     * future interrupts.
+     *
+     * @param <T>   Result type
+     * @param query Blocking query
+     * @return Future of the query's result
+     */
+    private <T> CompletableFuture<T> submit(Supplier<T> query) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        FutureTask<Void> task = new FutureTask<>(() -> {
+            try {
+                result.complete(query.get());
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        }, null);
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled()) {
+                task.cancel(true);
+            }
+        });
+        executor.execute(task);
+        return result;
+    }
+}
@@ -0,0 +1,67 @@
+package com.bakorz.repo;
+
+import com.bakorz.model.MediaItem;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * Bulk lookups by ID for the blocking API repositories (MAL and TMDB).
+ * Runs one lookup per ID on a bounded pool of daemon threads, so a bulk fetch
+ * keeps a fixed number of requests in flight instead of sending them one
+ * after another or all at once.
+ *
+ * @author Bakorz
+ * @version 1.0
+ */
+final class BulkFetcher {
+    /** Bounded pool the lookups run on */
+    private final ExecutorService pool;
+
+    /**
+     * Creates a fetcher with its own pool.
+     *
+     * @param threadName  Name of the pool's threads
+     * @param maxParallel Maximum number of lookups in flight at once
+     */
+    BulkFetcher(String threadName, int maxParallel) {
+        this.pool = Executors.newFixedThreadPool(maxParallel, r -> {
+            Thread t = new Thread(r, threadName);
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Looks up several items by ID in parallel.
+     * Lookups that find nothing or fail are skipped; failures are logged.
+     * If the calling thread is interrupted, the items found so far are
+     * returned.
+     *
+     * @param ids    Item IDs
+     * @param lookup Blocking lookup of one item
+     * @return Found MediaItems, in the order of the given IDs
+     */
+    List<MediaItem> fetchAll(Collection<String> ids, Function<String, Optional<? extends MediaItem>> lookup) {
+        List<Future<Optional<? extends MediaItem>>> futures = new ArrayList<>();
+        for (String id : ids) {
+            futures.add(pool.submit(() -> lookup.apply(id)));
+        }
+
+        List<MediaItem> results = new ArrayList<>();
+        for (Future<Optional<? extends MediaItem>> future : futures) {
+            try {
+                future.get().ifPresent(results::add);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException e) {
+                System.err.println("Error in bulk fetch: " + e.getCause().getMessage());
+            }
+        }
+        return results;
+    }
+}
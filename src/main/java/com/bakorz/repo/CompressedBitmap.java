@@ -0,0 +1,477 @@
+package com.bakorz.repo;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Compressed set of non-negative int values, laid out like a Roaring bitmap.
+ * Values are grouped by their high 16 bits; each group is stored in a sorted
+ * char array while it holds at most 4096 values, and in a 65536-bit bitmap
+ * once it grows beyond that. Sparse sets therefore cost two bytes per value
+ * and dense sets one bit per value.
+ * Set operations return new bitmaps and leave their operands unchanged.
+ * Instances are not thread-safe; the owning repository synchronizes access.
+ *
+ * @author Bakorz
+ * @version 1.0
+ */
+final class CompressedBitmap {
+    /** Largest number of values kept in an array container */
+    private static final int ARRAY_MAX = 4096;
+
+    /** Number of 64-bit words in a bitmap container */
+    private static final int BITMAP_WORDS = 1024;
+
+    /** High 16 bits of each container, in ascending order */
+    private char[] keys;
+
+    /** Containers holding the low 16 bits, parallel to keys */
+    private Container[] containers;
+
+    /** Number of containers in use */
+    private int size;
+
+    /**
+     * Creates an empty bitmap.
+     */
+    CompressedBitmap() {
+        this.keys = new char[4];
+        this.containers = new Container[4];
+    }
+
+    private int findKey(char key) {
+        return Arrays.binarySearch(keys, 0, size, key);
+    }
+
+    private void append(char key, Container container) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            containers = Arrays.copyOf(containers, size * 2);
+        }
+        keys[size] = key;
+        containers[size] = container;
+        size++;
+    }
+
+    /**
+     * Adds a value.
+     *
+     * @param value Non-negative value
+     */
+    void add(int value) {
+        char key = (char) (value >>> 16);
+        int position = findKey(key);
+        if (position >= 0) {
+            containers[position] = containers[position].add((char) value);
+            return;
+        }
+
+        position = -position - 1;
+        append(key, null);
+        System.arraycopy(keys, position, keys, position + 1, size - 1 - position);
+        System.arraycopy(containers, position, containers, position + 1, size - 1 - position);
+        keys[position] = key;
+        containers[position] = new ArrayContainer().add((char) value);
+    }
+
+    /**
+     * Removes a value.
+     *
+     * @param value Value to remove
+     */
+    void remove(int value) {
+        int position = findKey((char) (value >>> 16));
+        if (position < 0) {
+            return;
+        }
+
+        Container container = containers[position].remove((char) value);
+        if (container.cardinality() > 0) {
+            containers[position] = container;
+            return;
+        }
+        System.arraycopy(keys, position + 1, keys, position, size - position - 1);
+        System.arraycopy(containers, position + 1, containers, position, size - position - 1);
+        containers[--size] = null;
+    }
+
+    /**
+     * Checks whether a value is present.
+     *
+     * @param value Value to look up
+     * @return true if the value is in the set
+     */
+    boolean contains(int value) {
+        int position = findKey((char) (value >>> 16));
+        return position >= 0 && containers[position].contains((char) value);
+    }
+
+    /**
+     * Counts the values in the set.
+     *
+     * @return Number of values
+     */
+    int cardinality() {
+        int cardinality = 0;
+        for (int i = 0; i < size; i++) {
+            cardinality += containers[i].cardinality();
+        }
+        return cardinality;
+    }
+
+    /**
+     * Passes every value to a consumer in ascending order.
+     *
+     * @param consumer Receives each value
+     */
+    void forEach(IntConsumer consumer) {
+        for (int i = 0; i < size; i++) {
+            containers[i].forEach(keys[i] << 16, consumer);
+        }
+    }
+
+    /**
+     * Computes the values present in both bitmaps.
+     *
+     * @param other Bitmap to intersect with
+     * @return New bitmap
+     */
+    CompressedBitmap and(CompressedBitmap other) {
+        CompressedBitmap result = new CompressedBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < size && j < other.size) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                Container container = containers[i].and(other.containers[j]);
+                if (container.cardinality() > 0) {
+                    result.append(keys[i], container);
+                }
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Computes the values present in either bitmap.
+     *
+     * @param other Bitmap to unite with
+     * @return New bitmap
+     */
+    CompressedBitmap or(CompressedBitmap other) {
+        CompressedBitmap result = new CompressedBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < size || j < other.size) {
+            if (j == other.size || (i < size && keys[i] < other.keys[j])) {
+                result.append(keys[i], containers[i].copy());
+                i++;
+            } else if (i == size || keys[i] > other.keys[j]) {
+                result.append(other.keys[j], other.containers[j].copy());
+                j++;
+            } else {
+                result.append(keys[i], containers[i].or(other.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Computes the values present in this bitmap but not in the other.
+     *
+     * @param other Bitmap of values to exclude
+     * @return New bitmap
+     */
+    CompressedBitmap andNot(CompressedBitmap other) {
+        CompressedBitmap result = new CompressedBitmap();
+        int j = 0;
+        for (int i = 0; i < size; i++) {
+            while (j < other.size && other.keys[j] < keys[i]) {
+                j++;
+            }
+            Container container = j < other.size && other.keys[j] == keys[i]
+                    ? containers[i].andNot(other.containers[j])
+                    : containers[i].copy();
+            if (container.cardinality() > 0) {
+                result.append(keys[i], container);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Builds the smallest container for a set of low bits given as words.
+     */
+    private static Container fromWords(long[] words) {
+        int cardinality = 0;
+        for (long word : words) {
+            cardinality += Long.bitCount(word);
+        }
+        if (cardinality > ARRAY_MAX) {
+            return new BitmapContainer(words, cardinality);
+        }
+
+        ArrayContainer array = new ArrayContainer(cardinality);
+        for (int w = 0; w < words.length; w++) {
+            long word = words[w];
+            while (word != 0) {
+                array.values[array.cardinality++] = (char) (w * 64 + Long.numberOfTrailingZeros(word));
+                word &= word - 1;
+            }
+        }
+        return array;
+    }
+
+    /**
+     * Set of the low 16 bits of the values sharing one high 16-bit key.
+     */
+    private abstract static class Container {
+        abstract boolean contains(char value);
+
+        /** Adds a value, returning the container that now holds the set */
+        abstract Container add(char value);
+
+        /** Removes a value, returning the container that now holds the set */
+        abstract Container remove(char value);
+
+        abstract int cardinality();
+
+        abstract Container copy();
+
+        /** Returns the set as bitmap words; callers must not modify them */
+        abstract long[] words();
+
+        abstract void forEach(int base, IntConsumer consumer);
+
+        Container and(Container other) {
+            if (other instanceof ArrayContainer) {
+                return other.and(this);
+            }
+            long[] a = words();
+            long[] b = other.words();
+            long[] result = new long[BITMAP_WORDS];
+            for (int w = 0; w < BITMAP_WORDS; w++) {
+                result[w] = a[w] & b[w];
+            }
+            return fromWords(result);
+        }
+
+        Container or(Container other) {
+            long[] a = words();
+            long[] b = other.words();
+            long[] result = new long[BITMAP_WORDS];
+            for (int w = 0; w < BITMAP_WORDS; w++) {
+                result[w] = a[w] | b[w];
+            }
+            return fromWords(result);
+        }
+
+        Container andNot(Container other) {
+            long[] a = words();
+            long[] b = other.words();
+            long[] result = new long[BITMAP_WORDS];
+            for (int w = 0; w < BITMAP_WORDS; w++) {
+                result[w] = a[w] & ~b[w];
+            }
+            return fromWords(result);
+        }
+    }
+
+    /**
+     * Sorted array of values, for groups of at most 4096 values.
+     */
+    private static final class ArrayContainer extends Container {
+        private char[] values;
+        private int cardinality;
+
+        private ArrayContainer() {
+            this(4);
+        }
+
+        private ArrayContainer(int capacity) {
+            this.values = new char[Math.max(capacity, 1)];
+        }
+
+        @Override
+        boolean contains(char value) {
+            return Arrays.binarySearch(values, 0, cardinality, value) >= 0;
+        }
+
+        @Override
+        Container add(char value) {
+            int position = Arrays.binarySearch(values, 0, cardinality, value);
+            if (position >= 0) {
+                return this;
+            }
+            if (cardinality == ARRAY_MAX) {
+                return new BitmapContainer(words(), cardinality).add(value);
+            }
+
+            position = -position - 1;
+            if (cardinality == values.length) {
+                values = Arrays.copyOf(values, Math.min(cardinality * 2, ARRAY_MAX));
+            }
+            System.arraycopy(values, position, values, position + 1, cardinality - position);
+            values[position] = value;
+            cardinality++;
+            return this;
+        }
+
+        @Override
+        Container remove(char value) {
+            int position = Arrays.binarySearch(values, 0, cardinality, value);
+            if (position >= 0) {
+                System.arraycopy(values, position + 1, values, position, cardinality - position - 1);
+                cardinality--;
+            }
+            return this;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        Container copy() {
+            ArrayContainer copy = new ArrayContainer(cardinality);
+            System.arraycopy(values, 0, copy.values, 0, cardinality);
+            copy.cardinality = cardinality;
+            return copy;
+        }
+
+        @Override
+        long[] words() {
+            long[] words = new long[BITMAP_WORDS];
+            for (int i = 0; i < cardinality; i++) {
+                words[values[i] >>> 6] |= 1L << values[i];
+            }
+            return words;
+        }
+
+        @Override
+        void forEach(int base, IntConsumer consumer) {
+            for (int i = 0; i < cardinality; i++) {
+                consumer.accept(base | values[i]);
+            }
+        }
+
+        @Override
+        Container and(Container other) {
+            ArrayContainer result = new ArrayContainer(cardinality);
+            for (int i = 0; i < cardinality; i++) {
+                if (other.contains(values[i])) {
+                    result.values[result.cardinality++] = values[i];
+                }
+            }
+            return result;
+        }
+
+        @Override
+        Container or(Container other) {
+            if (!(other instanceof ArrayContainer) || cardinality + other.cardinality() > ARRAY_MAX) {
+                return super.or(other);
+            }
+
+            // Merge two sorted arrays
+            ArrayContainer array = (ArrayContainer) other;
+            ArrayContainer result = new ArrayContainer(cardinality + array.cardinality);
+            int i = 0;
+            int j = 0;
+            while (i < cardinality || j < array.cardinality) {
+                char next;
+                if (j == array.cardinality || (i < cardinality && values[i] < array.values[j])) {
+                    next = values[i++];
+                } else if (i == cardinality || values[i] > array.values[j]) {
+                    next = array.values[j++];
+                } else {
+                    next = values[i++];
+                    j++;
+                }
+                result.values[result.cardinality++] = next;
+            }
+            return result;
+        }
+
+        @Override
+        Container andNot(Container other) {
+            ArrayContainer result = new ArrayContainer(cardinality);
+            for (int i = 0; i < cardinality; i++) {
+                if (!other.contains(values[i])) {
+                    result.values[result.cardinality++] = values[i];
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Plain 65536-bit bitmap, for groups of more than 4096 values.
+     */
+    private static final class BitmapContainer extends Container {
+        private final long[] words;
+        private int cardinality;
+
+        private BitmapContainer(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return (words[value >>> 6] & (1L << value)) != 0;
+        }
+
+        @Override
+        Container add(char value) {
+            if (!contains(value)) {
+                words[value >>> 6] |= 1L << value;
+                cardinality++;
+            }
+            return this;
+        }
+
+        @Override
+        Container remove(char value) {
+            if (!contains(value)) {
+                return this;
+            }
+            words[value >>> 6] &= ~(1L << value);
+            cardinality--;
+            return cardinality > ARRAY_MAX ? this : fromWords(words);
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        Container copy() {
+            return new BitmapContainer(words.clone(), cardinality);
+        }
+
+        @Override
+        long[] words() {
+            return words;
+        }
+
+        @Override
+        void forEach(int base, IntConsumer consumer) {
+            for (int w = 0; w < BITMAP_WORDS; w++) {
+                long word = words[w];
+                while (word != 0) {
+                    consumer.accept(base | (w * 64 + Long.numberOfTrailingZeros(word)));
+                    word &= word - 1;
+                }
+            }
+        }
+    }
+}
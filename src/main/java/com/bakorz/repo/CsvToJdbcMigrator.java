@@ -0,0 +1,58 @@
+package com.bakorz.repo;
+
+/**
+ * One-shot migration of the CSV data files (data/media.csv,
+ * data/favorite.csv with its log, and data/watch.csv) into the embedded
+ * database used by the JDBC repositories.
+ * Rows are written with batched inserts; items already in the database are
+ * replaced, so the migration can be rerun safely.
+ * Run with: java com.bakorz.repo.CsvToJdbcMigrator [jdbcUrl]
+ *
+ * @author Bakorz
+ * @version 1.0
+ */
+public final class CsvToJdbcMigrator {
+    private CsvToJdbcMigrator() {
+    }
+
+    /**
+     * Migrates the CSV files to the database at the given URL, or the default
+     * embedded database.
+     *
+     * @param args Optional JDBC URL
+     */
+    public static void main(String[] args) {
+        migrate(args.length > 0 ? args[0] : JdbcSupport.DEFAULT_URL);
+    }
+
+    /**
+     * Copies all media items, favorites and watch entries from the CSV files
+     * into the database.
+     *
+     * @param url JDBC URL of the target database
+     */
+    public static void migrate(String url) {
+        migrate(url, new FileMediaRepo(), new FileFavoriteRepo(), new FileWatchRepo());
+    }
+
+    /**
+     * Copies all media items, favorites and watch entries from the given
+     * repositories into the database. Favorites and watch entries keep the
+     * order the source repositories return them in.
+     *
+     * @param url       JDBC URL of the target database
+     * @param media     Repository to copy media items from
+     * @param favorites Repository to copy favorites from
+     * @param watch     Repository to copy watch entries from
+     */
+    public static void migrate(String url, MediaRepo media, FavoriteRepo favorites, WatchRepo watch) {
+        long start = System.nanoTime();
+
+        int mediaItems = new JdbcMediaRepo(url).saveAll(media.getAll());
+        int favoriteCount = new JdbcFavoriteRepo(url).addAll(favorites.getAll());
+        int watchEntries = new JdbcWatchRepo(url).addAll(watch.getAll());
+
+        System.out.println("Migrated " + mediaItems + " media items, " + favoriteCount + " favorites and "
+                + watchEntries + " watch entries in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+}
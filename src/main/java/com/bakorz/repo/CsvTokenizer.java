@@ -0,0 +1,405 @@
+package com.bakorz.repo;
+
+import java.util.Arrays;
+
+/**
+ * Reusable cursor-style tokenizer for delimited records.
+ * Walks a char buffer and exposes the bounds of the current field without
+ * copying it, so a String is only created for fields the caller keeps.
+ * Handles quoted fields with doubled-quote escapes, as written by the file
+ * repositories. A tokenizer can also be reset onto the current field of
+ * another tokenizer to split nested lists (for example genres or the
+ * pipe-separated additional data) in place.
+ * Instances are not thread-safe; use one per thread.
+ *
+ * @author Bakorz
+ * @version 1.0
+ */
+final class CsvTokenizer {
+    /** Value of each base64 digit by character, -1 for other characters */
+    private static final byte[] BASE64_VALUES = new byte[128];
+
+    static {
+        Arrays.fill(BASE64_VALUES, (byte) -1);
+        String digits = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+        for (int i = 0; i < digits.length(); i++) {
+            BASE64_VALUES[digits.charAt(i)] = (byte) i;
+        }
+    }
+
+    /** Field delimiter character */
+    private final char delimiter;
+
+    /** Buffer holding the current record */
+    private char[] buffer;
+
+    /** Scratch buffer used when the record has to be copied or unescaped */
+    private char[] scratch;
+
+    /** Position of the next unread character */
+    private int position;
+
+    /** End of the current record (exclusive) */
+    private int limit;
+
+    /** Start of the current field's content */
+    private int fieldStart;
+
+    /** End of the current field's content (exclusive) */
+    private int fieldEnd;
+
+    /** Whether the current field contains doubled-quote escapes */
+    private boolean fieldEscaped;
+
+    /** Whether the record has been fully consumed */
+    private boolean exhausted;
+
+    /** First child tokenizer used to split fields, one per nested delimiter */
+    private CsvTokenizer child;
+
+    /** Next child of the same parent, for a different nested delimiter */
+    private CsvTokenizer sibling;
+
+    /**
+     * Creates a tokenizer for the given delimiter.
+     *
+     * @param delimiter Field delimiter character
+     */
+    CsvTokenizer(char delimiter) {
+        this.delimiter = delimiter;
+        this.scratch = new char[256];
+    }
+
+    /**
+     * Points the tokenizer at a record inside a char buffer.
+     *
+     * @param buffer Buffer holding the record
+     * @param start  Start of the record
+     * @param end    End of the record (exclusive)
+     * @return This tokenizer
+     */
+    CsvTokenizer reset(char[] buffer, int start, int end) {
+        this.buffer = buffer;
+        this.position = start;
+        this.limit = end;
+        this.fieldStart = start;
+        this.fieldEnd = start;
+        this.fieldEscaped = false;
+        this.exhausted = false;
+        return this;
+    }
+
+    /**
+     * Points the tokenizer at a record held in a String.
+     * The characters are copied into a reused scratch buffer.
+     *
+     * @param line Record to tokenize
+     * @return This tokenizer
+     */
+    CsvTokenizer reset(String line) {
+        ensureScratch(line.length());
+        line.getChars(0, line.length(), scratch, 0);
+        return reset(scratch, 0, line.length());
+    }
+
+    /**
+     * Points the tokenizer at the current field of another tokenizer, for
+     * splitting a nested list. Escaped fields are unescaped into this
+     * tokenizer's scratch buffer first.
+     *
+     * @param parent Tokenizer positioned on the field to split
+     * @return This tokenizer
+     */
+    CsvTokenizer resetToField(CsvTokenizer parent) {
+        if (!parent.fieldEscaped) {
+            return reset(parent.buffer, parent.fieldStart, parent.fieldEnd);
+        }
+
+        ensureScratch(parent.fieldEnd - parent.fieldStart);
+        int length = 0;
+        for (int i = parent.fieldStart; i < parent.fieldEnd; i++) {
+            char c = parent.buffer[i];
+            scratch[length++] = c;
+            if (c == '"' && i + 1 < parent.fieldEnd && parent.buffer[i + 1] == '"') {
+                i++;
+            }
+        }
+        return reset(scratch, 0, length);
+    }
+
+    /**
+     * Returns a tokenizer over the current field, split on the given
+     * delimiter. Child tokenizers are kept per delimiter and reused across
+     * calls.
+     *
+     * @param delimiter Delimiter of the nested list
+     * @return Child tokenizer positioned before the first nested field
+     */
+    CsvTokenizer split(char delimiter) {
+        CsvTokenizer tokenizer = child;
+        while (tokenizer != null && tokenizer.delimiter != delimiter) {
+            tokenizer = tokenizer.sibling;
+        }
+        if (tokenizer == null) {
+            tokenizer = new CsvTokenizer(delimiter);
+            tokenizer.sibling = child;
+            child = tokenizer;
+        }
+        return tokenizer.resetToField(this);
+    }
+
+    private void ensureScratch(int length) {
+        if (scratch.length < length) {
+            scratch = new char[Math.max(length, scratch.length * 2)];
+        }
+    }
+
+    /**
+     * Advances to the next field.
+     *
+     * @return false if the record has no more fields
+     */
+    boolean next() {
+        if (exhausted) {
+            return false;
+        }
+
+        fieldEscaped = false;
+        if (position < limit && buffer[position] == '"') {
+            // Quoted field: content runs to the closing quote
+            fieldStart = position + 1;
+            int i = fieldStart;
+            while (i < limit) {
+                if (buffer[i] == '"') {
+                    if (i + 1 < limit && buffer[i + 1] == '"') {
+                        fieldEscaped = true;
+                        i += 2;
+                        continue;
+                    }
+                    break;
+                }
+                i++;
+            }
+            fieldEnd = Math.min(i, limit);
+            position = fieldEnd + 1;
+            // Skip anything between the closing quote and the delimiter
+            while (position < limit && buffer[position] != delimiter) {
+                position++;
+            }
+        } else {
+            fieldStart = position;
+            while (position < limit && buffer[position] != delimiter) {
+                position++;
+            }
+            fieldEnd = position;
+        }
+
+        if (position < limit) {
+            position++; // Consume delimiter
+        } else {
+            exhausted = true;
+        }
+        return true;
+    }
+
+    /**
+     * Advances past the given number of fields.
+     *
+     * @param count Number of fields to skip
+     * @return false if the record ran out of fields
+     */
+    boolean skip(int count) {
+        for (int i = 0; i < count; i++) {
+            if (!next()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether the current field is empty.
+     *
+     * @return true if the field has no content
+     */
+    boolean isEmpty() {
+        return fieldEnd == fieldStart;
+    }
+
+    /**
+     * Compares the current field to a string, ignoring case, without
+     * allocating.
+     *
+     * @param value String to compare with
+     * @return true if the field equals the value ignoring case
+     */
+    boolean equalsIgnoreCase(String value) {
+        if (fieldEscaped) {
+            return value.equalsIgnoreCase(string());
+        }
+        return fieldEnd - fieldStart == value.length() && regionEqualsIgnoreCase(value);
+    }
+
+    private boolean regionEqualsIgnoreCase(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char a = buffer[fieldStart + i];
+            char b = value.charAt(i);
+            if (a != b && Character.toLowerCase(a) != Character.toLowerCase(b)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Creates a String for the current field, unescaping doubled quotes.
+     *
+     * @return Field content
+     */
+    String string() {
+        if (!fieldEscaped) {
+            return new String(buffer, fieldStart, fieldEnd - fieldStart);
+        }
+
+        StringBuilder sb = new StringBuilder(fieldEnd - fieldStart);
+        for (int i = fieldStart; i < fieldEnd; i++) {
+            char c = buffer[i];
+            sb.append(c);
+            if (c == '"' && i + 1 < fieldEnd && buffer[i + 1] == '"') {
+                i++;
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Creates a String for the current field, or returns the default when the
+     * field is empty.
+     *
+     * @param defaultValue Value for an empty field
+     * @return Field content or the default
+     */
+    String stringOr(String defaultValue) {
+        return isEmpty() ? defaultValue : string();
+    }
+
+    /**
+     * Decodes the current field as unpadded base64 without creating a String.
+     *
+     * @return Decoded bytes, or null for an empty field
+     * @throws IllegalArgumentException if the field is not valid base64
+     */
+    byte[] base64Value() {
+        if (isEmpty()) {
+            return null;
+        }
+
+        int length = fieldEnd - fieldStart;
+        if (length % 4 == 1) {
+            throw new IllegalArgumentException("Invalid base64 length " + length);
+        }
+        byte[] bytes = new byte[length * 3 / 4];
+        int bits = 0;
+        int bitCount = 0;
+        int out = 0;
+        for (int i = fieldStart; i < fieldEnd; i++) {
+            char c = buffer[i];
+            int value = c < BASE64_VALUES.length ? BASE64_VALUES[c] : -1;
+            if (value < 0) {
+                throw new IllegalArgumentException("Invalid base64 character '" + c + "'");
+            }
+            bits = bits << 6 | value;
+            bitCount += 6;
+            if (bitCount >= 8) {
+                bitCount -= 8;
+                bytes[out++] = (byte) (bits >> bitCount);
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Parses the current field as an int without creating a String.
+     *
+     * @param defaultValue Value for an empty field
+     * @return Parsed value
+     * @throws NumberFormatException if the field is not a valid int
+     */
+    int intValue(int defaultValue) {
+        if (isEmpty()) {
+            return defaultValue;
+        }
+
+        int i = fieldStart;
+        boolean negative = buffer[i] == '-';
+        if (negative || buffer[i] == '+') {
+            i++;
+        }
+        if (i == fieldEnd) {
+            throw new NumberFormatException("For input string: \"" + string() + "\"");
+        }
+
+        long value = 0;
+        for (; i < fieldEnd; i++) {
+            int digit = buffer[i] - '0';
+            if (digit < 0 || digit > 9 || value > Integer.MAX_VALUE + 1L) {
+                throw new NumberFormatException("For input string: \"" + string() + "\"");
+            }
+            value = value * 10 + digit;
+        }
+        value = negative ? -value : value;
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw new NumberFormatException("For input string: \"" + string() + "\"");
+        }
+        return (int) value;
+    }
+
+    /**
+     * Parses the current field as a double. Plain decimals are parsed in place;
+     * other notations fall back to Double.parseDouble.
+     *
+     * @param defaultValue Value for an empty field
+     * @return Parsed value
+     * @throws NumberFormatException if the field is not a valid number
+     */
+    double doubleValue(double defaultValue) {
+        if (isEmpty()) {
+            return defaultValue;
+        }
+
+        int i = fieldStart;
+        boolean negative = buffer[i] == '-';
+        if (negative) {
+            i++;
+        }
+
+        // Up to 15 digits the mantissa and power of ten are exact doubles, so
+        // one division gives the correctly rounded result
+        long mantissa = 0;
+        int fractionDigits = -1;
+        int digits = 0;
+        for (; i < fieldEnd; i++) {
+            char c = buffer[i];
+            if (c >= '0' && c <= '9' && digits < 15) {
+                mantissa = mantissa * 10 + (c - '0');
+                digits++;
+                if (fractionDigits >= 0) {
+                    fractionDigits++;
+                }
+            } else if (c == '.' && fractionDigits < 0) {
+                fractionDigits = 0;
+            } else {
+                return Double.parseDouble(string());
+            }
+        }
+        if (digits == 0) {
+            return Double.parseDouble(string());
+        }
+
+        double value = mantissa;
+        if (fractionDigits > 0) {
+            value /= Math.pow(10, fractionDigits);
+        }
+        return negative ? -value : value;
+    }
+}
@@ -0,0 +1,23 @@
+package com.bakorz.repo;
+
+/**
+ * When writes of the file-based repositories are forced to disk.
+ * Selected with -Dmetavie.durability=EVERY_WRITE|INTERVAL|ON_SHUTDOWN; the
+ * interval is set with -Dmetavie.durability.intervalMs (default 1000).
+ * Whatever the policy, snapshot files are always replaced atomically, so a
+ * crash leaves either the old or the new snapshot; the policy only bounds how
+ * many of the most recent writes a crash may lose.
+ *
+ * @author Bakorz
+ * @version 1.0
+ */
+public enum DurabilityPolicy {
+    /** Every write returns only once it is on disk; concurrent writes share an fsync */
+    EVERY_WRITE,
+
+    /** Written files are forced to disk in the background at a fixed interval */
+    INTERVAL,
+
+    /** Written files are forced to disk when the application shuts down */
+    ON_SHUTDOWN
+}
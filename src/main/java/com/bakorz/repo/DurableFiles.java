@@ -0,0 +1,155 @@
+package com.bakorz.repo;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.Collection;
+
+/**
+ * Crash-safe writes of the CSV data files.
+ * Snapshots are written to a temporary file next to the target, forced to
+ * disk and renamed over the target, so readers and a restart after a crash
+ * see either the complete old file or the complete new one. The temporary
+ * file is always forced before the rename, since renaming data that has not
+ * reached disk can leave an empty file behind after a crash.
+ * Appends and the directory entries of renames are registered with the shared
+ * FsyncBatcher and reach disk according to the durability policy.
+ *
+ * @author Bakorz
+ * @version 1.0
+ */
+final class DurableFiles {
+    /** Suffix of the temporary file a snapshot is written to */
+    static final String TEMP_SUFFIX = ".tmp";
+
+    /** Size of the write buffer for snapshots */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private DurableFiles() {
+    }
+
+    /**
+     * Atomically replaces a file with the given text content.
+     *
+     * @param target  File to replace
+     * @param content Writes the new content as text
+     * @return Ticket to pass to FsyncBatcher.awaitDurable
+     * @throws IOException if the content cannot be written or renamed
+     */
+    static long replace(Path target, TextContent content) throws IOException {
+        return replaceBytes(target, out -> {
+            BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            content.writeTo(writer);
+            writer.flush();
+        });
+    }
+
+    /**
+     * Atomically replaces a file with the given binary content.
+     *
+     * @param target  File to replace
+     * @param content Writes the new content as bytes
+     * @return Ticket to pass to FsyncBatcher.awaitDurable
+     * @throws IOException if the content cannot be written or renamed
+     */
+    static long replaceBytes(Path target, ByteContent content) throws IOException {
+        Path directory = target.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temp = target.resolveSibling(target.getFileName() + TEMP_SUFFIX);
+
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE);
+            content.writeTo(out);
+            out.flush();
+        }
+        FsyncBatcher.shared().forceFile(temp);
+
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return FsyncBatcher.shared().register(directory);
+    }
+
+    /**
+     * Appends records to a file, creating it with a header line first if it
+     * is missing or empty.
+     *
+     * @param target  File to append to
+     * @param header  Header line written to a new file
+     * @param records Lines to append
+     * @return Ticket to pass to FsyncBatcher.awaitDurable
+     * @throws IOException if the records cannot be written
+     */
+    static long append(Path target, String header, Collection<String> records) throws IOException {
+        Path directory = target.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        boolean created = !Files.exists(target) || Files.size(target) == 0;
+
+        try (BufferedWriter writer = Files.newBufferedWriter(target, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            if (created) {
+                writer.write(header);
+                writer.newLine();
+            }
+            for (String record : records) {
+                writer.write(record);
+                writer.newLine();
+            }
+        }
+
+        if (created) {
+            FsyncBatcher.shared().register(directory);
+        }
+        return FsyncBatcher.shared().register(target);
+    }
+
+    /**
+     * Checks whether a file ends with a complete line, so that an append
+     * starts a new record rather than extending a torn one.
+     *
+     * @param file File to check
+     * @return true if the file is empty or its last byte is a newline
+     * @throws IOException if the file cannot be read
+     */
+    static boolean endsWithNewline(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() == 0) {
+                return true;
+            }
+            ByteBuffer last = ByteBuffer.allocate(1);
+            channel.read(last, channel.size() - 1);
+            return last.get(0) == '\n';
+        }
+    }
+
+    /**
+     * Forces the directory entries of a file to disk immediately, whatever
+     * the durability policy, for renames that must be durable before a
+     * following step.
+     *
+     * @param file File whose directory is forced
+     */
+    static void syncDirectory(Path file) {
+        FsyncBatcher.shared().forceNow(file.toAbsolutePath().getParent());
+    }
+
+    /**
+     * Writes the content of a snapshot as text.
+     */
+    interface TextContent {
+        void writeTo(BufferedWriter out) throws IOException;
+    }
+
+    /**
+     * Writes the content of a snapshot as bytes.
+     */
+    interface ByteContent {
+        void writeTo(OutputStream out) throws IOException;
+    }
+}
@@ -31,6 +31,8 @@ public interface FavoriteRepo {
 
     /**
      * Removes a favorite by user and media combination.
+     * If the user has several favorites for the media, only the one added
+     * earliest is removed.
      * 
      * @param userId  User identifier
      * @param mediaId Media item identifier
@@ -38,6 +40,19 @@ public interface FavoriteRepo {
      */
     boolean removeFavoriteByUserAndMedia(String userId, String mediaId);
 
+    /**
+     * Removes a favorite by user and source-qualified media combination.
+     * Unlike the two-argument form, media from different sources with the same
+     * ID are kept apart. If the user has several favorites for the media, only
+     * the one added earliest is removed.
+     * 
+     * @param userId      User identifier
+     * @param mediaSource Source of the media (MAL, TMDB, FILE)
+     * @param mediaId     Media item identifier
+     * @return true if removed successfully
+     */
+    boolean removeFavoriteByUserAndMedia(String userId, String mediaSource, String mediaId);
+
     /**
      * Retrieves all favorites for a specific user.
      * 
@@ -63,6 +78,16 @@ public interface FavoriteRepo {
      */
     boolean isFavorited(String userId, String mediaId);
 
+    /**
+     * Checks if a media item from a specific source is favorited by a user.
+     * 
+     * @param userId      User identifier
+     * @param mediaSource Source of the media (MAL, TMDB, FILE)
+     * @param mediaId     Media item identifier
+     * @return true if favorited
+     */
+    boolean isFavorited(String userId, String mediaSource, String mediaId);
+
     /**
      * Retrieves all favorites.
      * 
@@ -2,13 +2,34 @@ package com.bakorz.repo;
 
 import com.bakorz.model.Favorite;
 import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * File-based implementation of FavoriteRepo interface.
- * Stores favorite data in a CSV file (data/favorite.csv).
- * Uses in-memory caching for fast retrieval.
+ * Stores favorite data in a CSV snapshot (data/favorite.csv) plus an
+ * append-only log of mutations (data/favorite.log).
+ * Each add, remove or update appends one small record to the log, so the cost
+ * of a write does not depend on how many favorites exist.
+ * The log is replayed on load and folded back into the snapshot by a
+ * background compactor once it grows past a threshold.
+ * Snapshot and log records carry CRC32 checksums, so a record torn by a crash
+ * is skipped on load, and snapshots replace the file atomically. Mutations
+ * wait for durability outside the repository lock, so concurrent writers
+ * share fsyncs under the EVERY_WRITE policy.
+ * Uses in-memory caching for fast retrieval, with secondary indexes by user
+ * and by (userId, mediaSource, mediaId) kept up to date on every mutation.
+ * Favorites keep the order in which they were first added, across updates
+ * and reloads, so listings and removal by user and media pick the same
+ * favorite as the other FavoriteRepo implementations.
  * Supports media type tracking for cross-platform favorites.
  * 
  * @author Bakorz
@@ -18,43 +39,127 @@ public class FileFavoriteRepo implements FavoriteRepo {
     /** Path to the favorites CSV file */
     private static final String FAVORITES_FILE = "data/favorite.csv";
 
+    /** Path to the append-only log of favorite mutations */
+    private static final String LOG_FILE = "data/favorite.log";
+
     /** CSV delimiter character */
     private static final String DELIMITER = ",";
 
-    /** In-memory cache of favorites mapped by favorite ID */
+    /** Log operation code for an added favorite */
+    private static final String OP_ADD = "A";
+
+    /** Log operation code for a removed favorite */
+    private static final String OP_REMOVE = "R";
+
+    /** Log operation code for an updated favorite */
+    private static final String OP_UPDATE = "U";
+
+    /** Number of log records after which the log is compacted into the snapshot */
+    private static final int COMPACTION_THRESHOLD = 200;
+
+    /** Separator used when building composite index keys */
+    private static final char KEY_SEPARATOR = '\u0000';
+
+    /** Header line of the favorites snapshot, without the checksum column */
+    private static final String SNAPSHOT_HEADER = "favoriteId,userId,mediaId,mediaSource,mediaType";
+
+    /** Header line of the mutation log, without the checksum column */
+    private static final String LOG_HEADER = "op," + SNAPSHOT_HEADER;
+
+    /** Path to the snapshot file used by this instance */
+    private final Path favoritesFile;
+
+    /** Path to the log file used by this instance */
+    private final Path logFile;
+
+    /** Verifies and computes record checksums */
+    private final RecordChecksum checksum = new RecordChecksum();
+
+    /** Computes record checksums of snapshots written by the compactor */
+    private final RecordChecksum snapshotChecksum = new RecordChecksum();
+
+    /** Reused tokenizer for parsing snapshot and log lines */
+    private final CsvTokenizer tokenizer = new CsvTokenizer(DELIMITER.charAt(0));
+
+    /** In-memory cache of favorites mapped by favorite ID, in the order they were added */
     private Map<String, Favorite> favoriteCache;
 
+    /** Favorites of each user mapped by user ID, then by sequence number */
+    private final Map<String, NavigableMap<Long, Favorite>> userIndex;
+
+    /** ID of the earliest added favorite for each composite (userId, mediaSource, mediaId) key */
+    private final Map<String, String> mediaIndex;
+
+    /** Index keys each favorite was filed under, mapped by favorite ID */
+    private final Map<String, IndexKey> indexedKeys;
+
+    /** Sequence number given to the next favorite added, recording the add order */
+    private long nextSequence;
+
+    /** Number of records currently in the log file */
+    private int logRecords;
+
+    /** Whether a compaction has been scheduled but not yet run */
+    private boolean compactionPending;
+
+    /** Single background thread that folds the log into the snapshot */
+    private final ExecutorService compactor;
+
     /**
      * Constructor that initializes the repository and loads existing data.
      */
     public FileFavoriteRepo() {
-        this.favoriteCache = new HashMap<>();
+        this(FAVORITES_FILE, LOG_FILE);
+    }
+
+    /**
+     * Constructor that initializes the repository from the given snapshot and
+     * log files.
+     * 
+     * @param favoritesFile Path to the favorites CSV snapshot
+     * @param logFile       Path to the log of favorite mutations
+     */
+    public FileFavoriteRepo(String favoritesFile, String logFile) {
+        this.favoritesFile = Paths.get(favoritesFile);
+        this.logFile = Paths.get(logFile);
+        this.favoriteCache = new LinkedHashMap<>();
+        this.userIndex = new HashMap<>();
+        this.mediaIndex = new HashMap<>();
+        this.indexedKeys = new HashMap<>();
+        this.compactor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "favorite-log-compactor");
+            t.setDaemon(true);
+            return t;
+        });
         loadFromFile();
+        replayLog();
     }
 
     /**
      * Loads favorite data from CSV file into memory cache.
      * Skips header line and handles missing files gracefully.
+     * Records failing checksum verification are skipped.
      */
     private void loadFromFile() {
-        File file = new File(FAVORITES_FILE);
+        File file = favoritesFile.toFile();
         if (!file.exists()) {
             return;
         }
 
-        try (BufferedReader br = new BufferedReader(new FileReader(file))) {
-            String line;
-            boolean firstLine = true;
+        try (BufferedReader br = Files.newBufferedReader(favoritesFile)) {
+            String line = br.readLine();
+            boolean checksummed = line != null && RecordChecksum.isChecksummed(line);
 
             while ((line = br.readLine()) != null) {
-                if (firstLine) {
-                    firstLine = false;
-                    continue; // Skip header
+                String record = checksummed ? checksum.open(line) : line;
+                if (record == null) {
+                    System.err.println("Skipping corrupt favorite record");
+                    continue;
                 }
 
-                Favorite favorite = parseFavorite(line);
+                Favorite favorite = parseFavorite(tokenizer.reset(record));
                 if (favorite != null) {
-                    favoriteCache.put(favorite.getFavoriteId(), favorite);
+                    putFavorite(favorite);
                 }
             }
         } catch (IOException e) {
@@ -63,24 +168,31 @@ public class FileFavoriteRepo implements FavoriteRepo {
     }
 
     /**
-     * Parses a CSV line into a Favorite object.
+     * Parses the next CSV fields of a record into a Favorite object.
      * Supports both old format (without mediaType) and new format (with mediaType).
      * 
-     * @param line CSV line to parse
+     * @param fields Tokenizer positioned before the favoriteId field
      * @return Favorite object or null if parsing fails
      */
-    private Favorite parseFavorite(String line) {
-        String[] parts = line.split(DELIMITER, -1);
-        if (parts.length < 4) {
-            return null;
-        }
-
+    private Favorite parseFavorite(CsvTokenizer fields) {
         try {
-            String favoriteId = parts[0];
-            String userId = parts[1];
-            String mediaId = parts[2];
-            String mediaSource = parts[3].isEmpty() ? "FILE" : parts[3];
-            String mediaType = (parts.length > 4 && !parts[4].isEmpty()) ? parts[4] : null;
+            if (!fields.next()) {
+                return null;
+            }
+            String favoriteId = fields.string();
+            if (!fields.next()) {
+                return null;
+            }
+            String userId = fields.string();
+            if (!fields.next()) {
+                return null;
+            }
+            String mediaId = fields.string();
+            if (!fields.next()) {
+                return null;
+            }
+            String mediaSource = fields.stringOr("FILE");
+            String mediaType = fields.next() ? fields.stringOr(null) : null;
 
             return new Favorite(favoriteId, userId, mediaId, mediaSource, mediaType);
         } catch (Exception e) {
@@ -90,20 +202,308 @@ public class FileFavoriteRepo implements FavoriteRepo {
     }
 
     /**
-     * Saves all favorites from cache to CSV file.
-     * Overwrites the entire file with current cache contents.
+     * Builds the composite index key for a user and media item.
+     * Includes the media source so equal IDs from different sources (for
+     * example MAL 123 and TMDB 123) do not collide.
+     * 
+     * @param userId      User identifier
+     * @param mediaSource Source of the media (MAL, TMDB, FILE)
+     * @param mediaId     Media item identifier
+     * @return Composite key string
      */
-    private void saveToFile() {
-        try (BufferedWriter bw = new BufferedWriter(new FileWriter(FAVORITES_FILE))) {
-            bw.write("favoriteId,userId,mediaId,mediaSource,mediaType");
-            bw.newLine();
+    private static String mediaKey(String userId, String mediaSource, String mediaId) {
+        return userId + KEY_SEPARATOR + (mediaSource != null ? mediaSource : "FILE") + KEY_SEPARATOR + mediaId;
+    }
 
-            for (Favorite favorite : favoriteCache.values()) {
-                bw.write(formatFavorite(favorite));
-                bw.newLine();
+    /**
+     * Stores a favorite in the cache and files it in the secondary indexes,
+     * replacing any previous version with the same favorite ID. A replaced
+     * favorite keeps its place in the add order.
+     * 
+     * @param favorite Favorite to store
+     */
+    private void putFavorite(Favorite favorite) {
+        String favoriteId = favorite.getFavoriteId();
+        IndexKey previous = unindex(favoriteId);
+
+        IndexKey key = new IndexKey(favorite.getUserId(),
+                mediaKey(favorite.getUserId(), favorite.getMediaSource(), favorite.getMediaId()),
+                previous != null ? previous.sequence : nextSequence++);
+        favoriteCache.put(favoriteId, favorite);
+        userIndex.computeIfAbsent(key.userId, k -> new TreeMap<>()).put(key.sequence, favorite);
+        String indexed = mediaIndex.get(key.mediaKey);
+        if (indexed == null || indexedKeys.get(indexed).sequence > key.sequence) {
+            mediaIndex.put(key.mediaKey, favoriteId);
+        }
+        indexedKeys.put(favoriteId, key);
+    }
+
+    /**
+     * Removes a favorite from the cache and the secondary indexes.
+     * 
+     * @param favoriteId Favorite ID to remove
+     * @return The removed Favorite, or null if not found
+     */
+    private Favorite dropFavorite(String favoriteId) {
+        unindex(favoriteId);
+        return favoriteCache.remove(favoriteId);
+    }
+
+    /**
+     * Removes a favorite from the secondary indexes, leaving the cache alone.
+     * Uses the keys recorded at insertion time, since the Favorite object may
+     * have been modified since.
+     * 
+     * @param favoriteId Favorite ID to unindex
+     * @return Keys the favorite was filed under, or null if not found
+     */
+    private IndexKey unindex(String favoriteId) {
+        IndexKey key = indexedKeys.remove(favoriteId);
+        if (key == null) {
+            return null;
+        }
+
+        NavigableMap<Long, Favorite> userFavorites = userIndex.get(key.userId);
+        if (userFavorites != null) {
+            userFavorites.remove(key.sequence);
+            if (userFavorites.isEmpty()) {
+                userIndex.remove(key.userId);
+            }
+        }
+
+        if (favoriteId.equals(mediaIndex.get(key.mediaKey))) {
+            mediaIndex.remove(key.mediaKey);
+            // The next earliest favorite for the same media may still exist for this user
+            if (userFavorites != null) {
+                for (Favorite other : userFavorites.values()) {
+                    if (key.mediaKey.equals(indexedKeys.get(other.getFavoriteId()).mediaKey)) {
+                        mediaIndex.put(key.mediaKey, other.getFavoriteId());
+                        break;
+                    }
+                }
+            }
+        }
+        return key;
+    }
+
+    /**
+     * Replays the mutation log on top of the snapshot loaded from the CSV file.
+     * Records are applied in the order they were written; malformed records and
+     * records failing checksum verification are skipped.
+     * A log without checksums or with a corrupt or torn record is compacted
+     * right away, so new records are never appended after a damaged one.
+     */
+    private void replayLog() {
+        File file = logFile.toFile();
+        if (!file.exists()) {
+            return;
+        }
+
+        boolean checksummed;
+        boolean damaged = false;
+        try (BufferedReader br = Files.newBufferedReader(logFile)) {
+            String line = br.readLine();
+            checksummed = line != null && RecordChecksum.isChecksummed(line);
+
+            while ((line = br.readLine()) != null) {
+                String record = checksummed ? checksum.open(line) : line;
+                if (record == null) {
+                    System.err.println("Skipping corrupt favorites log record");
+                    damaged = true;
+                    continue;
+                }
+
+                applyLogRecord(record);
+                logRecords++;
             }
+            damaged |= !DurableFiles.endsWithNewline(logFile);
+        } catch (IOException e) {
+            System.err.println("Error replaying favorites log: " + e.getMessage());
+            return;
+        }
+
+        if (damaged || !checksummed) {
+            foldLog();
+        }
+    }
+
+    /**
+     * Applies a single log record to the in-memory cache.
+     * 
+     * @param line Log line in the form op,favorite-fields
+     */
+    private void applyLogRecord(String line) {
+        CsvTokenizer fields = tokenizer.reset(line);
+        if (!fields.next()) {
+            return;
+        }
+
+        String op = fields.string();
+        switch (op) {
+            case OP_ADD:
+            case OP_UPDATE:
+                Favorite favorite = parseFavorite(fields);
+                if (favorite != null) {
+                    putFavorite(favorite);
+                }
+                break;
+            case OP_REMOVE:
+                if (fields.next()) {
+                    dropFavorite(fields.string());
+                }
+                break;
+            default:
+                System.err.println("Skipping unknown favorites log record: " + op);
+        }
+    }
+
+    /**
+     * Appends a checksummed mutation record to the log.
+     * Only the single record is written, independent of the number of favorites.
+     * Schedules a compaction once the log passes the threshold. Callers change
+     * the cache only after the record was written, so a failed write leaves
+     * the cache matching the file.
+     * 
+     * @param op      Operation code (add, remove or update)
+     * @param payload Formatted favorite, or the favorite ID for removals
+     * @return Durability ticket of the write, or -1 if it failed
+     */
+    private long appendToLog(String op, String payload) {
+        long ticket;
+        try {
+            ticket = DurableFiles.append(logFile, RecordChecksum.header(LOG_HEADER),
+                    Collections.singletonList(checksum.seal(op + DELIMITER + payload)));
+        } catch (IOException e) {
+            System.err.println("Error appending to favorites log: " + e.getMessage());
+            return -1;
+        }
+
+        logRecords++;
+        if (logRecords >= COMPACTION_THRESHOLD && !compactionPending) {
+            compactionPending = true;
+            compactor.submit(this::compact);
+        }
+        return ticket;
+    }
+
+    /**
+     * Folds the log into a fresh snapshot and truncates the log.
+     * Runs on the background compactor thread. The lock is held only to copy
+     * the favorites and to truncate the log afterwards; the snapshot is
+     * written and forced outside it, so mutations and queries proceed while
+     * it runs. Records appended in the meantime stay in the log.
+     */
+    private void compact() {
+        List<String> records;
+        long foldedBytes;
+        int foldedRecords;
+        synchronized (this) {
+            compactionPending = false;
+            if (logRecords == 0) {
+                return;
+            }
+            try {
+                foldedBytes = Files.size(logFile);
+            } catch (IOException e) {
+                System.err.println("Error compacting favorites log: " + e.getMessage());
+                return;
+            }
+            foldedRecords = logRecords;
+            records = snapshotRecords();
+        }
+
+        if (!saveToFile(records)) {
+            return;
+        }
+        DurableFiles.syncDirectory(favoritesFile);
+
+        synchronized (this) {
+            truncateLog(foldedBytes, foldedRecords);
+        }
+    }
+
+    /**
+     * Writes a snapshot of the cache and deletes the log it supersedes.
+     * Only used while loading, before the compactor can run.
+     * The snapshot's rename is forced to disk before the log is deleted, so a
+     * crash in between replays the log onto the new snapshot, which is
+     * harmless, rather than losing it.
+     */
+    private void foldLog() {
+        if (saveToFile(snapshotRecords())) {
+            DurableFiles.syncDirectory(favoritesFile);
+            truncateLog(Long.MAX_VALUE, logRecords);
+        }
+    }
+
+    /**
+     * Drops the records folded into a snapshot from the log. The log is
+     * deleted if nothing was appended since, or else atomically replaced
+     * with the records appended after the folded ones. Called with the
+     * repository lock held, after the snapshot's rename was forced to disk.
+     * 
+     * @param foldedBytes   Length of the log when the snapshot was taken
+     * @param foldedRecords Number of log records folded into the snapshot
+     */
+    private void truncateLog(long foldedBytes, int foldedRecords) {
+        try {
+            if (!Files.exists(logFile) || Files.size(logFile) <= foldedBytes) {
+                Files.deleteIfExists(logFile);
+                logRecords = 0;
+                return;
+            }
+
+            byte[] header = (RecordChecksum.header(LOG_HEADER) + System.lineSeparator())
+                    .getBytes(StandardCharsets.UTF_8);
+            DurableFiles.replaceBytes(logFile, out -> {
+                out.write(header);
+                try (FileChannel log = FileChannel.open(logFile, StandardOpenOption.READ)) {
+                    Channels.newInputStream(log.position(foldedBytes)).transferTo(out);
+                }
+            });
+            logRecords -= foldedRecords;
+        } catch (IOException e) {
+            System.err.println("Error truncating favorites log: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Formats every favorite in the cache as a snapshot record, in add order.
+     * Called with the repository lock held.
+     * 
+     * @return Unsealed snapshot records
+     */
+    private List<String> snapshotRecords() {
+        List<String> records = new ArrayList<>(favoriteCache.size());
+        for (Favorite favorite : favoriteCache.values()) {
+            records.add(formatFavorite(favorite));
+        }
+        return records;
+    }
+
+    /**
+     * Saves a copy of the favorites to the CSV file.
+     * Atomically replaces the entire file with the given records.
+     * Only used to write a compacted snapshot, without the repository lock.
+     * 
+     * @param records Snapshot records from snapshotRecords
+     * @return true if the snapshot was written successfully
+     */
+    private boolean saveToFile(List<String> records) {
+        try {
+            DurableFiles.replace(favoritesFile, bw -> {
+                bw.write(RecordChecksum.header(SNAPSHOT_HEADER));
+                bw.newLine();
+
+                for (String record : records) {
+                    bw.write(snapshotChecksum.seal(record));
+                    bw.newLine();
+                }
+            });
+            return true;
         } catch (IOException e) {
             System.err.println("Error saving favorites file: " + e.getMessage());
+            return false;
         }
     }
 
@@ -117,69 +517,168 @@ public class FileFavoriteRepo implements FavoriteRepo {
         return sb.toString();
     }
 
+    /**
+     * Waits until a logged mutation is as durable as the durability policy
+     * requires. Called after releasing the repository lock. An interrupted
+     * wait still counts as a mutation made: the record is in the log and the
+     * cache, it is only not confirmed durable yet.
+     * 
+     * @param ticket Durability ticket, or -1 if nothing was written
+     * @return true if a mutation was written to the log
+     */
+    private static boolean awaitDurable(long ticket) {
+        if (ticket < 0) {
+            return false;
+        }
+        try {
+            FsyncBatcher.shared().awaitDurable(ticket);
+        } catch (IOException e) {
+            System.err.println("Favorites log written but not yet synced: " + e.getMessage());
+        }
+        return true;
+    }
+
+    /**
+     * Removes a favorite and logs the removal.
+     * 
+     * @param favoriteId Favorite ID to remove, may be null
+     * @return Durability ticket, or -1 if the favorite was not found or the
+     *         removal could not be logged
+     */
+    private long removeAndLog(String favoriteId) {
+        if (favoriteId == null || !favoriteCache.containsKey(favoriteId)) {
+            return -1;
+        }
+        long ticket = appendToLog(OP_REMOVE, favoriteId);
+        if (ticket >= 0) {
+            dropFavorite(favoriteId);
+        }
+        return ticket;
+    }
+
     @Override
     public boolean addFavorite(Favorite favorite) {
         if (favorite == null || favorite.getFavoriteId() == null) {
             return false;
         }
 
-        favoriteCache.put(favorite.getFavoriteId(), favorite);
-        saveToFile();
-        return true;
+        long ticket;
+        synchronized (this) {
+            ticket = appendToLog(OP_ADD, formatFavorite(favorite));
+            if (ticket >= 0) {
+                putFavorite(favorite);
+            }
+        }
+        return awaitDurable(ticket);
     }
 
     @Override
     public boolean removeFavorite(String favoriteId) {
-        if (favoriteCache.remove(favoriteId) != null) {
-            saveToFile();
-            return true;
+        long ticket;
+        synchronized (this) {
+            ticket = removeAndLog(favoriteId);
         }
-        return false;
+        return awaitDurable(ticket);
     }
 
     @Override
     public boolean removeFavoriteByUserAndMedia(String userId, String mediaId) {
-        Optional<Favorite> favorite = favoriteCache.values().stream()
-                .filter(f -> f.getUserId().equals(userId) && f.getMediaId().equals(mediaId))
-                .findFirst();
+        long ticket;
+        synchronized (this) {
+            Optional<Favorite> favorite = findByUserAndMedia(userId, mediaId);
+            ticket = favorite.isPresent() ? removeAndLog(favorite.get().getFavoriteId()) : -1;
+        }
+        return awaitDurable(ticket);
+    }
 
-        if (favorite.isPresent()) {
-            return removeFavorite(favorite.get().getFavoriteId());
+    @Override
+    public boolean removeFavoriteByUserAndMedia(String userId, String mediaSource, String mediaId) {
+        long ticket;
+        synchronized (this) {
+            ticket = removeAndLog(mediaIndex.get(mediaKey(userId, mediaSource, mediaId)));
         }
-        return false;
+        return awaitDurable(ticket);
     }
 
     @Override
-    public List<Favorite> getFavoritesByUser(String userId) {
-        return favoriteCache.values().stream()
-                .filter(f -> f.getUserId().equals(userId))
-                .collect(Collectors.toList());
+    public synchronized List<Favorite> getFavoritesByUser(String userId) {
+        Map<Long, Favorite> userFavorites = userIndex.get(userId);
+        return userFavorites != null ? new ArrayList<>(userFavorites.values()) : new ArrayList<>();
     }
 
     @Override
-    public Optional<Favorite> getFavoriteById(String favoriteId) {
+    public synchronized Optional<Favorite> getFavoriteById(String favoriteId) {
         return Optional.ofNullable(favoriteCache.get(favoriteId));
     }
 
     @Override
-    public boolean isFavorited(String userId, String mediaId) {
-        return favoriteCache.values().stream()
-                .anyMatch(f -> f.getUserId().equals(userId) && f.getMediaId().equals(mediaId));
+    public synchronized boolean isFavorited(String userId, String mediaId) {
+        return findByUserAndMedia(userId, mediaId).isPresent();
+    }
+
+    @Override
+    public synchronized boolean isFavorited(String userId, String mediaSource, String mediaId) {
+        return mediaIndex.containsKey(mediaKey(userId, mediaSource, mediaId));
+    }
+
+    /**
+     * Finds a user's favorite for a media ID from any source.
+     * Only the user's own favorites are scanned, in the order they were added.
+     * 
+     * @param userId  User identifier
+     * @param mediaId Media item identifier
+     * @return Optional containing the earliest added matching Favorite
+     */
+    private Optional<Favorite> findByUserAndMedia(String userId, String mediaId) {
+        Map<Long, Favorite> userFavorites = userIndex.get(userId);
+        if (userFavorites == null) {
+            return Optional.empty();
+        }
+        return userFavorites.values().stream()
+                .filter(f -> f.getMediaId().equals(mediaId))
+                .findFirst();
     }
 
     @Override
-    public List<Favorite> getAll() {
+    public synchronized List<Favorite> getAll() {
         return new ArrayList<>(favoriteCache.values());
     }
 
     @Override
     public boolean update(Favorite favorite) {
-        if (favorite == null || !favoriteCache.containsKey(favorite.getFavoriteId())) {
+        if (favorite == null) {
             return false;
         }
 
-        favoriteCache.put(favorite.getFavoriteId(), favorite);
-        saveToFile();
-        return true;
+        long ticket = -1;
+        synchronized (this) {
+            if (favoriteCache.containsKey(favorite.getFavoriteId())) {
+                ticket = appendToLog(OP_UPDATE, formatFavorite(favorite));
+                if (ticket >= 0) {
+                    putFavorite(favorite);
+                }
+            }
+        }
+        return awaitDurable(ticket);
+    }
+
+    /**
+     * Keys under which a favorite is filed in the secondary indexes.
+     */
+    private static final class IndexKey {
+        /** User ID the favorite is filed under */
+        private final String userId;
+
+        /** Composite (userId, mediaSource, mediaId) key */
+        private final String mediaKey;
+
+        /** Position of the favorite in the add order */
+        private final long sequence;
+
+        private IndexKey(String userId, String mediaKey, long sequence) {
+            this.userId = userId;
+            this.mediaKey = mediaKey;
+            this.sequence = sequence;
+        }
     }
 }
@@ -2,14 +2,38 @@ package com.bakorz.repo;
 
 import com.bakorz.model.*;
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
  * File-based implementation of MediaRepo interface.
- * Stores media data in a CSV file (data/media.csv) for caching purposes.
+ * Stores media data in a CSV snapshot (data/media.csv) plus a sequence of
+ * delta segments for caching purposes.
  * Uses in-memory caching for fast retrieval.
  * Supports all media types (Anime, Movie, TVShow) with composite key storage.
+ * Writes are group-committed: saves and deletes only mark keys dirty, and the
+ * dirty keys are written as one small segment per batch window, on flush() or
+ * at shutdown, so the cost of a write does not depend on the catalog size.
+ * The snapshot is loaded and the segments replayed on top of it at startup.
+ * Once segments accumulate, a background compactor merges them into a new
+ * snapshot from the files alone, without holding the repository lock.
+ * Each cached item gets a dense internal ordinal, and title search runs on a
+ * trigram index over those ordinals that is maintained on every change.
+ * Genre queries run on per-genre compressed bitmaps of the same ordinals, and
+ * rankings on per-type ordered indexes of rating and release date.
+ * Items cached under MAL and TMDB keys are also indexed by their packed
+ * source and numeric ID, so getBySourceId needs no String key.
+ * Records carry CRC32 checksums, and segments and snapshots are written
+ * atomically, so a crash mid-write loses at most the interrupted flush.
  * 
  * @author Bakorz
  * @version 1.0
@@ -18,284 +42,368 @@ public class FileMediaRepo implements MediaRepo {
     /** Path to the media cache CSV file */
     private static final String MEDIA_FILE = "data/media.csv";
 
-    /** CSV delimiter character */
-    private static final String DELIMITER = ",";
+    /** Time window in milliseconds over which saves are batched into one write */
+    private static final long BATCH_WINDOW_MS = 500;
+
+    /** Number of segments at which they are merged into the snapshot */
+    private static final int MAX_SEGMENTS = 8;
+
+    /** Total segment size in bytes at which they are merged into the snapshot */
+    private static final long MAX_SEGMENT_BYTES = 16 * 1024 * 1024;
+
+    /** Path to the CSV file used by this instance */
+    private final Path mediaFile;
+
+    /** Computes the checksums of written records */
+    private final RecordChecksum checksum;
 
     /** In-memory cache of media items mapped by ID (with composite keys) */
     private Map<String, MediaItem> mediaCache;
 
+    /** Items cached under MAL and TMDB keys, mapped by packed SourceKey */
+    private final LongObjectMap<MediaItem> sourceIndex;
+
+    /** Dense internal ordinal of each cached item, mapped by cache key */
+    private final Map<String, Integer> ordinals;
+
+    /** Cache key of each ordinal, null for free ordinals */
+    private final List<String> ordinalKeys;
+
+    /** Ordinals released by deletes, reused by later saves */
+    private final Deque<Integer> freeOrdinals;
+
+    /** Trigram index over normalized titles, keyed by ordinal */
+    private final TrigramIndex titleIndex;
+
+    /** Genre dictionary and per-genre bitmaps, keyed by ordinal */
+    private final GenreIndex genreIndex;
+
+    /** Per-type rating and release date orders, keyed by ordinal */
+    private final RankingIndex rankingIndex;
+
+    /** Keys of saved items not yet written to a segment */
+    private final Set<String> dirtyKeys;
+
+    /** Keys of deleted items not yet written to a segment */
+    private final Set<String> deletedKeys;
+
+    /** Segments not yet merged into the snapshot, oldest first, with their sizes */
+    private final Map<Path, Long> segments;
+
+    /** Sequence number of the next segment */
+    private long nextSegment;
+
+    /** Whether the snapshot should be rewritten even without segments to merge */
+    private boolean snapshotOutdated;
+
+    /** Whether a compaction has been scheduled but not yet started */
+    private boolean compactionPending;
+
+    /** Single background thread that merges segments into the snapshot */
+    private final ExecutorService compactor;
+
+    /** Background thread that flushes the dirty set at the end of a batch window */
+    private final ScheduledExecutorService flusher;
+
+    /** Flush scheduled for the current batch window, if any */
+    private ScheduledFuture<?> pendingFlush;
+
     /**
      * Constructor that initializes the repository and loads existing cached data.
      */
     public FileMediaRepo() {
+        this(MEDIA_FILE);
+    }
+
+    /**
+     * Constructor that initializes the repository from the given CSV file.
+     * 
+     * @param mediaFile Path to the media CSV file
+     */
+    public FileMediaRepo(String mediaFile) {
+        this.mediaFile = Paths.get(mediaFile);
+        this.checksum = new RecordChecksum();
         this.mediaCache = new HashMap<>();
+        this.sourceIndex = new LongObjectMap<>();
+        this.ordinals = new HashMap<>();
+        this.ordinalKeys = new ArrayList<>();
+        this.freeOrdinals = new ArrayDeque<>();
+        this.titleIndex = new TrigramIndex();
+        this.genreIndex = new GenreIndex();
+        this.rankingIndex = new RankingIndex();
+        this.dirtyKeys = new LinkedHashSet<>();
+        this.deletedKeys = new LinkedHashSet<>();
+        this.segments = new LinkedHashMap<>();
+        this.nextSegment = 1;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "media-cache-flusher");
+            t.setDaemon(true);
+            return t;
+        });
+        this.compactor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "media-segment-compactor");
+            t.setDaemon(true);
+            return t;
+        });
         loadFromFile();
+        replaySegments();
+        if (snapshotOutdated) {
+            scheduleCompaction();
+        }
     }
 
     /**
-     * Loads media data from CSV file into memory cache.
+     * Loads the media snapshot from CSV file into memory cache.
+     * Parses byte ranges of the file in parallel and reports the load time and
+     * number of skipped records.
      * Skips header line and handles missing files gracefully.
+     * A snapshot without checksums, with corrupt or torn records, or with
+     * plain descriptions is rewritten by the compactor.
      */
     private void loadFromFile() {
-        File file = new File(MEDIA_FILE);
+        File file = mediaFile.toFile();
         if (!file.exists()) {
             return;
         }
 
-        try (BufferedReader br = new BufferedReader(new FileReader(file))) {
-            String line;
-            boolean firstLine = true;
-
-            while ((line = br.readLine()) != null) {
-                if (firstLine) {
-                    firstLine = false;
-                    continue; // Skip header
-                }
-
-                MediaItem item = parseMediaItem(line);
-                if (item != null) {
-                    mediaCache.put(item.getId(), item);
-                }
+        try {
+            ParallelCsvLoader.Result<MediaItem> result = ParallelCsvLoader.byHeader(MediaCsvFormat::parser,
+                    MediaItem::getId).load(file);
+            for (Map.Entry<String, MediaItem> entry : result.records.entrySet()) {
+                putItem(entry.getKey(), entry.getValue());
             }
+            snapshotOutdated = !result.checksummed || result.corrupt > 0 || !MediaCsvFormat.isDeflated(result.header)
+                    || !DurableFiles.endsWithNewline(mediaFile);
         } catch (IOException e) {
             System.err.println("Error loading media file: " + e.getMessage());
         }
     }
 
     /**
-     * Parses a CSV line into appropriate MediaItem subclass (Anime, Movie, or
-     * TVShow).
-     * Uses media type field to determine which subclass to instantiate.
-     * 
-     * @param line CSV line to parse
-     * @return MediaItem object (Anime, Movie, or TVShow) or null if parsing fails
+     * Replays the segments written since the snapshot on top of it, in order.
+     * Records failing checksum verification are skipped.
      */
-    private MediaItem parseMediaItem(String line) {
-        try {
-            List<String> fields = parseCSVLine(line);
-            if (fields.size() < 10) {
-                return null;
-            }
-
-            String id = fields.get(0);
-            String type = fields.get(1);
-            String title = fields.get(2);
-            String description = fields.get(3);
-            List<String> genres = fields.get(4).isEmpty() ? new ArrayList<>()
-                    : Arrays.asList(fields.get(4).split(";"));
-            double rating = fields.get(5).isEmpty() ? 0.0 : Double.parseDouble(fields.get(5));
-            String releaseDate = fields.get(6);
-            String posterUrl = fields.get(7);
-            String backdropUrl = fields.get(8);
-            String additionalData = fields.get(9);
-
-            MediaItem item;
-            switch (type.toLowerCase()) {
-                case "movie":
-                    Movie movie = new Movie();
-                    movie.setId(id);
-                    movie.setTitle(title);
-                    movie.setDescription(description);
-                    movie.setGenres(genres);
-                    movie.setRating(rating);
-                    movie.setReleaseDate(releaseDate);
-                    movie.setPosterUrl(posterUrl);
-                    movie.setBackdropUrl(backdropUrl);
-                    parseMovieAdditionalData(movie, additionalData);
-                    item = movie;
-                    break;
-                case "tvshow":
-                case "tv_show":
-                    TVShow tvShow = new TVShow();
-                    tvShow.setId(id);
-                    tvShow.setTitle(title);
-                    tvShow.setDescription(description);
-                    tvShow.setGenres(genres);
-                    tvShow.setRating(rating);
-                    tvShow.setReleaseDate(releaseDate);
-                    tvShow.setPosterUrl(posterUrl);
-                    tvShow.setBackdropUrl(backdropUrl);
-                    parseTVShowAdditionalData(tvShow, additionalData);
-                    item = tvShow;
-                    break;
-                case "anime":
-                    Anime anime = new Anime();
-                    anime.setId(id);
-                    anime.setTitle(title);
-                    anime.setDescription(description);
-                    anime.setGenres(genres);
-                    anime.setRating(rating);
-                    anime.setReleaseDate(releaseDate);
-                    anime.setPosterUrl(posterUrl);
-                    anime.setBackdropUrl(backdropUrl);
-                    parseAnimeAdditionalData(anime, additionalData);
-                    item = anime;
-                    break;
-                default:
-                    return null;
+    private void replaySegments() {
+        for (Path segment : MediaSegments.list(mediaFile)) {
+            try {
+                ParallelCsvLoader.Result<MediaSegments.Delta> result = MediaSegments.replay(segment, this::putItem,
+                        this::removeItem);
+                segments.put(segment, Files.size(segment));
+                nextSegment = MediaSegments.sequenceOf(mediaFile, segment) + 1;
+                if (result.corrupt > 0) {
+                    System.err.println("Skipped " + result.corrupt + " corrupt records of " + segment);
+                }
+            } catch (IOException e) {
+                System.err.println("Error replaying media segment: " + e.getMessage());
             }
-
-            return item;
-        } catch (Exception e) {
-            System.err.println("Error parsing media item: " + e.getMessage());
-            return null;
         }
     }
 
-    private List<String> parseCSVLine(String line) {
-        List<String> result = new ArrayList<>();
-        StringBuilder current = new StringBuilder();
-        boolean inQuotes = false;
-
-        for (int i = 0; i < line.length(); i++) {
-            char c = line.charAt(i);
-            if (c == '"') {
-                if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
-                    current.append('"');
-                    i++;
-                } else {
-                    inQuotes = !inQuotes;
-                }
-            } else if (c == ',' && !inQuotes) {
-                result.add(current.toString());
-                current = new StringBuilder();
+    /**
+     * Stores an item in the cache and indexes it, assigning an ordinal to new
+     * keys.
+     * 
+     * @param key  Cache key
+     * @param item MediaItem to store
+     * @return Item previously stored under the key, or null
+     */
+    private MediaItem putItem(String key, MediaItem item) {
+        MediaItem previous = mediaCache.put(key, item);
+        long sourceKey = SourceKey.parse(key);
+        if (sourceKey != SourceKey.NONE) {
+            sourceIndex.put(sourceKey, item);
+        }
+        Integer ordinal = ordinals.get(key);
+        if (ordinal == null) {
+            if (freeOrdinals.isEmpty()) {
+                ordinal = ordinalKeys.size();
+                ordinalKeys.add(key);
             } else {
-                current.append(c);
+                ordinal = freeOrdinals.pop();
+                ordinalKeys.set(ordinal, key);
             }
+            ordinals.put(key, ordinal);
         }
-        result.add(current.toString());
-        return result;
+        titleIndex.add(ordinal, item.getTitle());
+        genreIndex.add(ordinal, item.getGenres());
+        rankingIndex.add(ordinal, item);
+        return previous;
     }
 
-    private void parseMovieAdditionalData(Movie movie, String data) {
-        if (data.isEmpty())
-            return;
-        try {
-            String[] parts = data.split("\\|");
-            if (parts.length >= 1 && !parts[0].isEmpty()) {
-                movie.setRuntime(Integer.parseInt(parts[0]));
-            }
-            if (parts.length >= 2)
-                movie.setDirector(parts[1]);
-        } catch (Exception e) {
-            // Ignore parsing errors for additional data
+    /**
+     * Removes an item from the cache and its indexes, freeing its ordinal.
+     * 
+     * @param key Cache key
+     * @return Removed item, or null if not cached
+     */
+    private MediaItem removeItem(String key) {
+        MediaItem removed = mediaCache.remove(key);
+        long sourceKey = SourceKey.parse(key);
+        if (sourceKey != SourceKey.NONE) {
+            sourceIndex.remove(sourceKey);
+        }
+        Integer ordinal = ordinals.remove(key);
+        if (ordinal != null) {
+            titleIndex.remove(ordinal);
+            genreIndex.remove(ordinal);
+            rankingIndex.remove(ordinal);
+            ordinalKeys.set(ordinal, null);
+            freeOrdinals.push(ordinal);
         }
+        return removed;
     }
 
-    private void parseTVShowAdditionalData(TVShow tvShow, String data) {
-        if (data.isEmpty())
-            return;
-        try {
-            String[] parts = data.split("\\|");
-            if (parts.length >= 1 && !parts[0].isEmpty()) {
-                tvShow.setNumberOfSeasons(Integer.parseInt(parts[0]));
-            }
-            if (parts.length >= 2 && !parts[1].isEmpty()) {
-                tvShow.setNumberOfEpisodes(Integer.parseInt(parts[1]));
-            }
-            if (parts.length >= 3)
-                tvShow.setStatus(parts[2]);
-        } catch (Exception e) {
-            // Ignore parsing errors for additional data
+    /**
+     * Schedules a flush at the end of the current batch window.
+     * Saves arriving within the same window share a single write.
+     */
+    private void scheduleFlush() {
+        if (pendingFlush == null || pendingFlush.isDone()) {
+            pendingFlush = flusher.schedule(this::flush, BATCH_WINDOW_MS, TimeUnit.MILLISECONDS);
         }
     }
 
-    private void parseAnimeAdditionalData(Anime anime, String data) {
-        if (data.isEmpty())
-            return;
-        try {
-            String[] parts = data.split("\\|");
-            if (parts.length >= 1 && !parts[0].isEmpty()) {
-                anime.setEpisodes(Integer.parseInt(parts[0]));
+    /**
+     * Writes all pending changes as one new segment.
+     * Called at the end of each batch window and on application shutdown.
+     * Returns once the write is as durable as the durability policy requires;
+     * the wait happens after releasing the repository lock, so readers and
+     * writers are not held up by the fsync.
+     */
+    @Override
+    public void flush() {
+        long ticket = 0;
+        synchronized (this) {
+            if (pendingFlush != null) {
+                pendingFlush.cancel(false);
+                pendingFlush = null;
             }
-            if (parts.length >= 2 && !parts[1].isEmpty()) {
-                anime.setStudios(Arrays.asList(parts[1].split(";")));
+
+            if (!dirtyKeys.isEmpty() || !deletedKeys.isEmpty()) {
+                ticket = writeSegment();
             }
-            if (parts.length >= 3)
-                anime.setStatus(parts[2]);
-        } catch (Exception e) {
-            // Ignore parsing errors for additional data
+            dirtyKeys.clear();
+            deletedKeys.clear();
+        }
+
+        try {
+            FsyncBatcher.shared().awaitDurable(ticket);
+        } catch (IOException e) {
+            System.err.println("Error syncing media segment: " + e.getMessage());
         }
     }
 
-    private void saveToFile() {
-        try (BufferedWriter bw = new BufferedWriter(new FileWriter(MEDIA_FILE))) {
-            // Write header
-            bw.write("id,type,title,description,genres,rating,releaseDate,posterUrl,backdropUrl,additionalData");
-            bw.newLine();
+    /**
+     * Writes the dirty items and deleted keys to a new segment, scheduling a
+     * compaction once segments have accumulated.
+     * 
+     * @return Durability ticket of the write, or 0 if it failed
+     */
+    private long writeSegment() {
+        Map<String, MediaItem> puts = new LinkedHashMap<>();
+        for (String key : dirtyKeys) {
+            MediaItem item = mediaCache.get(key);
+            if (item != null) {
+                puts.put(key, item);
+            }
+        }
 
-            // Write each media item
-            for (MediaItem item : mediaCache.values()) {
-                bw.write(formatMediaItem(item));
-                bw.newLine();
+        Path segment = MediaSegments.path(mediaFile, nextSegment++);
+        try {
+            long ticket = MediaSegments.write(segment, puts, deletedKeys, checksum);
+            segments.put(segment, Files.size(segment));
+            long bytes = 0;
+            for (long size : segments.values()) {
+                bytes += size;
+            }
+            if (segments.size() >= MAX_SEGMENTS || bytes >= MAX_SEGMENT_BYTES) {
+                scheduleCompaction();
             }
+            return ticket;
         } catch (IOException e) {
-            System.err.println("Error saving media file: " + e.getMessage());
+            System.err.println("Error writing media segment: " + e.getMessage());
+            return 0;
         }
     }
 
-    private String formatMediaItem(MediaItem item) {
-        StringBuilder sb = new StringBuilder();
-        sb.append(item.getId()).append(DELIMITER);
-        sb.append(item.getMediaType()).append(DELIMITER);
-        sb.append(escapeCSV(item.getTitle())).append(DELIMITER);
-        sb.append(escapeCSV(item.getDescription())).append(DELIMITER);
-        sb.append(escapeCSV(String.join(";", item.getGenres() != null ? item.getGenres() : new ArrayList<>())))
-                .append(DELIMITER);
-        sb.append(item.getRating()).append(DELIMITER);
-        sb.append(item.getReleaseDate()).append(DELIMITER);
-        sb.append(escapeCSV(item.getPosterUrl())).append(DELIMITER);
-        sb.append(escapeCSV(item.getBackdropUrl())).append(DELIMITER);
-
-        sb.append(escapeCSV(formatAdditionalData(item)));
-
-        return sb.toString();
+    /**
+     * Schedules a merge of the current segments into the snapshot on the
+     * compactor thread, unless one is already waiting.
+     */
+    private void scheduleCompaction() {
+        if (!compactionPending) {
+            compactionPending = true;
+            compactor.submit(this::runCompaction);
+        }
     }
 
-    private String formatAdditionalData(MediaItem item) {
-        StringBuilder sb = new StringBuilder();
-        if (item instanceof Movie) {
-            Movie movie = (Movie) item;
-            sb.append(movie.getRuntime()).append("|");
-            sb.append(movie.getDirector() != null ? movie.getDirector() : "").append("|");
-        } else if (item instanceof TVShow) {
-            TVShow tvShow = (TVShow) item;
-            sb.append(tvShow.getNumberOfSeasons()).append("|");
-            sb.append(tvShow.getNumberOfEpisodes()).append("|");
-            sb.append(tvShow.getStatus() != null ? tvShow.getStatus() : "").append("|");
-        } else if (item instanceof Anime) {
-            Anime anime = (Anime) item;
-            sb.append(anime.getEpisodes()).append("|");
-            sb.append(anime.getStudios() != null ? String.join(";", anime.getStudios()) : "").append("|");
-            sb.append(anime.getStatus() != null ? anime.getStatus() : "").append("|");
+    /**
+     * Merges every segment written so far into a new snapshot, and waits
+     * until it is done. Runs on the compactor thread like background
+     * compactions, so the two never overlap.
+     */
+    void compact() {
+        try {
+            compactor.submit(this::runCompaction).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            System.err.println("Error compacting media file: " + e.getCause());
         }
-        return sb.toString();
     }
 
-    private String escapeCSV(String value) {
-        if (value == null) {
-            return "";
+    /**
+     * Merges the segments written so far into a new snapshot.
+     * The lock is held only to pick the segments and to drop them afterwards;
+     * the merge itself works on the files, so saves, flushes and queries
+     * proceed while it runs, and new flushes add segments after the merged
+     * ones.
+     */
+    private void runCompaction() {
+        List<Path> merging;
+        synchronized (this) {
+            compactionPending = false;
+            merging = new ArrayList<>(segments.keySet());
+            if (merging.isEmpty() && !snapshotOutdated) {
+                return;
+            }
+        }
+
+        try {
+            MediaSegments.merge(mediaFile, merging);
+        } catch (IOException e) {
+            System.err.println("Error compacting media file: " + e.getMessage());
+            return;
         }
-        if (value.contains(",") || value.contains("\"") || value.contains("\n")) {
-            return "\"" + value.replace("\"", "\"\"") + "\"";
+
+        synchronized (this) {
+            segments.keySet().removeAll(merging);
+            snapshotOutdated = false;
         }
-        return value;
     }
 
     @Override
-    public List<MediaItem> searchByTitle(String title) {
-        return mediaCache.values().stream()
-                .filter(item -> item.getTitle().toLowerCase().contains(title.toLowerCase()))
-                .collect(Collectors.toList());
+    public synchronized List<MediaItem> searchByTitle(String title) {
+        int[] matches = titleIndex.search(title);
+        List<MediaItem> results = new ArrayList<>(matches.length);
+        for (int ordinal : matches) {
+            results.add(itemAt(ordinal));
+        }
+        return results;
     }
 
     @Override
-    public Optional<MediaItem> getById(String id) {
+    public synchronized Optional<MediaItem> getById(String id) {
         return Optional.ofNullable(mediaCache.get(id));
     }
 
     @Override
-    public Optional<Movie> getMovieById(String id) {
+    public synchronized Optional<MediaItem> getBySourceId(SourceKey source, int id) {
+        return Optional.ofNullable(sourceIndex.get(source.pack(id)));
+    }
+
+    @Override
+    public synchronized Optional<Movie> getMovieById(String id) {
         MediaItem item = mediaCache.get(id);
         if (item instanceof Movie) {
             return Optional.of((Movie) item);
@@ -304,7 +412,7 @@ public class FileMediaRepo implements MediaRepo {
     }
 
     @Override
-    public Optional<TVShow> getTVShowById(String id) {
+    public synchronized Optional<TVShow> getTVShowById(String id) {
         MediaItem item = mediaCache.get(id);
         if (item instanceof TVShow) {
             return Optional.of((TVShow) item);
@@ -313,7 +421,7 @@ public class FileMediaRepo implements MediaRepo {
     }
 
     @Override
-    public Optional<Anime> getAnimeById(String id) {
+    public synchronized Optional<Anime> getAnimeById(String id) {
         MediaItem item = mediaCache.get(id);
         if (item instanceof Anime) {
             return Optional.of((Anime) item);
@@ -322,76 +430,157 @@ public class FileMediaRepo implements MediaRepo {
     }
 
     @Override
-    public List<MediaItem> getByGenre(String genre) {
-        return mediaCache.values().stream()
-                .filter(item -> item.getGenres() != null &&
-                        item.getGenres().stream().anyMatch(g -> g.equalsIgnoreCase(genre)))
-                .collect(Collectors.toList());
+    public synchronized List<MediaItem> getByGenre(String genre) {
+        return getByGenres(Collections.singletonList(genre), Collections.emptyList(), Collections.emptyList());
     }
 
     @Override
-    public List<MediaItem> getTopRated(int limit) {
-        return mediaCache.values().stream()
-                .sorted((a, b) -> Double.compare(b.getRating(), a.getRating()))
-                .limit(limit)
-                .collect(Collectors.toList());
+    public synchronized List<MediaItem> getByGenres(Collection<String> allOf, Collection<String> anyOf,
+            Collection<String> noneOf) {
+        CompressedBitmap matches = genreIndex.query(allOf, anyOf, noneOf);
+        List<MediaItem> results = new ArrayList<>(matches.cardinality());
+        matches.forEach(ordinal -> results.add(itemAt(ordinal)));
+        return results;
+    }
+
+    /**
+     * Looks up the cached item holding an ordinal.
+     * 
+     * @param ordinal Item ordinal
+     * @return Cached MediaItem
+     */
+    private MediaItem itemAt(int ordinal) {
+        return mediaCache.get(ordinalKeys.get(ordinal));
+    }
+
+    @Override
+    public synchronized List<MediaItem> getTopRated(int limit) {
+        List<MediaItem> results = new ArrayList<>();
+        rankingIndex.topRated(MediaItem.class, limit, ordinal -> results.add(itemAt(ordinal)));
+        return results;
     }
 
     @Override
-    public List<Movie> getLatestMovies(int limit) {
-        return mediaCache.values().stream()
-                .filter(item -> item instanceof Movie)
-                .map(item -> (Movie) item)
-                .filter(movie -> movie.getReleaseDate() != null && !movie.getReleaseDate().isEmpty())
-                .sorted((a, b) -> b.getReleaseDate().compareTo(a.getReleaseDate()))
-                .limit(limit)
-                .collect(Collectors.toList());
+    public synchronized List<Movie> getLatestMovies(int limit) {
+        List<Movie> results = new ArrayList<>();
+        rankingIndex.latest(Movie.class, limit, ordinal -> results.add((Movie) itemAt(ordinal)));
+        return results;
     }
 
     @Override
-    public List<TVShow> getLatestTVShows(int limit) {
-        return mediaCache.values().stream()
-                .filter(item -> item instanceof TVShow)
-                .map(item -> (TVShow) item)
-                .filter(tv -> tv.getReleaseDate() != null && !tv.getReleaseDate().isEmpty())
-                .sorted((a, b) -> b.getReleaseDate().compareTo(a.getReleaseDate()))
-                .limit(limit)
-                .collect(Collectors.toList());
+    public synchronized List<TVShow> getLatestTVShows(int limit) {
+        List<TVShow> results = new ArrayList<>();
+        rankingIndex.latest(TVShow.class, limit, ordinal -> results.add((TVShow) itemAt(ordinal)));
+        return results;
     }
 
     @Override
-    public List<MediaItem> getAll() {
+    public synchronized <T extends MediaItem> List<T> getReleasedBetween(Class<T> type, LocalDate from,
+            LocalDate to) {
+        List<T> results = new ArrayList<>();
+        rankingIndex.releasedBetween(type, from.toEpochDay(), to.toEpochDay(),
+                ordinal -> results.add(type.cast(itemAt(ordinal))));
+        return results;
+    }
+
+    @Override
+    public synchronized List<MediaItem> getAll() {
         return new ArrayList<>(mediaCache.values());
     }
 
     @Override
-    public boolean save(MediaItem mediaItem) {
+    public synchronized boolean save(MediaItem mediaItem) {
         if (mediaItem == null || mediaItem.getId() == null) {
             return false;
         }
 
-        mediaCache.put(mediaItem.getId(), mediaItem);
-        saveToFile();
+        putItem(mediaItem.getId(), mediaItem);
+        deletedKeys.remove(mediaItem.getId());
+        dirtyKeys.add(mediaItem.getId());
+        scheduleFlush();
         return true;
     }
 
     @Override
-    public boolean update(MediaItem mediaItem) {
+    public synchronized boolean update(MediaItem mediaItem) {
         if (mediaItem == null || !mediaCache.containsKey(mediaItem.getId())) {
             return false;
         }
 
-        mediaCache.put(mediaItem.getId(), mediaItem);
-        saveToFile();
+        putItem(mediaItem.getId(), mediaItem);
+        dirtyKeys.add(mediaItem.getId());
+        scheduleFlush();
         return true;
     }
 
     @Override
-    public boolean delete(String id) {
-        if (mediaCache.remove(id) != null) {
-            saveToFile();
+    public synchronized boolean delete(String id) {
+        if (removeItem(id) != null) {
+            dirtyKeys.remove(id);
+            deletedKeys.add(id);
+            scheduleFlush();
             return true;
         }
         return false;
     }
+
+    @Override
+    public synchronized List<MediaItem> getAllByIds(Collection<String> ids) {
+        List<MediaItem> results = new ArrayList<>();
+        for (String id : ids) {
+            MediaItem item = mediaCache.get(id);
+            if (item != null) {
+                results.add(item);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Saves a batch of media items with a single scheduled flush.
+     * 
+     * @param mediaItems MediaItems to save
+     * @return Number of items saved
+     */
+    @Override
+    public synchronized int saveAll(Collection<? extends MediaItem> mediaItems) {
+        int saved = 0;
+        for (MediaItem item : mediaItems) {
+            if (item == null || item.getId() == null) {
+                continue;
+            }
+            putItem(item.getId(), item);
+            deletedKeys.remove(item.getId());
+            dirtyKeys.add(item.getId());
+            saved++;
+        }
+
+        if (saved > 0) {
+            scheduleFlush();
+        }
+        return saved;
+    }
+
+    /**
+     * Deletes a batch of media items with a single scheduled flush.
+     * 
+     * @param ids Media item IDs to delete
+     * @return Number of items deleted
+     */
+    @Override
+    public synchronized int deleteAll(Collection<String> ids) {
+        int deleted = 0;
+        for (String id : ids) {
+            if (removeItem(id) != null) {
+                dirtyKeys.remove(id);
+                deletedKeys.add(id);
+                deleted++;
+            }
+        }
+
+        if (deleted > 0) {
+            scheduleFlush();
+        }
+        return deleted;
+    }
 }
@@ -2,13 +2,20 @@ package com.bakorz.repo;
 
 import com.bakorz.model.WatchEntry;
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.*;
 
 /**
  * File-based implementation of WatchRepo interface.
  * Stores watch list data in a CSV file (data/watch.csv).
- * Uses in-memory caching for fast retrieval.
+ * Uses in-memory caching for fast retrieval, with per-user indexes kept
+ * consistent across add, remove and update so user lookups do not scan
+ * other users' entries. Entries are kept in the order they were added, and
+ * an updated entry keeps its place, as in JdbcWatchRepo.
  * Tracks user's currently watching media items.
+ * Each change atomically replaces the file with a checksummed snapshot, so a
+ * crash mid-write leaves the previous snapshot intact.
  * 
  * @author Bakorz
  * @version 1.0
@@ -20,40 +27,82 @@ public class FileWatchRepo implements WatchRepo {
     /** CSV delimiter character */
     private static final String DELIMITER = ",";
 
-    /** In-memory cache of watch entries mapped by watch ID */
+    /** Separator used when building composite index keys */
+    private static final char KEY_SEPARATOR = '\u0000';
+
+    /** Header line of the watch list file, without the checksum column */
+    private static final String HEADER = "watchId,userId,mediaId,mediaSource";
+
+    /** Path to the CSV file used by this instance */
+    private final String watchFile;
+
+    /** Reused tokenizer for parsing CSV lines */
+    private final CsvTokenizer tokenizer = new CsvTokenizer(DELIMITER.charAt(0));
+
+    /** Verifies and computes record checksums */
+    private final RecordChecksum checksum = new RecordChecksum();
+
+    /** In-memory cache of watch entries mapped by watch ID, in the order they were added */
     private Map<String, WatchEntry> watchCache;
 
+    /** Watch entries of each user mapped by user ID, then by sequence number */
+    private final Map<String, NavigableMap<Long, WatchEntry>> userIndex;
+
+    /** ID of the earliest added entry for each composite (userId, mediaId) key */
+    private final Map<String, String> mediaIndex;
+
+    /** Index keys each entry was filed under, mapped by watch ID */
+    private final Map<String, IndexKey> indexedKeys;
+
+    /** Sequence number given to the next entry added, recording the add order */
+    private long nextSequence;
+
     /**
      * Constructor that initializes the repository and loads existing data.
      */
     public FileWatchRepo() {
-        this.watchCache = new HashMap<>();
+        this(WATCH_FILE);
+    }
+
+    /**
+     * Constructor that initializes the repository from the given CSV file.
+     * 
+     * @param watchFile Path to the watch list CSV file
+     */
+    public FileWatchRepo(String watchFile) {
+        this.watchFile = watchFile;
+        this.watchCache = new LinkedHashMap<>();
+        this.userIndex = new HashMap<>();
+        this.mediaIndex = new HashMap<>();
+        this.indexedKeys = new HashMap<>();
         loadFromFile();
     }
 
     /**
      * Loads watch entry data from CSV file into memory cache.
      * Skips header line and handles missing files gracefully.
+     * Records failing checksum verification are skipped.
      */
     private void loadFromFile() {
-        File file = new File(WATCH_FILE);
+        File file = new File(watchFile);
         if (!file.exists()) {
             return;
         }
 
-        try (BufferedReader br = new BufferedReader(new FileReader(file))) {
-            String line;
-            boolean firstLine = true;
+        try (BufferedReader br = Files.newBufferedReader(file.toPath())) {
+            String line = br.readLine();
+            boolean checksummed = line != null && RecordChecksum.isChecksummed(line);
 
             while ((line = br.readLine()) != null) {
-                if (firstLine) {
-                    firstLine = false;
-                    continue; // Skip header
+                String record = checksummed ? checksum.open(line) : line;
+                if (record == null) {
+                    System.err.println("Skipping corrupt watch entry record");
+                    continue;
                 }
 
-                WatchEntry entry = parseWatchEntry(line);
+                WatchEntry entry = parseWatchEntry(record);
                 if (entry != null) {
-                    watchCache.put(entry.getWatchId(), entry);
+                    putEntry(entry);
                 }
             }
         } catch (IOException e) {
@@ -68,16 +117,24 @@ public class FileWatchRepo implements WatchRepo {
      * @return WatchEntry object or null if parsing fails
      */
     private WatchEntry parseWatchEntry(String line) {
-        String[] parts = line.split(DELIMITER, -1);
-        if (parts.length < 4) {
-            return null;
-        }
-
+        CsvTokenizer fields = tokenizer.reset(line);
         try {
-            String watchId = parts[0];
-            String userId = parts[1];
-            String mediaId = parts[2];
-            String mediaSource = parts[3].isEmpty() ? "FILE" : parts[3];
+            if (!fields.next()) {
+                return null;
+            }
+            String watchId = fields.string();
+            if (!fields.next()) {
+                return null;
+            }
+            String userId = fields.string();
+            if (!fields.next()) {
+                return null;
+            }
+            String mediaId = fields.string();
+            if (!fields.next()) {
+                return null;
+            }
+            String mediaSource = fields.stringOr("FILE");
 
             WatchEntry entry = new WatchEntry(watchId, userId, mediaId);
             entry.setMediaSource(mediaSource);
@@ -88,26 +145,145 @@ public class FileWatchRepo implements WatchRepo {
         }
     }
 
-    private void saveToFile() {
-        File file = new File(WATCH_FILE);
-        file.getParentFile().mkdirs();
+    /**
+     * Builds the composite index key for a user and media item.
+     * 
+     * @param userId  User identifier
+     * @param mediaId Media item identifier
+     * @return Composite key string
+     */
+    private static String mediaKey(String userId, String mediaId) {
+        return userId + KEY_SEPARATOR + mediaId;
+    }
 
-        try (BufferedWriter bw = new BufferedWriter(new FileWriter(file))) {
-            // Write header
-            bw.write("watchId,userId,mediaId,mediaSource");
-            bw.newLine();
+    /**
+     * Stores an entry in the cache and files it in the per-user indexes,
+     * replacing any previous version with the same watch ID. A replaced entry
+     * keeps its place in the add order.
+     * 
+     * @param entry WatchEntry to store
+     */
+    private void putEntry(WatchEntry entry) {
+        String watchId = entry.getWatchId();
+        IndexKey previous = unindex(watchId);
 
-            // Write all entries
-            for (WatchEntry entry : watchCache.values()) {
-                String line = entryToCSV(entry);
-                bw.write(line);
-                bw.newLine();
+        IndexKey key = new IndexKey(entry.getUserId(), mediaKey(entry.getUserId(), entry.getMediaId()),
+                previous != null ? previous.sequence : nextSequence++);
+        watchCache.put(watchId, entry);
+        userIndex.computeIfAbsent(key.userId, k -> new TreeMap<>()).put(key.sequence, entry);
+        String indexed = mediaIndex.get(key.mediaKey);
+        if (indexed == null || indexedKeys.get(indexed).sequence > key.sequence) {
+            mediaIndex.put(key.mediaKey, watchId);
+        }
+        indexedKeys.put(watchId, key);
+    }
+
+    /**
+     * Removes an entry from the cache and the per-user indexes.
+     * 
+     * @param watchId Watch entry ID to remove
+     * @return The removed WatchEntry, or null if not found
+     */
+    private WatchEntry dropEntry(String watchId) {
+        unindex(watchId);
+        return watchCache.remove(watchId);
+    }
+
+    /**
+     * Removes an entry from the per-user indexes, leaving the cache alone.
+     * Uses the keys recorded at insertion time, since the WatchEntry object may
+     * have been modified since.
+     * 
+     * @param watchId Watch entry ID to unindex
+     * @return Keys the entry was filed under, or null if not found
+     */
+    private IndexKey unindex(String watchId) {
+        IndexKey key = indexedKeys.remove(watchId);
+        if (key == null) {
+            return null;
+        }
+
+        NavigableMap<Long, WatchEntry> userEntries = userIndex.get(key.userId);
+        if (userEntries != null) {
+            userEntries.remove(key.sequence);
+            if (userEntries.isEmpty()) {
+                userIndex.remove(key.userId);
+            }
+        }
+
+        if (watchId.equals(mediaIndex.get(key.mediaKey))) {
+            mediaIndex.remove(key.mediaKey);
+            // The next earliest entry for the same media may still exist for this user
+            if (userEntries != null) {
+                for (WatchEntry other : userEntries.values()) {
+                    if (key.mediaKey.equals(indexedKeys.get(other.getWatchId()).mediaKey)) {
+                        mediaIndex.put(key.mediaKey, other.getWatchId());
+                        break;
+                    }
+                }
             }
+        }
+        return key;
+    }
+
+    /**
+     * Atomically replaces the watch list file with a snapshot of the cache as
+     * it will be after a change to one entry. The caller changes the cache
+     * only once the snapshot is written, so a failed write leaves the cache
+     * matching the file. An added entry goes last and an updated one keeps its
+     * place, as in the cache. Called with the repository lock held; the caller
+     * waits for durability after releasing it.
+     *
+     * @param watchId ID of the changed entry
+     * @param changed New version of the entry, or null if it is removed
+     * @return Durability ticket, or -1 if the write failed
+     */
+    private long saveToFile(String watchId, WatchEntry changed) {
+        try {
+            return DurableFiles.replace(Paths.get(watchFile), bw -> {
+                bw.write(RecordChecksum.header(HEADER));
+                bw.newLine();
+
+                for (WatchEntry entry : watchCache.values()) {
+                    WatchEntry written = entry.getWatchId().equals(watchId) ? changed : entry;
+                    if (written != null) {
+                        bw.write(checksum.seal(entryToCSV(written)));
+                        bw.newLine();
+                    }
+                }
+                if (changed != null && !watchCache.containsKey(watchId)) {
+                    bw.write(checksum.seal(entryToCSV(changed)));
+                    bw.newLine();
+                }
+            });
         } catch (IOException e) {
             System.err.println("Error saving watch file: " + e.getMessage());
+            return -1;
         }
     }
 
+    /**
+     * Waits until a saved snapshot is as durable as the durability policy
+     * requires. Called after releasing the repository lock, so readers and
+     * other writers are not held up by the fsync. An interrupted wait still
+     * counts as a change made: the snapshot is in place and the cache matches
+     * it, it is only not confirmed durable yet.
+     *
+     * @param ticket Durability ticket, or -1 if nothing was written
+     * @return true if a change was written to the file
+     */
+    private static boolean awaitDurable(long ticket) {
+        if (ticket < 0) {
+            return false;
+        }
+        try {
+            FsyncBatcher.shared().awaitDurable(ticket);
+        } catch (IOException e) {
+            System.err.println("Watch file written but not yet synced: " + e.getMessage());
+        }
+        return true;
+    }
+
     private String entryToCSV(WatchEntry entry) {
         StringBuilder sb = new StringBuilder();
         sb.append(entry.getWatchId()).append(DELIMITER);
@@ -119,62 +295,85 @@ public class FileWatchRepo implements WatchRepo {
 
     @Override
     public boolean addWatchEntry(WatchEntry entry) {
-        if (entry == null || watchCache.containsKey(entry.getWatchId())) {
-            return false;
+        long ticket = -1;
+        synchronized (this) {
+            if (entry != null && !watchCache.containsKey(entry.getWatchId())) {
+                ticket = saveToFile(entry.getWatchId(), entry);
+                if (ticket >= 0) {
+                    putEntry(entry);
+                }
+            }
         }
-        watchCache.put(entry.getWatchId(), entry);
-        saveToFile();
-        return true;
+        return awaitDurable(ticket);
     }
 
     @Override
     public boolean removeWatchEntry(String watchId) {
-        if (watchCache.remove(watchId) != null) {
-            saveToFile();
-            return true;
+        long ticket = -1;
+        synchronized (this) {
+            if (watchId != null && watchCache.containsKey(watchId)) {
+                ticket = saveToFile(watchId, null);
+                if (ticket >= 0) {
+                    dropEntry(watchId);
+                }
+            }
         }
-        return false;
+        return awaitDurable(ticket);
     }
 
     @Override
-    public List<WatchEntry> getWatchEntriesByUser(String userId) {
-        List<WatchEntry> result = new ArrayList<>();
-        for (WatchEntry entry : watchCache.values()) {
-            if (entry.getUserId().equals(userId)) {
-                result.add(entry);
-            }
-        }
-        return result;
+    public synchronized List<WatchEntry> getWatchEntriesByUser(String userId) {
+        Map<Long, WatchEntry> userEntries = userIndex.get(userId);
+        return userEntries != null ? new ArrayList<>(userEntries.values()) : new ArrayList<>();
     }
 
     @Override
-    public Optional<WatchEntry> getWatchEntryById(String watchId) {
+    public synchronized Optional<WatchEntry> getWatchEntryById(String watchId) {
         return Optional.ofNullable(watchCache.get(watchId));
     }
 
     @Override
-    public Optional<WatchEntry> getWatchEntryByUserAndMedia(String userId, String mediaId) {
-        for (WatchEntry entry : watchCache.values()) {
-            if (entry.getUserId().equals(userId) && entry.getMediaId().equals(mediaId)) {
-                return Optional.of(entry);
-            }
-        }
-        return Optional.empty();
+    public synchronized Optional<WatchEntry> getWatchEntryByUserAndMedia(String userId, String mediaId) {
+        String watchId = mediaIndex.get(mediaKey(userId, mediaId));
+        return watchId != null ? Optional.of(watchCache.get(watchId)) : Optional.empty();
     }
 
     @Override
     public boolean update(WatchEntry watchEntry) {
-        if (watchEntry == null || !watchCache.containsKey(watchEntry.getWatchId())) {
-            return false;
+        long ticket = -1;
+        synchronized (this) {
+            if (watchEntry != null && watchCache.containsKey(watchEntry.getWatchId())) {
+                ticket = saveToFile(watchEntry.getWatchId(), watchEntry);
+                if (ticket >= 0) {
+                    putEntry(watchEntry);
+                }
+            }
         }
-
-        watchCache.put(watchEntry.getWatchId(), watchEntry);
-        saveToFile();
-        return true;
+        return awaitDurable(ticket);
     }
 
     @Override
-    public List<WatchEntry> getAll() {
+    public synchronized List<WatchEntry> getAll() {
         return new ArrayList<>(watchCache.values());
     }
+
+    /**
+     * Keys under which a watch entry is filed in the per-user indexes.
+     */
+    private static final class IndexKey {
+        /** User ID the entry is filed under */
+        private final String userId;
+
+        /** Composite (userId, mediaId) key */
+        private final String mediaKey;
+
+        /** Position of the entry in the add order */
+        private final long sequence;
+
+        private IndexKey(String userId, String mediaKey, long sequence) {
+            this.userId = userId;
+            this.mediaKey = mediaKey;
+            this.sequence = sequence;
+        }
+    }
 }
@@ -0,0 +1,284 @@
+package com.bakorz.repo;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Group commit of fsyncs for the file-based repositories.
+ * Writers register each file (or directory) they changed and get a ticket
+ * for the batch that will force it. Registered paths are collected into one
+ * batch and forced together, so concurrent writers across all repositories
+ * share fsyncs instead of issuing one each.
+ * Under EVERY_WRITE the writer that waits first forces the batch while the
+ * others wait for it; writes arriving meanwhile form the next batch. Under
+ * INTERVAL a background thread forces the batch periodically, and under
+ * ON_SHUTDOWN it is forced by a shutdown hook.
+ *
+ * @author Bakorz
+ * @version 1.0
+ */
+final class FsyncBatcher {
+    /** System property selecting the durability policy */
+    static final String POLICY_PROPERTY = "metavie.durability";
+
+    /** System property setting the sync interval in milliseconds */
+    static final String INTERVAL_PROPERTY = "metavie.durability.intervalMs";
+
+    /** Sync interval used when none is configured */
+    private static final long DEFAULT_INTERVAL_MS = 1000;
+
+    /** Batcher shared by all repositories, created on first use */
+    private static FsyncBatcher shared;
+
+    /** When registered paths are forced */
+    private final DurabilityPolicy policy;
+
+    /** Forces one path to disk */
+    private final Forcer forcer;
+
+    /** Paths changed since the current batch was opened */
+    private Set<Path> pending;
+
+    /** ID of the batch that newly registered paths join */
+    private long nextBatch;
+
+    /** ID of the last batch that has been forced */
+    private long syncedBatch;
+
+    /** Whether a batch is being forced right now */
+    private boolean syncing;
+
+    /**
+     * Creates a batcher with the given policy.
+     *
+     * @param policy         When registered paths are forced
+     * @param intervalMillis Sync interval, used by the INTERVAL policy
+     */
+    FsyncBatcher(DurabilityPolicy policy, long intervalMillis) {
+        this(policy, intervalMillis, FsyncBatcher::force);
+    }
+
+    /**
+     * Creates a batcher with the given policy that forces paths through the
+     * given forcer, so tests can observe what reaches disk.
+     *
+     * @param policy         When registered paths are forced
+     * @param intervalMillis Sync interval, used by the INTERVAL policy
+     * @param forcer         Forces one file or directory to disk
+     */
+    FsyncBatcher(DurabilityPolicy policy, long intervalMillis, Forcer forcer) {
+        this.policy = policy;
+        this.forcer = forcer;
+        this.pending = new LinkedHashSet<>();
+        this.nextBatch = 1;
+
+        if (policy == DurabilityPolicy.INTERVAL) {
+            ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "fsync-batcher");
+                t.setDaemon(true);
+                return t;
+            });
+            timer.scheduleWithFixedDelay(this::syncAll, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        }
+        if (policy != DurabilityPolicy.EVERY_WRITE) {
+            Runtime.getRuntime().addShutdownHook(new Thread(this::syncAll, "fsync-on-shutdown"));
+        }
+    }
+
+    /**
+     * Returns the batcher shared by all repositories, configured from the
+     * metavie.durability system properties.
+     *
+     * @return Shared batcher
+     */
+    static synchronized FsyncBatcher shared() {
+        if (shared == null) {
+            DurabilityPolicy policy = DurabilityPolicy.INTERVAL;
+            String configured = System.getProperty(POLICY_PROPERTY);
+            if (configured != null) {
+                try {
+                    policy = DurabilityPolicy.valueOf(configured.trim().toUpperCase());
+                } catch (IllegalArgumentException e) {
+                    System.err.println("Unknown durability policy " + configured + ", using " + policy);
+                }
+            }
+            shared = new FsyncBatcher(policy, Long.getLong(INTERVAL_PROPERTY, DEFAULT_INTERVAL_MS));
+        }
+        return shared;
+    }
+
+    /**
+     * Replaces the batcher shared by all repositories.
+     *
+     * @param batcher Batcher to share from now on
+     * @return The batcher shared until now, or null if none was created yet
+     */
+    static synchronized FsyncBatcher replaceShared(FsyncBatcher batcher) {
+        FsyncBatcher previous = shared;
+        shared = batcher;
+        return previous;
+    }
+
+    /**
+     * Returns the policy of this batcher.
+     *
+     * @return Durability policy
+     */
+    DurabilityPolicy policy() {
+        return policy;
+    }
+
+    /**
+     * Registers a written file or directory for the next batch.
+     * Does not block; pass the ticket to awaitDurable to wait for the write.
+     *
+     * @param path File or directory that was changed
+     * @return Ticket identifying the batch that will force the path
+     */
+    synchronized long register(Path path) {
+        pending.add(path);
+        return nextBatch;
+    }
+
+    /**
+     * Waits until the batch of the given ticket has been forced, if the
+     * policy requires writes to be durable before returning.
+     *
+     * @param ticket Ticket returned by register, or 0 for nothing to wait on
+     * @throws IOException if interrupted while waiting; the interrupt status
+     *                     is set again, and the write may not be durable yet
+     */
+    void awaitDurable(long ticket) throws IOException {
+        if (policy == DurabilityPolicy.EVERY_WRITE && ticket > 0) {
+            awaitSynced(ticket);
+        }
+    }
+
+    /**
+     * Forces a file or directory to disk right away, outside any batch.
+     *
+     * @param path File or directory to force
+     */
+    void forceNow(Path path) {
+        try {
+            forcer.force(path);
+        } catch (IOException e) {
+            System.err.println("Error syncing " + path + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Forces a file that must be durable before the caller goes on, such as
+     * a replacement before its rename, whatever the policy.
+     *
+     * @param file File to force
+     * @throws IOException if the file cannot be forced
+     */
+    void forceFile(Path file) throws IOException {
+        forcer.force(file);
+    }
+
+    /**
+     * Forces every path registered so far, whatever the policy.
+     */
+    void syncAll() {
+        long batch;
+        synchronized (this) {
+            if (pending.isEmpty() && !syncing) {
+                return;
+            }
+            batch = nextBatch;
+        }
+        try {
+            awaitSynced(batch);
+        } catch (InterruptedIOException e) {
+            System.err.println("Interrupted while syncing files: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Waits until the given batch has been forced. If no batch is being
+     * forced, the caller takes the pending paths and forces them itself.
+     *
+     * @param batch Batch ID to wait for
+     * @throws InterruptedIOException if interrupted while waiting for another
+     *                                thread's batch; the interrupt status is set again
+     */
+    private void awaitSynced(long batch) throws InterruptedIOException {
+        while (true) {
+            Set<Path> paths;
+            long id;
+            synchronized (this) {
+                while (syncing && syncedBatch < batch) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("Interrupted waiting for batch " + batch + " to sync");
+                    }
+                }
+                if (syncedBatch >= batch) {
+                    return;
+                }
+                syncing = true;
+                paths = pending;
+                pending = new LinkedHashSet<>();
+                id = nextBatch++;
+            }
+
+            try {
+                for (Path path : paths) {
+                    try {
+                        forcer.force(path);
+                    } catch (IOException e) {
+                        System.err.println("Error syncing " + path + ": " + e.getMessage());
+                    }
+                }
+            } finally {
+                synchronized (this) {
+                    syncedBatch = id;
+                    syncing = false;
+                    notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * Forces a file or directory to disk.
+     * Files deleted since they were registered are skipped, and directories
+     * that cannot be opened (as on Windows) are ignored.
+     *
+     * @param path File or directory to force
+     * @throws IOException if an existing file cannot be forced
+     */
+    static void force(Path path) throws IOException {
+        boolean directory = Files.isDirectory(path);
+        try (FileChannel channel = FileChannel.open(path,
+                directory ? StandardOpenOption.READ : StandardOpenOption.WRITE)) {
+            channel.force(true);
+        } catch (NoSuchFileException e) {
+            // Removed since it was written, for example a compacted log
+        } catch (IOException e) {
+            if (!directory) {
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Forces one file or directory to disk.
+     */
+    interface Forcer {
+        void force(Path path) throws IOException;
+    }
+}
@@ -0,0 +1,137 @@
+package com.bakorz.repo;
+
+import java.util.*;
+
+/**
+ * Index from genre to the items tagged with it, used for genre queries.
+ * Genre names are interned into a dictionary of int IDs (compared ignoring
+ * case) and each genre keeps a CompressedBitmap of item ordinals, so
+ * multi-genre queries run as bitmap intersections, unions and differences.
+ * The genre IDs indexed for each ordinal are kept so an item can be removed
+ * without the caller supplying its old genres.
+ * Instances are not thread-safe; the owning repository synchronizes access.
+ *
+ * @author Bakorz
+ * @version 1.0
+ */
+final class GenreIndex {
+    /** Genre dictionary: ID of each lower-case genre name */
+    private final Map<String, Integer> genreIds;
+
+    /** Ordinals tagged with each genre, indexed by genre ID */
+    private final List<CompressedBitmap> bitmaps;
+
+    /** All indexed ordinals, the universe for exclusion-only queries */
+    private final CompressedBitmap indexed;
+
+    /** Genre IDs indexed for each ordinal, null for free ordinals */
+    private int[][] itemGenres;
+
+    /**
+     * Creates an empty index.
+     */
+    GenreIndex() {
+        this.genreIds = new HashMap<>();
+        this.bitmaps = new ArrayList<>();
+        this.indexed = new CompressedBitmap();
+        this.itemGenres = new int[16][];
+    }
+
+    private static String normalize(String genre) {
+        return genre.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Indexes the genres of an item. Any genres previously indexed under the
+     * ordinal are replaced.
+     *
+     * @param ordinal Item ordinal
+     * @param genres  Item genres, may be null
+     */
+    void add(int ordinal, List<String> genres) {
+        remove(ordinal);
+        if (ordinal >= itemGenres.length) {
+            itemGenres = Arrays.copyOf(itemGenres, Math.max(ordinal + 1, itemGenres.length * 2));
+        }
+
+        int[] ids = new int[genres == null ? 0 : genres.size()];
+        int count = 0;
+        if (genres != null) {
+            for (String genre : genres) {
+                if (genre == null) {
+                    continue;
+                }
+                String name = normalize(genre);
+                Integer id = genreIds.get(name);
+                if (id == null) {
+                    id = bitmaps.size();
+                    genreIds.put(name, id);
+                    bitmaps.add(new CompressedBitmap());
+                }
+                bitmaps.get(id).add(ordinal);
+                ids[count++] = id;
+            }
+        }
+        itemGenres[ordinal] = Arrays.copyOf(ids, count);
+        indexed.add(ordinal);
+    }
+
+    /**
+     * Removes an item from the index.
+     *
+     * @param ordinal Item ordinal
+     */
+    void remove(int ordinal) {
+        if (ordinal >= itemGenres.length || itemGenres[ordinal] == null) {
+            return;
+        }
+
+        for (int id : itemGenres[ordinal]) {
+            bitmaps.get(id).remove(ordinal);
+        }
+        itemGenres[ordinal] = null;
+        indexed.remove(ordinal);
+    }
+
+    /**
+     * Finds the items tagged with every genre in allOf, with at least one genre
+     * in anyOf (when given) and with none of the genres in noneOf.
+     * Empty allOf and anyOf select every indexed item.
+     *
+     * @param allOf  Genres an item must all have
+     * @param anyOf  Genres an item must have at least one of
+     * @param noneOf Genres an item must not have
+     * @return Bitmap of matching ordinals, which callers must not modify
+     */
+    CompressedBitmap query(Collection<String> allOf, Collection<String> anyOf, Collection<String> noneOf) {
+        CompressedBitmap result = null;
+        for (String genre : allOf) {
+            Integer id = genreIds.get(normalize(genre));
+            if (id == null) {
+                return new CompressedBitmap();
+            }
+            result = result == null ? bitmaps.get(id) : result.and(bitmaps.get(id));
+        }
+
+        if (!anyOf.isEmpty()) {
+            CompressedBitmap union = union(anyOf);
+            result = result == null ? union : result.and(union);
+        }
+        if (result == null) {
+            result = indexed;
+        }
+
+        return noneOf.isEmpty() ? result : result.andNot(union(noneOf));
+    }
+
+    private CompressedBitmap union(Collection<String> genres) {
+        CompressedBitmap union = new CompressedBitmap();
+        for (String genre : genres) {
+            Integer id = genreIds.get(normalize(genre));
+            if (id != null) {
+                union = union.or(bitmaps.get(id));
+            }
+        }
+        return union;
+    }
+}
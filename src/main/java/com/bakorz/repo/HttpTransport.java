@@ -0,0 +1,517 @@
+package com.bakorz.repo;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * HTTP transport shared by the API repositories (MAL and TMDB).
+ * Wraps a single java.net.http.HttpClient, which keeps a pool of open
+ * connections per host and reuses them across requests, so only the first
+ * request to an API pays for the TCP connect and TLS handshake. HTTP/2 is
+ * negotiated where the server supports it, and concurrent requests to the
+ * same host are then multiplexed over one connection.
+ * Connecting, waiting for the response headers and receiving the response
+ * body are each bounded by timeouts; a body still incomplete at its deadline
+ * aborts the exchange with an HttpTimeoutException. Response bodies are
+ * always read to the end, error responses included, so their connections go
+ * back to the pool.
+ * Requests can be made blocking, or asynchronously without parking a thread
+ * while the response is outstanding. Either way the caller supplies a
+ * decoder that reads the body as a stream, so responses never pass through
+ * an intermediate String, and decoders read straight from the connection
+ * as the body arrives, so a body is never buffered whole. Asynchronous
+ * requests hand the body to a decoder thread once the headers are in; only
+ * that thread waits on the connection, never the caller's.
+ * Every request offers gzip and deflate compression, and compressed bodies
+ * are decompressed as the decoder reads them. The bytes received on the
+ * wire and the bytes handed to decoders are counted, so the bandwidth saved
+ * by compression can be measured.
+ *
+ * @author Bakorz
+ * @version 1.0
+ */
+public class HttpTransport {
+    /** Time allowed to establish a connection */
+    public static final Duration DEFAULT_CONNECT_TIMEOUT = Duration.ofSeconds(5);
+
+    /**
+     * Time allowed for a request, from sending it to receiving the response
+     * headers, and again from the headers to the end of the body
+     */
+    public static final Duration DEFAULT_REQUEST_TIMEOUT = Duration.ofSeconds(15);
+
+    /** Content codings offered in the Accept-Encoding header of every request */
+    public static final String ACCEPT_ENCODING = "gzip, deflate";
+
+    /** Buffer size of the decompressing streams */
+    private static final int INFLATE_BUFFER_SIZE = 8192;
+
+    /** Threads decoding the bodies of asynchronous requests as they arrive */
+    private static final ExecutorService DECODERS = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "http-body-decoder");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /** Timer aborting response bodies that miss their deadline */
+    private static final ScheduledExecutorService DEADLINES = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "http-body-deadline");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /** Transport shared by all repositories, created on first use */
+    private static HttpTransport shared;
+
+    /** Client holding the connection pool */
+    private final HttpClient client;
+
+    /** Timeout applied to every request, and to receiving every response body */
+    private final Duration requestTimeout;
+
+    /** Response body bytes received on the wire, before decompression */
+    private final AtomicLong bytesReceived = new AtomicLong();
+
+    /** Response body bytes after decompression, as read by the decoders */
+    private final AtomicLong bytesDecoded = new AtomicLong();
+
+    /**
+     * Creates a transport with its own connection pool.
+     *
+     * @param connectTimeout Time allowed to establish a connection
+     * @param requestTimeout Time allowed for each request up to the response
+     *                       headers, and again for the response body
+     * @param executor       Executor running the client's internal and
+     *                       asynchronous tasks, or null for the client's
+     *                       default
+     */
+    public HttpTransport(Duration connectTimeout, Duration requestTimeout, Executor executor) {
+        HttpClient.Builder builder = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(connectTimeout);
+        if (executor != null) {
+            builder.executor(executor);
+        }
+        this.client = builder.build();
+        this.requestTimeout = requestTimeout;
+    }
+
+    /**
+     * Returns the transport shared by all repositories, with the default
+     * timeouts and executor.
+     *
+     * @return Shared transport
+     */
+    public static synchronized HttpTransport shared() {
+        if (shared == null) {
+            shared = new HttpTransport(DEFAULT_CONNECT_TIMEOUT, DEFAULT_REQUEST_TIMEOUT, null);
+        }
+        return shared;
+    }
+
+    /**
+     * Makes an HTTP GET request and decodes the response body as it arrives.
+     * If the body is not received within the request timeout of the
+     * headers, its stream is closed, which aborts the exchange.
+     *
+     * @param <T>     Decoded type
+     * @param uri     Request URI
+     * @param decoder Decoder of the response body
+     * @param headers Request headers, as alternating names and values
+     * @return Decoded response
+     * @throws IOException if the request fails, times out, the response
+     *                     status is not 200 or the body cannot be decoded
+     */
+    public <T> T get(URI uri, BodyDecoder<T> decoder, String... headers) throws IOException {
+        HttpResponse<InputStream> response;
+        try {
+            response = client.send(request(uri, headers), HttpResponse.BodyHandlers.ofInputStream());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Request interrupted: " + uri.getPath());
+        }
+        return readBody(uri, response, decoder);
+    }
+
+    /**
+     * Reads and decodes the body of a response received as a stream.
+     * If the body is not received within the request timeout of the
+     * headers, its stream is closed, which aborts the exchange.
+     */
+    private <T> T readBody(URI uri, HttpResponse<InputStream> response, BodyDecoder<T> decoder) throws IOException {
+        InputStream received = response.body();
+        AtomicBoolean expired = new AtomicBoolean();
+        ScheduledFuture<?> deadline = DEADLINES.schedule(() -> {
+            expired.set(true);
+            closeQuietly(received);
+        }, requestTimeout.toNanos(), TimeUnit.NANOSECONDS);
+
+        T decoded;
+        try {
+            decoded = decodeBody(response, decoder);
+        } catch (IOException e) {
+            if (expired.get()) {
+                // A closed stream reads as an error or a truncated body
+                throw bodyTimeout(uri, e);
+            }
+            throw e;
+        } finally {
+            deadline.cancel(false);
+        }
+        if (expired.get()) {
+            throw bodyTimeout(uri, null);
+        }
+        return decoded;
+    }
+
+    /**
+     * Decodes the body of a response, then reads the rest of it so the
+     * connection can be reused.
+     */
+    private <T> T decodeBody(HttpResponse<InputStream> response, BodyDecoder<T> decoder) throws IOException {
+        try (InputStream wire = new CountingInputStream(response.body(), bytesReceived)) {
+            if (response.statusCode() != 200) {
+                wire.transferTo(OutputStream.nullOutputStream());
+                checkStatus(response);
+            }
+            try (InputStream body = decompressed(wire, response)) {
+                T decoded = decode(decoder, body);
+                // Read past the end of the JSON so the connection can be reused
+                body.transferTo(OutputStream.nullOutputStream());
+                wire.transferTo(OutputStream.nullOutputStream());
+                return decoded;
+            }
+        }
+    }
+
+    /**
+     * Makes an HTTP GET request without blocking, and decodes the response
+     * body on a decoder thread as it arrives.
+     * Cancelling the returned future aborts the request, as does a body not
+     * received within the request timeout of the headers.
+     *
+     * @param <T>     Decoded type
+     * @param uri     Request URI
+     * @param decoder Decoder of the response body
+     * @param headers Request headers, as alternating names and values
+     * @return Future of the decoded response, completed exceptionally with
+     *         an IOException if the request fails, times out, the response
+     *         status is not 200 or the body cannot be decoded
+     */
+    public <T> CompletableFuture<T> getAsync(URI uri, BodyDecoder<T> decoder, String... headers) {
+        CompletableFuture<HttpResponse<InputStream>> exchange = client.sendAsync(request(uri, headers),
+                HttpResponse.BodyHandlers.ofInputStream());
+        CompletableFuture<T> decoded = exchange.thenApplyAsync(response -> {
+            try {
+                return readBody(uri, response, decoder);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, DECODERS);
+        decoded.whenComplete((result, error) -> {
+            if (decoded.isCancelled()) {
+                exchange.cancel(true);
+                // Past the headers, closing the body is what aborts the exchange
+                exchange.thenAccept(response -> closeQuietly(response.body()));
+            }
+        });
+        return decoded;
+    }
+
+    /**
+     * Gets the number of response body bytes received on the wire, before
+     * decompression, over all requests made through this transport.
+     *
+     * @return Bytes received
+     */
+    public long getBytesReceived() {
+        return bytesReceived.get();
+    }
+
+    /**
+     * Gets the number of response body bytes after decompression, over all
+     * requests made through this transport. Compared with
+     * getBytesReceived(), this shows the bandwidth saved by compression.
+     *
+     * @return Bytes decoded
+     */
+    public long getBytesDecoded() {
+        return bytesDecoded.get();
+    }
+
+    /**
+     * Propagates cancellation of a dependent future to the futures it was
+     * derived from, which CompletableFuture does not do by itself.
+     *
+     * @param <T>       Result type
+     * @param dependent Future handed to the caller
+     * @param sources   Futures to cancel if the dependent is cancelled
+     * @return The dependent future
+     */
+    public static <T> CompletableFuture<T> cancelling(CompletableFuture<T> dependent, CompletableFuture<?>... sources) {
+        dependent.whenComplete((result, error) -> {
+            if (dependent.isCancelled()) {
+                for (CompletableFuture<?> source : sources) {
+                    source.cancel(true);
+                }
+            }
+        });
+        return dependent;
+    }
+
+    /**
+     * Composes a future with the one started from its result, as thenCompose
+     * does, but propagates cancellation to whichever of the two is running.
+     *
+     * @param <T>   Result type of the first future
+     * @param <U>   Result type of the composed future
+     * @param first First future
+     * @param next  Starts the second future from the first result
+     * @return Future of the second result
+     */
+    public static <T, U> CompletableFuture<U> composeCancelling(CompletableFuture<T> first,
+            Function<? super T, ? extends CompletableFuture<U>> next) {
+        CompletableFuture<U> result = new CompletableFuture<>();
+        AtomicReference<CompletableFuture<?>> current = new AtomicReference<>(first);
+        first.whenComplete((value, error) -> {
+            if (error != null) {
+                result.completeExceptionally(error);
+                return;
+            }
+            CompletableFuture<U> second;
+            try {
+                second = next.apply(value);
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+                return;
+            }
+            current.set(second);
+            // Cancelled before the second future was there to cancel
+            if (result.isCancelled()) {
+                second.cancel(true);
+            }
+            second.whenComplete((secondValue, secondError) -> {
+                if (secondError != null) {
+                    result.completeExceptionally(secondError);
+                } else {
+                    result.complete(secondValue);
+                }
+            });
+        });
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled()) {
+                current.get().cancel(true);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Gets the message of the cause of a failed future, for logging.
+     *
+     * @param error Exception a future completed with
+     * @return Message of the underlying exception
+     */
+    static String messageOf(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        return cause.getMessage() != null ? cause.getMessage() : cause.toString();
+    }
+
+    /**
+     * Creates the exception reported for a body that missed its deadline.
+     *
+     * @param uri   Request URI
+     * @param cause Error the aborted read failed with, or null
+     * @return Timeout exception
+     */
+    private HttpTimeoutException bodyTimeout(URI uri, IOException cause) {
+        HttpTimeoutException timeout = new HttpTimeoutException("Response body of " + uri.getPath()
+                + " not received within " + requestTimeout.toMillis() + " ms");
+        if (cause != null) {
+            timeout.initCause(cause);
+        }
+        return timeout;
+    }
+
+    private static void closeQuietly(InputStream body) {
+        try {
+            body.close();
+        } catch (IOException e) {
+            // Closing only serves to abort the exchange
+        }
+    }
+
+    private HttpRequest request(URI uri, String... headers) {
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri)
+                .timeout(requestTimeout)
+                .header("Accept-Encoding", ACCEPT_ENCODING)
+                .GET();
+        if (headers.length > 0) {
+            request.headers(headers);
+        }
+        return request.build();
+    }
+
+    private static void checkStatus(HttpResponse<?> response) throws IOException {
+        if (response.statusCode() != 200) {
+            throw new IOException("Failed : HTTP error code : " + response.statusCode());
+        }
+    }
+
+    /**
+     * Wraps a response body in a stream that undoes its Content-Encoding and
+     * counts the decompressed bytes read from it.
+     *
+     * @param wire     Body as received
+     * @param response Response the body belongs to
+     * @return Decompressed body
+     * @throws IOException if the encoding is not supported or the compressed
+     *                     header is invalid
+     */
+    private InputStream decompressed(InputStream wire, HttpResponse<?> response) throws IOException {
+        String encoding = response.headers().firstValue("Content-Encoding").orElse("identity")
+                .trim().toLowerCase(Locale.ROOT);
+        InputStream body;
+        switch (encoding) {
+            case "identity":
+            case "":
+                body = wire;
+                break;
+            case "gzip":
+            case "x-gzip":
+                body = new GZIPInputStream(wire, INFLATE_BUFFER_SIZE);
+                break;
+            case "deflate":
+                body = inflating(wire);
+                break;
+            default:
+                throw new IOException("Unsupported content encoding: " + encoding);
+        }
+        return new CountingInputStream(body, bytesDecoded);
+    }
+
+    /**
+     * Decompresses a deflate-encoded body. The encoding is meant to be zlib
+     * wrapped, but some servers send raw deflate data, so the first two bytes
+     * are checked for a zlib header.
+     */
+    private static InputStream inflating(InputStream wire) throws IOException {
+        PushbackInputStream in = new PushbackInputStream(wire, 2);
+        byte[] header = new byte[2];
+        int read = in.readNBytes(header, 0, 2);
+        in.unread(header, 0, read);
+        int cmf = header[0] & 0xFF;
+        int flg = header[1] & 0xFF;
+        boolean zlib = read == 2 && (cmf & 0x0F) == 8 && ((cmf << 8) | flg) % 31 == 0;
+
+        Inflater inflater = new Inflater(!zlib);
+        return new InflaterInputStream(in, inflater, INFLATE_BUFFER_SIZE) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    inflater.end();
+                }
+            }
+        };
+    }
+
+    /**
+     * Decodes a response body, reporting a body that does not have the
+     * expected structure as an IOException like any other failed request.
+     */
+    private static <T> T decode(BodyDecoder<T> decoder, InputStream body) throws IOException {
+        try {
+            return decoder.decode(body);
+        } catch (IllegalStateException | NumberFormatException e) {
+            throw new IOException("Malformed response: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Stream that adds the number of bytes read through it to a counter.
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+        /** Counter the bytes read are added to */
+        private final AtomicLong count;
+
+        CountingInputStream(InputStream in, AtomicLong count) {
+            super(in);
+            this.count = count;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count.incrementAndGet();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count.addAndGet(n);
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count.addAndGet(skipped);
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+
+    /**
+     * Decodes a response body from a stream.
+     *
+     * @param <T> Decoded type
+     */
+    public interface BodyDecoder<T> {
+        /**
+         * Reads and decodes a response body.
+         *
+         * @param body Response body; closed by the transport
+         * @return Decoded response
+         * @throws IOException if the body cannot be read or decoded
+         */
+        T decode(InputStream body) throws IOException;
+    }
+}
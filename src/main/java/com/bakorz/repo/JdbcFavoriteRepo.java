@@ -0,0 +1,193 @@
+package com.bakorz.repo;
+
+import com.bakorz.model.Favorite;
+import java.sql.*;
+import java.util.*;
+
+/**
+ * JDBC-backed implementation of FavoriteRepo interface on an embedded
+ * database.
+ * Favorites are rows of a favorite table with indexes on (userId, mediaId)
+ * and (userId, mediaSource, mediaId), so per-user and per-media lookups are
+ * index lookups. A missing media source is stored as "FILE", as in
+ * FileFavoriteRepo.
+ *
+ * @author Bakorz
+ * @version 1.0
+ */
+public class JdbcFavoriteRepo implements FavoriteRepo {
+    /** Tables and indexes used by this repository */
+    private static final String[] SCHEMA = {
+            "CREATE TABLE IF NOT EXISTS favorite ("
+                    + "favorite_id VARCHAR PRIMARY KEY, "
+                    + "seq BIGINT GENERATED BY DEFAULT AS IDENTITY, "
+                    + "user_id VARCHAR NOT NULL, "
+                    + "media_id VARCHAR NOT NULL, "
+                    + "media_source VARCHAR NOT NULL, "
+                    + "media_type VARCHAR)",
+            "CREATE INDEX IF NOT EXISTS favorite_user_media ON favorite(user_id, media_id)",
+            "CREATE INDEX IF NOT EXISTS favorite_user_source_media ON favorite(user_id, media_source, media_id)"
+    };
+
+    /** Columns selected to rebuild a favorite, in insertion order */
+    private static final String SELECT = "SELECT favorite_id, user_id, media_id, media_source, media_type FROM favorite";
+
+    /** Inserts or replaces a favorite row */
+    private static final String UPSERT = "MERGE INTO favorite (favorite_id, user_id, media_id, media_source, media_type) "
+            + "KEY (favorite_id) VALUES (?, ?, ?, ?, ?)";
+
+    /** Connection owned by this repository */
+    private final Connection connection;
+
+    /**
+     * Constructor that opens the default embedded database.
+     */
+    public JdbcFavoriteRepo() {
+        this(JdbcSupport.DEFAULT_URL);
+    }
+
+    /**
+     * Constructor that opens the database at the given JDBC URL.
+     *
+     * @param url JDBC URL of the database
+     */
+    public JdbcFavoriteRepo(String url) {
+        this.connection = JdbcSupport.connect(url, SCHEMA);
+    }
+
+    private static String sourceOrDefault(String mediaSource) {
+        return mediaSource != null ? mediaSource : "FILE";
+    }
+
+    private List<Favorite> query(String sql, String... parameters) {
+        List<Favorite> results = new ArrayList<>();
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            for (int i = 0; i < parameters.length; i++) {
+                statement.setString(i + 1, parameters[i]);
+            }
+            try (ResultSet rows = statement.executeQuery()) {
+                while (rows.next()) {
+                    results.add(new Favorite(rows.getString(1), rows.getString(2), rows.getString(3),
+                            rows.getString(4), rows.getString(5)));
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Error querying favorites database: " + e.getMessage());
+        }
+        return results;
+    }
+
+    private int execute(String sql, String... parameters) {
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            for (int i = 0; i < parameters.length; i++) {
+                statement.setString(i + 1, parameters[i]);
+            }
+            return statement.executeUpdate();
+        } catch (SQLException e) {
+            System.err.println("Error writing favorites database: " + e.getMessage());
+            return 0;
+        }
+    }
+
+    private static void bind(PreparedStatement statement, Favorite favorite) throws SQLException {
+        statement.setString(1, favorite.getFavoriteId());
+        statement.setString(2, favorite.getUserId());
+        statement.setString(3, favorite.getMediaId());
+        statement.setString(4, sourceOrDefault(favorite.getMediaSource()));
+        statement.setString(5, favorite.getMediaType());
+    }
+
+    @Override
+    public synchronized boolean addFavorite(Favorite favorite) {
+        if (favorite == null || favorite.getFavoriteId() == null) {
+            return false;
+        }
+        return addAll(Collections.singletonList(favorite)) == 1;
+    }
+
+    /**
+     * Adds a batch of favorites as JDBC batches in one transaction, replacing
+     * any with the same favorite ID.
+     *
+     * @param favorites Favorites to add
+     * @return Number of favorites added
+     */
+    public synchronized int addAll(Collection<Favorite> favorites) {
+        int[] added = new int[1];
+        try {
+            JdbcSupport.inTransaction(connection, () -> {
+                try (PreparedStatement statement = connection.prepareStatement(UPSERT)) {
+                    int pending = 0;
+                    for (Favorite favorite : favorites) {
+                        if (favorite != null && favorite.getFavoriteId() != null) {
+                            bind(statement, favorite);
+                            pending = JdbcSupport.addBatch(statement, pending);
+                            added[0]++;
+                        }
+                    }
+                    statement.executeBatch();
+                }
+            });
+            return added[0];
+        } catch (SQLException e) {
+            System.err.println("Error writing favorites database: " + e.getMessage());
+            return 0;
+        }
+    }
+
+    @Override
+    public synchronized boolean removeFavorite(String favoriteId) {
+        return execute("DELETE FROM favorite WHERE favorite_id = ?", favoriteId) > 0;
+    }
+
+    @Override
+    public synchronized boolean removeFavoriteByUserAndMedia(String userId, String mediaId) {
+        List<Favorite> matches = query(SELECT + " WHERE user_id = ? AND media_id = ? ORDER BY seq LIMIT 1",
+                userId, mediaId);
+        return !matches.isEmpty() && removeFavorite(matches.get(0).getFavoriteId());
+    }
+
+    @Override
+    public synchronized boolean removeFavoriteByUserAndMedia(String userId, String mediaSource, String mediaId) {
+        List<Favorite> matches = query(SELECT + " WHERE user_id = ? AND media_source = ? AND media_id = ?"
+                + " ORDER BY seq LIMIT 1", userId, sourceOrDefault(mediaSource), mediaId);
+        return !matches.isEmpty() && removeFavorite(matches.get(0).getFavoriteId());
+    }
+
+    @Override
+    public synchronized List<Favorite> getFavoritesByUser(String userId) {
+        return query(SELECT + " WHERE user_id = ? ORDER BY seq", userId);
+    }
+
+    @Override
+    public synchronized Optional<Favorite> getFavoriteById(String favoriteId) {
+        List<Favorite> matches = query(SELECT + " WHERE favorite_id = ?", favoriteId);
+        return matches.isEmpty() ? Optional.empty() : Optional.of(matches.get(0));
+    }
+
+    @Override
+    public synchronized boolean isFavorited(String userId, String mediaId) {
+        return !query(SELECT + " WHERE user_id = ? AND media_id = ? LIMIT 1", userId, mediaId).isEmpty();
+    }
+
+    @Override
+    public synchronized boolean isFavorited(String userId, String mediaSource, String mediaId) {
+        return !query(SELECT + " WHERE user_id = ? AND media_source = ? AND media_id = ? LIMIT 1",
+                userId, sourceOrDefault(mediaSource), mediaId).isEmpty();
+    }
+
+    @Override
+    public synchronized List<Favorite> getAll() {
+        return query(SELECT + " ORDER BY seq");
+    }
+
+    @Override
+    public synchronized boolean update(Favorite favorite) {
+        if (favorite == null) {
+            return false;
+        }
+        return execute("UPDATE favorite SET user_id = ?, media_id = ?, media_source = ?, media_type = ?"
+                + " WHERE favorite_id = ?", favorite.getUserId(), favorite.getMediaId(),
+                sourceOrDefault(favorite.getMediaSource()), favorite.getMediaType(), favorite.getFavoriteId()) > 0;
+    }
+}
@@ -0,0 +1,397 @@
+package com.bakorz.repo;
+
+import com.bakorz.model.*;
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * JDBC-backed implementation of MediaRepo interface on an embedded database.
+ * Each item is stored as one row holding its CSV record (the same format as
+ * data/media.csv) plus the columns queries filter and sort on: type, title,
+ * rating and a DATE release date, each with an index. Genres are kept in a
+ * separate join table indexed by genre, so genre queries are index lookups.
+ * Batch saves and deletes are sent as JDBC batches inside one transaction.
+ *
+ * @author Bakorz
+ * @version 1.0
+ */
+public class JdbcMediaRepo implements MediaRepo {
+    /** Tables and indexes used by this repository */
+    private static final String[] SCHEMA = {
+            "CREATE TABLE IF NOT EXISTS media ("
+                    + "id VARCHAR PRIMARY KEY, "
+                    + "media_type VARCHAR(16) NOT NULL, "
+                    + "title_lower VARCHAR, "
+                    + "rating DOUBLE NOT NULL, "
+                    + "release_date DATE, "
+                    + "record VARCHAR NOT NULL)",
+            "CREATE INDEX IF NOT EXISTS media_rating ON media(rating DESC)",
+            "CREATE INDEX IF NOT EXISTS media_type_release ON media(media_type, release_date DESC)",
+            "CREATE INDEX IF NOT EXISTS media_release ON media(release_date)",
+            "CREATE TABLE IF NOT EXISTS media_genre ("
+                    + "media_id VARCHAR NOT NULL REFERENCES media(id) ON DELETE CASCADE, "
+                    + "genre VARCHAR NOT NULL, "
+                    + "PRIMARY KEY (media_id, genre))",
+            "CREATE INDEX IF NOT EXISTS media_genre_by_genre ON media_genre(genre, media_id)"
+    };
+
+    /** Columns selected to rebuild an item */
+    private static final String SELECT = "SELECT record FROM media";
+
+    /** Inserts or replaces an item row */
+    private static final String UPSERT = "MERGE INTO media (id, media_type, title_lower, rating, release_date, record) "
+            + "KEY (id) VALUES (?, ?, ?, ?, ?, ?)";
+
+    /** Connection owned by this repository */
+    private final Connection connection;
+
+    /** Reused tokenizer for parsing stored records */
+    private final CsvTokenizer tokenizer;
+
+    /**
+     * Constructor that opens the default embedded database.
+     */
+    public JdbcMediaRepo() {
+        this(JdbcSupport.DEFAULT_URL);
+    }
+
+    /**
+     * Constructor that opens the database at the given JDBC URL.
+     *
+     * @param url JDBC URL of the database
+     */
+    public JdbcMediaRepo(String url) {
+        this.connection = JdbcSupport.connect(url, SCHEMA);
+        this.tokenizer = new CsvTokenizer(',');
+    }
+
+    private static String normalizeGenre(String genre) {
+        return genre.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Runs a query and parses every returned record.
+     *
+     * @param sql        Query selecting the record column
+     * @param parameters Values for the query's parameters
+     * @return Parsed items
+     */
+    private List<MediaItem> query(String sql, Object... parameters) {
+        List<MediaItem> results = new ArrayList<>();
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            for (int i = 0; i < parameters.length; i++) {
+                statement.setObject(i + 1, parameters[i]);
+            }
+            try (ResultSet rows = statement.executeQuery()) {
+                while (rows.next()) {
+                    MediaItem item = MediaCsvFormat.parse(tokenizer.reset(rows.getString(1)));
+                    if (item != null) {
+                        results.add(item);
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Error querying media database: " + e.getMessage());
+        }
+        return results;
+    }
+
+    private MediaItem load(String id) {
+        List<MediaItem> items = query(SELECT + " WHERE id = ?", id);
+        return items.isEmpty() ? null : items.get(0);
+    }
+
+    @Override
+    public synchronized List<MediaItem> searchByTitle(String title) {
+        String pattern = title.toLowerCase().replace("!", "!!").replace("%", "!%").replace("_", "!_");
+        return query(SELECT + " WHERE title_lower LIKE ? ESCAPE '!'", "%" + pattern + "%");
+    }
+
+    @Override
+    public synchronized Optional<MediaItem> getById(String id) {
+        return Optional.ofNullable(load(id));
+    }
+
+    @Override
+    public synchronized Optional<Movie> getMovieById(String id) {
+        MediaItem item = load(id);
+        if (item instanceof Movie) {
+            return Optional.of((Movie) item);
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public synchronized Optional<TVShow> getTVShowById(String id) {
+        MediaItem item = load(id);
+        if (item instanceof TVShow) {
+            return Optional.of((TVShow) item);
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public synchronized Optional<Anime> getAnimeById(String id) {
+        MediaItem item = load(id);
+        if (item instanceof Anime) {
+            return Optional.of((Anime) item);
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public synchronized List<MediaItem> getByGenre(String genre) {
+        return getByGenres(Collections.singletonList(genre), Collections.emptyList(), Collections.emptyList());
+    }
+
+    @Override
+    public synchronized List<MediaItem> getByGenres(Collection<String> allOf, Collection<String> anyOf,
+            Collection<String> noneOf) {
+        StringBuilder sql = new StringBuilder(SELECT).append(" WHERE TRUE");
+        List<Object> parameters = new ArrayList<>();
+        Set<String> required = new LinkedHashSet<>();
+        for (String genre : allOf) {
+            required.add(normalizeGenre(genre));
+        }
+
+        if (!required.isEmpty()) {
+            sql.append(" AND id IN (SELECT media_id FROM media_genre WHERE genre IN (")
+                    .append(placeholders(required, parameters))
+                    .append(") GROUP BY media_id HAVING COUNT(*) = ?)");
+            parameters.add(required.size());
+        }
+        if (!anyOf.isEmpty()) {
+            sql.append(" AND id IN (SELECT media_id FROM media_genre WHERE genre IN (")
+                    .append(placeholders(anyOf, parameters)).append("))");
+        }
+        if (!noneOf.isEmpty()) {
+            sql.append(" AND id NOT IN (SELECT media_id FROM media_genre WHERE genre IN (")
+                    .append(placeholders(noneOf, parameters)).append("))");
+        }
+        return query(sql.toString(), parameters.toArray());
+    }
+
+    /**
+     * Appends normalized genres to a parameter list.
+     *
+     * @return Comma-separated placeholders, one per genre
+     */
+    private static String placeholders(Collection<String> genres, List<Object> parameters) {
+        StringJoiner joiner = new StringJoiner(", ");
+        for (String genre : genres) {
+            parameters.add(normalizeGenre(genre));
+            joiner.add("?");
+        }
+        return joiner.toString();
+    }
+
+    @Override
+    public synchronized List<MediaItem> getTopRated(int limit) {
+        return query(SELECT + " ORDER BY rating DESC LIMIT ?", limit);
+    }
+
+    @Override
+    public synchronized List<Movie> getLatestMovies(int limit) {
+        List<Movie> movies = new ArrayList<>();
+        for (MediaItem item : query(SELECT + " WHERE media_type = 'MOVIE' AND release_date IS NOT NULL"
+                + " ORDER BY release_date DESC LIMIT ?", limit)) {
+            movies.add((Movie) item);
+        }
+        return movies;
+    }
+
+    @Override
+    public synchronized List<TVShow> getLatestTVShows(int limit) {
+        List<TVShow> tvShows = new ArrayList<>();
+        for (MediaItem item : query(SELECT + " WHERE media_type = 'TV_SHOW' AND release_date IS NOT NULL"
+                + " ORDER BY release_date DESC LIMIT ?", limit)) {
+            tvShows.add((TVShow) item);
+        }
+        return tvShows;
+    }
+
+    @Override
+    public synchronized <T extends MediaItem> List<T> getReleasedBetween(Class<T> type, LocalDate from,
+            LocalDate to) {
+        String typeFilter = "";
+        if (type == Movie.class) {
+            typeFilter = " AND media_type = 'MOVIE'";
+        } else if (type == TVShow.class) {
+            typeFilter = " AND media_type = 'TV_SHOW'";
+        } else if (type == Anime.class) {
+            typeFilter = " AND media_type = 'ANIME'";
+        }
+
+        List<T> results = new ArrayList<>();
+        for (MediaItem item : query(SELECT + " WHERE release_date BETWEEN ? AND ?" + typeFilter
+                + " ORDER BY release_date", from, to)) {
+            if (type.isInstance(item)) {
+                results.add(type.cast(item));
+            }
+        }
+        return results;
+    }
+
+    @Override
+    public synchronized List<MediaItem> getAll() {
+        return query(SELECT);
+    }
+
+    @Override
+    public synchronized List<MediaItem> getAllByIds(Collection<String> ids) {
+        Map<String, MediaItem> found = new HashMap<>();
+        List<String> batch = new ArrayList<>();
+        for (String id : ids) {
+            batch.add(id);
+            if (batch.size() == JdbcSupport.BATCH_SIZE) {
+                fetchInto(batch, found);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            fetchInto(batch, found);
+        }
+
+        List<MediaItem> results = new ArrayList<>();
+        for (String id : ids) {
+            MediaItem item = found.get(id);
+            if (item != null) {
+                results.add(item);
+            }
+        }
+        return results;
+    }
+
+    private void fetchInto(List<String> ids, Map<String, MediaItem> found) {
+        StringJoiner placeholders = new StringJoiner(", ");
+        for (int i = 0; i < ids.size(); i++) {
+            placeholders.add("?");
+        }
+        for (MediaItem item : query(SELECT + " WHERE id IN (" + placeholders + ")", ids.toArray())) {
+            found.put(item.getId(), item);
+        }
+    }
+
+    @Override
+    public synchronized boolean save(MediaItem mediaItem) {
+        return saveAll(Collections.singletonList(mediaItem)) == 1;
+    }
+
+    /**
+     * Saves a batch of media items and their genres as JDBC batches in one
+     * transaction.
+     *
+     * @param mediaItems MediaItems to save
+     * @return Number of items saved
+     */
+    @Override
+    public synchronized int saveAll(Collection<? extends MediaItem> mediaItems) {
+        // Later copies of the same ID win, and each copy counts, as with repeated saves
+        Map<String, MediaItem> valid = new LinkedHashMap<>();
+        int saved = 0;
+        for (MediaItem item : mediaItems) {
+            if (item != null && item.getId() != null) {
+                valid.put(item.getId(), item);
+                saved++;
+            }
+        }
+        if (valid.isEmpty()) {
+            return 0;
+        }
+
+        try {
+            JdbcSupport.inTransaction(connection, () -> writeItems(valid.values()));
+            return saved;
+        } catch (SQLException e) {
+            System.err.println("Error saving to media database: " + e.getMessage());
+            return 0;
+        }
+    }
+
+    private void writeItems(Collection<MediaItem> items) throws SQLException {
+        try (PreparedStatement upsert = connection.prepareStatement(UPSERT);
+                PreparedStatement clearGenres = connection.prepareStatement(
+                        "DELETE FROM media_genre WHERE media_id = ?");
+                PreparedStatement addGenre = connection.prepareStatement(
+                        "INSERT INTO media_genre (media_id, genre) VALUES (?, ?)")) {
+            int pendingItems = 0;
+            int pendingClears = 0;
+            int pendingGenres = 0;
+            for (MediaItem item : items) {
+                Long releaseDay = RankingIndex.epochDay(item.getReleaseDate());
+                upsert.setString(1, item.getId());
+                upsert.setString(2, item.getMediaType());
+                upsert.setString(3, item.getTitle() != null ? item.getTitle().toLowerCase() : null);
+                upsert.setDouble(4, item.getRating());
+                upsert.setObject(5, releaseDay != null ? LocalDate.ofEpochDay(releaseDay) : null, Types.DATE);
+                upsert.setString(6, MediaCsvFormat.format(item.getId(), item));
+                pendingItems = JdbcSupport.addBatch(upsert, pendingItems);
+
+                clearGenres.setString(1, item.getId());
+                pendingClears = JdbcSupport.addBatch(clearGenres, pendingClears);
+            }
+            upsert.executeBatch();
+            clearGenres.executeBatch();
+
+            for (MediaItem item : items) {
+                Set<String> genres = new LinkedHashSet<>();
+                if (item.getGenres() != null) {
+                    for (String genre : item.getGenres()) {
+                        if (genre != null) {
+                            genres.add(normalizeGenre(genre));
+                        }
+                    }
+                }
+                for (String genre : genres) {
+                    addGenre.setString(1, item.getId());
+                    addGenre.setString(2, genre);
+                    pendingGenres = JdbcSupport.addBatch(addGenre, pendingGenres);
+                }
+            }
+            addGenre.executeBatch();
+        }
+    }
+
+    @Override
+    public synchronized boolean update(MediaItem mediaItem) {
+        if (mediaItem == null || load(mediaItem.getId()) == null) {
+            return false;
+        }
+        return save(mediaItem);
+    }
+
+    @Override
+    public synchronized boolean delete(String id) {
+        return deleteAll(Collections.singletonList(id)) == 1;
+    }
+
+    /**
+     * Deletes a batch of media items in one transaction. Their genre rows are
+     * removed by the foreign key cascade.
+     *
+     * @param ids Media item IDs to delete
+     * @return Number of items deleted
+     */
+    @Override
+    public synchronized int deleteAll(Collection<String> ids) {
+        int[] deleted = new int[1];
+        try {
+            JdbcSupport.inTransaction(connection, () -> {
+                try (PreparedStatement statement = connection.prepareStatement("DELETE FROM media WHERE id = ?")) {
+                    for (String id : ids) {
+                        statement.setString(1, id);
+                        statement.addBatch();
+                    }
+                    for (int count : statement.executeBatch()) {
+                        deleted[0] += Math.max(count, 0);
+                    }
+                }
+            });
+            return deleted[0];
+        } catch (SQLException e) {
+            System.err.println("Error deleting from media database: " + e.getMessage());
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.bakorz.repo;
+
+import java.sql.*;
+
+/**
+ * Shared helpers for the JDBC-backed repositories.
+ * The repositories use an embedded H2 database in data/metavie.mv.db by
+ * default; each opens its own connection and creates its tables on first use.
+ *
+ * @author Bakorz
+ * @version 1.0
+ */
+final class JdbcSupport {
+    /** JDBC URL of the default embedded database */
+    static final String DEFAULT_URL = "jdbc:h2:./data/metavie";
+
+    /** Number of rows sent to the database per batch */
+    static final int BATCH_SIZE = 500;
+
+    private JdbcSupport() {
+    }
+
+    /**
+     * Opens a connection and runs the given schema statements.
+     *
+     * @param url    JDBC URL of the database
+     * @param schema DDL statements, written to be safe to run repeatedly
+     * @return Open connection in auto-commit mode
+     * @throws IllegalStateException if the database cannot be opened
+     */
+    static Connection connect(String url, String... schema) {
+        try {
+            Connection connection = DriverManager.getConnection(url);
+            try (Statement statement = connection.createStatement()) {
+                for (String ddl : schema) {
+                    statement.execute(ddl);
+                }
+            }
+            return connection;
+        } catch (SQLException e) {
+            throw new IllegalStateException("Error opening database: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Runs work in one transaction, rolling back if it fails.
+     *
+     * @param connection Connection to run the work on
+     * @param work       Statements to run
+     * @throws SQLException if the work or commit fails
+     */
+    static void inTransaction(Connection connection, SqlWork work) throws SQLException {
+        connection.setAutoCommit(false);
+        try {
+            work.run();
+            connection.commit();
+        } catch (SQLException | RuntimeException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * Adds the current parameters to a batch, sending it once it reaches
+     * BATCH_SIZE rows.
+     *
+     * @param statement Statement whose parameters are set
+     * @param pending   Rows already added to the batch
+     * @return Rows pending after this call
+     * @throws SQLException if the batch fails
+     */
+    static int addBatch(PreparedStatement statement, int pending) throws SQLException {
+        statement.addBatch();
+        if (++pending >= BATCH_SIZE) {
+            statement.executeBatch();
+            return 0;
+        }
+        return pending;
+    }
+
+    /**
+     * Statements run inside a transaction.
+     */
+    interface SqlWork {
+        void run() throws SQLException;
+    }
+}
@@ -0,0 +1,170 @@
+package com.bakorz.repo;
+
+import com.bakorz.model.WatchEntry;
+import java.sql.*;
+import java.util.*;
+
+/**
+ * JDBC-backed implementation of WatchRepo interface on an embedded database.
+ * Watch entries are rows of a watch_entry table with an index on
+ * (userId, mediaId), so per-user and per-media lookups are index lookups.
+ * A missing media source is stored as "FILE", as in FileWatchRepo, and
+ * entries are returned in the order they were added.
+ *
+ * @author Bakorz
+ * @version 1.0
+ */
+public class JdbcWatchRepo implements WatchRepo {
+    /** Tables and indexes used by this repository */
+    private static final String[] SCHEMA = {
+            "CREATE TABLE IF NOT EXISTS watch_entry ("
+                    + "watch_id VARCHAR PRIMARY KEY, "
+                    + "seq BIGINT GENERATED BY DEFAULT AS IDENTITY, "
+                    + "user_id VARCHAR NOT NULL, "
+                    + "media_id VARCHAR NOT NULL, "
+                    + "media_source VARCHAR NOT NULL)",
+            "CREATE INDEX IF NOT EXISTS watch_entry_user_media ON watch_entry(user_id, media_id)"
+    };
+
+    /** Columns selected to rebuild an entry */
+    private static final String SELECT = "SELECT watch_id, user_id, media_id, media_source FROM watch_entry";
+
+    /** Inserts or replaces an entry row */
+    private static final String UPSERT = "MERGE INTO watch_entry (watch_id, user_id, media_id, media_source) "
+            + "KEY (watch_id) VALUES (?, ?, ?, ?)";
+
+    /** Connection owned by this repository */
+    private final Connection connection;
+
+    /**
+     * Constructor that opens the default embedded database.
+     */
+    public JdbcWatchRepo() {
+        this(JdbcSupport.DEFAULT_URL);
+    }
+
+    /**
+     * Constructor that opens the database at the given JDBC URL.
+     *
+     * @param url JDBC URL of the database
+     */
+    public JdbcWatchRepo(String url) {
+        this.connection = JdbcSupport.connect(url, SCHEMA);
+    }
+
+    private static String sourceOrDefault(String mediaSource) {
+        return mediaSource != null ? mediaSource : "FILE";
+    }
+
+    private List<WatchEntry> query(String sql, String... parameters) {
+        List<WatchEntry> results = new ArrayList<>();
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            for (int i = 0; i < parameters.length; i++) {
+                statement.setString(i + 1, parameters[i]);
+            }
+            try (ResultSet rows = statement.executeQuery()) {
+                while (rows.next()) {
+                    WatchEntry entry = new WatchEntry(rows.getString(1), rows.getString(2), rows.getString(3));
+                    entry.setMediaSource(rows.getString(4));
+                    results.add(entry);
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Error querying watch database: " + e.getMessage());
+        }
+        return results;
+    }
+
+    private int execute(String sql, String... parameters) {
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            for (int i = 0; i < parameters.length; i++) {
+                statement.setString(i + 1, parameters[i]);
+            }
+            return statement.executeUpdate();
+        } catch (SQLException e) {
+            System.err.println("Error writing watch database: " + e.getMessage());
+            return 0;
+        }
+    }
+
+    @Override
+    public synchronized boolean addWatchEntry(WatchEntry watchEntry) {
+        if (watchEntry == null || getWatchEntryById(watchEntry.getWatchId()).isPresent()) {
+            return false;
+        }
+        return execute("INSERT INTO watch_entry (watch_id, user_id, media_id, media_source) VALUES (?, ?, ?, ?)",
+                watchEntry.getWatchId(), watchEntry.getUserId(), watchEntry.getMediaId(),
+                sourceOrDefault(watchEntry.getMediaSource())) > 0;
+    }
+
+    /**
+     * Adds a batch of watch entries as JDBC batches in one transaction,
+     * replacing any with the same watch ID.
+     *
+     * @param entries Watch entries to add
+     * @return Number of entries added
+     */
+    public synchronized int addAll(Collection<WatchEntry> entries) {
+        int[] added = new int[1];
+        try {
+            JdbcSupport.inTransaction(connection, () -> {
+                try (PreparedStatement statement = connection.prepareStatement(UPSERT)) {
+                    int pending = 0;
+                    for (WatchEntry entry : entries) {
+                        if (entry != null && entry.getWatchId() != null) {
+                            statement.setString(1, entry.getWatchId());
+                            statement.setString(2, entry.getUserId());
+                            statement.setString(3, entry.getMediaId());
+                            statement.setString(4, sourceOrDefault(entry.getMediaSource()));
+                            pending = JdbcSupport.addBatch(statement, pending);
+                            added[0]++;
+                        }
+                    }
+                    statement.executeBatch();
+                }
+            });
+            return added[0];
+        } catch (SQLException e) {
+            System.err.println("Error writing watch database: " + e.getMessage());
+            return 0;
+        }
+    }
+
+    @Override
+    public synchronized boolean removeWatchEntry(String watchId) {
+        return execute("DELETE FROM watch_entry WHERE watch_id = ?", watchId) > 0;
+    }
+
+    @Override
+    public synchronized List<WatchEntry> getWatchEntriesByUser(String userId) {
+        return query(SELECT + " WHERE user_id = ? ORDER BY seq", userId);
+    }
+
+    @Override
+    public synchronized Optional<WatchEntry> getWatchEntryById(String watchId) {
+        List<WatchEntry> matches = query(SELECT + " WHERE watch_id = ?", watchId);
+        return matches.isEmpty() ? Optional.empty() : Optional.of(matches.get(0));
+    }
+
+    @Override
+    public synchronized Optional<WatchEntry> getWatchEntryByUserAndMedia(String userId, String mediaId) {
+        List<WatchEntry> matches = query(SELECT + " WHERE user_id = ? AND media_id = ? ORDER BY seq LIMIT 1",
+                userId, mediaId);
+        return matches.isEmpty() ? Optional.empty() : Optional.of(matches.get(0));
+    }
+
+    @Override
+    public synchronized boolean update(WatchEntry watchEntry) {
+        if (watchEntry == null) {
+            return false;
+        }
+        return execute("UPDATE watch_entry SET user_id = ?, media_id = ?, media_source = ? WHERE watch_id = ?",
+                watchEntry.getUserId(), watchEntry.getMediaId(), sourceOrDefault(watchEntry.getMediaSource()),
+                watchEntry.getWatchId()) > 0;
+    }
+
+    @Override
+    public synchronized List<WatchEntry> getAll() {
+        return query(SELECT + " ORDER BY seq");
+    }
+}
@@ -0,0 +1,136 @@
+package com.bakorz.repo;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Helpers for the streaming JSON decoders of the API repositories.
+ * The decoders read a response with a JsonReader straight into model
+ * objects, one token at a time, instead of reading it into a String and
+ * building a JsonObject tree first. Fields they do not use are skipped
+ * without being materialized.
+ *
+ * @author Bakorz
+ * @version 1.0
+ */
+final class JsonStreams {
+    private JsonStreams() {
+    }
+
+    /**
+     * Opens a JsonReader over a UTF-8 response body.
+     *
+     * @param body Response body
+     * @return Reader of the body
+     */
+    static JsonReader reader(InputStream body) {
+        return new JsonReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Consumes a null value if one is next.
+     *
+     * @param in Reader positioned before a value
+     * @return true if the value was null and has been consumed
+     * @throws IOException if the JSON cannot be read
+     */
+    static boolean skipNull(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Reads the "name" field of each object in an array, such as the genres
+     * or studios of an item.
+     *
+     * @param in Reader positioned before the array
+     * @return Names in array order
+     * @throws IOException if the JSON cannot be read
+     */
+    static List<String> readNames(JsonReader in) throws IOException {
+        List<String> names = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            in.beginObject();
+            while (in.hasNext()) {
+                if (!in.nextName().equals("name")) {
+                    in.skipValue();
+                } else if (!skipNull(in)) {
+                    names.add(in.nextString());
+                }
+            }
+            in.endObject();
+        }
+        in.endArray();
+        return names;
+    }
+
+    /**
+     * Reads the array of items in the "results" field of a paged TMDB
+     * response, skipping the other fields.
+     *
+     * @param <T>  Item type
+     * @param in   Reader positioned before the response object
+     * @param item Decoder of one item, called with the reader positioned
+     *             before it
+     * @return Items in array order, or null if the response has no results
+     * @throws IOException if the JSON cannot be read
+     */
+    static <T> List<T> readResults(JsonReader in, ItemDecoder<T> item) throws IOException {
+        List<T> results = null;
+        in.beginObject();
+        while (in.hasNext()) {
+            if (!in.nextName().equals("results")) {
+                in.skipValue();
+            } else if (!skipNull(in)) {
+                results = readArray(in, item);
+            }
+        }
+        in.endObject();
+        return results;
+    }
+
+    /**
+     * Reads an array of items.
+     *
+     * @param <T>  Item type
+     * @param in   Reader positioned before the array
+     * @param item Decoder of one item
+     * @return Items in array order
+     * @throws IOException if the JSON cannot be read
+     */
+    static <T> List<T> readArray(JsonReader in, ItemDecoder<T> item) throws IOException {
+        List<T> items = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            items.add(item.read(in));
+        }
+        in.endArray();
+        return items;
+    }
+
+    /**
+     * Decodes one JSON value into an item.
+     *
+     * @param <T> Item type
+     */
+    interface ItemDecoder<T> {
+        /**
+         * Reads one value.
+         *
+         * @param in Reader positioned before the value
+         * @return Decoded item
+         * @throws IOException if the JSON cannot be read
+         */
+        T read(JsonReader in) throws IOException;
+    }
+}
@@ -0,0 +1,606 @@
+package com.bakorz.repo;
+
+import com.bakorz.model.*;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Lazily parsed, file-based implementation of MediaRepo interface.
+ * Reads the same CSV file as FileMediaRepo (data/media.csv), but at startup
+ * only builds an index from item ID to the record's position in the file.
+ * A record is parsed the first time it is requested and kept in a bounded
+ * LRU cache, so resident memory follows the working set rather than the
+ * size of the catalog.
+ * Saves append the new record to the file and repoint the index; deletes
+ * rewrite the file without the removed records.
+ * Queries that need every item (search, genre, rankings) stream over the file.
+ * Records longer than MAX_RECORD_LENGTH bytes cannot be indexed: they are
+ * skipped with an error when the file is indexed and refused when saved.
+ * Records carry CRC32 checksums that are verified while indexing; a file with
+ * corrupt, torn or unchecksummed records is rewritten atomically on open, as
+ * is a file with plain descriptions, to store them compressed.
+ * Delta segments left by FileMediaRepo are merged into the file on open.
+ *
+ * @author Bakorz
+ * @version 1.0
+ */
+public class LazyFileMediaRepo implements MediaRepo {
+    /** Path to the media cache CSV file */
+    private static final String MEDIA_FILE = "data/media.csv";
+
+    /** Default number of parsed items kept in memory */
+    private static final int DEFAULT_CACHE_SIZE = 1000;
+
+    /** Number of low bits of an index entry holding the record length */
+    private static final int LENGTH_BITS = 24;
+
+    /** Longest record, in bytes, an index entry can address */
+    static final int MAX_RECORD_LENGTH = (1 << LENGTH_BITS) - 1;
+
+    /** Largest file offset an index entry can address */
+    private static final long MAX_OFFSET = (1L << (Long.SIZE - LENGTH_BITS)) - 1;
+
+    /** Path to the CSV file used by this instance */
+    private final String mediaFile;
+
+    /** Record position of each item, packed as offset and length, mapped by ID */
+    private final Map<String, Long> recordIndex;
+
+    /** Recently used parsed items, evicted in least-recently-used order */
+    private final Map<String, MediaItem> parsedCache;
+
+    /** Reused tokenizer for parsing single records */
+    private final CsvTokenizer tokenizer;
+
+    /** Verifies and computes record checksums */
+    private final RecordChecksum checksum;
+
+    /** Whether the records of the file carry checksums */
+    private boolean checksummed;
+
+    /** Whether the records of the file store descriptions compressed */
+    private boolean deflated;
+
+    /** Open handle on the CSV file for positional reads and appends */
+    private RandomAccessFile file;
+
+    /**
+     * Constructor that indexes the default media file.
+     */
+    public LazyFileMediaRepo() {
+        this(MEDIA_FILE, DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * Constructor that indexes the given media file.
+     *
+     * @param mediaFile Path to the media CSV file
+     * @param cacheSize Maximum number of parsed items kept in memory
+     */
+    public LazyFileMediaRepo(String mediaFile, int cacheSize) {
+        this.mediaFile = mediaFile;
+        this.recordIndex = new HashMap<>();
+        this.parsedCache = new LinkedHashMap<String, MediaItem>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, MediaItem> eldest) {
+                return size() > cacheSize;
+            }
+        };
+        this.tokenizer = new CsvTokenizer(',');
+        this.checksum = new RecordChecksum();
+        MediaSegments.fold(Paths.get(mediaFile));
+        openFile();
+        buildIndex();
+    }
+
+    private void openFile() {
+        File f = new File(mediaFile);
+        if (f.getParentFile() != null) {
+            f.getParentFile().mkdirs();
+        }
+
+        try {
+            file = new RandomAccessFile(f, "rw");
+            if (file.length() == 0) {
+                file.write((RecordChecksum.header(MediaCsvFormat.HEADER) + System.lineSeparator())
+                        .getBytes(StandardCharsets.UTF_8));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error opening media file: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Builds the ID to record position index in one sequential scan.
+     * Only the ID field of each record is decoded; later records for the same
+     * ID replace earlier ones.
+     */
+    private void buildIndex() {
+        long start = System.nanoTime();
+        int corrupt = scanRecords((id, offset, length) -> {
+            if (fitsIndex(offset, length)) {
+                recordIndex.put(id, pack(offset, length));
+            } else {
+                System.err.println("Skipping media record " + id + " of " + length + " bytes at offset " + offset
+                        + ": too large to index");
+            }
+        });
+        System.out.println("Indexed " + recordIndex.size() + " media items in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms (" + corrupt + " corrupt)");
+
+        try {
+            if (corrupt > 0 || !checksummed || !deflated || !DurableFiles.endsWithNewline(Paths.get(mediaFile))) {
+                awaitDurable(rewriteFile());
+            }
+        } catch (IOException e) {
+            System.err.println("Error checking media file: " + e.getMessage());
+        }
+    }
+
+    private static boolean fitsIndex(long offset, long length) {
+        return offset >= 0 && offset <= MAX_OFFSET && length >= 0 && length <= MAX_RECORD_LENGTH;
+    }
+
+    /**
+     * Packs a record position into an index entry.
+     *
+     * @param offset Byte offset of the record
+     * @param length Length of the record in bytes
+     * @return Index entry
+     * @throws IllegalArgumentException if the offset or length does not fit
+     */
+    private static long pack(long offset, long length) {
+        if (!fitsIndex(offset, length)) {
+            throw new IllegalArgumentException("Record of " + length + " bytes at offset " + offset
+                    + " does not fit an index entry");
+        }
+        return (offset << LENGTH_BITS) | length;
+    }
+
+    private static long offsetOf(long entry) {
+        return entry >>> LENGTH_BITS;
+    }
+
+    private static int lengthOf(long entry) {
+        return (int) (entry & ((1L << LENGTH_BITS) - 1));
+    }
+
+    /**
+     * Visits every record of the file after the header, passing its ID and
+     * byte position. Newlines inside quoted fields do not end a record.
+     * If the header has the checksum column, records failing verification
+     * are skipped.
+     *
+     * @param visitor Receives each record's ID, offset and length
+     * @return Number of records skipped as corrupt
+     */
+    private int scanRecords(RecordVisitor visitor) {
+        int corrupt = 0;
+        try (FileChannel channel = FileChannel.open(Paths.get(mediaFile), StandardOpenOption.READ)) {
+            ByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            boolean header = true;
+            boolean inQuotes = false;
+            int recordStart = 0;
+            int idEnd = -1;
+            for (int i = 0; i <= data.limit(); i++) {
+                byte b = i < data.limit() ? data.get(i) : (byte) '\n';
+                if (b == '"') {
+                    inQuotes = !inQuotes;
+                } else if (b == ',' && idEnd < 0 && !inQuotes) {
+                    idEnd = i;
+                } else if (b == '\n' && !inQuotes) {
+                    int recordEnd = i > recordStart && data.get(i - 1) == '\r' ? i - 1 : i;
+                    if (header) {
+                        byte[] line = new byte[recordEnd - recordStart];
+                        data.get(recordStart, line);
+                        String headerLine = new String(line, StandardCharsets.UTF_8);
+                        checksummed = RecordChecksum.isChecksummed(headerLine);
+                        deflated = MediaCsvFormat.isDeflated(headerLine);
+                    } else if (recordEnd > recordStart && checksummed
+                            && !checksum.verify(data, recordStart, recordEnd)) {
+                        corrupt++;
+                    } else if (recordEnd > recordStart && idEnd > recordStart) {
+                        byte[] id = new byte[idEnd - recordStart];
+                        data.get(recordStart, id);
+                        visitor.visit(new String(id, StandardCharsets.UTF_8), recordStart, recordEnd - recordStart);
+                    }
+                    header = false;
+                    recordStart = i + 1;
+                    idEnd = -1;
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error scanning media file: " + e.getMessage());
+        }
+        return corrupt;
+    }
+
+    /**
+     * Reads and parses the record at the given index entry.
+     *
+     * @param entry Packed offset and length
+     * @return Parsed MediaItem, or null if the record cannot be parsed
+     */
+    private MediaItem readRecord(long entry) {
+        try {
+            byte[] bytes = new byte[lengthOf(entry)];
+            file.seek(offsetOf(entry));
+            file.readFully(bytes);
+            return MediaCsvFormat.parse(tokenizer.reset(new String(bytes, StandardCharsets.UTF_8)), deflated);
+        } catch (IOException e) {
+            System.err.println("Error reading media record: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Looks up an item, parsing its record on first access.
+     *
+     * @param id Item ID
+     * @return MediaItem, or null if not found
+     */
+    private MediaItem load(String id) {
+        MediaItem item = parsedCache.get(id);
+        if (item != null) {
+            return item;
+        }
+
+        Long entry = recordIndex.get(id);
+        if (entry == null) {
+            return null;
+        }
+        item = readRecord(entry);
+        if (item != null) {
+            parsedCache.put(id, item);
+        }
+        return item;
+    }
+
+    /**
+     * Streams every live item of the file to a consumer without caching it.
+     * Superseded versions of a record are skipped.
+     *
+     * @param consumer Receives each item
+     */
+    private void forEachItem(Consumer<MediaItem> consumer) {
+        scanRecords((id, offset, length) -> {
+            Long entry = recordIndex.get(id);
+            if (entry != null && offsetOf(entry) == offset) {
+                MediaItem item = parsedCache.get(id);
+                if (item == null) {
+                    item = readRecord(entry);
+                }
+                if (item != null) {
+                    consumer.accept(item);
+                }
+            }
+        });
+    }
+
+    private List<MediaItem> collect(Predicate<MediaItem> filter) {
+        List<MediaItem> results = new ArrayList<>();
+        forEachItem(item -> {
+            if (filter.test(item)) {
+                results.add(item);
+            }
+        });
+        return results;
+    }
+
+    /**
+     * Appends checksummed records for the given items to the end of the file
+     * and points the index at them. Items whose record would be too large to
+     * index are skipped with an error. Called with the repository lock held;
+     * the caller waits for durability after releasing it.
+     *
+     * @param items Items to append, keyed by their current IDs
+     * @return Number of items appended
+     */
+    private int appendRecords(Collection<? extends MediaItem> items) {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            List<MediaItem> appended = new ArrayList<>();
+            List<Long> entries = new ArrayList<>();
+            long base = file.length();
+            for (MediaItem item : items) {
+                byte[] record = MediaCsvFormat.format(item.getId(), item, deflated).getBytes(StandardCharsets.UTF_8);
+                byte[] suffix = checksummed ? checksum.suffix(record) : new byte[0];
+                long offset = base + out.size();
+                long length = (long) record.length + suffix.length;
+                if (!fitsIndex(offset, length)) {
+                    System.err.println("Not saving media item " + item.getId() + ": its record of " + length
+                            + " bytes is too large to index");
+                    continue;
+                }
+                appended.add(item);
+                entries.add(pack(offset, length));
+                out.write(record);
+                out.write(suffix);
+                out.write(System.lineSeparator().getBytes(StandardCharsets.UTF_8));
+            }
+            if (appended.isEmpty()) {
+                return 0;
+            }
+
+            file.seek(base);
+            file.write(out.toByteArray());
+
+            for (int i = 0; i < appended.size(); i++) {
+                recordIndex.put(appended.get(i).getId(), entries.get(i));
+                parsedCache.put(appended.get(i).getId(), appended.get(i));
+            }
+            return appended.size();
+        } catch (IOException e) {
+            System.err.println("Error appending to media file: " + e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * Atomically rewrites the file with only the records still in the index,
+     * dropping deleted, superseded and corrupt records. Records of a file
+     * without checksums get one as they are copied, and records with plain
+     * descriptions are reformatted with compressed ones. Called with the
+     * repository lock held; the caller waits for durability after releasing it.
+     *
+     * @return Durability ticket, or -1 if the rewrite failed
+     */
+    private long rewriteFile() {
+        long ticket = -1;
+        Map<String, Long> rewritten = new HashMap<>();
+        List<String> unreadable = new ArrayList<>();
+        try {
+            ticket = DurableFiles.replaceBytes(Paths.get(mediaFile), out -> {
+                byte[] header = (RecordChecksum.header(MediaCsvFormat.HEADER) + System.lineSeparator())
+                        .getBytes(StandardCharsets.UTF_8);
+                byte[] newline = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+                out.write(header);
+                long position = header.length;
+                for (Map.Entry<String, Long> entry : recordIndex.entrySet()) {
+                    byte[] record;
+                    byte[] suffix;
+                    if (deflated) {
+                        record = new byte[lengthOf(entry.getValue())];
+                        file.seek(offsetOf(entry.getValue()));
+                        file.readFully(record);
+                        suffix = checksummed ? new byte[0] : checksum.suffix(record);
+                    } else {
+                        MediaItem item = readRecord(entry.getValue());
+                        if (item == null) {
+                            unreadable.add(entry.getKey());
+                            continue;
+                        }
+                        record = MediaCsvFormat.format(entry.getKey(), item, true).getBytes(StandardCharsets.UTF_8);
+                        suffix = checksum.suffix(record);
+                    }
+                    if (!fitsIndex(position, (long) record.length + suffix.length)) {
+                        // Keep the old file rather than drop the record
+                        throw new IOException("Record of " + entry.getKey() + " is too large to index");
+                    }
+                    out.write(record);
+                    out.write(suffix);
+                    out.write(newline);
+                    rewritten.put(entry.getKey(), pack(position, record.length + suffix.length));
+                    position += record.length + suffix.length + newline.length;
+                }
+                // Release the handle before the rename, which Windows refuses on open files
+                file.close();
+            });
+            recordIndex.putAll(rewritten);
+            recordIndex.keySet().removeAll(unreadable);
+            checksummed = true;
+            deflated = true;
+        } catch (IOException e) {
+            System.err.println("Error rewriting media file: " + e.getMessage());
+        }
+
+        try {
+            file.close();
+        } catch (IOException e) {
+            System.err.println("Error closing media file: " + e.getMessage());
+        }
+        openFile();
+        return ticket;
+    }
+
+    /**
+     * Registers the appended records with the fsync batcher.
+     *
+     * @return Durability ticket for the append
+     */
+    private long registerAppend() {
+        return FsyncBatcher.shared().register(Paths.get(mediaFile));
+    }
+
+    /**
+     * Waits until a write is as durable as the durability policy requires.
+     * Called after releasing the repository lock, so readers and other
+     * writers are not held up by the fsync. An interrupted wait still counts
+     * as a write made, only not confirmed durable yet.
+     *
+     * @param ticket Durability ticket, or -1 if nothing was written
+     * @return true if something was written
+     */
+    private static boolean awaitDurable(long ticket) {
+        if (ticket < 0) {
+            return false;
+        }
+        try {
+            FsyncBatcher.shared().awaitDurable(ticket);
+        } catch (IOException e) {
+            System.err.println("Media file written but not yet synced: " + e.getMessage());
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized List<MediaItem> searchByTitle(String title) {
+        String query = title.toLowerCase();
+        return collect(item -> item.getTitle() != null && item.getTitle().toLowerCase().contains(query));
+    }
+
+    @Override
+    public synchronized Optional<MediaItem> getById(String id) {
+        return Optional.ofNullable(load(id));
+    }
+
+    @Override
+    public synchronized Optional<Movie> getMovieById(String id) {
+        MediaItem item = load(id);
+        if (item instanceof Movie) {
+            return Optional.of((Movie) item);
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public synchronized Optional<TVShow> getTVShowById(String id) {
+        MediaItem item = load(id);
+        if (item instanceof TVShow) {
+            return Optional.of((TVShow) item);
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public synchronized Optional<Anime> getAnimeById(String id) {
+        MediaItem item = load(id);
+        if (item instanceof Anime) {
+            return Optional.of((Anime) item);
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public synchronized List<MediaItem> getByGenre(String genre) {
+        return collect(item -> item.getGenres() != null &&
+                item.getGenres().stream().anyMatch(g -> g.equalsIgnoreCase(genre)));
+    }
+
+    @Override
+    public synchronized List<MediaItem> getTopRated(int limit) {
+        return collect(item -> true).stream()
+                .sorted((a, b) -> Double.compare(b.getRating(), a.getRating()))
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public synchronized List<Movie> getLatestMovies(int limit) {
+        return collect(item -> item instanceof Movie).stream()
+                .map(item -> (Movie) item)
+                .filter(movie -> movie.getReleaseDate() != null && !movie.getReleaseDate().isEmpty())
+                .sorted((a, b) -> b.getReleaseDate().compareTo(a.getReleaseDate()))
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public synchronized List<TVShow> getLatestTVShows(int limit) {
+        return collect(item -> item instanceof TVShow).stream()
+                .map(item -> (TVShow) item)
+                .filter(tv -> tv.getReleaseDate() != null && !tv.getReleaseDate().isEmpty())
+                .sorted((a, b) -> b.getReleaseDate().compareTo(a.getReleaseDate()))
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public synchronized List<MediaItem> getAll() {
+        return collect(item -> true);
+    }
+
+    @Override
+    public synchronized List<MediaItem> getAllByIds(Collection<String> ids) {
+        List<MediaItem> results = new ArrayList<>();
+        for (String id : ids) {
+            MediaItem item = load(id);
+            if (item != null) {
+                results.add(item);
+            }
+        }
+        return results;
+    }
+
+    @Override
+    public boolean save(MediaItem mediaItem) {
+        if (mediaItem == null || mediaItem.getId() == null) {
+            return false;
+        }
+
+        long ticket;
+        synchronized (this) {
+            ticket = appendRecords(Collections.singletonList(mediaItem)) > 0 ? registerAppend() : -1;
+        }
+        return awaitDurable(ticket);
+    }
+
+    @Override
+    public int saveAll(Collection<? extends MediaItem> mediaItems) {
+        List<MediaItem> valid = new ArrayList<>();
+        for (MediaItem item : mediaItems) {
+            if (item != null && item.getId() != null) {
+                valid.add(item);
+            }
+        }
+
+        int appended;
+        long ticket;
+        synchronized (this) {
+            appended = valid.isEmpty() ? 0 : appendRecords(valid);
+            ticket = appended > 0 ? registerAppend() : -1;
+        }
+        return awaitDurable(ticket) ? appended : 0;
+    }
+
+    @Override
+    public boolean update(MediaItem mediaItem) {
+        long ticket = -1;
+        synchronized (this) {
+            if (mediaItem != null && recordIndex.containsKey(mediaItem.getId())
+                    && appendRecords(Collections.singletonList(mediaItem)) > 0) {
+                ticket = registerAppend();
+            }
+        }
+        return awaitDurable(ticket);
+    }
+
+    @Override
+    public boolean delete(String id) {
+        return deleteAll(Collections.singletonList(id)) > 0;
+    }
+
+    @Override
+    public int deleteAll(Collection<String> ids) {
+        int deleted = 0;
+        long ticket = -1;
+        synchronized (this) {
+            for (String id : ids) {
+                parsedCache.remove(id);
+                if (recordIndex.remove(id) != null) {
+                    deleted++;
+                }
+            }
+
+            if (deleted > 0) {
+                ticket = rewriteFile();
+            }
+        }
+        awaitDurable(ticket);
+        return deleted;
+    }
+
+    /**
+     * Receives the position of each record found by a file scan.
+     */
+    private interface RecordVisitor {
+        void visit(String id, long offset, int length);
+    }
+}
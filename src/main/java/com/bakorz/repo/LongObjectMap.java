@@ -0,0 +1,173 @@
+package com.bakorz.repo;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from primitive long keys to objects.
+ * Keys and values live in two parallel arrays probed linearly, so a lookup
+ * neither boxes its key nor follows entry objects, and the map adds no
+ * objects per entry for the garbage collector to trace.
+ * Removal shifts later entries of the probe run back instead of leaving
+ * tombstones, so lookups never slow down after many deletes.
+ * Null values are not supported; get returns null for absent keys.
+ * Instances are not thread-safe; the owning repository synchronizes access.
+ *
+ * @param <V> Type of the values
+ * @author Bakorz
+ * @version 1.0
+ */
+final class LongObjectMap<V> {
+    /** Largest fraction of slots in use before the table grows */
+    private static final double MAX_LOAD = 0.5;
+
+    /** Key of each slot, meaningful only where the value is not null */
+    private long[] keys;
+
+    /** Value of each slot, null for free slots */
+    private Object[] values;
+
+    /** Number of entries */
+    private int size;
+
+    /** Number of entries at which the table grows */
+    private int growAt;
+
+    /**
+     * Creates an empty map.
+     */
+    LongObjectMap() {
+        this(16);
+    }
+
+    /**
+     * Creates an empty map sized for the given number of entries.
+     *
+     * @param expected Number of entries expected
+     */
+    LongObjectMap(int expected) {
+        int capacity = 16;
+        while (capacity * MAX_LOAD < expected) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new Object[capacity];
+        growAt = (int) (capacity * MAX_LOAD);
+    }
+
+    /**
+     * Spreads the bits of a key over the slot index, so keys that differ only
+     * in their high bits (such as the same ID under two sources) do not
+     * collide.
+     */
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private int slotOf(long key) {
+        int mask = keys.length - 1;
+        int slot = mix(key) & mask;
+        while (values[slot] != null && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Gets the value stored under a key.
+     *
+     * @param key Key to look up
+     * @return Value, or null if the key is absent
+     */
+    @SuppressWarnings("unchecked")
+    V get(long key) {
+        return (V) values[slotOf(key)];
+    }
+
+    /**
+     * Stores a value under a key, replacing any previous value.
+     *
+     * @param key   Key to store under
+     * @param value Value to store, not null
+     * @return Previous value, or null if the key was absent
+     */
+    @SuppressWarnings("unchecked")
+    V put(long key, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Null values are not supported");
+        }
+
+        int slot = slotOf(key);
+        V previous = (V) values[slot];
+        keys[slot] = key;
+        values[slot] = value;
+        if (previous == null && ++size > growAt) {
+            rehash(keys.length * 2);
+        }
+        return previous;
+    }
+
+    /**
+     * Removes the value stored under a key.
+     *
+     * @param key Key to remove
+     * @return Removed value, or null if the key was absent
+     */
+    @SuppressWarnings("unchecked")
+    V remove(long key) {
+        int slot = slotOf(key);
+        V removed = (V) values[slot];
+        if (removed == null) {
+            return null;
+        }
+
+        // Move back entries whose probe run passes through the freed slot
+        int mask = keys.length - 1;
+        int free = slot;
+        for (int next = (free + 1) & mask; values[next] != null; next = (next + 1) & mask) {
+            int home = mix(keys[next]) & mask;
+            if (((next - home) & mask) >= ((next - free) & mask)) {
+                keys[free] = keys[next];
+                values[free] = values[next];
+                free = next;
+            }
+        }
+        values[free] = null;
+        size--;
+        return removed;
+    }
+
+    /**
+     * Gets the number of entries.
+     *
+     * @return Number of entries
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Removes all entries.
+     */
+    void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != null) {
+                int slot = slotOf(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+}
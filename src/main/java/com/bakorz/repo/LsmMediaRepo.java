@@ -0,0 +1,320 @@
+package com.bakorz.repo;
+
+import com.bakorz.model.*;
+import com.bakorz.repo.lsm.LsmStore;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * LSM-tree backed implementation of MediaRepo interface.
+ * Stores each media item as one CSV record (the same format as data/media.csv)
+ * in an embedded LsmStore under its cache key, in the data/media-lsm directory.
+ * Point reads go through the store's memtable, bloom filters and block
+ * indexes; writes are appended to its log, so saving a batch of items costs
+ * one sequential write. Keys are kept sorted, so all items from one source can
+ * be read with a prefix scan (for example "MAL:" or "TMDB_MOVIE:").
+ * Imports data/media.csv, with any delta segments merged into it, the first
+ * time if the store is empty.
+ *
+ * @author Bakorz
+ * @version 1.0
+ */
+public class LsmMediaRepo implements MediaRepo {
+    /** Directory of the LSM store */
+    private static final String STORE_DIRECTORY = "data/media-lsm";
+
+    /** Path to the legacy CSV file imported on first start */
+    private static final String LEGACY_FILE = "data/media.csv";
+
+    /** Underlying key-value store, keyed by cache key */
+    private final LsmStore store;
+
+    /** Reused tokenizer for parsing stored records */
+    private final CsvTokenizer tokenizer;
+
+    /**
+     * Constructor that opens the default store and imports data/media.csv the
+     * first time.
+     */
+    public LsmMediaRepo() {
+        this(STORE_DIRECTORY);
+        importLegacyFile();
+    }
+
+    /**
+     * Constructor that opens the store in the given directory.
+     *
+     * @param directory Directory of the LSM store
+     */
+    public LsmMediaRepo(String directory) {
+        this.tokenizer = new CsvTokenizer(',');
+        try {
+            this.store = new LsmStore(Paths.get(directory));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error opening media store: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Imports items from the legacy CSV file when starting with an empty store.
+     * Called from the constructor, so it writes through the private putAll
+     * rather than the overridable saveAll.
+     */
+    private void importLegacyFile() {
+        File file = new File(LEGACY_FILE);
+        if (!store.isEmpty()) {
+            return;
+        }
+        MediaSegments.fold(file.toPath());
+        if (!file.exists()) {
+            return;
+        }
+
+        try {
+            ParallelCsvLoader.Result<MediaItem> result = ParallelCsvLoader.byHeader(MediaCsvFormat::parser,
+                    MediaItem::getId).load(file);
+            putAll(result.records.values());
+            System.out.println("Imported " + result.records.size() + " media items into " + STORE_DIRECTORY);
+        } catch (IOException e) {
+            System.err.println("Error importing media file: " + e.getMessage());
+        }
+    }
+
+    private MediaItem decode(byte[] value) {
+        return MediaCsvFormat.parse(tokenizer.reset(new String(value, StandardCharsets.UTF_8)));
+    }
+
+    private static byte[] encode(String key, MediaItem item) {
+        return MediaCsvFormat.format(key, item).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Looks up and parses an item.
+     *
+     * @param id Cache key
+     * @return MediaItem, or null if not found
+     */
+    private MediaItem load(String id) {
+        try {
+            byte[] value = store.get(id);
+            return value == null ? null : decode(value);
+        } catch (IOException e) {
+            System.err.println("Error reading media store: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private List<MediaItem> collect(String prefix, Predicate<MediaItem> filter) {
+        List<MediaItem> results = new ArrayList<>();
+        store.scan(prefix, (key, value) -> {
+            MediaItem item = decode(value);
+            if (item != null && filter.test(item)) {
+                results.add(item);
+            }
+        });
+        return results;
+    }
+
+    /**
+     * Retrieves all items whose cache key starts with a prefix, in key order,
+     * for example every anime with "MAL:".
+     *
+     * @param prefix Cache key prefix
+     * @return List of matching MediaItems
+     */
+    public synchronized List<MediaItem> getByKeyPrefix(String prefix) {
+        return collect(prefix, item -> true);
+    }
+
+    @Override
+    public synchronized List<MediaItem> searchByTitle(String title) {
+        String query = title.toLowerCase();
+        return collect("", item -> item.getTitle() != null && item.getTitle().toLowerCase().contains(query));
+    }
+
+    @Override
+    public synchronized Optional<MediaItem> getById(String id) {
+        return Optional.ofNullable(load(id));
+    }
+
+    @Override
+    public synchronized Optional<Movie> getMovieById(String id) {
+        MediaItem item = load(id);
+        if (item instanceof Movie) {
+            return Optional.of((Movie) item);
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public synchronized Optional<TVShow> getTVShowById(String id) {
+        MediaItem item = load(id);
+        if (item instanceof TVShow) {
+            return Optional.of((TVShow) item);
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public synchronized Optional<Anime> getAnimeById(String id) {
+        MediaItem item = load(id);
+        if (item instanceof Anime) {
+            return Optional.of((Anime) item);
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public synchronized List<MediaItem> getByGenre(String genre) {
+        return collect("", item -> item.getGenres() != null &&
+                item.getGenres().stream().anyMatch(g -> g.equalsIgnoreCase(genre)));
+    }
+
+    @Override
+    public synchronized List<MediaItem> getTopRated(int limit) {
+        return collect("", item -> true).stream()
+                .sorted((a, b) -> Double.compare(b.getRating(), a.getRating()))
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public synchronized List<Movie> getLatestMovies(int limit) {
+        return collect("", item -> item instanceof Movie).stream()
+                .map(item -> (Movie) item)
+                .filter(movie -> movie.getReleaseDate() != null && !movie.getReleaseDate().isEmpty())
+                .sorted((a, b) -> b.getReleaseDate().compareTo(a.getReleaseDate()))
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public synchronized List<TVShow> getLatestTVShows(int limit) {
+        return collect("", item -> item instanceof TVShow).stream()
+                .map(item -> (TVShow) item)
+                .filter(tv -> tv.getReleaseDate() != null && !tv.getReleaseDate().isEmpty())
+                .sorted((a, b) -> b.getReleaseDate().compareTo(a.getReleaseDate()))
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public synchronized List<MediaItem> getAll() {
+        return collect("", item -> true);
+    }
+
+    @Override
+    public synchronized List<MediaItem> getAllByIds(Collection<String> ids) {
+        List<MediaItem> results = new ArrayList<>();
+        for (String id : ids) {
+            MediaItem item = load(id);
+            if (item != null) {
+                results.add(item);
+            }
+        }
+        return results;
+    }
+
+    @Override
+    public synchronized boolean save(MediaItem mediaItem) {
+        return saveAll(Collections.singletonList(mediaItem)) == 1;
+    }
+
+    /**
+     * Saves a batch of media items with a single log append.
+     *
+     * @param mediaItems MediaItems to save
+     * @return Number of items saved
+     */
+    @Override
+    public synchronized int saveAll(Collection<? extends MediaItem> mediaItems) {
+        return putAll(mediaItems);
+    }
+
+    /**
+     * Writes a batch of media items to the store with a single log append.
+     *
+     * @param mediaItems MediaItems to write; null items and items without an
+     *                   ID are skipped
+     * @return Number of items written
+     */
+    private int putAll(Collection<? extends MediaItem> mediaItems) {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        for (MediaItem item : mediaItems) {
+            if (item != null && item.getId() != null) {
+                entries.put(item.getId(), encode(item.getId(), item));
+            }
+        }
+
+        if (entries.isEmpty()) {
+            return 0;
+        }
+        try {
+            store.putAll(entries);
+            return entries.size();
+        } catch (IOException e) {
+            System.err.println("Error writing media store: " + e.getMessage());
+            return 0;
+        }
+    }
+
+    @Override
+    public synchronized boolean update(MediaItem mediaItem) {
+        if (mediaItem == null || load(mediaItem.getId()) == null) {
+            return false;
+        }
+        return save(mediaItem);
+    }
+
+    @Override
+    public synchronized boolean delete(String id) {
+        return deleteAll(Collections.singletonList(id)) == 1;
+    }
+
+    /**
+     * Deletes a batch of media items with a single log append.
+     *
+     * @param ids Media item IDs to delete
+     * @return Number of items deleted
+     */
+    @Override
+    public synchronized int deleteAll(Collection<String> ids) {
+        List<String> present = new ArrayList<>();
+        for (String id : ids) {
+            try {
+                if (store.get(id) != null) {
+                    present.add(id);
+                }
+            } catch (IOException e) {
+                System.err.println("Error reading media store: " + e.getMessage());
+            }
+        }
+
+        if (present.isEmpty()) {
+            return 0;
+        }
+        try {
+            store.deleteAll(present);
+            return present.size();
+        } catch (IOException e) {
+            System.err.println("Error writing media store: " + e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * Forces logged writes to disk. Called on application shutdown.
+     */
+    @Override
+    public void flush() {
+        try {
+            store.sync();
+        } catch (IOException e) {
+            System.err.println("Error syncing media store: " + e.getMessage());
+        }
+    }
+}
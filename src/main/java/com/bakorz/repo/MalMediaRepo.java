@@ -1,184 +1,344 @@
 package com.bakorz.repo;
 
 import com.bakorz.model.*;
-import com.google.gson.*;
+import com.google.gson.stream.JsonReader;
 import java.io.*;
 import java.net.*;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.*;
 
 /**
  * MyAnimeList API implementation of MediaRepo interface.
  * Connects to MyAnimeList API v2 to fetch anime data.
  * Requires a client ID for authentication.
  * Provides search, retrieval, and ranking operations for anime.
- * Converts JSON responses to Anime model objects.
+ * Decodes JSON responses straight into Anime model objects as they are read.
  * 
  * @author Bakorz
  * @version 1.0
  */
 public class MalMediaRepo implements MediaRepo {
+    /** Maximum number of concurrent requests issued by a bulk fetch */
+    private static final int MAX_PARALLEL_FETCHES = 4;
+
+    /** Shared bounded pool used for bulk fetches */
+    private static final BulkFetcher FETCHER = new BulkFetcher("mal-fetch", MAX_PARALLEL_FETCHES);
+
     /** Base URL for MyAnimeList API */
     private static final String MAL_API_BASE = "https://api.myanimelist.net/v2/";
 
+    /** Fields requested for each anime of a search */
+    private static final String SEARCH_FIELDS = "id,title,main_picture,alternative_titles,start_date,end_date,"
+            + "synopsis,mean,rank,popularity,num_list_users,num_scoring_users,nsfw,genres,"
+            + "media_type,status,num_episodes,start_season,source,studios";
+
+    /** Fields requested for a single anime */
+    private static final String DETAIL_FIELDS = SEARCH_FIELDS + ",average_episode_duration";
+
+    /** Fields requested for each anime of a ranking */
+    private static final String RANKING_FIELDS = "id,title,main_picture,synopsis,mean,rank,popularity,genres,"
+            + "media_type,status,num_episodes,start_season,source,studios";
+
     /** MAL API client ID for authentication */
     private String clientId;
 
-    /** JSON parser/serializer */
-    private Gson gson;
+    /** Pooled HTTP client the API requests go through */
+    private final HttpTransport transport;
+
+    /** Base URL the API endpoints are appended to */
+    private final String apiBase;
+
+    /** Non-blocking view of this repository */
+    private final Async async;
 
     /**
      * Constructor that initializes the repository with API credentials.
+     * Requests go through the shared HTTP transport.
      * 
      * @param clientId MyAnimeList API client ID
      */
     public MalMediaRepo(String clientId) {
+        this(clientId, HttpTransport.shared());
+    }
+
+    /**
+     * Constructor that initializes the repository with API credentials and
+     * the HTTP transport to send requests through.
+     * 
+     * @param clientId MyAnimeList API client ID
+     * @param transport HTTP transport, usually shared with other repositories
+     */
+    public MalMediaRepo(String clientId, HttpTransport transport) {
+        this(clientId, transport, MAL_API_BASE);
+    }
+
+    /**
+     * Constructor that sends the API requests to another base URL, such as
+     * a proxy or a local stand-in for the MAL API.
+     * 
+     * @param clientId MyAnimeList API client ID
+     * @param transport HTTP transport, usually shared with other repositories
+     * @param apiBase   Base URL the API endpoints are appended to
+     */
+    public MalMediaRepo(String clientId, HttpTransport transport, String apiBase) {
         this.clientId = clientId;
-        this.gson = new Gson();
+        this.transport = transport;
+        this.apiBase = apiBase;
+        this.async = new Async();
     }
 
     /**
-     * Makes an HTTP GET request to the MAL API.
+     * Returns a non-blocking view of this repository, whose queries send
+     * their requests through the same transport without waiting for them.
+     * 
+     * @return Asynchronous view of this repository
+     */
+    public Async async() {
+        return async;
+    }
+
+    /**
+     * Makes an HTTP GET request to the MAL API through the HTTP transport.
      * Includes client ID in request headers for authentication.
      * 
+     * @param <T>      Decoded type
      * @param endpoint API endpoint path (appended to base URL)
-     * @return JSON response as string
+     * @param decoder  Decoder of the JSON response
+     * @return Decoded response
      * @throws IOException if request fails
      */
-    private String makeApiRequest(String endpoint) throws IOException {
-        URI uri = URI.create(MAL_API_BASE + endpoint);
-        URL url = uri.toURL();
-        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-        conn.setRequestMethod("GET");
-        conn.setRequestProperty("X-MAL-CLIENT-ID", clientId);
-        conn.setRequestProperty("Accept", "application/json");
-
-        if (conn.getResponseCode() != 200) {
-            throw new IOException("Failed : HTTP error code : " + conn.getResponseCode());
-        }
-
-        BufferedReader br = new BufferedReader(new InputStreamReader(conn.getInputStream()));
-        StringBuilder response = new StringBuilder();
-        String line;
-
-        while ((line = br.readLine()) != null) {
-            response.append(line);
-        }
+    private <T> T makeApiRequest(String endpoint, HttpTransport.BodyDecoder<T> decoder) throws IOException {
+        return transport.get(URI.create(apiBase + endpoint), decoder,
+                "X-MAL-CLIENT-ID", clientId,
+                "Accept", "application/json");
+    }
 
-        conn.disconnect();
-        return response.toString();
+    /**
+     * Makes an HTTP GET request to the MAL API without blocking.
+     * 
+     * @param <T>      Decoded type
+     * @param endpoint API endpoint path (appended to base URL)
+     * @param decoder  Decoder of the JSON response
+     * @return Future of the decoded response
+     */
+    private <T> CompletableFuture<T> makeApiRequestAsync(String endpoint, HttpTransport.BodyDecoder<T> decoder) {
+        return transport.getAsync(URI.create(apiBase + endpoint), decoder,
+                "X-MAL-CLIENT-ID", clientId,
+                "Accept", "application/json");
     }
 
-    private Anime parseAnimeFromJson(JsonObject animeJson) {
+    /**
+     * Reads an anime object, skipping fields that are not used.
+     * 
+     * @param in Reader positioned before the object
+     * @return Decoded anime
+     * @throws IOException if the JSON cannot be read
+     */
+    private static Anime readAnime(JsonReader in) throws IOException {
         Anime anime = new Anime();
-
-        anime.setId(String.valueOf(animeJson.get("id").getAsInt()));
-        anime.setTitle(animeJson.get("title").getAsString());
-        anime.setMalId(animeJson.get("id").getAsInt());
-
-        if (animeJson.has("synopsis") && !animeJson.get("synopsis").isJsonNull()) {
-            anime.setDescription(animeJson.get("synopsis").getAsString());
-        }
-
-        if (animeJson.has("mean") && !animeJson.get("mean").isJsonNull()) {
-            anime.setRating(animeJson.get("mean").getAsDouble());
-            anime.setMalScore(animeJson.get("mean").getAsDouble());
-        }
-
-        if (animeJson.has("rank") && !animeJson.get("rank").isJsonNull()) {
-            anime.setMalRank(animeJson.get("rank").getAsInt());
-        }
-        if (animeJson.has("popularity") && !animeJson.get("popularity").isJsonNull()) {
-            anime.setMalPopularity(animeJson.get("popularity").getAsInt());
-        }
-
-        if (animeJson.has("main_picture")) {
-            JsonObject picture = animeJson.getAsJsonObject("main_picture");
-            if (picture.has("medium")) {
-                anime.setPosterUrl(picture.get("medium").getAsString());
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (JsonStreams.skipNull(in)) {
+                continue;
             }
-            if (picture.has("large")) {
-                anime.setBackdropUrl(picture.get("large").getAsString());
+            switch (name) {
+                case "id":
+                    int id = in.nextInt();
+                    anime.setId(String.valueOf(id));
+                    anime.setMalId(id);
+                    break;
+                case "title":
+                    anime.setTitle(in.nextString());
+                    break;
+                case "synopsis":
+                    anime.setDescription(in.nextString());
+                    break;
+                case "mean":
+                    double mean = in.nextDouble();
+                    anime.setRating(mean);
+                    anime.setMalScore(mean);
+                    break;
+                case "rank":
+                    anime.setMalRank(in.nextInt());
+                    break;
+                case "popularity":
+                    anime.setMalPopularity(in.nextInt());
+                    break;
+                case "main_picture":
+                    readPicture(in, anime);
+                    break;
+                case "genres":
+                    anime.setGenres(JsonStreams.readNames(in));
+                    break;
+                case "media_type":
+                    anime.setAnimeType(in.nextString().toUpperCase());
+                    break;
+                case "status":
+                    anime.setStatus(in.nextString());
+                    break;
+                case "num_episodes":
+                    anime.setEpisodes(in.nextInt());
+                    break;
+                case "start_date":
+                    String startDate = in.nextString();
+                    anime.setReleaseDate(startDate);
+                    anime.setAired(startDate);
+                    break;
+                case "start_season":
+                    readSeason(in, anime);
+                    break;
+                case "source":
+                    anime.setSource(in.nextString());
+                    break;
+                case "studios":
+                    anime.setStudios(JsonStreams.readNames(in));
+                    break;
+                case "average_episode_duration":
+                    anime.setDuration(in.nextInt() / 60); // Convert to minutes
+                    break;
+                default:
+                    in.skipValue();
+                    break;
             }
         }
+        in.endObject();
+        return anime;
+    }
 
-        if (animeJson.has("genres")) {
-            List<String> genres = new ArrayList<>();
-            JsonArray genresArray = animeJson.getAsJsonArray("genres");
-            for (JsonElement genreElement : genresArray) {
-                JsonObject genreObj = genreElement.getAsJsonObject();
-                genres.add(genreObj.get("name").getAsString());
+    private static void readPicture(JsonReader in, Anime anime) throws IOException {
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (JsonStreams.skipNull(in)) {
+                continue;
+            }
+            if (name.equals("medium")) {
+                anime.setPosterUrl(in.nextString());
+            } else if (name.equals("large")) {
+                anime.setBackdropUrl(in.nextString());
+            } else {
+                in.skipValue();
             }
-            anime.setGenres(genres);
-        }
-
-        if (animeJson.has("media_type") && !animeJson.get("media_type").isJsonNull()) {
-            anime.setAnimeType(animeJson.get("media_type").getAsString().toUpperCase());
-        }
-
-        if (animeJson.has("status") && !animeJson.get("status").isJsonNull()) {
-            anime.setStatus(animeJson.get("status").getAsString());
         }
+        in.endObject();
+    }
 
-        if (animeJson.has("num_episodes") && !animeJson.get("num_episodes").isJsonNull()) {
-            anime.setEpisodes(animeJson.get("num_episodes").getAsInt());
+    private static void readSeason(JsonReader in, Anime anime) throws IOException {
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (JsonStreams.skipNull(in)) {
+                continue;
+            }
+            if (name.equals("season")) {
+                anime.setSeason(in.nextString());
+            } else if (name.equals("year")) {
+                anime.setYear(in.nextInt());
+            } else {
+                in.skipValue();
+            }
         }
+        in.endObject();
+    }
 
-        if (animeJson.has("start_date") && !animeJson.get("start_date").isJsonNull()) {
-            String startDate = animeJson.get("start_date").getAsString();
-            anime.setReleaseDate(startDate);
-            anime.setAired(startDate);
-        }
+    /**
+     * Decodes a response holding a single anime.
+     * 
+     * @param body JSON response
+     * @return Decoded anime
+     * @throws IOException if the JSON cannot be read
+     */
+    static Anime decodeAnime(InputStream body) throws IOException {
+        return readAnime(JsonStreams.reader(body));
+    }
 
-        if (animeJson.has("start_season")) {
-            JsonObject season = animeJson.getAsJsonObject("start_season");
-            if (season.has("season")) {
-                anime.setSeason(season.get("season").getAsString());
+    /**
+     * Decodes a response listing anime as data[].node objects, skipping the
+     * paging links and ranking details.
+     * 
+     * @param body JSON response
+     * @return Decoded anime, in response order
+     * @throws IOException if the JSON cannot be read
+     */
+    static List<Anime> decodeAnimeList(InputStream body) throws IOException {
+        JsonReader in = JsonStreams.reader(body);
+        List<Anime> results = new ArrayList<>();
+        in.beginObject();
+        while (in.hasNext()) {
+            if (!in.nextName().equals("data")) {
+                in.skipValue();
+                continue;
+            }
+            if (JsonStreams.skipNull(in)) {
+                continue;
             }
-            if (season.has("year")) {
-                anime.setYear(season.get("year").getAsInt());
+            in.beginArray();
+            while (in.hasNext()) {
+                in.beginObject();
+                while (in.hasNext()) {
+                    if (in.nextName().equals("node")) {
+                        results.add(readAnime(in));
+                    } else {
+                        in.skipValue();
+                    }
+                }
+                in.endObject();
             }
+            in.endArray();
         }
+        in.endObject();
+        return results;
+    }
 
-        if (animeJson.has("source") && !animeJson.get("source").isJsonNull()) {
-            anime.setSource(animeJson.get("source").getAsString());
-        }
+    /**
+     * Builds the endpoint of a title search.
+     * 
+     * @param title Title search query
+     * @return Endpoint path and query
+     */
+    private static String searchEndpoint(String title) {
+        return "anime?q=" + URLEncoder.encode(title, StandardCharsets.UTF_8) + "&limit=10&fields=" + SEARCH_FIELDS;
+    }
 
-        if (animeJson.has("studios")) {
-            List<String> studios = new ArrayList<>();
-            JsonArray studiosArray = animeJson.getAsJsonArray("studios");
-            for (JsonElement studioElement : studiosArray) {
-                JsonObject studioObj = studioElement.getAsJsonObject();
-                studios.add(studioObj.get("name").getAsString());
-            }
-            anime.setStudios(studios);
-        }
+    /**
+     * Builds the endpoint of a single anime.
+     * 
+     * @param id MAL ID
+     * @return Endpoint path and query
+     */
+    private static String animeEndpoint(String id) {
+        return "anime/" + id + "?fields=" + DETAIL_FIELDS;
+    }
 
-        if (animeJson.has("average_episode_duration") && !animeJson.get("average_episode_duration").isJsonNull()) {
-            int durationSeconds = animeJson.get("average_episode_duration").getAsInt();
-            anime.setDuration(durationSeconds / 60); // Convert to minutes
-        }
+    /**
+     * Builds the endpoint of a genre search.
+     * 
+     * @param genre Genre name
+     * @return Endpoint path and query
+     */
+    private static String genreEndpoint(String genre) {
+        return "anime?q=" + URLEncoder.encode(genre, StandardCharsets.UTF_8) + "&limit=20";
+    }
 
-        return anime;
+    /**
+     * Builds the endpoint of a page of a ranking.
+     * 
+     * @param rankingType MAL ranking type, such as "all" or "airing"
+     * @param limit       Maximum number of results
+     * @param offset      Starting position for pagination
+     * @return Endpoint path and query
+     */
+    private static String rankingEndpoint(String rankingType, int limit, int offset) {
+        return "anime/ranking?ranking_type=" + rankingType + "&limit=" + limit
+                + (offset > 0 ? "&offset=" + offset : "") + "&fields=" + RANKING_FIELDS;
     }
 
     @Override
     public List<MediaItem> searchByTitle(String title) {
         try {
-            String response = makeApiRequest("anime?q=" + URLEncoder.encode(title, "UTF-8") +
-                    "&limit=10&fields=id,title,main_picture,alternative_titles,start_date,end_date," +
-                    "synopsis,mean,rank,popularity,num_list_users,num_scoring_users,nsfw,genres," +
-                    "media_type,status,num_episodes,start_season,source,studios");
-
-            JsonObject jsonResponse = gson.fromJson(response, JsonObject.class);
-            JsonArray dataArray = jsonResponse.getAsJsonArray("data");
-
-            List<MediaItem> results = new ArrayList<>();
-            for (JsonElement element : dataArray) {
-                JsonObject nodeObj = element.getAsJsonObject().getAsJsonObject("node");
-                results.add(parseAnimeFromJson(nodeObj));
-            }
-
-            return results;
+            return new ArrayList<>(makeApiRequest(searchEndpoint(title), MalMediaRepo::decodeAnimeList));
         } catch (IOException e) {
             System.err.println("Error searching anime: " + e.getMessage());
             return new ArrayList<>();
@@ -203,13 +363,7 @@ public class MalMediaRepo implements MediaRepo {
     @Override
     public Optional<Anime> getAnimeById(String id) {
         try {
-            String response = makeApiRequest("anime/" + id +
-                    "?fields=id,title,main_picture,alternative_titles,start_date,end_date," +
-                    "synopsis,mean,rank,popularity,num_list_users,num_scoring_users,nsfw,genres," +
-                    "media_type,status,num_episodes,start_season,source,studios,average_episode_duration");
-
-            JsonObject animeJson = gson.fromJson(response, JsonObject.class);
-            return Optional.of(parseAnimeFromJson(animeJson));
+            return Optional.of(makeApiRequest(animeEndpoint(id), MalMediaRepo::decodeAnime));
         } catch (IOException e) {
             System.err.println("Error getting anime by ID: " + e.getMessage());
             return Optional.empty();
@@ -219,18 +373,7 @@ public class MalMediaRepo implements MediaRepo {
     @Override
     public List<MediaItem> getByGenre(String genre) {
         try {
-            String response = makeApiRequest("anime?q=" + URLEncoder.encode(genre, "UTF-8") + "&limit=20");
-
-            JsonObject jsonResponse = gson.fromJson(response, JsonObject.class);
-            JsonArray dataArray = jsonResponse.getAsJsonArray("data");
-
-            List<MediaItem> results = new ArrayList<>();
-            for (JsonElement element : dataArray) {
-                JsonObject nodeObj = element.getAsJsonObject().getAsJsonObject("node");
-                results.add(parseAnimeFromJson(nodeObj));
-            }
-
-            return results;
+            return new ArrayList<>(makeApiRequest(genreEndpoint(genre), MalMediaRepo::decodeAnimeList));
         } catch (IOException e) {
             System.err.println("Error searching by genre: " + e.getMessage());
             return new ArrayList<>();
@@ -244,20 +387,7 @@ public class MalMediaRepo implements MediaRepo {
 
     public List<MediaItem> getTopRated(int limit, int offset) {
         try {
-            String response = makeApiRequest("anime/ranking?ranking_type=all&limit=" + limit + "&offset=" + offset +
-                    "&fields=id,title,main_picture,synopsis,mean,rank,popularity,genres," +
-                    "media_type,status,num_episodes,start_season,source,studios");
-
-            JsonObject jsonResponse = gson.fromJson(response, JsonObject.class);
-            JsonArray dataArray = jsonResponse.getAsJsonArray("data");
-
-            List<MediaItem> results = new ArrayList<>();
-            for (JsonElement element : dataArray) {
-                JsonObject nodeObj = element.getAsJsonObject().getAsJsonObject("node");
-                results.add(parseAnimeFromJson(nodeObj));
-            }
-
-            return results;
+            return new ArrayList<>(makeApiRequest(rankingEndpoint("all", limit, offset), MalMediaRepo::decodeAnimeList));
         } catch (IOException e) {
             System.err.println("Error getting top rated anime: " + e.getMessage());
             return new ArrayList<>();
@@ -286,21 +416,7 @@ public class MalMediaRepo implements MediaRepo {
 
     public List<Anime> getLatestAnime(int limit) {
         try {
-            String response = makeApiRequest("anime/ranking?ranking_type=airing&limit=" + limit +
-                    "&fields=id,title,main_picture,synopsis,mean,rank,popularity,genres," +
-                    "media_type,status,num_episodes,start_season,source,studios");
-
-            JsonObject jsonResponse = gson.fromJson(response, JsonObject.class);
-            JsonArray dataArray = jsonResponse.getAsJsonArray("data");
-
-            List<Anime> results = new ArrayList<>();
-            for (JsonElement element : dataArray) {
-                JsonObject nodeObj = element.getAsJsonObject().getAsJsonObject("node");
-                Anime anime = parseAnimeFromJson(nodeObj);
-                results.add(anime);
-            }
-
-            return results;
+            return makeApiRequest(rankingEndpoint("airing", limit, 0), MalMediaRepo::decodeAnimeList);
         } catch (IOException e) {
             System.err.println("Error getting latest anime: " + e.getMessage());
             return new ArrayList<>();
@@ -316,4 +432,124 @@ public class MalMediaRepo implements MediaRepo {
     public boolean delete(String id) {
         throw new UnsupportedOperationException("Cannot delete from MAL API");
     }
+
+    /**
+     * Fetches several items by ID with at most MAX_PARALLEL_FETCHES requests in
+     * flight at once.
+     * 
+     * @param ids MAL IDs
+     * @return List of found MediaItems, in the order of the given IDs
+     */
+    @Override
+    public List<MediaItem> getAllByIds(Collection<String> ids) {
+        return FETCHER.fetchAll(ids, this::getById);
+    }
+
+    @Override
+    public int saveAll(Collection<? extends MediaItem> mediaItems) {
+        throw new UnsupportedOperationException("Cannot save to MAL API");
+    }
+
+    @Override
+    public int deleteAll(Collection<String> ids) {
+        throw new UnsupportedOperationException("Cannot delete from MAL API");
+    }
+
+    /**
+     * Non-blocking queries against the MAL API.
+     * Requests are sent with HttpClient.sendAsync, so no thread waits for a
+     * response, and cancelling a future aborts its request. Failed requests
+     * are logged and complete with an empty result, as in MalMediaRepo.
+     */
+    public final class Async implements AsyncMediaRepo {
+        private Async() {
+        }
+
+        @Override
+        public CompletableFuture<List<MediaItem>> searchByTitle(String title) {
+            return request(searchEndpoint(title), body -> new ArrayList<MediaItem>(decodeAnimeList(body)),
+                    "Error searching anime", new ArrayList<>());
+        }
+
+        @Override
+        public CompletableFuture<Optional<MediaItem>> getById(String id) {
+            CompletableFuture<Optional<Anime>> anime = getAnimeById(id);
+            return HttpTransport.cancelling(anime.thenApply(result -> result.map(item -> (MediaItem) item)), anime);
+        }
+
+        @Override
+        public CompletableFuture<Optional<Movie>> getMovieById(String id) {
+            return CompletableFuture.completedFuture(Optional.empty());
+        }
+
+        @Override
+        public CompletableFuture<Optional<TVShow>> getTVShowById(String id) {
+            return CompletableFuture.completedFuture(Optional.empty());
+        }
+
+        @Override
+        public CompletableFuture<Optional<Anime>> getAnimeById(String id) {
+            return request(animeEndpoint(id),
+                    body -> Optional.of(decodeAnime(body)),
+                    "Error getting anime by ID", Optional.empty());
+        }
+
+        @Override
+        public CompletableFuture<List<MediaItem>> getByGenre(String genre) {
+            return request(genreEndpoint(genre), body -> new ArrayList<MediaItem>(decodeAnimeList(body)),
+                    "Error searching by genre", new ArrayList<>());
+        }
+
+        @Override
+        public CompletableFuture<List<MediaItem>> getTopRated(int limit) {
+            return getTopRated(limit, 0);
+        }
+
+        /**
+         * Retrieves a page of the top-rated anime.
+         * 
+         * @param limit  Maximum number of results
+         * @param offset Starting position for pagination
+         * @return Future of the list of top-rated Anime
+         */
+        public CompletableFuture<List<MediaItem>> getTopRated(int limit, int offset) {
+            return request(rankingEndpoint("all", limit, offset),
+                    body -> new ArrayList<MediaItem>(decodeAnimeList(body)),
+                    "Error getting top rated anime", new ArrayList<>());
+        }
+
+        @Override
+        public CompletableFuture<List<Movie>> getLatestMovies(int limit) {
+            return CompletableFuture.completedFuture(new ArrayList<>()); // MAL doesn't handle movies
+        }
+
+        @Override
+        public CompletableFuture<List<TVShow>> getLatestTVShows(int limit) {
+            return CompletableFuture.completedFuture(new ArrayList<>()); // MAL doesn't handle TV shows
+        }
+
+        /**
+         * Retrieves currently airing anime.
+         * 
+         * @param limit Maximum number of results
+         * @return Future of the list of latest Anime
+         */
+        public CompletableFuture<List<Anime>> getLatestAnime(int limit) {
+            return request(rankingEndpoint("airing", limit, 0), MalMediaRepo::decodeAnimeList,
+                    "Error getting latest anime", new ArrayList<>());
+        }
+
+        /**
+         * Sends a request and decodes its response, logging failures and
+         * completing with a fallback result instead.
+         */
+        private <T> CompletableFuture<T> request(String endpoint, HttpTransport.BodyDecoder<T> decoder, String error,
+                T fallback) {
+            CompletableFuture<T> response = makeApiRequestAsync(endpoint, decoder);
+            return HttpTransport.cancelling(response.exceptionally(e -> {
+                System.err.println(error + ": " + HttpTransport.messageOf(e));
+                return fallback;
+            }), response);
+        }
+    }
 }
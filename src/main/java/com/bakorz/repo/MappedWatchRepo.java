@@ -0,0 +1,545 @@
+package com.bakorz.repo;
+
+import com.bakorz.model.WatchEntry;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Memory-mapped implementation of WatchRepo interface.
+ * Stores watch entries in fixed-size slots of a memory-mapped file
+ * (data/watch.dat) instead of a CSV file.
+ * String fields (watchId, userId, mediaId, mediaSource) are dictionary-encoded
+ * to ints, with the dictionary kept in data/watch.dict.
+ * Updates are written in place, deleted slots are tracked in a tombstone bitmap
+ * and reused through a free list.
+ * Startup maps the file and scans the slots instead of parsing CSV; live
+ * slots are indexed by watch ID and by user.
+ * Writes are ordered so that a crash never exposes a half-written slot: new
+ * dictionary strings reach the dictionary file first, then the slot contents,
+ * then the live flag of a reused slot or the slot count covering a new one.
+ * Under the EVERY_WRITE durability policy each step is forced before the
+ * next one; otherwise the files are forced by the shared FsyncBatcher, and
+ * slots that do not decode to a complete entry are dropped on load.
+ *
+ * @author Bakorz
+ * @version 1.0
+ */
+public class MappedWatchRepo implements WatchRepo {
+    /** Path to the memory-mapped slot file */
+    private static final String SLOT_FILE = "data/watch.dat";
+
+    /** Path to the string dictionary file */
+    private static final String DICTIONARY_FILE = "data/watch.dict";
+
+    /** Path to the legacy CSV file imported on first start */
+    private static final String LEGACY_FILE = "data/watch.csv";
+
+    /** Magic number identifying a slot file */
+    private static final int MAGIC = 0x4D574154;
+
+    /** Size of the file header in bytes (magic, version, slot count, reserved) */
+    private static final int HEADER_SIZE = 16;
+
+    /** Offset of the slot count within the header */
+    private static final int SLOT_COUNT_OFFSET = 8;
+
+    /** Size of one slot in bytes (flags plus four dictionary ids) */
+    private static final int SLOT_SIZE = 20;
+
+    /** Slot flag for a live entry */
+    private static final int FLAG_LIVE = 1;
+
+    /** Number of slots allocated for a new file */
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /** Path to the slot file used by this instance */
+    private final Path slotFile;
+
+    /** Path to the dictionary file used by this instance */
+    private final Path dictionaryFile;
+
+    /** Forces the files to disk according to the durability policy */
+    private final FsyncBatcher batcher;
+
+    /** Dictionary of strings indexed by their encoded id */
+    private final List<String> dictionary;
+
+    /** Reverse dictionary mapping strings to their encoded id */
+    private final Map<String, Integer> dictionaryIds;
+
+    /** Slot number of each live entry mapped by watch ID */
+    private final Map<String, Integer> slotIndex;
+
+    /** Live slots of each user, in slot order, mapped by user dictionary id */
+    private final Map<Integer, NavigableSet<Integer>> userSlots;
+
+    /** Slots below the high-water mark that hold deleted entries */
+    private final BitSet tombstones;
+
+    /** Deleted slots available for reuse */
+    private final Deque<Integer> freeSlots;
+
+    /** Channel of the slot file, kept open for remapping */
+    private FileChannel channel;
+
+    /** Mapped view of the slot file */
+    private MappedByteBuffer buffer;
+
+    /** Channel of the dictionary file, kept open for appending new strings */
+    private FileChannel dictionaryChannel;
+
+    /** Whether strings were appended to the dictionary since it was last forced */
+    private boolean dictionaryDirty;
+
+    /** Number of slots that fit in the current mapping */
+    private int capacity;
+
+    /** High-water mark of used slots */
+    private int slotCount;
+
+    /**
+     * Constructor that maps the default slot file and loads the dictionary.
+     * Imports data/watch.csv the first time if no slot file exists yet.
+     */
+    public MappedWatchRepo() {
+        this(SLOT_FILE, DICTIONARY_FILE);
+        importLegacyFile();
+    }
+
+    /**
+     * Constructor that maps the given slot and dictionary files.
+     *
+     * @param slotFile       Path to the slot file
+     * @param dictionaryFile Path to the dictionary file
+     */
+    public MappedWatchRepo(String slotFile, String dictionaryFile) {
+        this(slotFile, dictionaryFile, FsyncBatcher.shared());
+    }
+
+    /**
+     * Constructor that maps the given slot and dictionary files and makes
+     * writes durable through the given batcher.
+     *
+     * @param slotFile       Path to the slot file
+     * @param dictionaryFile Path to the dictionary file
+     * @param batcher        Batcher whose policy decides when writes are forced
+     */
+    MappedWatchRepo(String slotFile, String dictionaryFile, FsyncBatcher batcher) {
+        this.slotFile = Paths.get(slotFile);
+        this.dictionaryFile = Paths.get(dictionaryFile);
+        this.batcher = batcher;
+        this.dictionary = new ArrayList<>();
+        this.dictionaryIds = new HashMap<>();
+        this.slotIndex = new HashMap<>();
+        this.userSlots = new HashMap<>();
+        this.tombstones = new BitSet();
+        this.freeSlots = new ArrayDeque<>();
+        loadDictionary();
+        mapSlotFile();
+    }
+
+    /**
+     * Opens the dictionary and loads it, one entry per line in id order.
+     * A last line torn by a crash is cut off, so the next string appended
+     * starts on a line of its own.
+     */
+    private void loadDictionary() {
+        try {
+            dictionaryFile.toAbsolutePath().getParent().toFile().mkdirs();
+            dictionaryChannel = FileChannel.open(dictionaryFile, StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+            long complete = 0;
+            InputStream in = new BufferedInputStream(Channels.newInputStream(dictionaryChannel));
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            long position = 0;
+            int b;
+            while ((b = in.read()) >= 0) {
+                position++;
+                if (b == '\n') {
+                    String value = new String(line.toByteArray(), StandardCharsets.UTF_8);
+                    dictionaryIds.put(value, dictionary.size());
+                    dictionary.add(value);
+                    line.reset();
+                    complete = position;
+                } else {
+                    line.write(b);
+                }
+            }
+
+            if (complete < dictionaryChannel.size()) {
+                System.err.println("Dropping torn watch dictionary entry");
+                dictionaryChannel.truncate(complete);
+            }
+            dictionaryChannel.position(complete);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error loading watch dictionary: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Maps the slot file and rebuilds the indexes, tombstone bitmap and free
+     * list from the slot flags.
+     * A live slot whose strings are missing from the dictionary, or whose
+     * watch ID is already taken, was torn by a crash and is freed.
+     */
+    private void mapSlotFile() {
+        try {
+            slotFile.toAbsolutePath().getParent().toFile().mkdirs();
+            channel = FileChannel.open(slotFile, StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            boolean isNew = channel.size() < HEADER_SIZE;
+            int fileSlots = isNew ? INITIAL_CAPACITY : (int) ((channel.size() - HEADER_SIZE) / SLOT_SIZE);
+            remap(Math.max(fileSlots, INITIAL_CAPACITY));
+
+            if (isNew || buffer.getInt(0) != MAGIC) {
+                buffer.putInt(0, MAGIC);
+                buffer.putInt(4, 1);
+                buffer.putInt(SLOT_COUNT_OFFSET, 0);
+            }
+            slotCount = Math.max(0, Math.min(buffer.getInt(SLOT_COUNT_OFFSET), capacity));
+
+            for (int slot = 0; slot < slotCount; slot++) {
+                int offset = slotOffset(slot);
+                String watchId = lookup(buffer.getInt(offset + 4));
+                boolean live = buffer.getInt(offset) == FLAG_LIVE;
+                if (live && (watchId == null || slotIndex.containsKey(watchId)
+                        || lookup(buffer.getInt(offset + 8)) == null
+                        || lookup(buffer.getInt(offset + 12)) == null)) {
+                    System.err.println("Freeing torn watch slot " + slot);
+                    buffer.putInt(offset, 0);
+                    live = false;
+                }
+
+                if (live) {
+                    slotIndex.put(watchId, slot);
+                    userSlots.computeIfAbsent(buffer.getInt(offset + 8), k -> new TreeSet<>()).add(slot);
+                } else {
+                    tombstones.set(slot);
+                    freeSlots.push(slot);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error mapping watch file: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Maps the slot file with room for the given number of slots, growing the
+     * file if necessary.
+     *
+     * @param slots Number of slots the mapping must hold
+     * @throws IOException if the file cannot be mapped
+     */
+    private void remap(int slots) throws IOException {
+        capacity = slots;
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) slots * SLOT_SIZE);
+    }
+
+    /**
+     * Imports entries from the legacy CSV file when starting with an empty slot
+     * file.
+     */
+    private void importLegacyFile() {
+        if (slotCount > 0 || !new File(LEGACY_FILE).exists()) {
+            return;
+        }
+
+        synchronized (this) {
+            for (WatchEntry entry : new FileWatchRepo().getAll()) {
+                insert(entry);
+            }
+        }
+    }
+
+    private int slotOffset(int slot) {
+        return HEADER_SIZE + slot * SLOT_SIZE;
+    }
+
+    private String lookup(int id) {
+        return id >= 0 && id < dictionary.size() ? dictionary.get(id) : null;
+    }
+
+    /**
+     * Encodes a string as a dictionary id, appending new strings to the
+     * dictionary file through the open dictionary channel.
+     *
+     * @param value String to encode
+     * @return Dictionary id, or -1 for null
+     */
+    private int encode(String value) {
+        if (value == null) {
+            return -1;
+        }
+
+        Integer id = dictionaryIds.get(value);
+        if (id != null) {
+            return id;
+        }
+
+        try {
+            ByteBuffer line = ByteBuffer.wrap((value + "\n").getBytes(StandardCharsets.UTF_8));
+            while (line.hasRemaining()) {
+                dictionaryChannel.write(line);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error writing watch dictionary: " + e.getMessage(), e);
+        }
+        dictionaryDirty = true;
+
+        id = dictionary.size();
+        dictionary.add(value);
+        dictionaryIds.put(value, id);
+        return id;
+    }
+
+    /**
+     * Writes the fields of an entry into a slot, leaving its flag alone.
+     * Strings new to the dictionary are written before the slot refers to them.
+     *
+     * @param slot  Slot number
+     * @param entry WatchEntry to write
+     */
+    private void writeSlot(int slot, WatchEntry entry) {
+        int watchCode = encode(entry.getWatchId());
+        int userCode = encode(entry.getUserId());
+        int mediaCode = encode(entry.getMediaId());
+        int sourceCode = encode(entry.getMediaSource() != null ? entry.getMediaSource() : "FILE");
+
+        int offset = slotOffset(slot);
+        buffer.putInt(offset + 4, watchCode);
+        buffer.putInt(offset + 8, userCode);
+        buffer.putInt(offset + 12, mediaCode);
+        buffer.putInt(offset + 16, sourceCode);
+    }
+
+    /**
+     * Decodes the entry stored in a slot.
+     *
+     * @param slot Slot number
+     * @return WatchEntry object
+     */
+    private WatchEntry readSlot(int slot) {
+        int offset = slotOffset(slot);
+        WatchEntry entry = new WatchEntry(lookup(buffer.getInt(offset + 4)),
+                lookup(buffer.getInt(offset + 8)), lookup(buffer.getInt(offset + 12)));
+        entry.setMediaSource(lookup(buffer.getInt(offset + 16)));
+        return entry;
+    }
+
+    private int userCodeAt(int slot) {
+        return buffer.getInt(slotOffset(slot) + 8);
+    }
+
+    /**
+     * Makes the dictionary and the given range of the slot file durable, in
+     * that order, as the durability policy requires. Under EVERY_WRITE they
+     * are forced right away; otherwise they are left to the FsyncBatcher.
+     *
+     * @param offset Start of the changed range of the slot file
+     * @param length Length of the changed range
+     */
+    private void persist(int offset, int length) {
+        if (batcher.policy() != DurabilityPolicy.EVERY_WRITE) {
+            if (dictionaryDirty) {
+                batcher.register(dictionaryFile);
+                dictionaryDirty = false;
+            }
+            batcher.register(slotFile);
+            return;
+        }
+
+        if (dictionaryDirty) {
+            try {
+                dictionaryChannel.force(false);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Error syncing watch dictionary: " + e.getMessage(), e);
+            }
+            dictionaryDirty = false;
+        }
+        buffer.force(offset, length);
+    }
+
+    /**
+     * Takes a slot from the free list, or the slot at the high-water mark,
+     * growing the mapping when it is full. The high-water mark is only raised
+     * by publishSlot, once the slot has been written.
+     *
+     * @return Slot number to write into
+     */
+    private int allocateSlot() {
+        if (!freeSlots.isEmpty()) {
+            int slot = freeSlots.pop();
+            tombstones.clear(slot);
+            return slot;
+        }
+
+        if (slotCount == capacity) {
+            try {
+                remap(capacity * 2);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Error growing watch file: " + e.getMessage(), e);
+            }
+        }
+        return slotCount;
+    }
+
+    /**
+     * Marks a slot whose fields have been written live.
+     * A slot at the high-water mark is written whole, flag included, and only
+     * then covered by raising the slot count. A reused slot lies below the
+     * count already, so its fields are made durable before the flag that
+     * makes them live; otherwise a crash could revive the old entry's fields
+     * mixed with the new ones.
+     *
+     * @param slot Slot whose fields were written
+     */
+    private void publishSlot(int slot) {
+        int offset = slotOffset(slot);
+        boolean reused = slot < slotCount;
+        if (reused) {
+            persist(offset, SLOT_SIZE);
+        }
+        buffer.putInt(offset, FLAG_LIVE);
+        persist(offset, SLOT_SIZE);
+
+        if (!reused) {
+            slotCount++;
+            buffer.putInt(SLOT_COUNT_OFFSET, slotCount);
+            persist(0, HEADER_SIZE);
+        }
+    }
+
+    /**
+     * Stores a new entry in a free slot and indexes it.
+     *
+     * @param entry WatchEntry to store
+     * @return true if stored, false if the watch ID is missing or taken
+     */
+    private boolean insert(WatchEntry entry) {
+        if (entry == null || entry.getWatchId() == null || slotIndex.containsKey(entry.getWatchId())) {
+            return false;
+        }
+
+        int slot = allocateSlot();
+        writeSlot(slot, entry);
+        publishSlot(slot);
+        slotIndex.put(entry.getWatchId(), slot);
+        userSlots.computeIfAbsent(userCodeAt(slot), k -> new TreeSet<>()).add(slot);
+        return true;
+    }
+
+    /**
+     * Removes a slot from the index of its user.
+     *
+     * @param slot Live slot
+     */
+    private void unindexUser(int slot) {
+        int userCode = userCodeAt(slot);
+        Set<Integer> slots = userSlots.get(userCode);
+        if (slots != null) {
+            slots.remove(slot);
+            if (slots.isEmpty()) {
+                userSlots.remove(userCode);
+            }
+        }
+    }
+
+    @Override
+    public synchronized boolean addWatchEntry(WatchEntry entry) {
+        return insert(entry);
+    }
+
+    @Override
+    public synchronized boolean removeWatchEntry(String watchId) {
+        Integer slot = slotIndex.remove(watchId);
+        if (slot == null) {
+            return false;
+        }
+
+        unindexUser(slot);
+        buffer.putInt(slotOffset(slot), 0);
+        persist(slotOffset(slot), SLOT_SIZE);
+        tombstones.set(slot);
+        freeSlots.push(slot);
+        return true;
+    }
+
+    @Override
+    public synchronized List<WatchEntry> getWatchEntriesByUser(String userId) {
+        List<WatchEntry> result = new ArrayList<>();
+        Integer userCode = dictionaryIds.get(userId);
+        Set<Integer> slots = userCode != null ? userSlots.get(userCode) : null;
+        if (slots == null) {
+            return result;
+        }
+
+        for (int slot : slots) {
+            result.add(readSlot(slot));
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized Optional<WatchEntry> getWatchEntryById(String watchId) {
+        Integer slot = slotIndex.get(watchId);
+        return slot != null ? Optional.of(readSlot(slot)) : Optional.empty();
+    }
+
+    @Override
+    public synchronized Optional<WatchEntry> getWatchEntryByUserAndMedia(String userId, String mediaId) {
+        Integer userCode = dictionaryIds.get(userId);
+        Integer mediaCode = dictionaryIds.get(mediaId);
+        Set<Integer> slots = userCode != null ? userSlots.get(userCode) : null;
+        if (slots == null || mediaCode == null) {
+            return Optional.empty();
+        }
+
+        for (int slot : slots) {
+            if (buffer.getInt(slotOffset(slot) + 12) == mediaCode) {
+                return Optional.of(readSlot(slot));
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Rewrites an entry in place. The four fields are written separately, so
+     * a crash during an update may leave a mix of old and new field values,
+     * each of them valid.
+     */
+    @Override
+    public synchronized boolean update(WatchEntry watchEntry) {
+        if (watchEntry == null) {
+            return false;
+        }
+
+        Integer slot = slotIndex.get(watchEntry.getWatchId());
+        if (slot == null) {
+            return false;
+        }
+
+        unindexUser(slot);
+        writeSlot(slot, watchEntry);
+        persist(slotOffset(slot), SLOT_SIZE);
+        userSlots.computeIfAbsent(userCodeAt(slot), k -> new TreeSet<>()).add(slot);
+        return true;
+    }
+
+    @Override
+    public synchronized List<WatchEntry> getAll() {
+        List<WatchEntry> result = new ArrayList<>();
+        for (int slot = tombstones.nextClearBit(0); slot < slotCount; slot = tombstones.nextClearBit(slot + 1)) {
+            result.add(readSlot(slot));
+        }
+        return result;
+    }
+}
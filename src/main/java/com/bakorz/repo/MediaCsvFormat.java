@@ -0,0 +1,288 @@
+package com.bakorz.repo;
+
+import com.bakorz.model.*;
+import java.util.*;
+
+/**
+ * CSV record format shared by the file-based media repositories.
+ * Converts between MediaItem objects (Anime, Movie, TVShow) and the rows of
+ * data/media.csv, with type-specific fields packed into a pipe-separated
+ * additionalData column.
+ * Files written by current versions store the description compressed by
+ * DescriptionCodec, as unpadded base64 in a deflatedDescription column, so
+ * it is loaded without inflating it. Files with the older plain description
+ * column are still read; the header tells the two formats apart.
+ *
+ * @author Bakorz
+ * @version 1.0
+ */
+final class MediaCsvFormat {
+    /** CSV delimiter character */
+    static final String DELIMITER = ",";
+
+    /** CSV header line, with compressed descriptions */
+    static final String HEADER = "id,type,title,deflatedDescription,genres,rating,releaseDate,posterUrl,backdropUrl,additionalData";
+
+    /** CSV header line of files with plain descriptions */
+    static final String PLAIN_HEADER = "id,type,title,description,genres,rating,releaseDate,posterUrl,backdropUrl,additionalData";
+
+    /** Encodes compressed descriptions; base64 never needs CSV quoting */
+    private static final Base64.Encoder BASE64 = Base64.getEncoder().withoutPadding();
+
+    private MediaCsvFormat() {
+    }
+
+    /**
+     * Checks whether a file header declares compressed descriptions.
+     *
+     * @param header Header line, with or without the checksum column
+     * @return true if records store descriptions deflated
+     */
+    static boolean isDeflated(String header) {
+        return header != null && header.startsWith("id,type,title,deflatedDescription,");
+    }
+
+    /**
+     * Returns the parser for records of a file with the given header.
+     *
+     * @param header Header line of the file
+     * @return Parser for its records
+     */
+    static ParallelCsvLoader.RecordParser<MediaItem> parser(String header) {
+        if (isDeflated(header)) {
+            return fields -> parse(fields, true);
+        }
+        return MediaCsvFormat::parse;
+    }
+
+    /**
+     * Parses a CSV record with a plain description column.
+     * 
+     * @param fields Tokenizer positioned before the first field of the record
+     * @return MediaItem object (Anime, Movie, or TVShow) or null if parsing fails
+     */
+    static MediaItem parse(CsvTokenizer fields) {
+        return parse(fields, false);
+    }
+
+    /**
+     * Parses a CSV record into appropriate MediaItem subclass (Anime, Movie, or
+     * TVShow).
+     * Uses media type field to determine which subclass to instantiate.
+     * Walks the record with a tokenizer, so only the fields the model keeps
+     * become Strings.
+     * 
+     * @param fields   Tokenizer positioned before the first field of the record
+     * @param deflated Whether the description column is compressed
+     * @return MediaItem object (Anime, Movie, or TVShow) or null if parsing fails
+     */
+    static MediaItem parse(CsvTokenizer fields, boolean deflated) {
+        try {
+            if (!fields.next()) {
+                return null;
+            }
+            String id = fields.string();
+
+            if (!fields.next()) {
+                return null;
+            }
+            MediaItem item;
+            if (fields.equalsIgnoreCase("movie")) {
+                item = new Movie();
+            } else if (fields.equalsIgnoreCase("tvshow") || fields.equalsIgnoreCase("tv_show")) {
+                item = new TVShow();
+            } else if (fields.equalsIgnoreCase("anime")) {
+                item = new Anime();
+            } else {
+                return null;
+            }
+
+            item.setId(id);
+            if (!fields.next()) {
+                return null;
+            }
+            item.setTitle(fields.string());
+            if (!fields.next()) {
+                return null;
+            }
+            if (deflated) {
+                item.setCompressedDescription(fields.base64Value());
+            } else {
+                item.setDescription(fields.string());
+            }
+            if (!fields.next()) {
+                return null;
+            }
+            item.setGenres(parseList(fields, ';'));
+            if (!fields.next()) {
+                return null;
+            }
+            item.setRating(fields.doubleValue(0.0));
+            if (!fields.next()) {
+                return null;
+            }
+            item.setReleaseDate(fields.string());
+            if (!fields.next()) {
+                return null;
+            }
+            item.setPosterUrl(fields.string());
+            if (!fields.next()) {
+                return null;
+            }
+            item.setBackdropUrl(fields.string());
+            if (!fields.next()) {
+                return null;
+            }
+
+            if (item instanceof Movie) {
+                parseMovieAdditionalData((Movie) item, fields.split('|'));
+            } else if (item instanceof TVShow) {
+                parseTVShowAdditionalData((TVShow) item, fields.split('|'));
+            } else {
+                parseAnimeAdditionalData((Anime) item, fields.split('|'));
+            }
+            return item;
+        } catch (Exception e) {
+            System.err.println("Error parsing media item: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Splits the current field into a list of non-empty values.
+     * 
+     * @param fields    Tokenizer positioned on the list field
+     * @param delimiter List delimiter
+     * @return List of values
+     */
+    private static List<String> parseList(CsvTokenizer fields, char delimiter) {
+        List<String> values = new ArrayList<>();
+        if (fields.isEmpty()) {
+            return values;
+        }
+
+        CsvTokenizer parts = fields.split(delimiter);
+        while (parts.next()) {
+            if (!parts.isEmpty()) {
+                values.add(parts.string());
+            }
+        }
+        return values;
+    }
+
+    private static void parseMovieAdditionalData(Movie movie, CsvTokenizer parts) {
+        try {
+            if (parts.next() && !parts.isEmpty()) {
+                movie.setRuntime(parts.intValue(0));
+            }
+            if (parts.next())
+                movie.setDirector(parts.stringOr(null));
+        } catch (Exception e) {
+            // Ignore parsing errors for additional data
+        }
+    }
+
+    private static void parseTVShowAdditionalData(TVShow tvShow, CsvTokenizer parts) {
+        try {
+            if (parts.next() && !parts.isEmpty()) {
+                tvShow.setNumberOfSeasons(parts.intValue(0));
+            }
+            if (parts.next() && !parts.isEmpty()) {
+                tvShow.setNumberOfEpisodes(parts.intValue(0));
+            }
+            if (parts.next())
+                tvShow.setStatus(parts.stringOr(null));
+        } catch (Exception e) {
+            // Ignore parsing errors for additional data
+        }
+    }
+
+    private static void parseAnimeAdditionalData(Anime anime, CsvTokenizer parts) {
+        try {
+            if (parts.next() && !parts.isEmpty()) {
+                anime.setEpisodes(parts.intValue(0));
+            }
+            if (parts.next() && !parts.isEmpty()) {
+                anime.setStudios(parseList(parts, ';'));
+            }
+            if (parts.next())
+                anime.setStatus(parts.stringOr(null));
+        } catch (Exception e) {
+            // Ignore parsing errors for additional data
+        }
+    }
+
+    /**
+     * Formats a cached item as a CSV line with a plain description column.
+     * 
+     * @param key  Cache key of the item
+     * @param item MediaItem to format
+     * @return CSV line
+     */
+    static String format(String key, MediaItem item) {
+        return format(key, item, false);
+    }
+
+    /**
+     * Formats a cached item as a CSV line.
+     * The cache key is written as the ID, since callers may restore the item's
+     * own ID after caching it under a composite key.
+     * 
+     * @param key      Cache key of the item
+     * @param item     MediaItem to format
+     * @param deflated Whether to write the description compressed
+     * @return CSV line
+     */
+    static String format(String key, MediaItem item, boolean deflated) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(key).append(DELIMITER);
+        sb.append(item.getMediaType()).append(DELIMITER);
+        sb.append(escapeCSV(item.getTitle())).append(DELIMITER);
+        if (deflated) {
+            byte[] description = item.getCompressedDescription();
+            sb.append(description != null ? BASE64.encodeToString(description) : "").append(DELIMITER);
+        } else {
+            sb.append(escapeCSV(item.getDescription())).append(DELIMITER);
+        }
+        sb.append(escapeCSV(String.join(";", item.getGenres() != null ? item.getGenres() : new ArrayList<>())))
+                .append(DELIMITER);
+        sb.append(item.getRating()).append(DELIMITER);
+        sb.append(item.getReleaseDate()).append(DELIMITER);
+        sb.append(escapeCSV(item.getPosterUrl())).append(DELIMITER);
+        sb.append(escapeCSV(item.getBackdropUrl())).append(DELIMITER);
+
+        sb.append(escapeCSV(formatAdditionalData(item)));
+
+        return sb.toString();
+    }
+
+    private static String formatAdditionalData(MediaItem item) {
+        StringBuilder sb = new StringBuilder();
+        if (item instanceof Movie) {
+            Movie movie = (Movie) item;
+            sb.append(movie.getRuntime()).append("|");
+            sb.append(movie.getDirector() != null ? movie.getDirector() : "").append("|");
+        } else if (item instanceof TVShow) {
+            TVShow tvShow = (TVShow) item;
+            sb.append(tvShow.getNumberOfSeasons()).append("|");
+            sb.append(tvShow.getNumberOfEpisodes()).append("|");
+            sb.append(tvShow.getStatus() != null ? tvShow.getStatus() : "").append("|");
+        } else if (item instanceof Anime) {
+            Anime anime = (Anime) item;
+            sb.append(anime.getEpisodes()).append("|");
+            sb.append(anime.getStudios() != null ? String.join(";", anime.getStudios()) : "").append("|");
+            sb.append(anime.getStatus() != null ? anime.getStatus() : "").append("|");
+        }
+        return sb.toString();
+    }
+
+    private static String escapeCSV(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.contains(",") || value.contains("\"") || value.contains("\n")) {
+            return "\"" + value.replace("\"", "\"\"") + "\"";
+        }
+        return value;
+    }
+}
@@ -1,12 +1,19 @@
 package com.bakorz.repo;
 
 import com.bakorz.model.*;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
 
 /**
  * Repository interface for managing media items.
  * Defines standard CRUD operations and query methods for media data.
+ * Bulk operations have item-by-item default implementations that repositories
+ * override when they can batch the work.
  * Implemented by specific repository types (MAL, TMDB, File-based).
  * 
  * @author Bakorz
@@ -30,6 +37,18 @@ public interface MediaRepo {
      */
     Optional<MediaItem> getById(String id);
 
+    /**
+     * Retrieves a cached MAL or TMDB item by its source and numeric ID, as
+     * stored under the cache key formatted by SourceKey.
+     * 
+     * @param source Source of the item
+     * @param id     Numeric ID of the item at its source
+     * @return Optional containing the MediaItem if found
+     */
+    default Optional<MediaItem> getBySourceId(SourceKey source, int id) {
+        return getById(source.format(id));
+    }
+
     /**
      * Retrieves a movie by its unique identifier.
      * 
@@ -116,4 +135,104 @@ public interface MediaRepo {
      * @return true if deleted successfully
      */
     boolean delete(String id);
+
+    /**
+     * Retrieves media items matching a combination of genres, for queries such
+     * as "Action and Fantasy but not Horror". Genres are compared ignoring case.
+     * Empty allOf and anyOf select every item before exclusions.
+     * 
+     * @param allOf  Genres an item must all have
+     * @param anyOf  Genres an item must have at least one of (ignored if empty)
+     * @param noneOf Genres an item must not have
+     * @return List of matching MediaItems
+     */
+    default List<MediaItem> getByGenres(Collection<String> allOf, Collection<String> anyOf,
+            Collection<String> noneOf) {
+        List<MediaItem> results = new ArrayList<>();
+        for (MediaItem item : getAll()) {
+            List<String> genres = item.getGenres() == null ? Collections.<String>emptyList() : item.getGenres();
+            if (allOf.stream().allMatch(g -> genres.stream().anyMatch(g::equalsIgnoreCase))
+                    && (anyOf.isEmpty() || anyOf.stream().anyMatch(g -> genres.stream().anyMatch(g::equalsIgnoreCase)))
+                    && noneOf.stream().noneMatch(g -> genres.stream().anyMatch(g::equalsIgnoreCase))) {
+                results.add(item);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Retrieves media items of a type released within a date range, earliest
+     * first. Items without a parsable release date are skipped.
+     * 
+     * @param <T>  Media type
+     * @param type Media type class, or MediaItem.class for all types
+     * @param from First release date of the range (inclusive)
+     * @param to   Last release date of the range (inclusive)
+     * @return List of matching items ordered by release date
+     */
+    default <T extends MediaItem> List<T> getReleasedBetween(Class<T> type, LocalDate from, LocalDate to) {
+        List<T> results = new ArrayList<>();
+        for (MediaItem item : getAll()) {
+            Long day = RankingIndex.epochDay(item.getReleaseDate());
+            if (type.isInstance(item) && day != null && day >= from.toEpochDay() && day <= to.toEpochDay()) {
+                results.add(type.cast(item));
+            }
+        }
+        results.sort(Comparator.comparing(item -> RankingIndex.epochDay(item.getReleaseDate())));
+        return results;
+    }
+
+    /**
+     * Retrieves several media items by their unique identifiers.
+     * IDs that are not found are skipped.
+     * 
+     * @param ids Media item IDs
+     * @return List of found MediaItems, in the order of the given IDs
+     */
+    default List<MediaItem> getAllByIds(Collection<String> ids) {
+        List<MediaItem> results = new ArrayList<>();
+        for (String id : ids) {
+            getById(id).ifPresent(results::add);
+        }
+        return results;
+    }
+
+    /**
+     * Saves several media items.
+     * 
+     * @param mediaItems MediaItems to save
+     * @return Number of items saved successfully
+     */
+    default int saveAll(Collection<? extends MediaItem> mediaItems) {
+        int saved = 0;
+        for (MediaItem item : mediaItems) {
+            if (save(item)) {
+                saved++;
+            }
+        }
+        return saved;
+    }
+
+    /**
+     * Deletes several media items by ID.
+     * 
+     * @param ids Media item IDs to delete
+     * @return Number of items deleted
+     */
+    default int deleteAll(Collection<String> ids) {
+        int deleted = 0;
+        for (String id : ids) {
+            if (delete(id)) {
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * Writes any changes the repository is still holding in memory.
+     * Repositories that write through immediately need not override this.
+     */
+    default void flush() {
+    }
 }
@@ -0,0 +1,263 @@
+package com.bakorz.repo;
+
+import com.bakorz.model.MediaItem;
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Delta segments of the media file (data/media.csv).
+ * The media file is a base snapshot; changes since the snapshot are written
+ * as a sequence of small segment files next to it (media.csv.000001.delta,
+ * media.csv.000002.delta, ...), one per flush. A segment lists the items put
+ * and the keys deleted in its flush, so the current catalog is the snapshot
+ * with every segment replayed on top in sequence order.
+ * Segments are written atomically and never change once written. Merging
+ * folds a run of segments into a new snapshot without touching memory
+ * state, so it can run in the background; the merged segments are deleted
+ * only once the new snapshot is durable, and replaying them again onto that
+ * snapshot after a crash is harmless.
+ *
+ * <pre>
+ * segment = header record*
+ * record  = "P" "," mediaRecord crc    (item put under its key)
+ *         | "D" "," key crc            (key deleted)
+ * </pre>
+ *
+ * @author Bakorz
+ * @version 1.0
+ */
+final class MediaSegments {
+    /** Operation code of a put item */
+    static final String OP_PUT = "P";
+
+    /** Operation code of a deleted key */
+    static final String OP_DELETE = "D";
+
+    /** Header line of a segment, without the checksum column */
+    static final String HEADER = "op," + MediaCsvFormat.HEADER;
+
+    /** File name suffix of segments */
+    private static final String SUFFIX = ".delta";
+
+    private MediaSegments() {
+    }
+
+    /**
+     * Lists the segments of a media file in sequence order.
+     *
+     * @param snapshot Path to the media file
+     * @return Segment paths, oldest first
+     */
+    static List<Path> list(Path snapshot) {
+        List<Path> segments = new ArrayList<>();
+        Path directory = snapshot.toAbsolutePath().getParent();
+        if (!Files.isDirectory(directory)) {
+            return segments;
+        }
+
+        String prefix = snapshot.getFileName() + ".";
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, prefix + "*" + SUFFIX)) {
+            for (Path file : files) {
+                if (sequenceOf(snapshot, file) >= 0) {
+                    segments.add(file);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error listing media segments: " + e.getMessage());
+        }
+        segments.sort(Comparator.comparingLong(segment -> sequenceOf(snapshot, segment)));
+        return segments;
+    }
+
+    /**
+     * Gets the sequence number of a segment.
+     *
+     * @param snapshot Path to the media file
+     * @param segment  Path to a segment of it
+     * @return Sequence number, or -1 if the path is not a segment of the file
+     */
+    static long sequenceOf(Path snapshot, Path segment) {
+        String prefix = snapshot.getFileName() + ".";
+        String name = segment.getFileName().toString();
+        if (!name.startsWith(prefix) || !name.endsWith(SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name.substring(prefix.length(), name.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Gets the path of a segment.
+     *
+     * @param snapshot Path to the media file
+     * @param sequence Sequence number of the segment
+     * @return Segment path
+     */
+    static Path path(Path snapshot, long sequence) {
+        return snapshot.resolveSibling(String.format("%s.%06d%s", snapshot.getFileName(), sequence, SUFFIX));
+    }
+
+    /**
+     * Atomically writes a segment.
+     *
+     * @param segment  Path of the new segment
+     * @param puts     Items put, mapped by key
+     * @param deletes  Keys deleted
+     * @param checksum Computes record checksums
+     * @return Durability ticket of the write
+     * @throws IOException if the segment cannot be written
+     */
+    static long write(Path segment, Map<String, MediaItem> puts, Collection<String> deletes,
+            RecordChecksum checksum) throws IOException {
+        return DurableFiles.replace(segment, bw -> {
+            bw.write(RecordChecksum.header(HEADER));
+            bw.newLine();
+            for (String key : deletes) {
+                bw.write(checksum.seal(OP_DELETE + MediaCsvFormat.DELIMITER + key));
+                bw.newLine();
+            }
+            for (Map.Entry<String, MediaItem> entry : puts.entrySet()) {
+                bw.write(checksum.seal(OP_PUT + MediaCsvFormat.DELIMITER
+                        + MediaCsvFormat.format(entry.getKey(), entry.getValue(), true)));
+                bw.newLine();
+            }
+        });
+    }
+
+    /**
+     * Replays the records of a segment in order. Records failing checksum
+     * verification are skipped.
+     *
+     * @param segment Path to the segment
+     * @param put     Receives the key and item of each put
+     * @param delete  Receives the key of each delete
+     * @return Load statistics of the segment
+     * @throws IOException if the segment cannot be read
+     */
+    static ParallelCsvLoader.Result<Delta> replay(Path segment, BiConsumer<String, MediaItem> put,
+            Consumer<String> delete) throws IOException {
+        return ParallelCsvLoader.byHeader(MediaSegments::parser, (Delta delta) -> delta.key)
+                .stream(segment.toFile(), delta -> {
+                    if (delta.item != null) {
+                        put.accept(delta.key, delta.item);
+                    } else {
+                        delete.accept(delta.key);
+                    }
+                });
+    }
+
+    private static ParallelCsvLoader.RecordParser<Delta> parser(String header) {
+        boolean deflated = header.startsWith("op,") && MediaCsvFormat.isDeflated(header.substring(3));
+        return fields -> {
+            if (!fields.next()) {
+                return null;
+            }
+            if (fields.equalsIgnoreCase(OP_PUT)) {
+                MediaItem item = MediaCsvFormat.parse(fields, deflated);
+                return item != null ? new Delta(item.getId(), item) : null;
+            } else if (fields.equalsIgnoreCase(OP_DELETE) && fields.next()) {
+                return new Delta(fields.string(), null);
+            }
+            return null;
+        };
+    }
+
+    /**
+     * Merges segments into a new snapshot and deletes them.
+     * Streams the old snapshot, so memory use is bounded by the size of the
+     * segments rather than the catalog. Must not run concurrently with
+     * another merge of the same file.
+     *
+     * @param snapshot Path to the media file
+     * @param segments Segments to merge, oldest first; must be the oldest
+     *                 segments of the file
+     * @throws IOException if the snapshot cannot be written
+     */
+    static void merge(Path snapshot, List<Path> segments) throws IOException {
+        // Latest item of each key changed by the segments, null if deleted
+        Map<String, MediaItem> changes = new LinkedHashMap<>();
+        for (Path segment : segments) {
+            replay(segment, changes::put, key -> changes.put(key, null));
+        }
+
+        RecordChecksum checksum = new RecordChecksum();
+        File file = snapshot.toFile();
+        long ticket;
+        try {
+            ticket = DurableFiles.replace(snapshot, bw -> {
+                bw.write(RecordChecksum.header(MediaCsvFormat.HEADER));
+                bw.newLine();
+                if (file.exists()) {
+                    ParallelCsvLoader.byHeader(MediaCsvFormat::parser, MediaItem::getId).stream(file, item -> {
+                        if (!changes.containsKey(item.getId())) {
+                            writeRecord(bw, checksum, item.getId(), item);
+                        }
+                    });
+                }
+                for (Map.Entry<String, MediaItem> entry : changes.entrySet()) {
+                    if (entry.getValue() != null) {
+                        writeRecord(bw, checksum, entry.getKey(), entry.getValue());
+                    }
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        // The new snapshot must be durable before the segments it replaces go
+        FsyncBatcher.shared().awaitDurable(ticket);
+        DurableFiles.syncDirectory(snapshot);
+        for (Path segment : segments) {
+            Files.deleteIfExists(segment);
+        }
+    }
+
+    private static void writeRecord(BufferedWriter bw, RecordChecksum checksum, String key, MediaItem item) {
+        try {
+            bw.write(checksum.seal(MediaCsvFormat.format(key, item, true)));
+            bw.newLine();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Merges every segment of a media file into its snapshot, for readers
+     * of the snapshot that do not replay segments.
+     *
+     * @param snapshot Path to the media file
+     */
+    static void fold(Path snapshot) {
+        List<Path> segments = list(snapshot);
+        if (segments.isEmpty()) {
+            return;
+        }
+        try {
+            merge(snapshot, segments);
+        } catch (IOException e) {
+            System.err.println("Error merging media segments: " + e.getMessage());
+        }
+    }
+
+    /**
+     * One record of a segment: an item put under a key, or a deleted key.
+     */
+    static final class Delta {
+        /** Key the record applies to */
+        final String key;
+
+        /** Item put under the key, or null if the key was deleted */
+        final MediaItem item;
+
+        private Delta(String key, MediaItem item) {
+            this.key = key;
+            this.item = item;
+        }
+    }
+}
@@ -0,0 +1,723 @@
+package com.bakorz.repo;
+
+import com.bakorz.model.*;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Off-heap storage of media item records in direct ByteBuffer slabs.
+ * Each item is encoded into a binary record appended to the current slab, and
+ * is addressed by a location packing the slab number and the record offset.
+ * Records are never changed once written: replacing or removing an item only
+ * counts its old record as garbage, and compaction copies the live records
+ * into a new catalog. Old slabs are released by the garbage collector once
+ * neither the catalog nor a view refers to them, so a view stays valid after
+ * its item has been replaced, removed or compacted.
+ * Views are lightweight subclasses of Movie, TVShow and Anime. The title and
+ * the small fields are decoded when the view is created; the description and
+ * image URLs, the bulk of a record, are decoded on first access. The
+ * description is kept as compressed by DescriptionCodec.
+ * The heap holds only the slab list, whatever the number of records.
+ * Writes are not thread-safe; the owning repository synchronizes access.
+ * Views read their records with absolute reads and are safe to use from any
+ * thread.
+ *
+ * <pre>
+ * record    = length:int type:byte key:str genreCount:short genre:int*
+ *             title:str rating:double releaseDate:str
+ *             typeFields description:bytes posterUrl:str backdropUrl:str
+ * str       = byteLength:int utf8Bytes (length -1 for null)
+ * bytes     = byteLength:int bytes (length -1 for null)
+ * </pre>
+ *
+ * @author Bakorz
+ * @version 1.0
+ */
+final class OffHeapCatalog {
+    /** Record type of movies */
+    static final byte MOVIE = 0;
+
+    /** Record type of TV shows */
+    static final byte TV_SHOW = 1;
+
+    /** Record type of anime */
+    static final byte ANIME = 2;
+
+    /** Default size of a slab; larger records get a slab of their own */
+    static final int DEFAULT_SLAB_SIZE = 16 * 1024 * 1024;
+
+    /** Offset of the type byte in a record */
+    private static final int TYPE_OFFSET = 4;
+
+    /** Offset of the key in a record */
+    private static final int KEY_OFFSET = 5;
+
+    /** Size of a new slab */
+    private final int slabSize;
+
+    /** Slabs holding the records, in allocation order */
+    private final List<ByteBuffer> slabs;
+
+    /** Slab records are currently appended to, or null before the first write */
+    private ByteBuffer current;
+
+    /** Bytes of records that are still referenced */
+    private long liveBytes;
+
+    /** Bytes of records that have been replaced or removed */
+    private long garbageBytes;
+
+    /** Reused buffer records are encoded into before they are copied off-heap */
+    private final ByteArrayOutputStream encoded;
+
+    /** Writes the encoded fields into the reused buffer */
+    private final DataOutputStream out;
+
+    /**
+     * Creates an empty catalog with the given slab size.
+     *
+     * @param slabSize Size in bytes of each slab
+     */
+    OffHeapCatalog(int slabSize) {
+        this.slabSize = slabSize;
+        this.slabs = new ArrayList<>();
+        this.encoded = new ByteArrayOutputStream(1024);
+        this.out = new DataOutputStream(encoded);
+    }
+
+    /**
+     * Gets the record type used for an item.
+     *
+     * @param item Media item
+     * @return MOVIE, TV_SHOW or ANIME, or -1 if the type cannot be stored
+     */
+    static byte typeOf(MediaItem item) {
+        if (item instanceof Movie) {
+            return MOVIE;
+        } else if (item instanceof TVShow) {
+            return TV_SHOW;
+        } else if (item instanceof Anime) {
+            return ANIME;
+        }
+        return -1;
+    }
+
+    /**
+     * Writes the record of an item.
+     *
+     * @param key  Key the item is stored under, returned as its ID
+     * @param item Item to store; typeOf must not return -1
+     * @return Location of the record
+     */
+    long write(String key, MediaItem item) {
+        encoded.reset();
+        try {
+            out.writeInt(0);
+            out.writeByte(typeOf(item));
+            writeString(key);
+            int[] genres = StringDictionary.GENRES.encode(item.getGenres());
+            out.writeShort(genres == null ? -1 : genres.length);
+            if (genres != null) {
+                for (int genre : genres) {
+                    out.writeInt(genre);
+                }
+            }
+            writeString(item.getTitle());
+            out.writeDouble(item.getRating());
+            writeString(item.getReleaseDate());
+            writeTypeFields(item);
+            writeBytes(item.getCompressedDescription());
+            writeString(item.getPosterUrl());
+            writeString(item.getBackdropUrl());
+        } catch (IOException e) {
+            // Writes to a ByteArrayOutputStream do not fail
+            throw new UncheckedIOException(e);
+        }
+
+        byte[] record = encoded.toByteArray();
+        ByteBuffer.wrap(record).putInt(0, record.length);
+        return append(record);
+    }
+
+    private void writeTypeFields(MediaItem item) throws IOException {
+        if (item instanceof Movie) {
+            Movie movie = (Movie) item;
+            out.writeInt(movie.getRuntime());
+            writeString(movie.getDirector());
+            writeString(movie.getImdbId());
+            writeString(movie.getTmdbId());
+            out.writeLong(movie.getBudget());
+            out.writeLong(movie.getRevenue());
+        } else if (item instanceof TVShow) {
+            TVShow tvShow = (TVShow) item;
+            out.writeInt(tvShow.getNumberOfSeasons());
+            out.writeInt(tvShow.getNumberOfEpisodes());
+            writeStrings(tvShow.getCreators());
+            writeString(tvShow.getStatus());
+            writeString(tvShow.getFirstAirDate());
+            writeString(tvShow.getLastAirDate());
+            writeStrings(tvShow.getNetworks());
+            out.writeInt(tvShow.getEpisodeRuntime());
+            writeString(tvShow.getImdbId());
+            writeString(tvShow.getTmdbId());
+        } else if (item instanceof Anime) {
+            Anime anime = (Anime) item;
+            writeString(anime.getAnimeType());
+            out.writeInt(anime.getEpisodes());
+            writeString(anime.getStatus());
+            writeString(anime.getAired());
+            writeString(anime.getSource());
+            writeStrings(anime.getStudios());
+            out.writeInt(anime.getMalId());
+            out.writeDouble(anime.getMalScore());
+            out.writeInt(anime.getMalRank());
+            out.writeInt(anime.getMalPopularity());
+            writeString(anime.getSeason());
+            out.writeInt(anime.getYear());
+            out.writeInt(anime.getDuration());
+        } else {
+            throw new IllegalArgumentException("Unsupported media type: " + item.getClass().getName());
+        }
+    }
+
+    private void writeString(String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private void writeBytes(byte[] value) throws IOException {
+        out.writeInt(value == null ? -1 : value.length);
+        if (value != null) {
+            out.write(value);
+        }
+    }
+
+    private void writeStrings(List<String> values) throws IOException {
+        out.writeInt(values == null ? -1 : values.size());
+        if (values != null) {
+            for (String value : values) {
+                writeString(value);
+            }
+        }
+    }
+
+    /**
+     * Copies a record into the current slab, opening a new slab if it does
+     * not fit.
+     *
+     * @param record Encoded record
+     * @return Location of the copy
+     */
+    private long append(byte[] record) {
+        if (current == null || current.remaining() < record.length) {
+            current = ByteBuffer.allocateDirect(Math.max(slabSize, record.length));
+            slabs.add(current);
+        }
+        int offset = current.position();
+        current.put(record);
+        liveBytes += record.length;
+        return location(slabs.size() - 1, offset);
+    }
+
+    private static long location(int slab, int offset) {
+        return ((long) slab << 32) | offset;
+    }
+
+    private ByteBuffer slabOf(long location) {
+        return slabs.get((int) (location >>> 32));
+    }
+
+    private static int offsetOf(long location) {
+        return (int) location;
+    }
+
+    /**
+     * Counts a record as garbage after its item was replaced or removed.
+     * The record itself stays readable for views that refer to it.
+     *
+     * @param location Location of the record
+     */
+    void release(long location) {
+        int length = slabOf(location).getInt(offsetOf(location));
+        liveBytes -= length;
+        garbageBytes += length;
+    }
+
+    /**
+     * Copies a record of another catalog into this one, as during compaction.
+     *
+     * @param source   Catalog holding the record
+     * @param location Location of the record in the source catalog
+     * @return Location of the copy in this catalog
+     */
+    long copy(OffHeapCatalog source, long location) {
+        ByteBuffer slab = source.slabOf(location);
+        int offset = offsetOf(location);
+        byte[] record = new byte[slab.getInt(offset)];
+        slab.get(offset, record);
+        return append(record);
+    }
+
+    /**
+     * Checks whether enough of the catalog is garbage to be worth compacting:
+     * at least one slab, and more than the live records.
+     *
+     * @return true if the catalog should be compacted
+     */
+    boolean needsCompaction() {
+        return garbageBytes > slabSize && garbageBytes > liveBytes;
+    }
+
+    /**
+     * Gets the size of the slabs allocated by the catalog.
+     *
+     * @return Off-heap bytes allocated
+     */
+    long allocatedBytes() {
+        long total = 0;
+        for (ByteBuffer slab : slabs) {
+            total += slab.capacity();
+        }
+        return total;
+    }
+
+    /**
+     * Gets the slab size of the catalog, for creating a compacted copy.
+     *
+     * @return Size in bytes of each slab
+     */
+    int slabSize() {
+        return slabSize;
+    }
+
+    /**
+     * Checks whether a record is stored under the given key.
+     *
+     * @param location Location of the record
+     * @param key      UTF-8 bytes of the key
+     * @return true if the keys are equal
+     */
+    boolean keyEquals(long location, byte[] key) {
+        ByteBuffer slab = slabOf(location);
+        int offset = offsetOf(location) + KEY_OFFSET;
+        if (slab.getInt(offset) != key.length) {
+            return false;
+        }
+        return slab.slice(offset + 4, key.length).equals(ByteBuffer.wrap(key));
+    }
+
+    /**
+     * Checks whether a record has any genre in a set of genre ordinals.
+     *
+     * @param location Location of the record
+     * @param genres   Ordinals in StringDictionary.GENRES to look for
+     * @return true if one of the record's genres is in the set
+     */
+    boolean hasAnyGenre(long location, BitSet genres) {
+        ByteBuffer slab = slabOf(location);
+        int offset = genresOffset(slab, offsetOf(location));
+        int count = slab.getShort(offset);
+        for (int i = 0; i < count; i++) {
+            int genre = slab.getInt(offset + 2 + i * 4);
+            if (genre >= 0 && genres.get(genre)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int genresOffset(ByteBuffer slab, int recordOffset) {
+        int keyLength = slab.getInt(recordOffset + KEY_OFFSET);
+        return recordOffset + KEY_OFFSET + 4 + Math.max(keyLength, 0);
+    }
+
+    /**
+     * Creates a view of a record.
+     *
+     * @param location Location of the record
+     * @return Movie, TVShow or Anime view of the record
+     */
+    MediaItem view(long location) {
+        ByteBuffer slab = slabOf(location);
+        Reader in = new Reader(slab, offsetOf(location) + TYPE_OFFSET);
+        byte type = in.readByte();
+        String key = in.readString();
+        int genreCount = in.readShort();
+        int[] genres = null;
+        if (genreCount >= 0) {
+            genres = new int[genreCount];
+            for (int i = 0; i < genreCount; i++) {
+                genres[i] = in.readInt();
+            }
+        }
+
+        LazyFields lazy = new LazyFields(slab);
+        MediaItem item;
+        if (type == MOVIE) {
+            item = new MovieView(lazy);
+        } else if (type == TV_SHOW) {
+            item = new TVShowView(lazy);
+        } else {
+            item = new AnimeView(lazy);
+        }
+        item.setId(key);
+        item.setGenres(StringDictionary.GENRES.decode(genres));
+        item.setTitle(in.readString());
+        item.setRating(in.readDouble());
+        item.setReleaseDate(in.readString());
+        readTypeFields(item, in);
+        lazy.startAt(in.position);
+        return item;
+    }
+
+    private static void readTypeFields(MediaItem item, Reader in) {
+        if (item instanceof Movie) {
+            Movie movie = (Movie) item;
+            movie.setRuntime(in.readInt());
+            movie.setDirector(in.readString());
+            movie.setImdbId(in.readString());
+            movie.setTmdbId(in.readString());
+            movie.setBudget(in.readLong());
+            movie.setRevenue(in.readLong());
+        } else if (item instanceof TVShow) {
+            TVShow tvShow = (TVShow) item;
+            tvShow.setNumberOfSeasons(in.readInt());
+            tvShow.setNumberOfEpisodes(in.readInt());
+            tvShow.setCreators(in.readStrings());
+            tvShow.setStatus(in.readString());
+            tvShow.setFirstAirDate(in.readString());
+            tvShow.setLastAirDate(in.readString());
+            tvShow.setNetworks(in.readStrings());
+            tvShow.setEpisodeRuntime(in.readInt());
+            tvShow.setImdbId(in.readString());
+            tvShow.setTmdbId(in.readString());
+        } else {
+            Anime anime = (Anime) item;
+            anime.setAnimeType(in.readString());
+            anime.setEpisodes(in.readInt());
+            anime.setStatus(in.readString());
+            anime.setAired(in.readString());
+            anime.setSource(in.readString());
+            anime.setStudios(in.readStrings());
+            anime.setMalId(in.readInt());
+            anime.setMalScore(in.readDouble());
+            anime.setMalRank(in.readInt());
+            anime.setMalPopularity(in.readInt());
+            anime.setSeason(in.readString());
+            anime.setYear(in.readInt());
+            anime.setDuration(in.readInt());
+        }
+    }
+
+
+    /**
+     * Sequential reader over a record using absolute reads, so concurrent
+     * readers of a slab do not interfere.
+     */
+    private static final class Reader {
+        private final ByteBuffer slab;
+        private int position;
+
+        private Reader(ByteBuffer slab, int position) {
+            this.slab = slab;
+            this.position = position;
+        }
+
+        private byte readByte() {
+            return slab.get(position++);
+        }
+
+        private short readShort() {
+            short value = slab.getShort(position);
+            position += 2;
+            return value;
+        }
+
+        private int readInt() {
+            int value = slab.getInt(position);
+            position += 4;
+            return value;
+        }
+
+        private long readLong() {
+            long value = slab.getLong(position);
+            position += 8;
+            return value;
+        }
+
+        private double readDouble() {
+            double value = slab.getDouble(position);
+            position += 8;
+            return value;
+        }
+
+        private String readString() {
+            byte[] bytes = readBytes();
+            return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        private byte[] readBytes() {
+            int length = readInt();
+            if (length < 0) {
+                return null;
+            }
+            byte[] bytes = new byte[length];
+            slab.get(position, bytes);
+            position += length;
+            return bytes;
+        }
+
+        private List<String> readStrings() {
+            int count = readInt();
+            if (count < 0) {
+                return null;
+            }
+            List<String> values = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                values.add(readString());
+            }
+            return values;
+        }
+    }
+
+    /**
+     * Lazily read fields of a view: the description and image URLs, read
+     * from the record on first access. Holds the slab until then.
+     * Views may be shared between threads, so the fields are read at most
+     * once under the lock, and the volatile flag publishes them to threads
+     * that only check it.
+     */
+    private static final class LazyFields {
+        /** Slab holding the record until the fields are read, guarded by this */
+        private ByteBuffer slab;
+
+        /** Offset of the description in the slab, guarded by this */
+        private int offset;
+
+        /** Whether the fields have been read into the view */
+        private volatile boolean read;
+
+        private LazyFields(ByteBuffer slab) {
+            this.slab = slab;
+        }
+
+        private synchronized void startAt(int offset) {
+            this.offset = offset;
+        }
+
+        /**
+         * Reads the fields into the view unless they have been read already.
+         * The view's setters call back into this while the fields are read,
+         * which returns at once since the slab has been dropped by then.
+         *
+         * @param view View the fields belong to
+         */
+        private void materialize(MediaItem view) {
+            if (read) {
+                return;
+            }
+            synchronized (this) {
+                if (slab != null) {
+                    Reader in = new Reader(slab, offset);
+                    slab = null;
+                    view.setCompressedDescription(in.readBytes());
+                    view.setPosterUrl(in.readString());
+                    view.setBackdropUrl(in.readString());
+                    read = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Movie view of a record, reading its description and image URLs on first
+     * access.
+     */
+    private static final class MovieView extends Movie {
+        private final LazyFields lazy;
+
+        private MovieView(LazyFields lazy) {
+            this.lazy = lazy;
+        }
+
+        @Override
+        public String getDescription() {
+            lazy.materialize(this);
+            return super.getDescription();
+        }
+
+        @Override
+        public void setDescription(String description) {
+            lazy.materialize(this);
+            super.setDescription(description);
+        }
+
+        @Override
+        public byte[] getCompressedDescription() {
+            lazy.materialize(this);
+            return super.getCompressedDescription();
+        }
+
+        @Override
+        public void setCompressedDescription(byte[] compressedDescription) {
+            lazy.materialize(this);
+            super.setCompressedDescription(compressedDescription);
+        }
+
+        @Override
+        public String getPosterUrl() {
+            lazy.materialize(this);
+            return super.getPosterUrl();
+        }
+
+        @Override
+        public void setPosterUrl(String posterUrl) {
+            lazy.materialize(this);
+            super.setPosterUrl(posterUrl);
+        }
+
+        @Override
+        public String getBackdropUrl() {
+            lazy.materialize(this);
+            return super.getBackdropUrl();
+        }
+
+        @Override
+        public void setBackdropUrl(String backdropUrl) {
+            lazy.materialize(this);
+            super.setBackdropUrl(backdropUrl);
+        }
+    }
+
+    /**
+     * TV show view of a record, reading its description and image URLs on
+     * first access.
+     */
+    private static final class TVShowView extends TVShow {
+        private final LazyFields lazy;
+
+        private TVShowView(LazyFields lazy) {
+            this.lazy = lazy;
+        }
+
+        @Override
+        public String getDescription() {
+            lazy.materialize(this);
+            return super.getDescription();
+        }
+
+        @Override
+        public void setDescription(String description) {
+            lazy.materialize(this);
+            super.setDescription(description);
+        }
+
+        @Override
+        public byte[] getCompressedDescription() {
+            lazy.materialize(this);
+            return super.getCompressedDescription();
+        }
+
+        @Override
+        public void setCompressedDescription(byte[] compressedDescription) {
+            lazy.materialize(this);
+            super.setCompressedDescription(compressedDescription);
+        }
+
+        @Override
+        public String getPosterUrl() {
+            lazy.materialize(this);
+            return super.getPosterUrl();
+        }
+
+        @Override
+        public void setPosterUrl(String posterUrl) {
+            lazy.materialize(this);
+            super.setPosterUrl(posterUrl);
+        }
+
+        @Override
+        public String getBackdropUrl() {
+            lazy.materialize(this);
+            return super.getBackdropUrl();
+        }
+
+        @Override
+        public void setBackdropUrl(String backdropUrl) {
+            lazy.materialize(this);
+            super.setBackdropUrl(backdropUrl);
+        }
+    }
+
+    /**
+     * Anime view of a record, reading its description and image URLs on first
+     * access.
+     */
+    private static final class AnimeView extends Anime {
+        private final LazyFields lazy;
+
+        private AnimeView(LazyFields lazy) {
+            this.lazy = lazy;
+        }
+
+        @Override
+        public String getDescription() {
+            lazy.materialize(this);
+            return super.getDescription();
+        }
+
+        @Override
+        public void setDescription(String description) {
+            lazy.materialize(this);
+            super.setDescription(description);
+        }
+
+        @Override
+        public byte[] getCompressedDescription() {
+            lazy.materialize(this);
+            return super.getCompressedDescription();
+        }
+
+        @Override
+        public void setCompressedDescription(byte[] compressedDescription) {
+            lazy.materialize(this);
+            super.setCompressedDescription(compressedDescription);
+        }
+
+        @Override
+        public String getPosterUrl() {
+            lazy.materialize(this);
+            return super.getPosterUrl();
+        }
+
+        @Override
+        public void setPosterUrl(String posterUrl) {
+            lazy.materialize(this);
+            super.setPosterUrl(posterUrl);
+        }
+
+        @Override
+        public String getBackdropUrl() {
+            lazy.materialize(this);
+            return super.getBackdropUrl();
+        }
+
+        @Override
+        public void setBackdropUrl(String backdropUrl) {
+            lazy.materialize(this);
+            super.setBackdropUrl(backdropUrl);
+        }
+    }
+}
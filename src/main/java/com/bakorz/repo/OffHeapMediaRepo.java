@@ -0,0 +1,737 @@
+package com.bakorz.repo;
+
+import com.bakorz.model.*;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * File-based implementation of MediaRepo interface that keeps the cached
+ * catalog off the Java heap.
+ * Reads and writes the same CSV file as FileMediaRepo (data/media.csv), but
+ * stores each item as a binary record in direct ByteBuffer slabs managed by
+ * OffHeapCatalog. Lookups return lightweight views of the records, so the
+ * heap holds a few primitive arrays per catalog rather than several objects
+ * per item, and garbage collection pauses stay flat as the catalog grows.
+ * Each item gets a dense ordinal. IDs are found through an open-addressing
+ * table of ordinals, and rating, release date and type are kept in primitive
+ * columns for ranking queries, whose results are reused until the next
+ * change. Title search uses the trigram index of
+ * FileMediaRepo over titles packed into one byte array, and genre queries
+ * scan the genre ordinals of the records in place.
+ * Views are snapshots: changing one does not change the catalog until it is
+ * passed to update(), and two lookups of the same ID return distinct views.
+ * Saves append checksummed records to the file and deletes rewrite it, as
+ * LazyFileMediaRepo does, after merging any delta segments left by
+ * FileMediaRepo into the file. Off-heap memory is bounded by
+ * -XX:MaxDirectMemorySize, which defaults to the maximum heap size.
+ *
+ * @author Bakorz
+ * @version 1.0
+ */
+public class OffHeapMediaRepo implements MediaRepo {
+    /** Path to the media cache CSV file */
+    private static final String MEDIA_FILE = "data/media.csv";
+
+    /** Marks an ordinal whose item has no parsable release date */
+    private static final int NO_DATE = Integer.MIN_VALUE;
+
+    /** ID table slot that has never held an ordinal */
+    private static final int EMPTY_SLOT = 0;
+
+    /** ID table slot whose ordinal was removed */
+    private static final int DELETED_SLOT = -1;
+
+    /** Media class of each record type of OffHeapCatalog */
+    private static final List<Class<? extends MediaItem>> TYPE_CLASSES = Arrays.asList(
+            Movie.class, TVShow.class, Anime.class);
+
+    /** Path to the CSV file used by this instance */
+    private final Path mediaFile;
+
+    /** Computes the checksums of written records */
+    private final RecordChecksum checksum;
+
+    /** Off-heap records of the cached items; replaced when compacted */
+    private OffHeapCatalog catalog;
+
+    /** Record location of each ordinal */
+    private long[] locations;
+
+    /** Record type of each ordinal, -1 for free ordinals */
+    private byte[] types;
+
+    /** Rating of each ordinal */
+    private double[] ratings;
+
+    /** Release date of each ordinal, in epoch days */
+    private int[] releaseDays;
+
+    /** Hash of the ID of each ordinal */
+    private int[] keyHashes;
+
+    /** Trigram index over the normalized titles, packed into one byte array */
+    private final TrigramIndex titleIndex;
+
+    /** Number of ordinals handed out, including free ones */
+    private int ordinalCount;
+
+    /** Ordinals released by deletes, reused by later saves */
+    private int[] freeOrdinals;
+
+    /** Number of entries in freeOrdinals */
+    private int freeCount;
+
+    /** Open-addressing table of ordinal + 1 by ID hash, with linear probing */
+    private int[] slots;
+
+    /** Number of slots that are not empty, including deleted ones */
+    private int usedSlots;
+
+    /** Number of cached items */
+    private int size;
+
+    /** Results of ranking scans by query and limit, cleared by every change */
+    private final Map<String, int[]> rankingCache;
+
+    /**
+     * Constructor that loads the default media file.
+     */
+    public OffHeapMediaRepo() {
+        this(MEDIA_FILE);
+    }
+
+    /**
+     * Constructor that loads the given media file.
+     *
+     * @param mediaFile Path to the media CSV file
+     */
+    public OffHeapMediaRepo(String mediaFile) {
+        this(mediaFile, OffHeapCatalog.DEFAULT_SLAB_SIZE);
+    }
+
+    /**
+     * Constructor that loads the given media file into slabs of the given size.
+     *
+     * @param mediaFile Path to the media CSV file
+     * @param slabSize  Size in bytes of each off-heap slab
+     */
+    OffHeapMediaRepo(String mediaFile, int slabSize) {
+        this.mediaFile = Paths.get(mediaFile);
+        this.checksum = new RecordChecksum();
+        this.catalog = new OffHeapCatalog(slabSize);
+        this.locations = new long[16];
+        this.types = new byte[16];
+        this.ratings = new double[16];
+        this.releaseDays = new int[16];
+        this.keyHashes = new int[16];
+        this.titleIndex = new TrigramIndex(new PackedTitles());
+        this.freeOrdinals = new int[16];
+        this.slots = new int[32];
+        this.rankingCache = new HashMap<>();
+        MediaSegments.fold(this.mediaFile);
+        loadFromFile();
+    }
+
+    /**
+     * Streams the media file into the catalog without building the parsed
+     * items into a map first. A file without checksums, with corrupt or torn
+     * records, or with plain descriptions is rewritten.
+     */
+    private void loadFromFile() {
+        File file = mediaFile.toFile();
+        if (!file.exists()) {
+            return;
+        }
+
+        try {
+            ParallelCsvLoader.Result<MediaItem> result = ParallelCsvLoader.byHeader(MediaCsvFormat::parser,
+                    MediaItem::getId).stream(file, item -> putItem(item.getId(), item));
+            System.out.println("Loaded " + size + " media items off-heap (" + catalog.allocatedBytes() / (1024 * 1024)
+                    + " MB) in " + result.elapsedMillis + " ms (" + result.skipped + " skipped, " + result.corrupt
+                    + " corrupt)");
+            if (!result.checksummed || result.corrupt > 0 || !MediaCsvFormat.isDeflated(result.header)
+                    || !DurableFiles.endsWithNewline(mediaFile)) {
+                awaitDurable(rewriteFile());
+            }
+        } catch (IOException e) {
+            System.err.println("Error loading media file: " + e.getMessage());
+        }
+    }
+
+    private static int hash(String key) {
+        int h = key.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Finds the ordinal stored under a key.
+     *
+     * @param key Item ID
+     * @return Ordinal, or -1 if the key is not cached
+     */
+    private int ordinalOf(String key) {
+        int slot = slotOf(key.getBytes(StandardCharsets.UTF_8), hash(key));
+        return slot < 0 ? -1 : slots[slot] - 1;
+    }
+
+    /**
+     * Finds the ID table slot holding a key.
+     *
+     * @param key  UTF-8 bytes of the key
+     * @param hash Hash of the key
+     * @return Slot index, or -1 if the key is not cached
+     */
+    private int slotOf(byte[] key, int hash) {
+        int mask = slots.length - 1;
+        for (int i = hash & mask;; i = (i + 1) & mask) {
+            int entry = slots[i];
+            if (entry == EMPTY_SLOT) {
+                return -1;
+            }
+            if (entry != DELETED_SLOT && keyHashes[entry - 1] == hash
+                    && catalog.keyEquals(locations[entry - 1], key)) {
+                return i;
+            }
+        }
+    }
+
+    private void insertSlot(int hash, int ordinal) {
+        if ((usedSlots + 1) * 2 > slots.length) {
+            rehash();
+        }
+        int mask = slots.length - 1;
+        int i = hash & mask;
+        while (slots[i] > 0) {
+            i = (i + 1) & mask;
+        }
+        if (slots[i] == EMPTY_SLOT) {
+            usedSlots++;
+        }
+        slots[i] = ordinal + 1;
+    }
+
+    /**
+     * Rebuilds the ID table without deleted slots, growing it so that it is
+     * at most a quarter full.
+     */
+    private void rehash() {
+        int capacity = Integer.highestOneBit(Math.max(32, (size + 1) * 4 - 1)) << 1;
+        slots = new int[capacity];
+        usedSlots = 0;
+        int mask = capacity - 1;
+        for (int ordinal = 0; ordinal < ordinalCount; ordinal++) {
+            if (types[ordinal] >= 0) {
+                int i = keyHashes[ordinal] & mask;
+                while (slots[i] != EMPTY_SLOT) {
+                    i = (i + 1) & mask;
+                }
+                slots[i] = ordinal + 1;
+                usedSlots++;
+            }
+        }
+    }
+
+    private int allocateOrdinal() {
+        if (freeCount > 0) {
+            return freeOrdinals[--freeCount];
+        }
+        if (ordinalCount == types.length) {
+            int capacity = types.length * 2;
+            locations = Arrays.copyOf(locations, capacity);
+            types = Arrays.copyOf(types, capacity);
+            ratings = Arrays.copyOf(ratings, capacity);
+            releaseDays = Arrays.copyOf(releaseDays, capacity);
+            keyHashes = Arrays.copyOf(keyHashes, capacity);
+        }
+        return ordinalCount++;
+    }
+
+    /**
+     * Writes an item to the catalog under a key, replacing any item stored
+     * under it.
+     *
+     * @param key  Cache key
+     * @param item Item to store
+     * @return true if stored, false if the media type is not supported
+     */
+    private boolean putItem(String key, MediaItem item) {
+        byte type = OffHeapCatalog.typeOf(item);
+        if (type < 0) {
+            return false;
+        }
+
+        int hash = hash(key);
+        int slot = slotOf(key.getBytes(StandardCharsets.UTF_8), hash);
+        int ordinal;
+        if (slot >= 0) {
+            ordinal = slots[slot] - 1;
+            catalog.release(locations[ordinal]);
+        } else {
+            ordinal = allocateOrdinal();
+        }
+
+        Long day = RankingIndex.epochDay(item.getReleaseDate());
+        locations[ordinal] = catalog.write(key, item);
+        titleIndex.add(ordinal, item.getTitle());
+        types[ordinal] = type;
+        ratings[ordinal] = item.getRating();
+        releaseDays[ordinal] = day == null ? NO_DATE : day.intValue();
+        keyHashes[ordinal] = hash;
+        if (slot < 0) {
+            insertSlot(hash, ordinal);
+            size++;
+        }
+        rankingCache.clear();
+        compactIfNeeded();
+        return true;
+    }
+
+    /**
+     * Removes the item stored under a key.
+     *
+     * @param key Cache key
+     * @return true if an item was removed
+     */
+    private boolean removeItem(String key) {
+        int slot = slotOf(key.getBytes(StandardCharsets.UTF_8), hash(key));
+        if (slot < 0) {
+            return false;
+        }
+
+        int ordinal = slots[slot] - 1;
+        slots[slot] = DELETED_SLOT;
+        catalog.release(locations[ordinal]);
+        titleIndex.remove(ordinal);
+        types[ordinal] = -1;
+        if (freeCount == freeOrdinals.length) {
+            freeOrdinals = Arrays.copyOf(freeOrdinals, freeCount * 2);
+        }
+        freeOrdinals[freeCount++] = ordinal;
+        size--;
+        rankingCache.clear();
+        compactIfNeeded();
+        return true;
+    }
+
+    /**
+     * Copies the live records into a new catalog once most of the current one
+     * is garbage. Views of the old records keep their slabs alive until they
+     * are collected.
+     */
+    private void compactIfNeeded() {
+        if (!catalog.needsCompaction()) {
+            return;
+        }
+
+        OffHeapCatalog compacted = new OffHeapCatalog(catalog.slabSize());
+        for (int ordinal = 0; ordinal < ordinalCount; ordinal++) {
+            if (types[ordinal] >= 0) {
+                locations[ordinal] = compacted.copy(catalog, locations[ordinal]);
+            }
+        }
+        catalog = compacted;
+    }
+
+    private MediaItem itemAt(int ordinal) {
+        return catalog.view(locations[ordinal]);
+    }
+
+    /**
+     * Appends checksummed records for the given items to the file. Called
+     * with the repository lock held; the caller waits for durability after
+     * releasing it.
+     *
+     * @param items Items to append, keyed by their IDs
+     * @return Durability ticket, or 0 if the append failed
+     */
+    private long appendRecords(Collection<? extends MediaItem> items) {
+        List<String> records = new ArrayList<>(items.size());
+        for (MediaItem item : items) {
+            records.add(checksum.seal(MediaCsvFormat.format(item.getId(), item, true)));
+        }
+
+        try {
+            return DurableFiles.append(mediaFile, RecordChecksum.header(MediaCsvFormat.HEADER), records);
+        } catch (IOException e) {
+            System.err.println("Error appending to media file: " + e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * Atomically rewrites the file with the cached items. Called with the
+     * repository lock held; the caller waits for durability after releasing it.
+     *
+     * @return Durability ticket, or 0 if the rewrite failed
+     */
+    private long rewriteFile() {
+        try {
+            return DurableFiles.replace(mediaFile, out -> {
+                out.write(RecordChecksum.header(MediaCsvFormat.HEADER));
+                out.newLine();
+                for (int ordinal = 0; ordinal < ordinalCount; ordinal++) {
+                    if (types[ordinal] >= 0) {
+                        MediaItem item = itemAt(ordinal);
+                        out.write(checksum.seal(MediaCsvFormat.format(item.getId(), item, true)));
+                        out.newLine();
+                    }
+                }
+            });
+        } catch (IOException e) {
+            System.err.println("Error rewriting media file: " + e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * Waits until a write is as durable as the durability policy requires.
+     * Called after releasing the repository lock, so readers and other
+     * writers are not held up by the fsync. An interrupted wait still counts
+     * as a write made, only not confirmed durable yet.
+     *
+     * @param ticket Durability ticket, or -1 if nothing was written
+     * @return true if something was written
+     */
+    private static boolean awaitDurable(long ticket) {
+        if (ticket < 0) {
+            return false;
+        }
+        try {
+            FsyncBatcher.shared().awaitDurable(ticket);
+        } catch (IOException e) {
+            System.err.println("Media file written but not yet synced: " + e.getMessage());
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized List<MediaItem> searchByTitle(String title) {
+        int[] matches = titleIndex.search(title);
+        List<MediaItem> results = new ArrayList<>(matches.length);
+        for (int ordinal : matches) {
+            results.add(itemAt(ordinal));
+        }
+        return results;
+    }
+
+    @Override
+    public synchronized Optional<MediaItem> getById(String id) {
+        int ordinal = ordinalOf(id);
+        return ordinal < 0 ? Optional.empty() : Optional.of(itemAt(ordinal));
+    }
+
+    @Override
+    public synchronized Optional<Movie> getMovieById(String id) {
+        int ordinal = ordinalOf(id);
+        if (ordinal >= 0 && types[ordinal] == OffHeapCatalog.MOVIE) {
+            return Optional.of((Movie) itemAt(ordinal));
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public synchronized Optional<TVShow> getTVShowById(String id) {
+        int ordinal = ordinalOf(id);
+        if (ordinal >= 0 && types[ordinal] == OffHeapCatalog.TV_SHOW) {
+            return Optional.of((TVShow) itemAt(ordinal));
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public synchronized Optional<Anime> getAnimeById(String id) {
+        int ordinal = ordinalOf(id);
+        if (ordinal >= 0 && types[ordinal] == OffHeapCatalog.ANIME) {
+            return Optional.of((Anime) itemAt(ordinal));
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public synchronized List<MediaItem> getByGenre(String genre) {
+        return getByGenres(Collections.singletonList(genre), Collections.emptyList(), Collections.emptyList());
+    }
+
+    @Override
+    public synchronized List<MediaItem> getByGenres(Collection<String> allOf, Collection<String> anyOf,
+            Collection<String> noneOf) {
+        List<BitSet> required = new ArrayList<>();
+        for (String genre : allOf) {
+            required.add(genreOrdinals(Collections.singletonList(genre)));
+        }
+        BitSet optional = anyOf.isEmpty() ? null : genreOrdinals(anyOf);
+        BitSet excluded = genreOrdinals(noneOf);
+
+        List<MediaItem> results = new ArrayList<>();
+        for (int ordinal = 0; ordinal < ordinalCount; ordinal++) {
+            if (types[ordinal] < 0) {
+                continue;
+            }
+            long location = locations[ordinal];
+            boolean matches = optional == null || catalog.hasAnyGenre(location, optional);
+            for (int i = 0; matches && i < required.size(); i++) {
+                matches = catalog.hasAnyGenre(location, required.get(i));
+            }
+            if (matches && (excluded.isEmpty() || !catalog.hasAnyGenre(location, excluded))) {
+                results.add(itemAt(ordinal));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Gets the ordinals of every dictionary genre equal to one of the given
+     * genres, ignoring case.
+     *
+     * @param genres Genre names
+     * @return Ordinals in StringDictionary.GENRES
+     */
+    private static BitSet genreOrdinals(Collection<String> genres) {
+        BitSet ordinals = new BitSet();
+        if (genres.isEmpty()) {
+            return ordinals;
+        }
+        Set<String> wanted = new HashSet<>();
+        for (String genre : genres) {
+            wanted.add(genre.toLowerCase(Locale.ROOT));
+        }
+        for (int ordinal = 0; ordinal < StringDictionary.GENRES.size(); ordinal++) {
+            String value = StringDictionary.GENRES.valueOf(ordinal);
+            if (value != null && wanted.contains(value.toLowerCase(Locale.ROOT))) {
+                ordinals.set(ordinal);
+            }
+        }
+        return ordinals;
+    }
+
+    @Override
+    public synchronized List<MediaItem> getTopRated(int limit) {
+        int[] top = rankingCache.computeIfAbsent("top:" + limit, k -> top(limit, ordinal -> true, (a, b) -> {
+            int byRating = Double.compare(ratings[b], ratings[a]);
+            return byRating != 0 ? byRating : Integer.compare(a, b);
+        }));
+        List<MediaItem> results = new ArrayList<>(top.length);
+        for (int ordinal : top) {
+            results.add(itemAt(ordinal));
+        }
+        return results;
+    }
+
+    @Override
+    public synchronized List<Movie> getLatestMovies(int limit) {
+        List<Movie> results = new ArrayList<>();
+        for (int ordinal : latest(OffHeapCatalog.MOVIE, limit)) {
+            results.add((Movie) itemAt(ordinal));
+        }
+        return results;
+    }
+
+    @Override
+    public synchronized List<TVShow> getLatestTVShows(int limit) {
+        List<TVShow> results = new ArrayList<>();
+        for (int ordinal : latest(OffHeapCatalog.TV_SHOW, limit)) {
+            results.add((TVShow) itemAt(ordinal));
+        }
+        return results;
+    }
+
+    /**
+     * Finds the most recently released items of a record type, newest first.
+     */
+    private int[] latest(byte type, int limit) {
+        return rankingCache.computeIfAbsent("latest" + type + ":" + limit, k -> top(limit,
+                ordinal -> types[ordinal] == type && releaseDays[ordinal] != NO_DATE, (a, b) -> {
+                    int byDay = Integer.compare(releaseDays[b], releaseDays[a]);
+                    return byDay != 0 ? byDay : Integer.compare(b, a);
+                }));
+    }
+
+    @Override
+    public synchronized <T extends MediaItem> List<T> getReleasedBetween(Class<T> type, LocalDate from,
+            LocalDate to) {
+        long fromDay = from.toEpochDay();
+        long toDay = to.toEpochDay();
+        long[] matches = new long[16];
+        int count = 0;
+        for (int ordinal = 0; ordinal < ordinalCount; ordinal++) {
+            int day = releaseDays[ordinal];
+            if (types[ordinal] >= 0 && day != NO_DATE && day >= fromDay && day <= toDay
+                    && type.isAssignableFrom(TYPE_CLASSES.get(types[ordinal]))) {
+                if (count == matches.length) {
+                    matches = Arrays.copyOf(matches, count * 2);
+                }
+                matches[count++] = ((long) day << 32) | ordinal;
+            }
+        }
+
+        Arrays.sort(matches, 0, count);
+        List<T> results = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            results.add(type.cast(itemAt((int) matches[i])));
+        }
+        return results;
+    }
+
+    /**
+     * Selects the first ordinals in the given order among those accepted by
+     * a filter, using a bounded heap of ordinals.
+     *
+     * @param limit  Maximum number of ordinals
+     * @param filter Accepts the live ordinals to consider
+     * @param order  Order of the ordinals, first ones first
+     * @return Selected ordinals in order
+     */
+    private int[] top(int limit, OrdinalFilter filter, OrdinalOrder order) {
+        int capacity = Math.max(0, Math.min(limit, size));
+        // Max-heap in the given order: the root is the last ordinal kept
+        int[] heap = new int[capacity];
+        int count = 0;
+        for (int ordinal = 0; ordinal < ordinalCount && capacity > 0; ordinal++) {
+            if (types[ordinal] < 0 || !filter.accept(ordinal)) {
+                continue;
+            }
+            if (count < capacity) {
+                int i = count++;
+                while (i > 0 && order.compare(ordinal, heap[(i - 1) / 2]) > 0) {
+                    heap[i] = heap[(i - 1) / 2];
+                    i = (i - 1) / 2;
+                }
+                heap[i] = ordinal;
+            } else if (order.compare(ordinal, heap[0]) < 0) {
+                siftDown(heap, count, ordinal, order);
+            }
+        }
+
+        int[] sorted = new int[count];
+        for (int i = count - 1; i >= 0; i--) {
+            sorted[i] = heap[0];
+            siftDown(heap, i, heap[i], order);
+        }
+        return sorted;
+    }
+
+    /**
+     * Places an ordinal at the root of a heap and moves it down to its place.
+     */
+    private static void siftDown(int[] heap, int count, int ordinal, OrdinalOrder order) {
+        int i = 0;
+        while (2 * i + 1 < count) {
+            int child = 2 * i + 1;
+            if (child + 1 < count && order.compare(heap[child + 1], heap[child]) > 0) {
+                child++;
+            }
+            if (order.compare(heap[child], ordinal) <= 0) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        if (count > 0) {
+            heap[i] = ordinal;
+        }
+    }
+
+    @Override
+    public synchronized List<MediaItem> getAll() {
+        List<MediaItem> results = new ArrayList<>(size);
+        for (int ordinal = 0; ordinal < ordinalCount; ordinal++) {
+            if (types[ordinal] >= 0) {
+                results.add(itemAt(ordinal));
+            }
+        }
+        return results;
+    }
+
+    @Override
+    public synchronized List<MediaItem> getAllByIds(Collection<String> ids) {
+        List<MediaItem> results = new ArrayList<>();
+        for (String id : ids) {
+            int ordinal = ordinalOf(id);
+            if (ordinal >= 0) {
+                results.add(itemAt(ordinal));
+            }
+        }
+        return results;
+    }
+
+    @Override
+    public boolean save(MediaItem mediaItem) {
+        return saveAll(Collections.singletonList(mediaItem)) > 0;
+    }
+
+    @Override
+    public int saveAll(Collection<? extends MediaItem> mediaItems) {
+        List<MediaItem> saved = new ArrayList<>();
+        long ticket = -1;
+        synchronized (this) {
+            for (MediaItem item : mediaItems) {
+                if (item != null && item.getId() != null && putItem(item.getId(), item)) {
+                    saved.add(item);
+                }
+            }
+
+            if (!saved.isEmpty()) {
+                ticket = appendRecords(saved);
+            }
+        }
+        return awaitDurable(ticket) ? saved.size() : 0;
+    }
+
+    @Override
+    public boolean update(MediaItem mediaItem) {
+        if (mediaItem == null || mediaItem.getId() == null) {
+            return false;
+        }
+
+        long ticket = -1;
+        synchronized (this) {
+            if (ordinalOf(mediaItem.getId()) >= 0 && putItem(mediaItem.getId(), mediaItem)) {
+                ticket = appendRecords(Collections.singletonList(mediaItem));
+            }
+        }
+        return awaitDurable(ticket);
+    }
+
+    @Override
+    public boolean delete(String id) {
+        return deleteAll(Collections.singletonList(id)) > 0;
+    }
+
+    @Override
+    public int deleteAll(Collection<String> ids) {
+        int deleted = 0;
+        long ticket = -1;
+        synchronized (this) {
+            for (String id : ids) {
+                if (removeItem(id)) {
+                    deleted++;
+                }
+            }
+
+            if (deleted > 0) {
+                ticket = rewriteFile();
+            }
+        }
+        awaitDurable(ticket);
+        return deleted;
+    }
+
+    /**
+     * Accepts ordinals for a ranking query.
+     */
+    private interface OrdinalFilter {
+        boolean accept(int ordinal);
+    }
+
+    /**
+     * Orders ordinals for a ranking query without boxing them.
+     */
+    private interface OrdinalOrder {
+        int compare(int a, int b);
+    }
+}
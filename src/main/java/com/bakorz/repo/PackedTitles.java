@@ -0,0 +1,137 @@
+package com.bakorz.repo;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Title store for TrigramIndex that packs the UTF-8 bytes of all titles end
+ * to end in one byte array, instead of keeping a String per item.
+ * A primitive array is a single object the garbage collector does not trace,
+ * so the store adds nothing to collection work however many titles it holds.
+ * Titles are compared as UTF-8 bytes; UTF-8 is self-synchronizing, so a byte
+ * match is a character match. The bytes of replaced and removed titles are
+ * dropped once they outweigh the live ones.
+ * Instances are not thread-safe; the owning repository synchronizes access.
+ *
+ * @author Bakorz
+ * @version 1.0
+ */
+final class PackedTitles implements TrigramIndex.TitleStore {
+    /** Smallest number of garbage bytes worth compacting */
+    private static final int MIN_COMPACTION = 64 * 1024;
+
+    /** Title bytes, packed end to end */
+    private byte[] bytes;
+
+    /** Number of bytes in use */
+    private int end;
+
+    /** Bytes in use that belong to removed titles */
+    private int garbage;
+
+    /** Start of the title of each ordinal */
+    private int[] offsets;
+
+    /** Length of the title of each ordinal, -1 for ordinals without one */
+    private int[] lengths;
+
+    /** Last query compared, reused across the candidates of a search */
+    private String query;
+
+    /** UTF-8 bytes of the last query */
+    private byte[] queryBytes;
+
+    /**
+     * Creates an empty store.
+     */
+    PackedTitles() {
+        this.bytes = new byte[1024];
+        this.offsets = new int[16];
+        this.lengths = new int[16];
+        Arrays.fill(lengths, -1);
+    }
+
+    @Override
+    public void put(int ordinal, String normalized) {
+        if (ordinal >= lengths.length) {
+            int capacity = Math.max(ordinal + 1, lengths.length * 2);
+            int oldLength = lengths.length;
+            offsets = Arrays.copyOf(offsets, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            Arrays.fill(lengths, oldLength, capacity, -1);
+        }
+
+        byte[] title = normalized.getBytes(StandardCharsets.UTF_8);
+        if (end + title.length > bytes.length) {
+            if (garbage >= MIN_COMPACTION && garbage > end - garbage) {
+                compact(title.length);
+            } else {
+                bytes = Arrays.copyOf(bytes, Math.max(end + title.length, bytes.length * 2));
+            }
+        }
+        System.arraycopy(title, 0, bytes, end, title.length);
+        offsets[ordinal] = end;
+        lengths[ordinal] = title.length;
+        end += title.length;
+    }
+
+    /**
+     * Copies the live titles into a new array with room for more.
+     *
+     * @param extra Number of bytes about to be added
+     */
+    private void compact(int extra) {
+        byte[] packed = new byte[Math.max(1024, (end - garbage + extra) * 2)];
+        int packedEnd = 0;
+        for (int ordinal = 0; ordinal < lengths.length; ordinal++) {
+            if (lengths[ordinal] >= 0) {
+                System.arraycopy(bytes, offsets[ordinal], packed, packedEnd, lengths[ordinal]);
+                offsets[ordinal] = packedEnd;
+                packedEnd += lengths[ordinal];
+            }
+        }
+        bytes = packed;
+        end = packedEnd;
+        garbage = 0;
+    }
+
+    @Override
+    public String remove(int ordinal) {
+        if (ordinal >= lengths.length || lengths[ordinal] < 0) {
+            return null;
+        }
+        String title = new String(bytes, offsets[ordinal], lengths[ordinal], StandardCharsets.UTF_8);
+        garbage += lengths[ordinal];
+        lengths[ordinal] = -1;
+        return title;
+    }
+
+    @Override
+    public boolean contains(int ordinal, String normalized) {
+        if (ordinal >= lengths.length || lengths[ordinal] < 0) {
+            return false;
+        }
+        if (!normalized.equals(query)) {
+            query = normalized;
+            queryBytes = normalized.getBytes(StandardCharsets.UTF_8);
+        }
+
+        byte[] wanted = queryBytes;
+        int last = offsets[ordinal] + lengths[ordinal] - wanted.length;
+        next:
+        for (int i = offsets[ordinal]; i <= last; i++) {
+            for (int j = 0; j < wanted.length; j++) {
+                if (bytes[i + j] != wanted[j]) {
+                    continue next;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public int limit() {
+        return lengths.length;
+    }
+}
@@ -0,0 +1,416 @@
+package com.bakorz.repo;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Loads a CSV file with a header line by parsing byte ranges in parallel.
+ * The file is split into ranges that end on record boundaries, skipping
+ * newlines inside quoted fields; the split itself is found in parallel. Each range is parsed on a fork-join worker
+ * and the partial maps are merged in file order, so later records win as
+ * they would in a sequential load.
+ * Each range is decoded once into a char buffer and records are handed to the
+ * parser through a reused CsvTokenizer, without a String per line.
+ * If the header carries the checksum column, each record is verified before
+ * it is parsed and records failing verification are counted as corrupt.
+ * Files whose record layout changed over time can choose the parser from
+ * their header line.
+ * Callers that store records elsewhere can stream them instead, in file order
+ * on the calling thread, without collecting them into a map.
+ *
+ * @param <T> Type of the parsed records
+ * @author Bakorz
+ * @version 1.0
+ */
+final class ParallelCsvLoader<T> {
+    /** Smallest byte range worth handing to a separate worker */
+    private static final int MIN_CHUNK_SIZE = 64 * 1024;
+
+    /** Chooses the record parser from the header line of the file */
+    private final Function<String, RecordParser<T>> parserFor;
+
+    /** Extracts the map key from a parsed record */
+    private final Function<T, String> keyOf;
+
+    /**
+     * Creates a loader with the given record parser and key extractor.
+     *
+     * @param parser Parses one CSV record, or returns null to skip it
+     * @param keyOf  Extracts the map key from a parsed record
+     */
+    ParallelCsvLoader(RecordParser<T> parser, Function<T, String> keyOf) {
+        this.parserFor = header -> parser;
+        this.keyOf = keyOf;
+    }
+
+    private ParallelCsvLoader(Function<T, String> keyOf, Function<String, RecordParser<T>> parserFor) {
+        this.parserFor = parserFor;
+        this.keyOf = keyOf;
+    }
+
+    /**
+     * Creates a loader that chooses the record parser from the header line.
+     *
+     * @param <T>       Type of the parsed records
+     * @param parserFor Returns the parser for a header, given without its line
+     *                  terminator
+     * @param keyOf     Extracts the map key from a parsed record
+     * @return Loader for files in any of the formats parserFor knows
+     */
+    static <T> ParallelCsvLoader<T> byHeader(Function<String, RecordParser<T>> parserFor, Function<T, String> keyOf) {
+        return new ParallelCsvLoader<>(keyOf, parserFor);
+    }
+
+    /**
+     * Loads all records of a CSV file, skipping its header line.
+     *
+     * @param file CSV file to load
+     * @return Parsed records with load statistics
+     * @throws IOException if the file cannot be read
+     */
+    Result<T> load(File file) throws IOException {
+        long start = System.nanoTime();
+        ByteBuffer data = map(file);
+        int headerEnd = nextRecordStart(data, 0);
+        String header = header(data, headerEnd);
+        boolean checksummed = RecordChecksum.isChecksummed(header);
+        int[] boundaries = findBoundaries(data, headerEnd);
+        Partial<T> merged = ForkJoinPool.commonPool().invoke(
+                new ParseTask(data, boundaries, 0, boundaries.length - 1, checksummed, parserFor.apply(header)));
+
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        return new Result<>(merged.records, merged.skipped, merged.corrupt, header, checksummed, elapsedMillis);
+    }
+
+    /**
+     * Parses all records of a CSV file in file order on the calling thread,
+     * handing each to a consumer instead of collecting them. Only one range
+     * of the file is decoded at a time.
+     *
+     * @param file     CSV file to load
+     * @param consumer Receives each parsed record
+     * @return Load statistics; the records map of the result is empty
+     * @throws IOException if the file cannot be read
+     */
+    Result<T> stream(File file, Consumer<T> consumer) throws IOException {
+        long start = System.nanoTime();
+        ByteBuffer data = map(file);
+        int headerEnd = nextRecordStart(data, 0);
+        String header = header(data, headerEnd);
+        boolean checksummed = RecordChecksum.isChecksummed(header);
+        RecordParser<T> parser = parserFor.apply(header);
+        int[] boundaries = findBoundaries(data, headerEnd);
+        Partial<T> totals = new Partial<>();
+        for (int i = 0; i + 1 < boundaries.length; i++) {
+            parseRange(data, boundaries[i], boundaries[i + 1], checksummed, parser, totals, consumer);
+        }
+
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        return new Result<>(Collections.emptyMap(), totals.skipped, totals.corrupt, header, checksummed,
+                elapsedMillis);
+    }
+
+    private static ByteBuffer map(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    private static String header(ByteBuffer data, int headerEnd) {
+        return StandardCharsets.UTF_8.decode(data.slice(0, headerEnd)).toString().trim();
+    }
+
+    /**
+     * Finds the start of the record after the one beginning at the given
+     * position.
+     *
+     * @param data  File contents
+     * @param start Start of a record
+     * @return Position just after the record's terminating newline
+     */
+    private static int nextRecordStart(ByteBuffer data, int start) {
+        return nextRecordStart(data, start, false);
+    }
+
+    /**
+     * Splits the file into ranges of roughly equal size that end on record
+     * boundaries, without a sequential pass over the whole file.
+     * First the number of quote bytes in each of a set of evenly spaced
+     * chunks is counted in parallel; their running parity gives the quote
+     * state at each chunk start. Then, again in parallel, each chunk is scanned
+     * from its start only as far as the first newline outside quotes, which
+     * ends the previous range. Working on raw UTF-8 bytes is safe since
+     * multi-byte sequences never contain quote or newline bytes.
+     *
+     * @param data  File contents
+     * @param start Position of the first record
+     * @return Range boundaries, starting at the first record and ending at the
+     *         end of the file
+     * @throws IOException if a worker fails
+     */
+    private static int[] findBoundaries(ByteBuffer data, int start) throws IOException {
+        int size = data.limit() - start;
+        int workers = ForkJoinPool.getCommonPoolParallelism() * 4;
+        int chunkSize = Math.max(MIN_CHUNK_SIZE, size / Math.max(1, workers));
+        int chunks = Math.max(1, (int) ((size + (long) chunkSize - 1) / chunkSize));
+
+        List<Callable<Boolean>> parityTasks = new ArrayList<>();
+        for (int i = 0; i < chunks; i++) {
+            int from = start + i * chunkSize;
+            int to = Math.min(data.limit(), from + chunkSize);
+            parityTasks.add(() -> oddQuoteCount(data, from, to));
+        }
+        List<Boolean> oddChunks = invokeAll(parityTasks);
+
+        List<Callable<Integer>> boundaryTasks = new ArrayList<>();
+        boolean inQuotes = false;
+        for (int i = 1; i < chunks; i++) {
+            inQuotes ^= oddChunks.get(i - 1);
+            int from = start + i * chunkSize;
+            boolean quotedAtStart = inQuotes;
+            boundaryTasks.add(() -> nextRecordStart(data, from, quotedAtStart));
+        }
+
+        // A record longer than a chunk gives neighbouring chunks the same boundary
+        List<Integer> boundaries = new ArrayList<>();
+        boundaries.add(start);
+        for (int boundary : invokeAll(boundaryTasks)) {
+            if (boundary > boundaries.get(boundaries.size() - 1)) {
+                boundaries.add(boundary);
+            }
+        }
+        if (boundaries.get(boundaries.size() - 1) < data.limit()) {
+            boundaries.add(data.limit());
+        }
+
+        int[] result = new int[boundaries.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = boundaries.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Checks whether a byte range holds an odd number of quote bytes, that is
+     * whether it flips the quote state.
+     */
+    private static boolean oddQuoteCount(ByteBuffer data, int from, int to) {
+        boolean odd = false;
+        for (int i = from; i < to; i++) {
+            if (data.get(i) == '"') {
+                odd = !odd;
+            }
+        }
+        return odd;
+    }
+
+    /**
+     * Finds the first record boundary at or after a position whose quote
+     * state is known.
+     *
+     * @param data     File contents
+     * @param from     Position to scan from
+     * @param inQuotes Whether the position is inside a quoted field
+     * @return Position just after the first newline outside quotes, or the end
+     *         of the file
+     */
+    private static int nextRecordStart(ByteBuffer data, int from, boolean inQuotes) {
+        for (int i = from; i < data.limit(); i++) {
+            byte b = data.get(i);
+            if (b == '"') {
+                inQuotes = !inQuotes;
+            } else if (b == '\n' && !inQuotes) {
+                return i + 1;
+            }
+        }
+        return data.limit();
+    }
+
+    /**
+     * Runs tasks on the common fork-join pool and collects their results in
+     * task order.
+     */
+    private static <R> List<R> invokeAll(List<Callable<R>> tasks) throws IOException {
+        List<R> results = new ArrayList<>(tasks.size());
+        try {
+            for (Future<R> future : ForkJoinPool.commonPool().invokeAll(tasks)) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while splitting the file", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to split the file", e.getCause());
+        }
+        return results;
+    }
+
+    /**
+     * Parses the records in one byte range.
+     *
+     * @param data        File contents
+     * @param from        Start of the range (a record boundary)
+     * @param to          End of the range (a record boundary)
+     * @param checksummed Whether records end with a checksum to verify
+     * @param parser      Parses each record
+     * @param partial     Receives the skip and corrupt counts of the range
+     * @param sink        Receives each parsed record
+     */
+    private static <T> void parseRange(ByteBuffer data, int from, int to, boolean checksummed,
+            RecordParser<T> parser, Partial<T> partial, Consumer<T> sink) {
+        CharBuffer decoded = StandardCharsets.UTF_8.decode(data.slice(from, to - from));
+        char[] text = decoded.array();
+        int offset = decoded.arrayOffset() + decoded.position();
+        int end = offset + decoded.remaining();
+
+        CsvTokenizer tokenizer = new CsvTokenizer(',');
+        RecordChecksum checksum = checksummed ? new RecordChecksum() : null;
+        boolean inQuotes = false;
+        int recordStart = offset;
+        for (int i = offset; i <= end; i++) {
+            char c = i < end ? text[i] : '\n';
+            if (c == '"') {
+                inQuotes = !inQuotes;
+            } else if (c == '\n' && !inQuotes) {
+                int recordEnd = i > recordStart && text[i - 1] == '\r' ? i - 1 : i;
+                if (recordEnd > recordStart && checksummed) {
+                    recordEnd = checksum.verify(text, recordStart, recordEnd);
+                    if (recordEnd < 0) {
+                        partial.corrupt++;
+                    }
+                }
+                if (recordEnd > recordStart) {
+                    T record = parser.parse(tokenizer.reset(text, recordStart, recordEnd));
+                    if (record != null) {
+                        sink.accept(record);
+                    } else {
+                        partial.skipped++;
+                    }
+                }
+                recordStart = i + 1;
+            }
+        }
+    }
+
+    /**
+     * Fork-join task that parses a run of ranges by splitting it in halves.
+     */
+    private final class ParseTask extends RecursiveTask<Partial<T>> {
+        private static final long serialVersionUID = 1L;
+
+        // Tasks never leave the process, so the buffer and parser are not serialized
+        private final transient ByteBuffer data;
+        private final int[] boundaries;
+        private final int first;
+        private final int last;
+        private final boolean checksummed;
+        private final transient RecordParser<T> parser;
+
+        private ParseTask(ByteBuffer data, int[] boundaries, int first, int last, boolean checksummed,
+                RecordParser<T> parser) {
+            this.data = data;
+            this.boundaries = boundaries;
+            this.first = first;
+            this.last = last;
+            this.checksummed = checksummed;
+            this.parser = parser;
+        }
+
+        @Override
+        protected Partial<T> compute() {
+            if (last - first <= 1) {
+                Partial<T> partial = new Partial<>();
+                if (first < last) {
+                    parseRange(data, boundaries[first], boundaries[last], checksummed, parser,
+                            partial, record -> partial.records.put(keyOf.apply(record), record));
+                }
+                return partial;
+            }
+
+            int middle = (first + last) / 2;
+            ParseTask left = new ParseTask(data, boundaries, first, middle, checksummed, parser);
+            ParseTask right = new ParseTask(data, boundaries, middle, last, checksummed, parser);
+            left.fork();
+            Partial<T> rightResult = right.compute();
+            Partial<T> leftResult = left.join();
+
+            // Records later in the file replace earlier ones
+            leftResult.records.putAll(rightResult.records);
+            leftResult.skipped += rightResult.skipped;
+            leftResult.corrupt += rightResult.corrupt;
+            return leftResult;
+        }
+    }
+
+    /**
+     * Parses one CSV record from a tokenizer positioned before its first field.
+     *
+     * @param <T> Type of the parsed record
+     */
+    interface RecordParser<T> {
+        /**
+         * Parses a record.
+         *
+         * @param record Tokenizer over the record
+         * @return Parsed record, or null to skip it
+         */
+        T parse(CsvTokenizer record);
+    }
+
+    /**
+     * Records parsed from part of the file.
+     */
+    private static final class Partial<T> {
+        private final Map<String, T> records = new LinkedHashMap<>();
+        private int skipped;
+        private int corrupt;
+    }
+
+    /**
+     * Outcome of a load: the parsed records plus timing and skip counts.
+     *
+     * @param <T> Type of the parsed records
+     */
+    static final class Result<T> {
+        /** Parsed records mapped by key */
+        final Map<String, T> records;
+
+        /** Number of non-empty records the parser rejected */
+        final int skipped;
+
+        /** Number of records that failed checksum verification */
+        final int corrupt;
+
+        /** Header line of the file, without its line terminator */
+        final String header;
+
+        /** Whether the file carries record checksums */
+        final boolean checksummed;
+
+        /** Wall-clock load time in milliseconds */
+        final long elapsedMillis;
+
+        private Result(Map<String, T> records, int skipped, int corrupt, String header, boolean checksummed,
+                long elapsedMillis) {
+            this.records = records;
+            this.skipped = skipped;
+            this.corrupt = corrupt;
+            this.header = header;
+            this.checksummed = checksummed;
+            this.elapsedMillis = elapsedMillis;
+        }
+    }
+}
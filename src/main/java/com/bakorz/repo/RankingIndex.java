@@ -0,0 +1,241 @@
+package com.bakorz.repo;
+
+import com.bakorz.model.*;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * Ordered indexes on rating and release date, kept separately for each media
+ * type, used for top-rated, latest and date-range queries.
+ * Items are identified by dense ordinals assigned by the owning repository.
+ * Release dates are indexed as epoch days, so they compare by date rather
+ * than as strings; items without a parsable date are left out of the date
+ * index. The rating and date indexed for each ordinal are kept so an item can
+ * be re-indexed or removed after its fields change.
+ * Queries spanning several media types merge the per-type orders, reading
+ * only as many entries as they return.
+ * Instances are not thread-safe; the owning repository synchronizes access.
+ *
+ * @author Bakorz
+ * @version 1.0
+ */
+final class RankingIndex {
+    /** Media type of each per-type index; the last one holds any other type */
+    private static final List<Class<? extends MediaItem>> TYPES = Arrays.asList(
+            Movie.class, TVShow.class, Anime.class, MediaItem.class);
+
+    /** Marks an ordinal whose item has no parsable release date */
+    private static final int NO_DATE = Integer.MIN_VALUE;
+
+    /** Indexed rating of each ordinal */
+    private double[] ratings;
+
+    /** Indexed release date of each ordinal, in epoch days */
+    private int[] releaseDays;
+
+    /** Per-type index of each ordinal, -1 for free ordinals */
+    private byte[] types;
+
+    /** Ordinals of each type, highest rating first */
+    private final List<TreeSet<Integer>> byRating;
+
+    /** Release date and ordinal of each dated item of each type, packed in ascending order */
+    private final List<TreeSet<Long>> byReleaseDay;
+
+    /**
+     * Creates an empty index.
+     */
+    RankingIndex() {
+        this.ratings = new double[16];
+        this.releaseDays = new int[16];
+        this.types = new byte[16];
+        Arrays.fill(types, (byte) -1);
+
+        Comparator<Integer> highestRatingFirst = (a, b) -> {
+            int byValue = Double.compare(ratings[b], ratings[a]);
+            return byValue != 0 ? byValue : Integer.compare(a, b);
+        };
+        this.byRating = new ArrayList<>();
+        this.byReleaseDay = new ArrayList<>();
+        for (int t = 0; t < TYPES.size(); t++) {
+            byRating.add(new TreeSet<>(highestRatingFirst));
+            byReleaseDay.add(new TreeSet<>());
+        }
+    }
+
+    /**
+     * Parses a release date in the formats the APIs return ("2009-04-05",
+     * "2009-04" or "2009") into an epoch day.
+     *
+     * @param releaseDate Release date string, may be null
+     * @return Epoch day, or null if the date is missing or not parsable
+     */
+    static Long epochDay(String releaseDate) {
+        if (releaseDate == null) {
+            return null;
+        }
+
+        String[] parts = releaseDate.trim().split("-");
+        try {
+            int year = Integer.parseInt(parts[0]);
+            int month = parts.length > 1 ? Integer.parseInt(parts[1]) : 1;
+            int day = parts.length > 2 ? Integer.parseInt(parts[2]) : 1;
+            return LocalDate.of(year, month, day).toEpochDay();
+        } catch (NumberFormatException | DateTimeException e) {
+            return null;
+        }
+    }
+
+    private static long pack(int releaseDay, int ordinal) {
+        return ((long) releaseDay << 32) | ordinal;
+    }
+
+    private static int typeOf(MediaItem item) {
+        for (int t = 0; t < TYPES.size() - 1; t++) {
+            if (TYPES.get(t).isInstance(item)) {
+                return t;
+            }
+        }
+        return TYPES.size() - 1;
+    }
+
+    /**
+     * Indexes the rating and release date of an item. Any values previously
+     * indexed under the ordinal are replaced.
+     *
+     * @param ordinal Item ordinal
+     * @param item    Item to index
+     */
+    void add(int ordinal, MediaItem item) {
+        remove(ordinal);
+        if (ordinal >= types.length) {
+            int capacity = Math.max(ordinal + 1, types.length * 2);
+            ratings = Arrays.copyOf(ratings, capacity);
+            releaseDays = Arrays.copyOf(releaseDays, capacity);
+            int oldLength = types.length;
+            types = Arrays.copyOf(types, capacity);
+            Arrays.fill(types, oldLength, capacity, (byte) -1);
+        }
+
+        int type = typeOf(item);
+        Long day = epochDay(item.getReleaseDate());
+        types[ordinal] = (byte) type;
+        ratings[ordinal] = item.getRating();
+        releaseDays[ordinal] = day == null ? NO_DATE : day.intValue();
+
+        byRating.get(type).add(ordinal);
+        if (releaseDays[ordinal] != NO_DATE) {
+            byReleaseDay.get(type).add(pack(releaseDays[ordinal], ordinal));
+        }
+    }
+
+    /**
+     * Removes an item from the index.
+     *
+     * @param ordinal Item ordinal
+     */
+    void remove(int ordinal) {
+        if (ordinal >= types.length || types[ordinal] < 0) {
+            return;
+        }
+
+        int type = types[ordinal];
+        byRating.get(type).remove(ordinal);
+        if (releaseDays[ordinal] != NO_DATE) {
+            byReleaseDay.get(type).remove(pack(releaseDays[ordinal], ordinal));
+        }
+        types[ordinal] = -1;
+    }
+
+    /**
+     * Visits the highest-rated items of the given type, best first.
+     *
+     * @param type     Media type, or MediaItem.class for all types
+     * @param limit    Maximum number of items
+     * @param consumer Receives each ordinal
+     */
+    void topRated(Class<? extends MediaItem> type, int limit, IntConsumer consumer) {
+        List<Iterator<Integer>> sources = new ArrayList<>();
+        for (int t = 0; t < TYPES.size(); t++) {
+            if (type.isAssignableFrom(TYPES.get(t))) {
+                sources.add(byRating.get(t).iterator());
+            }
+        }
+        merge(sources, byRating.get(0).comparator(), limit, consumer::accept);
+    }
+
+    /**
+     * Visits the most recently released items of the given type, newest first.
+     *
+     * @param type     Media type, or MediaItem.class for all types
+     * @param limit    Maximum number of items
+     * @param consumer Receives each ordinal
+     */
+    void latest(Class<? extends MediaItem> type, int limit, IntConsumer consumer) {
+        List<Iterator<Long>> sources = new ArrayList<>();
+        for (int t = 0; t < TYPES.size(); t++) {
+            if (type.isAssignableFrom(TYPES.get(t))) {
+                sources.add(byReleaseDay.get(t).descendingIterator());
+            }
+        }
+        merge(sources, Comparator.reverseOrder(), limit, packed -> consumer.accept(packed.intValue()));
+    }
+
+    /**
+     * Visits the items of the given type released within a date range,
+     * earliest first.
+     *
+     * @param type     Media type, or MediaItem.class for all types
+     * @param fromDay  First epoch day of the range (inclusive)
+     * @param toDay    Last epoch day of the range (inclusive)
+     * @param consumer Receives each ordinal
+     */
+    void releasedBetween(Class<? extends MediaItem> type, long fromDay, long toDay, IntConsumer consumer) {
+        long from = pack((int) Math.max(fromDay, Integer.MIN_VALUE + 1L), 0);
+        long to = pack((int) Math.min(toDay, Integer.MAX_VALUE - 1L) + 1, 0);
+        if (from >= to) {
+            return;
+        }
+
+        List<Iterator<Long>> sources = new ArrayList<>();
+        for (int t = 0; t < TYPES.size(); t++) {
+            if (type.isAssignableFrom(TYPES.get(t))) {
+                sources.add(byReleaseDay.get(t).subSet(from, to).iterator());
+            }
+        }
+        merge(sources, Comparator.naturalOrder(), Integer.MAX_VALUE, packed -> consumer.accept(packed.intValue()));
+    }
+
+    /**
+     * Merges ordered sources, passing the first entries of the combined order
+     * to a consumer.
+     *
+     * @param sources  Iterators each returning entries in the given order
+     * @param order    Order of the entries
+     * @param limit    Maximum number of entries to pass on
+     * @param consumer Receives each entry
+     */
+    private static <E> void merge(List<Iterator<E>> sources, Comparator<? super E> order, int limit,
+            Consumer<E> consumer) {
+        // Each queue element holds a source's current head and the source index
+        PriorityQueue<Map.Entry<E, Integer>> heads = new PriorityQueue<>(
+                Math.max(1, sources.size()), (a, b) -> order.compare(a.getKey(), b.getKey()));
+        for (int s = 0; s < sources.size(); s++) {
+            if (sources.get(s).hasNext()) {
+                heads.add(new AbstractMap.SimpleEntry<>(sources.get(s).next(), s));
+            }
+        }
+
+        for (int count = 0; count < limit && !heads.isEmpty(); count++) {
+            Map.Entry<E, Integer> head = heads.poll();
+            consumer.accept(head.getKey());
+            Iterator<E> source = sources.get(head.getValue());
+            if (source.hasNext()) {
+                heads.add(new AbstractMap.SimpleEntry<>(source.next(), head.getValue()));
+            }
+        }
+    }
+}
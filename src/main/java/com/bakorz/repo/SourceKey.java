@@ -0,0 +1,120 @@
+package com.bakorz.repo;
+
+/**
+ * Source of a cached media item whose ID is a MAL or TMDB number.
+ * Cache keys have the form PREFIX:ID, for example "MAL:123" or
+ * "TMDB_MOVIE:456". Since every such ID is a non-negative int, a key can also
+ * be packed into a long, with the source tag in the high 32 bits and the ID
+ * in the low 32, and looked up in a primitive map without building or hashing
+ * a String.
+ * Only canonical decimal IDs (no sign, no leading zeros) are packed, so a
+ * packed key always formats back to the same String key.
+ *
+ * @author Bakorz
+ * @version 1.0
+ */
+public enum SourceKey {
+    /** Anime from MyAnimeList */
+    MAL("MAL"),
+
+    /** Movie from TMDB */
+    TMDB_MOVIE("TMDB_MOVIE"),
+
+    /** TV show from TMDB */
+    TMDB_TV("TMDB_TV");
+
+    /** Returned by parse for keys that cannot be packed */
+    public static final long NONE = -1;
+
+    /** Every source, indexed by ordinal */
+    private static final SourceKey[] SOURCES = values();
+
+    /** Prefix of the cache key, before the colon */
+    private final String prefix;
+
+    SourceKey(String prefix) {
+        this.prefix = prefix;
+    }
+
+    /**
+     * Gets the prefix of the cache keys of this source.
+     *
+     * @return Key prefix, without the colon
+     */
+    public String getPrefix() {
+        return prefix;
+    }
+
+    /**
+     * Packs an ID of this source into a long key.
+     *
+     * @param id Non-negative ID
+     * @return Packed key
+     */
+    public long pack(int id) {
+        if (id < 0) {
+            throw new IllegalArgumentException("Negative ID " + id);
+        }
+        return (long) (ordinal() + 1) << 32 | id;
+    }
+
+    /**
+     * Formats an ID of this source as a String cache key.
+     *
+     * @param id Non-negative ID
+     * @return Cache key, for example "MAL:123"
+     */
+    public String format(int id) {
+        return prefix + ":" + id;
+    }
+
+    /**
+     * Packs a String cache key.
+     *
+     * @param key Cache key, for example "MAL:123"
+     * @return Packed key, or NONE if the key has no known prefix or no
+     *         canonical numeric ID
+     */
+    public static long parse(String key) {
+        if (key == null) {
+            return NONE;
+        }
+        int colon = key.indexOf(':');
+        if (colon < 0) {
+            return NONE;
+        }
+        for (SourceKey source : SOURCES) {
+            if (source.prefix.length() == colon && key.startsWith(source.prefix)) {
+                int id = parseId(key, colon + 1);
+                return id < 0 ? NONE : source.pack(id);
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * Parses a canonical non-negative decimal int.
+     *
+     * @param id ID string, for example "123"
+     * @return Parsed ID, or -1 if the string is not a canonical ID
+     */
+    public static int parseId(String id) {
+        return id == null ? -1 : parseId(id, 0);
+    }
+
+    private static int parseId(String text, int start) {
+        int length = text.length() - start;
+        if (length == 0 || length > 10 || (length > 1 && text.charAt(start) == '0')) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = start; i < text.length(); i++) {
+            int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value > Integer.MAX_VALUE ? -1 : (int) value;
+    }
+}
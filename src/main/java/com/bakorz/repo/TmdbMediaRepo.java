@@ -1,22 +1,31 @@
 package com.bakorz.repo;
 
 import com.bakorz.model.*;
-import com.google.gson.*;
+import com.google.gson.stream.JsonReader;
 import java.io.*;
 import java.net.*;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.*;
 
 /**
  * TMDB (The Movie Database) API implementation of MediaRepo interface.
  * Connects to TMDB API to fetch movie and TV show data.
  * Requires an API key for authentication.
  * Provides search, retrieval, and ranking operations for movies and TV shows.
- * Converts JSON responses to Movie and TVShow model objects.
+ * Decodes JSON responses straight into Movie and TVShow model objects as they
+ * are read.
  * 
  * @author Bakorz
  * @version 1.0
  */
 public class TmdbMediaRepo implements MediaRepo {
+    /** Maximum number of concurrent requests issued by a bulk fetch */
+    private static final int MAX_PARALLEL_FETCHES = 4;
+
+    /** Shared bounded pool used for bulk fetches */
+    private static final BulkFetcher FETCHER = new BulkFetcher("tmdb-fetch", MAX_PARALLEL_FETCHES);
+
     /** Base URL for TMDB API */
     private static final String TMDB_API_BASE = "https://api.themoviedb.org/3";
 
@@ -26,235 +35,380 @@ public class TmdbMediaRepo implements MediaRepo {
     /** TMDB API key for authentication */
     private String apiKey;
 
-    /** JSON parser/serializer */
-    private Gson gson;
+    /** Pooled HTTP client the API requests go through */
+    private final HttpTransport transport;
+
+    /** Base URL the API endpoints are appended to */
+    private final String apiBase;
+
+    /** Non-blocking view of this repository */
+    private final Async async;
 
     /**
      * Constructor that initializes the repository with API credentials.
+     * Requests go through the shared HTTP transport.
      * 
      * @param apiKey TMDB API key
      */
     public TmdbMediaRepo(String apiKey) {
+        this(apiKey, HttpTransport.shared());
+    }
+
+    /**
+     * Constructor that initializes the repository with API credentials and
+     * the HTTP transport to send requests through.
+     * 
+     * @param apiKey TMDB API key
+     * @param transport HTTP transport, usually shared with other repositories
+     */
+    public TmdbMediaRepo(String apiKey, HttpTransport transport) {
+        this(apiKey, transport, TMDB_API_BASE);
+    }
+
+    /**
+     * Constructor that sends the API requests to another base URL, such as
+     * a proxy or a local stand-in for the TMDB API.
+     * 
+     * @param apiKey TMDB API key
+     * @param transport HTTP transport, usually shared with other repositories
+     * @param apiBase   Base URL the API endpoints are appended to
+     */
+    public TmdbMediaRepo(String apiKey, HttpTransport transport, String apiBase) {
         this.apiKey = apiKey;
-        this.gson = new Gson();
+        this.transport = transport;
+        this.apiBase = apiBase;
+        this.async = new Async();
     }
 
     /**
-     * Makes an HTTP GET request to the TMDB API.
+     * Returns a non-blocking view of this repository, whose queries send
+     * their requests through the same transport without waiting for them.
+     * 
+     * @return Asynchronous view of this repository
+     */
+    public Async async() {
+        return async;
+    }
+
+    /**
+     * Makes an HTTP GET request to the TMDB API through the HTTP transport.
      * Appends API key to the request URL for authentication.
      * 
+     * @param <T>      Decoded type
      * @param endpoint API endpoint path (appended to base URL)
-     * @return JSON response as string
+     * @param decoder  Decoder of the JSON response
+     * @return Decoded response
      * @throws IOException if request fails
      */
-    private String makeApiRequest(String endpoint) throws IOException {
-        String separator = endpoint.contains("?") ? "&" : "?";
-        String urlString = TMDB_API_BASE + endpoint + separator + "api_key=" + apiKey;
-
-        URI uri = URI.create(urlString);
-        URL url = uri.toURL();
-        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-        conn.setRequestMethod("GET");
-        conn.setRequestProperty("Accept", "application/json");
-
-        if (conn.getResponseCode() != 200) {
-            throw new IOException("Failed : HTTP error code : " + conn.getResponseCode());
-        }
-
-        BufferedReader br = new BufferedReader(new InputStreamReader(conn.getInputStream()));
-        StringBuilder response = new StringBuilder();
-        String line;
+    private <T> T makeApiRequest(String endpoint, HttpTransport.BodyDecoder<T> decoder) throws IOException {
+        return transport.get(apiUri(endpoint), decoder, "Accept", "application/json");
+    }
 
-        while ((line = br.readLine()) != null) {
-            response.append(line);
-        }
+    /**
+     * Makes an HTTP GET request to the TMDB API without blocking.
+     * 
+     * @param <T>      Decoded type
+     * @param endpoint API endpoint path (appended to base URL)
+     * @param decoder  Decoder of the JSON response
+     * @return Future of the decoded response
+     */
+    private <T> CompletableFuture<T> makeApiRequestAsync(String endpoint, HttpTransport.BodyDecoder<T> decoder) {
+        return transport.getAsync(apiUri(endpoint), decoder, "Accept", "application/json");
+    }
 
-        conn.disconnect();
-        return response.toString();
+    private URI apiUri(String endpoint) {
+        String separator = endpoint.contains("?") ? "&" : "?";
+        return URI.create(apiBase + endpoint + separator + "api_key=" + apiKey);
     }
 
-    private Movie parseMovieFromJson(JsonObject movieJson) {
+    /**
+     * Reads a movie object, skipping fields that are not used.
+     * 
+     * @param in Reader positioned before the object
+     * @return Decoded movie
+     * @throws IOException if the JSON cannot be read
+     */
+    private static Movie readMovie(JsonReader in) throws IOException {
         Movie movie = new Movie();
-
-        movie.setId(String.valueOf(movieJson.get("id").getAsInt()));
-        movie.setTitle(movieJson.get("title").getAsString());
-        movie.setTmdbId(String.valueOf(movieJson.get("id").getAsInt()));
-
-        if (movieJson.has("overview") && !movieJson.get("overview").isJsonNull()) {
-            movie.setDescription(movieJson.get("overview").getAsString());
-        }
-
-        if (movieJson.has("vote_average") && !movieJson.get("vote_average").isJsonNull()) {
-            movie.setRating(movieJson.get("vote_average").getAsDouble());
-        }
-
-        if (movieJson.has("release_date") && !movieJson.get("release_date").isJsonNull()) {
-            String dateStr = movieJson.get("release_date").getAsString();
-            if (!dateStr.isEmpty()) {
-                movie.setReleaseDate(dateStr);
+        List<String> genres = null;
+        List<String> genreIds = null;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (JsonStreams.skipNull(in)) {
+                continue;
             }
-        }
-
-        if (movieJson.has("poster_path") && !movieJson.get("poster_path").isJsonNull()) {
-            movie.setPosterUrl(IMAGE_BASE + "w500" + movieJson.get("poster_path").getAsString());
-        }
-        if (movieJson.has("backdrop_path") && !movieJson.get("backdrop_path").isJsonNull()) {
-            movie.setBackdropUrl(IMAGE_BASE + "original" + movieJson.get("backdrop_path").getAsString());
-        }
-
-        if (movieJson.has("genres")) {
-            List<String> genres = new ArrayList<>();
-            JsonArray genresArray = movieJson.getAsJsonArray("genres");
-            for (JsonElement genreElement : genresArray) {
-                JsonObject genreObj = genreElement.getAsJsonObject();
-                genres.add(genreObj.get("name").getAsString());
-            }
-            movie.setGenres(genres);
-        } else if (movieJson.has("genre_ids")) {
-            List<String> genres = new ArrayList<>();
-            JsonArray genreIds = movieJson.getAsJsonArray("genre_ids");
-            for (JsonElement genreId : genreIds) {
-                genres.add("Genre " + genreId.getAsInt());
+            switch (name) {
+                case "id":
+                    String id = String.valueOf(in.nextInt());
+                    movie.setId(id);
+                    movie.setTmdbId(id);
+                    break;
+                case "title":
+                    movie.setTitle(in.nextString());
+                    break;
+                case "overview":
+                    movie.setDescription(in.nextString());
+                    break;
+                case "vote_average":
+                    movie.setRating(in.nextDouble());
+                    break;
+                case "release_date":
+                    String dateStr = in.nextString();
+                    if (!dateStr.isEmpty()) {
+                        movie.setReleaseDate(dateStr);
+                    }
+                    break;
+                case "poster_path":
+                    movie.setPosterUrl(IMAGE_BASE + "w500" + in.nextString());
+                    break;
+                case "backdrop_path":
+                    movie.setBackdropUrl(IMAGE_BASE + "original" + in.nextString());
+                    break;
+                case "genres":
+                    genres = JsonStreams.readNames(in);
+                    break;
+                case "genre_ids":
+                    genreIds = readGenreIds(in);
+                    break;
+                case "runtime":
+                    movie.setRuntime(in.nextInt());
+                    break;
+                case "budget":
+                    movie.setBudget(in.nextLong());
+                    break;
+                case "revenue":
+                    movie.setRevenue(in.nextLong());
+                    break;
+                case "imdb_id":
+                    movie.setImdbId(in.nextString());
+                    break;
+                default:
+                    in.skipValue();
+                    break;
             }
-            movie.setGenres(genres);
-        }
-
-        if (movieJson.has("runtime") && !movieJson.get("runtime").isJsonNull()) {
-            movie.setRuntime(movieJson.get("runtime").getAsInt());
         }
+        in.endObject();
 
-        if (movieJson.has("budget") && !movieJson.get("budget").isJsonNull()) {
-            movie.setBudget(movieJson.get("budget").getAsLong());
-        }
-        if (movieJson.has("revenue") && !movieJson.get("revenue").isJsonNull()) {
-            movie.setRevenue(movieJson.get("revenue").getAsLong());
-        }
-
-        if (movieJson.has("imdb_id") && !movieJson.get("imdb_id").isJsonNull()) {
-            movie.setImdbId(movieJson.get("imdb_id").getAsString());
+        // Details carry genre names, lists only genre IDs
+        if (genres != null) {
+            movie.setGenres(genres);
+        } else if (genreIds != null) {
+            movie.setGenres(genreIds);
         }
-
         return movie;
     }
 
-    private TVShow parseTVShowFromJson(JsonObject tvJson) {
+    /**
+     * Reads a TV show object, skipping fields that are not used.
+     * 
+     * @param in Reader positioned before the object
+     * @return Decoded TV show
+     * @throws IOException if the JSON cannot be read
+     */
+    private static TVShow readTVShow(JsonReader in) throws IOException {
         TVShow tvShow = new TVShow();
-
-        tvShow.setId(String.valueOf(tvJson.get("id").getAsInt()));
-        tvShow.setTitle(tvJson.get("name").getAsString());
-        tvShow.setTmdbId(String.valueOf(tvJson.get("id").getAsInt()));
-
-        if (tvJson.has("overview") && !tvJson.get("overview").isJsonNull()) {
-            tvShow.setDescription(tvJson.get("overview").getAsString());
-        }
-
-        if (tvJson.has("vote_average") && !tvJson.get("vote_average").isJsonNull()) {
-            tvShow.setRating(tvJson.get("vote_average").getAsDouble());
-        }
-
-        if (tvJson.has("first_air_date") && !tvJson.get("first_air_date").isJsonNull()) {
-            String dateStr = tvJson.get("first_air_date").getAsString();
-            if (!dateStr.isEmpty()) {
-                tvShow.setReleaseDate(dateStr);
-                tvShow.setFirstAirDate(dateStr);
+        List<String> genres = null;
+        List<String> genreIds = null;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (JsonStreams.skipNull(in)) {
+                continue;
             }
-        }
-
-        if (tvJson.has("last_air_date") && !tvJson.get("last_air_date").isJsonNull()) {
-            String dateStr = tvJson.get("last_air_date").getAsString();
-            if (!dateStr.isEmpty()) {
-                tvShow.setLastAirDate(dateStr);
+            switch (name) {
+                case "id":
+                    String id = String.valueOf(in.nextInt());
+                    tvShow.setId(id);
+                    tvShow.setTmdbId(id);
+                    break;
+                case "name":
+                    tvShow.setTitle(in.nextString());
+                    break;
+                case "overview":
+                    tvShow.setDescription(in.nextString());
+                    break;
+                case "vote_average":
+                    tvShow.setRating(in.nextDouble());
+                    break;
+                case "first_air_date":
+                    String firstAirDate = in.nextString();
+                    if (!firstAirDate.isEmpty()) {
+                        tvShow.setReleaseDate(firstAirDate);
+                        tvShow.setFirstAirDate(firstAirDate);
+                    }
+                    break;
+                case "last_air_date":
+                    String lastAirDate = in.nextString();
+                    if (!lastAirDate.isEmpty()) {
+                        tvShow.setLastAirDate(lastAirDate);
+                    }
+                    break;
+                case "poster_path":
+                    tvShow.setPosterUrl(IMAGE_BASE + "w500" + in.nextString());
+                    break;
+                case "backdrop_path":
+                    tvShow.setBackdropUrl(IMAGE_BASE + "original" + in.nextString());
+                    break;
+                case "genres":
+                    genres = JsonStreams.readNames(in);
+                    break;
+                case "genre_ids":
+                    genreIds = readGenreIds(in);
+                    break;
+                case "number_of_seasons":
+                    tvShow.setNumberOfSeasons(in.nextInt());
+                    break;
+                case "number_of_episodes":
+                    tvShow.setNumberOfEpisodes(in.nextInt());
+                    break;
+                case "status":
+                    tvShow.setStatus(in.nextString());
+                    break;
+                case "episode_run_time":
+                    readEpisodeRuntime(in, tvShow);
+                    break;
+                case "networks":
+                    tvShow.setNetworks(JsonStreams.readNames(in));
+                    break;
+                case "created_by":
+                    tvShow.setCreators(JsonStreams.readNames(in));
+                    break;
+                default:
+                    in.skipValue();
+                    break;
             }
         }
+        in.endObject();
 
-        if (tvJson.has("poster_path") && !tvJson.get("poster_path").isJsonNull()) {
-            tvShow.setPosterUrl(IMAGE_BASE + "w500" + tvJson.get("poster_path").getAsString());
-        }
-        if (tvJson.has("backdrop_path") && !tvJson.get("backdrop_path").isJsonNull()) {
-            tvShow.setBackdropUrl(IMAGE_BASE + "original" + tvJson.get("backdrop_path").getAsString());
+        if (genres != null) {
+            tvShow.setGenres(genres);
+        } else if (genreIds != null) {
+            tvShow.setGenres(genreIds);
         }
+        return tvShow;
+    }
 
-        if (tvJson.has("genres")) {
-            List<String> genres = new ArrayList<>();
-            JsonArray genresArray = tvJson.getAsJsonArray("genres");
-            for (JsonElement genreElement : genresArray) {
-                JsonObject genreObj = genreElement.getAsJsonObject();
-                genres.add(genreObj.get("name").getAsString());
-            }
-            tvShow.setGenres(genres);
-        } else if (tvJson.has("genre_ids")) {
-            List<String> genres = new ArrayList<>();
-            JsonArray genreIds = tvJson.getAsJsonArray("genre_ids");
-            for (JsonElement genreId : genreIds) {
-                genres.add("Genre " + genreId.getAsInt());
-            }
-            tvShow.setGenres(genres);
+    private static List<String> readGenreIds(JsonReader in) throws IOException {
+        List<String> genres = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            genres.add("Genre " + in.nextInt());
         }
+        in.endArray();
+        return genres;
+    }
 
-        if (tvJson.has("number_of_seasons") && !tvJson.get("number_of_seasons").isJsonNull()) {
-            tvShow.setNumberOfSeasons(tvJson.get("number_of_seasons").getAsInt());
+    /**
+     * Reads the episode runtimes of a TV show, keeping the first.
+     */
+    private static void readEpisodeRuntime(JsonReader in, TVShow tvShow) throws IOException {
+        in.beginArray();
+        if (in.hasNext() && !JsonStreams.skipNull(in)) {
+            tvShow.setEpisodeRuntime(in.nextInt());
         }
-        if (tvJson.has("number_of_episodes") && !tvJson.get("number_of_episodes").isJsonNull()) {
-            tvShow.setNumberOfEpisodes(tvJson.get("number_of_episodes").getAsInt());
+        while (in.hasNext()) {
+            in.skipValue();
         }
+        in.endArray();
+    }
 
-        if (tvJson.has("status") && !tvJson.get("status").isJsonNull()) {
-            tvShow.setStatus(tvJson.get("status").getAsString());
-        }
+    /**
+     * Decodes the details of a single movie.
+     * 
+     * @param body JSON response of /movie/{id}
+     * @return Decoded movie
+     * @throws IOException if the JSON cannot be read
+     */
+    static Movie decodeMovie(InputStream body) throws IOException {
+        return readMovie(JsonStreams.reader(body));
+    }
 
-        if (tvJson.has("episode_run_time")) {
-            JsonArray runtimes = tvJson.getAsJsonArray("episode_run_time");
-            if (runtimes.size() > 0 && !runtimes.get(0).isJsonNull()) {
-                tvShow.setEpisodeRuntime(runtimes.get(0).getAsInt());
-            }
-        }
+    /**
+     * Decodes the details of a single TV show.
+     * 
+     * @param body JSON response of /tv/{id}
+     * @return Decoded TV show
+     * @throws IOException if the JSON cannot be read
+     */
+    static TVShow decodeTVShow(InputStream body) throws IOException {
+        return readTVShow(JsonStreams.reader(body));
+    }
 
-        if (tvJson.has("networks")) {
-            List<String> networks = new ArrayList<>();
-            JsonArray networksArray = tvJson.getAsJsonArray("networks");
-            for (JsonElement networkElement : networksArray) {
-                JsonObject networkObj = networkElement.getAsJsonObject();
-                networks.add(networkObj.get("name").getAsString());
-            }
-            tvShow.setNetworks(networks);
+    /**
+     * Decodes the movies of a paged TMDB response.
+     * 
+     * @param body JSON response with a results array
+     * @return Decoded movies, or an empty list if the response has no results
+     * @throws IOException if the JSON cannot be read
+     */
+    static List<Movie> decodeMovieResults(InputStream body) throws IOException {
+        List<Movie> movies = JsonStreams.readResults(JsonStreams.reader(body), TmdbMediaRepo::readMovie);
+        return movies != null ? movies : new ArrayList<>();
+    }
+
+    /**
+     * Decodes the TV shows of a paged TMDB response.
+     * 
+     * @param body JSON response with a results array
+     * @return Decoded TV shows, or an empty list if the response has no results
+     * @throws IOException if the JSON cannot be read
+     */
+    static List<TVShow> decodeTVShowResults(InputStream body) throws IOException {
+        List<TVShow> tvShows = JsonStreams.readResults(JsonStreams.reader(body), TmdbMediaRepo::readTVShow);
+        return tvShows != null ? tvShows : new ArrayList<>();
+    }
+
+    /**
+     * Decodes the latest movies to show from a now-playing page, skipping
+     * movies without a title.
+     * 
+     * @param body  JSON response of /movie/now_playing
+     * @param limit Maximum number of results
+     * @return Latest movies
+     * @throws IOException if the JSON cannot be read
+     */
+    static List<Movie> decodeLatestMovies(InputStream body, int limit) throws IOException {
+        List<Movie> results = JsonStreams.readResults(JsonStreams.reader(body), TmdbMediaRepo::readMovie);
+        if (results == null) {
+            System.err.println("TMDB API response missing 'results' field");
+            return new ArrayList<>();
         }
 
-        if (tvJson.has("created_by")) {
-            List<String> creators = new ArrayList<>();
-            JsonArray creatorsArray = tvJson.getAsJsonArray("created_by");
-            for (JsonElement creatorElement : creatorsArray) {
-                JsonObject creatorObj = creatorElement.getAsJsonObject();
-                creators.add(creatorObj.get("name").getAsString());
+        List<Movie> movies = new ArrayList<>();
+        for (Movie movie : results) {
+            if (movies.size() >= limit)
+                break;
+
+            if (movie.getTitle() != null && !movie.getTitle().isEmpty()) {
+                movies.add(movie);
             }
-            tvShow.setCreators(creators);
         }
+        return movies;
+    }
 
-        return tvShow;
+    /**
+     * Decodes the first TV shows of a paged TMDB response.
+     * 
+     * @param body  JSON response with a results array
+     * @param limit Maximum number of results
+     * @return First TV shows of the page
+     * @throws IOException if the JSON cannot be read
+     */
+    static List<TVShow> decodeFirstTVShows(InputStream body, int limit) throws IOException {
+        List<TVShow> tvShows = decodeTVShowResults(body);
+        return new ArrayList<>(tvShows.subList(0, Math.min(limit, tvShows.size())));
     }
 
     @Override
     public List<MediaItem> searchByTitle(String title) {
         try {
             List<MediaItem> results = new ArrayList<>();
-
-            String movieResponse = makeApiRequest("/search/movie?query=" + URLEncoder.encode(title, "UTF-8"));
-            JsonObject movieJson = gson.fromJson(movieResponse, JsonObject.class);
-            if (movieJson.has("results")) {
-                JsonArray movieResults = movieJson.getAsJsonArray("results");
-                for (JsonElement element : movieResults) {
-                    results.add(parseMovieFromJson(element.getAsJsonObject()));
-                }
-            }
-
-            String tvResponse = makeApiRequest("/search/tv?query=" + URLEncoder.encode(title, "UTF-8"));
-            JsonObject tvJson = gson.fromJson(tvResponse, JsonObject.class);
-            if (tvJson.has("results")) {
-                JsonArray tvResults = tvJson.getAsJsonArray("results");
-                for (JsonElement element : tvResults) {
-                    results.add(parseTVShowFromJson(element.getAsJsonObject()));
-                }
-            }
-
+            String query = URLEncoder.encode(title, StandardCharsets.UTF_8);
+            results.addAll(makeApiRequest("/search/movie?query=" + query, TmdbMediaRepo::decodeMovieResults));
+            results.addAll(makeApiRequest("/search/tv?query=" + query, TmdbMediaRepo::decodeTVShowResults));
             return results;
         } catch (IOException e) {
             System.err.println("Error searching by title: " + e.getMessage());
@@ -276,9 +430,7 @@ public class TmdbMediaRepo implements MediaRepo {
     @Override
     public Optional<Movie> getMovieById(String id) {
         try {
-            String response = makeApiRequest("/movie/" + id);
-            JsonObject movieJson = gson.fromJson(response, JsonObject.class);
-            return Optional.of(parseMovieFromJson(movieJson));
+            return Optional.of(makeApiRequest("/movie/" + id, TmdbMediaRepo::decodeMovie));
         } catch (IOException e) {
             System.err.println("Error getting movie by ID: " + e.getMessage());
             return Optional.empty();
@@ -288,9 +440,7 @@ public class TmdbMediaRepo implements MediaRepo {
     @Override
     public Optional<TVShow> getTVShowById(String id) {
         try {
-            String response = makeApiRequest("/tv/" + id);
-            JsonObject tvJson = gson.fromJson(response, JsonObject.class);
-            return Optional.of(parseTVShowFromJson(tvJson));
+            return Optional.of(makeApiRequest("/tv/" + id, TmdbMediaRepo::decodeTVShow));
         } catch (IOException e) {
             System.err.println("Error getting TV show by ID: " + e.getMessage());
             return Optional.empty();
@@ -305,18 +455,8 @@ public class TmdbMediaRepo implements MediaRepo {
     @Override
     public List<MediaItem> getByGenre(String genre) {
         try {
-            List<MediaItem> results = new ArrayList<>();
-
-            String movieResponse = makeApiRequest("/discover/movie?with_genres=" + genre);
-            JsonObject movieJson = gson.fromJson(movieResponse, JsonObject.class);
-            if (movieJson.has("results")) {
-                JsonArray movieResults = movieJson.getAsJsonArray("results");
-                for (JsonElement element : movieResults) {
-                    results.add(parseMovieFromJson(element.getAsJsonObject()));
-                }
-            }
-
-            return results;
+            return new ArrayList<>(makeApiRequest("/discover/movie?with_genres=" + genre,
+                    TmdbMediaRepo::decodeMovieResults));
         } catch (IOException e) {
             System.err.println("Error getting by genre: " + e.getMessage());
             return new ArrayList<>();
@@ -339,38 +479,32 @@ public class TmdbMediaRepo implements MediaRepo {
             int moviesFetched = 0;
             int moviePage = page;
             while (moviesFetched < moviesNeeded) {
-                String movieResponse = makeApiRequest("/movie/top_rated?page=" + moviePage);
-                JsonObject movieJson = gson.fromJson(movieResponse, JsonObject.class);
-                if (movieJson.has("results")) {
-                    JsonArray movieResults = movieJson.getAsJsonArray("results");
-                    for (JsonElement element : movieResults) {
-                        if (moviesFetched >= moviesNeeded)
-                            break;
-                        results.add(parseMovieFromJson(element.getAsJsonObject()));
-                        moviesFetched++;
-                    }
-                    if (movieResults.size() < itemsPerPage)
+                List<Movie> movieResults = makeApiRequest("/movie/top_rated?page=" + moviePage,
+                        TmdbMediaRepo::decodeMovieResults);
+                for (Movie movie : movieResults) {
+                    if (moviesFetched >= moviesNeeded)
                         break;
+                    results.add(movie);
+                    moviesFetched++;
                 }
+                if (movieResults.size() < itemsPerPage)
+                    break;
                 moviePage++;
             }
 
             int tvShowsFetched = 0;
             int tvPage = page;
             while (tvShowsFetched < tvShowsNeeded) {
-                String tvResponse = makeApiRequest("/tv/top_rated?page=" + tvPage);
-                JsonObject tvJson = gson.fromJson(tvResponse, JsonObject.class);
-                if (tvJson.has("results")) {
-                    JsonArray tvResults = tvJson.getAsJsonArray("results");
-                    for (JsonElement element : tvResults) {
-                        if (tvShowsFetched >= tvShowsNeeded)
-                            break;
-                        results.add(parseTVShowFromJson(element.getAsJsonObject()));
-                        tvShowsFetched++;
-                    }
-                    if (tvResults.size() < itemsPerPage)
+                List<TVShow> tvResults = makeApiRequest("/tv/top_rated?page=" + tvPage,
+                        TmdbMediaRepo::decodeTVShowResults);
+                for (TVShow tvShow : tvResults) {
+                    if (tvShowsFetched >= tvShowsNeeded)
                         break;
+                    results.add(tvShow);
+                    tvShowsFetched++;
                 }
+                if (tvResults.size() < itemsPerPage)
+                    break;
                 tvPage++;
             }
 
@@ -388,32 +522,8 @@ public class TmdbMediaRepo implements MediaRepo {
 
     public List<Movie> getLatestMovies(int limit, int page) {
         try {
-            String response = makeApiRequest("/movie/now_playing?language=en-US&page=" + page);
-            JsonObject jsonResponse = gson.fromJson(response, JsonObject.class);
-
-            if (!jsonResponse.has("results")) {
-                System.err.println("TMDB API response missing 'results' field");
-                return new ArrayList<>();
-            }
-
-            JsonArray moviesArray = jsonResponse.getAsJsonArray("results");
-
-            List<Movie> movies = new ArrayList<>();
-            int count = 0;
-
-            for (JsonElement movieElement : moviesArray) {
-                if (count >= limit)
-                    break;
-
-                JsonObject movieJson = movieElement.getAsJsonObject();
-                Movie movie = parseMovieFromJson(movieJson);
-                if (movie.getTitle() != null && !movie.getTitle().isEmpty()) {
-                    movies.add(movie);
-                    count++;
-                }
-            }
-
-            return movies;
+            return makeApiRequest("/movie/now_playing?language=en-US&page=" + page,
+                    body -> decodeLatestMovies(body, limit));
         } catch (IOException e) {
             System.err.println("Error getting latest movies: " + e.getMessage());
             e.printStackTrace();
@@ -428,24 +538,8 @@ public class TmdbMediaRepo implements MediaRepo {
 
     public List<TVShow> getLatestTVShows(int limit, int page) {
         try {
-            String response = makeApiRequest("/tv/on_the_air?language=en-US&page=" + page);
-            JsonObject jsonResponse = gson.fromJson(response, JsonObject.class);
-            JsonArray tvArray = jsonResponse.getAsJsonArray("results");
-
-            List<TVShow> tvShows = new ArrayList<>();
-            int count = 0;
-
-            for (JsonElement tvElement : tvArray) {
-                if (count >= limit)
-                    break;
-
-                JsonObject tvJson = tvElement.getAsJsonObject();
-                TVShow tvShow = parseTVShowFromJson(tvJson);
-                tvShows.add(tvShow);
-                count++;
-            }
-
-            return tvShows;
+            return makeApiRequest("/tv/on_the_air?language=en-US&page=" + page,
+                    body -> decodeFirstTVShows(body, limit));
         } catch (IOException e) {
             System.err.println("Error getting latest TV shows: " + e.getMessage());
             return new ArrayList<>();
@@ -471,4 +565,198 @@ public class TmdbMediaRepo implements MediaRepo {
     public boolean delete(String id) {
         throw new UnsupportedOperationException("Cannot delete from TMDB API");
     }
-}
\ No newline at end of file
+
+    /**
+     * Fetches several items by ID with at most MAX_PARALLEL_FETCHES requests in
+     * flight at once.
+     * 
+     * @param ids TMDB IDs
+     * @return List of found MediaItems, in the order of the given IDs
+     */
+    @Override
+    public List<MediaItem> getAllByIds(Collection<String> ids) {
+        return FETCHER.fetchAll(ids, this::getById);
+    }
+
+    @Override
+    public int saveAll(Collection<? extends MediaItem> mediaItems) {
+        throw new UnsupportedOperationException("Cannot save to TMDB API");
+    }
+
+    @Override
+    public int deleteAll(Collection<String> ids) {
+        throw new UnsupportedOperationException("Cannot delete from TMDB API");
+    }
+
+    /**
+     * Non-blocking queries against the TMDB API.
+     * Requests are sent with HttpClient.sendAsync, so no thread waits for a
+     * response, and queries that need several requests, such as a search of
+     * both movies and TV shows or several pages of a ranking, send them all
+     * at once. Failed requests are logged and contribute an empty result, as
+     * in TmdbMediaRepo.
+     */
+    public final class Async implements AsyncMediaRepo {
+        /** Number of results on each page of a TMDB list */
+        private static final int ITEMS_PER_PAGE = 20;
+
+        private Async() {
+        }
+
+        @Override
+        public CompletableFuture<List<MediaItem>> searchByTitle(String title) {
+            String query = URLEncoder.encode(title, StandardCharsets.UTF_8);
+            CompletableFuture<List<Movie>> movies = request("/search/movie?query=" + query,
+                    TmdbMediaRepo::decodeMovieResults, "Error searching movies by title", new ArrayList<>());
+            CompletableFuture<List<TVShow>> tvShows = request("/search/tv?query=" + query,
+                    TmdbMediaRepo::decodeTVShowResults, "Error searching TV shows by title", new ArrayList<>());
+            return HttpTransport.cancelling(movies.thenCombine(tvShows, (movieResults, tvResults) -> {
+                List<MediaItem> results = new ArrayList<>(movieResults);
+                results.addAll(tvResults);
+                return results;
+            }), movies, tvShows);
+        }
+
+        /**
+         * Retrieves a movie by ID, or the TV show with that ID if there is no
+         * such movie.
+         */
+        @Override
+        public CompletableFuture<Optional<MediaItem>> getById(String id) {
+            return HttpTransport.composeCancelling(getMovieById(id), result -> {
+                if (result.isPresent()) {
+                    return CompletableFuture.completedFuture(result.map(item -> (MediaItem) item));
+                }
+                CompletableFuture<Optional<TVShow>> tvShow = getTVShowById(id);
+                return HttpTransport.cancelling(tvShow.thenApply(found -> found.map(item -> (MediaItem) item)),
+                        tvShow);
+            });
+        }
+
+        @Override
+        public CompletableFuture<Optional<Movie>> getMovieById(String id) {
+            return request("/movie/" + id,
+                    body -> Optional.of(decodeMovie(body)),
+                    "Error getting movie by ID", Optional.empty());
+        }
+
+        @Override
+        public CompletableFuture<Optional<TVShow>> getTVShowById(String id) {
+            return request("/tv/" + id,
+                    body -> Optional.of(decodeTVShow(body)),
+                    "Error getting TV show by ID", Optional.empty());
+        }
+
+        @Override
+        public CompletableFuture<Optional<Anime>> getAnimeById(String id) {
+            return CompletableFuture.completedFuture(Optional.empty());
+        }
+
+        @Override
+        public CompletableFuture<List<MediaItem>> getByGenre(String genre) {
+            return request("/discover/movie?with_genres=" + genre,
+                    body -> new ArrayList<MediaItem>(decodeMovieResults(body)),
+                    "Error getting by genre", new ArrayList<>());
+        }
+
+        @Override
+        public CompletableFuture<List<MediaItem>> getTopRated(int limit) {
+            return getTopRated(limit, 1);
+        }
+
+        /**
+         * Retrieves top-rated movies and TV shows, half of each, fetching all
+         * the pages needed at once.
+         * 
+         * @param limit Maximum number of results
+         * @param page  First page to fetch
+         * @return Future of the top-rated movies followed by the top-rated TV
+         *         shows
+         */
+        public CompletableFuture<List<MediaItem>> getTopRated(int limit, int page) {
+            List<CompletableFuture<List<Movie>>> moviePages = new ArrayList<>();
+            List<CompletableFuture<List<TVShow>>> tvPages = new ArrayList<>();
+            int pages = (limit / 2 + ITEMS_PER_PAGE - 1) / ITEMS_PER_PAGE;
+            for (int i = 0; i < pages; i++) {
+                moviePages.add(request("/movie/top_rated?page=" + (page + i), TmdbMediaRepo::decodeMovieResults,
+                        "Error getting top rated movies", new ArrayList<>()));
+                tvPages.add(request("/tv/top_rated?page=" + (page + i), TmdbMediaRepo::decodeTVShowResults,
+                        "Error getting top rated TV shows", new ArrayList<>()));
+            }
+
+            List<CompletableFuture<?>> all = new ArrayList<>(moviePages);
+            all.addAll(tvPages);
+            CompletableFuture<?>[] requests = all.toArray(new CompletableFuture<?>[0]);
+            return HttpTransport.cancelling(CompletableFuture.allOf(requests).thenApply(done -> {
+                List<MediaItem> results = new ArrayList<>();
+                results.addAll(firstOfPages(moviePages, limit / 2));
+                results.addAll(firstOfPages(tvPages, limit / 2));
+                return results;
+            }), requests);
+        }
+
+        @Override
+        public CompletableFuture<List<Movie>> getLatestMovies(int limit) {
+            return getLatestMovies(limit, 1);
+        }
+
+        /**
+         * Retrieves a page of movies now playing.
+         * 
+         * @param limit Maximum number of results
+         * @param page  Page number for pagination
+         * @return Future of the list of latest Movies
+         */
+        public CompletableFuture<List<Movie>> getLatestMovies(int limit, int page) {
+            return request("/movie/now_playing?language=en-US&page=" + page,
+                    body -> decodeLatestMovies(body, limit), "Error getting latest movies", new ArrayList<>());
+        }
+
+        @Override
+        public CompletableFuture<List<TVShow>> getLatestTVShows(int limit) {
+            return getLatestTVShows(limit, 1);
+        }
+
+        /**
+         * Retrieves a page of TV shows on the air.
+         * 
+         * @param limit Maximum number of results
+         * @param page  Page number for pagination
+         * @return Future of the list of latest TVShows
+         */
+        public CompletableFuture<List<TVShow>> getLatestTVShows(int limit, int page) {
+            return request("/tv/on_the_air?language=en-US&page=" + page, body -> decodeFirstTVShows(body, limit),
+                    "Error getting latest TV shows", new ArrayList<>());
+        }
+
+        /**
+         * Concatenates the results of completed page requests in page order,
+         * up to a limit.
+         */
+        private <T> List<T> firstOfPages(List<CompletableFuture<List<T>>> pages, int limit) {
+            List<T> results = new ArrayList<>();
+            for (CompletableFuture<List<T>> page : pages) {
+                for (T item : page.join()) {
+                    if (results.size() >= limit) {
+                        return results;
+                    }
+                    results.add(item);
+                }
+            }
+            return results;
+        }
+
+        /**
+         * Sends a request and decodes its response, logging failures and
+         * completing with a fallback result instead.
+         */
+        private <T> CompletableFuture<T> request(String endpoint, HttpTransport.BodyDecoder<T> decoder, String error,
+                T fallback) {
+            CompletableFuture<T> response = makeApiRequestAsync(endpoint, decoder);
+            return HttpTransport.cancelling(response.exceptionally(e -> {
+                System.err.println(error + ": " + HttpTransport.messageOf(e));
+                return fallback;
+            }), response);
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package com.bakorz.repo;
+
+import java.util.*;
+
+/**
+ * Inverted index from character trigrams to the items whose titles contain
+ * them, used for substring title search.
+ * Items are identified by dense ordinals assigned by the owning repository.
+ * Titles are normalized to lower case; each ordinal's normalized title is kept
+ * so candidates can be verified and the item removed without the caller
+ * supplying its old title. Titles are kept as Strings by default, or in a
+ * TitleStore supplied by the owning repository.
+ * A substring query of three or more characters intersects the posting lists
+ * of its trigrams, starting from the shortest, and checks only the surviving
+ * candidates. Shorter queries scan the stored normalized titles.
+ * Instances are not thread-safe; the owning repository synchronizes access.
+ *
+ * @author Bakorz
+ * @version 1.0
+ */
+final class TrigramIndex {
+    /** Number of characters in an indexed gram */
+    private static final int GRAM_LENGTH = 3;
+
+    /** Posting lists mapped by packed trigram */
+    private final Map<Long, Postings> postings;
+
+    /** Normalized title of each indexed ordinal */
+    private final TitleStore titles;
+
+    /**
+     * Creates an empty index that keeps titles as Strings.
+     */
+    TrigramIndex() {
+        this(new StringTitles());
+    }
+
+    /**
+     * Creates an empty index that keeps titles in the given store.
+     *
+     * @param titles Empty store for the normalized titles
+     */
+    TrigramIndex(TitleStore titles) {
+        this.postings = new HashMap<>();
+        this.titles = titles;
+    }
+
+    /**
+     * Normalizes a title or query for indexing and matching.
+     *
+     * @param text Title or query
+     * @return Lower-case text, or an empty string for null
+     */
+    static String normalize(String text) {
+        return text == null ? "" : text.toLowerCase();
+    }
+
+    /**
+     * Packs three consecutive characters into one key.
+     */
+    private static long gram(String text, int start) {
+        return ((long) text.charAt(start) << 32) | ((long) text.charAt(start + 1) << 16) | text.charAt(start + 2);
+    }
+
+    /**
+     * Indexes the title of an item. Any title previously indexed under the
+     * ordinal is replaced.
+     *
+     * @param ordinal Item ordinal
+     * @param title   Item title
+     */
+    void add(int ordinal, String title) {
+        remove(ordinal);
+        String normalized = normalize(title);
+        titles.put(ordinal, normalized);
+        for (int i = 0; i + GRAM_LENGTH <= normalized.length(); i++) {
+            postings.computeIfAbsent(gram(normalized, i), g -> new Postings()).add(ordinal);
+        }
+    }
+
+    /**
+     * Removes an item from the index.
+     *
+     * @param ordinal Item ordinal
+     */
+    void remove(int ordinal) {
+        String normalized = titles.remove(ordinal);
+        if (normalized == null) {
+            return;
+        }
+
+        for (int i = 0; i + GRAM_LENGTH <= normalized.length(); i++) {
+            long gram = gram(normalized, i);
+            Postings list = postings.get(gram);
+            if (list != null && list.remove(ordinal) && list.size == 0) {
+                postings.remove(gram);
+            }
+        }
+    }
+
+    /**
+     * Finds the items whose titles contain the query, ignoring case.
+     *
+     * @param query Substring to search for
+     * @return Matching ordinals in ascending order
+     */
+    int[] search(String query) {
+        String normalized = normalize(query);
+        if (normalized.length() < GRAM_LENGTH) {
+            return scan(normalized);
+        }
+
+        // Gather the query's posting lists, shortest first
+        List<Postings> lists = new ArrayList<>();
+        for (int i = 0; i + GRAM_LENGTH <= normalized.length(); i++) {
+            Postings list = postings.get(gram(normalized, i));
+            if (list == null) {
+                return new int[0];
+            }
+            if (!lists.contains(list)) {
+                lists.add(list);
+            }
+        }
+        lists.sort((a, b) -> Integer.compare(a.size, b.size));
+
+        Postings smallest = lists.get(0);
+        int[] matches = new int[smallest.size];
+        int count = 0;
+        for (int i = 0; i < smallest.size; i++) {
+            int ordinal = smallest.ordinals[i];
+            boolean candidate = true;
+            for (int l = 1; l < lists.size() && candidate; l++) {
+                candidate = lists.get(l).contains(ordinal);
+            }
+            // Trigrams can all match without being contiguous, so verify
+            if (candidate && titles.contains(ordinal, normalized)) {
+                matches[count++] = ordinal;
+            }
+        }
+        return Arrays.copyOf(matches, count);
+    }
+
+    /**
+     * Checks every stored title, for queries too short to have a trigram.
+     */
+    private int[] scan(String normalized) {
+        int[] matches = new int[16];
+        int count = 0;
+        for (int ordinal = 0; ordinal < titles.limit(); ordinal++) {
+            if (titles.contains(ordinal, normalized)) {
+                if (count == matches.length) {
+                    matches = Arrays.copyOf(matches, count * 2);
+                }
+                matches[count++] = ordinal;
+            }
+        }
+        return Arrays.copyOf(matches, count);
+    }
+
+    /**
+     * Holds the normalized title of each indexed ordinal.
+     */
+    interface TitleStore {
+        /**
+         * Stores the title of an ordinal that holds none.
+         *
+         * @param ordinal    Item ordinal
+         * @param normalized Normalized title
+         */
+        void put(int ordinal, String normalized);
+
+        /**
+         * Removes the title of an ordinal.
+         *
+         * @param ordinal Item ordinal
+         * @return Removed title, or null if the ordinal held none
+         */
+        String remove(int ordinal);
+
+        /**
+         * Checks whether the title of an ordinal contains a normalized query.
+         *
+         * @param ordinal    Item ordinal
+         * @param normalized Normalized query
+         * @return true if the ordinal holds a title containing the query
+         */
+        boolean contains(int ordinal, String normalized);
+
+        /**
+         * Gets a bound on the ordinals holding titles.
+         *
+         * @return Number greater than every ordinal holding a title
+         */
+        int limit();
+    }
+
+    /**
+     * Title store keeping each title as a String, null for free ordinals.
+     */
+    private static final class StringTitles implements TitleStore {
+        private String[] titles = new String[16];
+
+        @Override
+        public void put(int ordinal, String normalized) {
+            if (ordinal >= titles.length) {
+                titles = Arrays.copyOf(titles, Math.max(ordinal + 1, titles.length * 2));
+            }
+            titles[ordinal] = normalized;
+        }
+
+        @Override
+        public String remove(int ordinal) {
+            if (ordinal >= titles.length) {
+                return null;
+            }
+            String title = titles[ordinal];
+            titles[ordinal] = null;
+            return title;
+        }
+
+        @Override
+        public boolean contains(int ordinal, String normalized) {
+            return ordinal < titles.length && titles[ordinal] != null && titles[ordinal].contains(normalized);
+        }
+
+        @Override
+        public int limit() {
+            return titles.length;
+        }
+    }
+
+    /**
+     * Sorted, duplicate-free list of ordinals containing one trigram.
+     */
+    private static final class Postings {
+        private int[] ordinals = new int[4];
+        private int size;
+
+        private boolean contains(int ordinal) {
+            return Arrays.binarySearch(ordinals, 0, size, ordinal) >= 0;
+        }
+
+        private void add(int ordinal) {
+            // Ordinals usually arrive in increasing order, so check the tail first
+            int position;
+            if (size == 0 || ordinals[size - 1] < ordinal) {
+                position = size;
+            } else {
+                position = Arrays.binarySearch(ordinals, 0, size, ordinal);
+                if (position >= 0) {
+                    return;
+                }
+                position = -position - 1;
+            }
+
+            if (size == ordinals.length) {
+                ordinals = Arrays.copyOf(ordinals, size * 2);
+            }
+            System.arraycopy(ordinals, position, ordinals, position + 1, size - position);
+            ordinals[position] = ordinal;
+            size++;
+        }
+
+        private boolean remove(int ordinal) {
+            int position = Arrays.binarySearch(ordinals, 0, size, ordinal);
+            if (position < 0) {
+                return false;
+            }
+            System.arraycopy(ordinals, position + 1, ordinals, position, size - position - 1);
+            size--;
+            return true;
+        }
+    }
+}
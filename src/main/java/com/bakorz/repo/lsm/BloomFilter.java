@@ -0,0 +1,118 @@
+package com.bakorz.repo.lsm;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Bloom filter over the keys of one SSTable.
+ * Lets point reads skip tables that cannot contain a key without touching
+ * the disk. Uses about ten bits per key and seven probes, for a false-positive
+ * rate of roughly one percent.
+ *
+ * @author Bakorz
+ * @version 1.0
+ */
+final class BloomFilter {
+    /** Bits allocated per expected key */
+    private static final int BITS_PER_KEY = 10;
+
+    /** Number of probe positions per key */
+    private static final int PROBES = 7;
+
+    /** Filter bits */
+    private final long[] bits;
+
+    /** Number of probe positions per key */
+    private final int probes;
+
+    private BloomFilter(long[] bits, int probes) {
+        this.bits = bits;
+        this.probes = probes;
+    }
+
+    /**
+     * Creates an empty filter sized for the given number of keys.
+     *
+     * @param expectedKeys Number of keys that will be added
+     * @return New filter
+     */
+    static BloomFilter create(long expectedKeys) {
+        long bitCount = Math.max(64, expectedKeys * BITS_PER_KEY);
+        int words = (int) Math.min(Integer.MAX_VALUE - 8, (bitCount + 63) / 64);
+        return new BloomFilter(new long[words], PROBES);
+    }
+
+    /**
+     * Reads a filter written by {@link #writeTo(DataOutput)}.
+     *
+     * @param in Input positioned at the filter
+     * @return Filter read from the input
+     * @throws IOException if the input cannot be read
+     */
+    static BloomFilter readFrom(DataInput in) throws IOException {
+        int probes = in.readInt();
+        long[] bits = new long[in.readInt()];
+        for (int i = 0; i < bits.length; i++) {
+            bits[i] = in.readLong();
+        }
+        return new BloomFilter(bits, probes);
+    }
+
+    /**
+     * Writes the filter.
+     *
+     * @param out Output to write to
+     * @throws IOException if the output cannot be written
+     */
+    void writeTo(DataOutput out) throws IOException {
+        out.writeInt(probes);
+        out.writeInt(bits.length);
+        for (long word : bits) {
+            out.writeLong(word);
+        }
+    }
+
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    /**
+     * Adds a key.
+     *
+     * @param key Key to add
+     */
+    void add(String key) {
+        int h1 = mix(key.hashCode());
+        int h2 = mix(h1 ^ 0x9e3779b9) | 1;
+        long bitCount = (long) bits.length * 64;
+        for (int i = 0; i < probes; i++) {
+            long bit = Math.floorMod(h1 + (long) i * h2, bitCount);
+            bits[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    /**
+     * Checks whether a key may have been added.
+     *
+     * @param key Key to look up
+     * @return false if the key was definitely not added
+     */
+    boolean mightContain(String key) {
+        int h1 = mix(key.hashCode());
+        int h2 = mix(h1 ^ 0x9e3779b9) | 1;
+        long bitCount = (long) bits.length * 64;
+        for (int i = 0; i < probes; i++) {
+            long bit = Math.floorMod(h1 + (long) i * h2, bitCount);
+            if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
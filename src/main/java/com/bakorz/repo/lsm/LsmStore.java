@@ -0,0 +1,495 @@
+package com.bakorz.repo.lsm;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+
+/**
+ * Embedded log-structured merge-tree key-value store with String keys and
+ * byte array values.
+ * Writes go to a write-ahead log and a sorted in-memory memtable. When the
+ * memtable grows past its limit it is frozen and written, on a background
+ * thread, to an immutable SSTable while a fresh memtable takes new writes.
+ * Once enough SSTables accumulate they are merged into one in the background,
+ * dropping overwritten values and deletes.
+ * Reads check the memtable, the frozen memtable and then the SSTables from
+ * newest to oldest, skipping tables whose bloom filter rules the key out.
+ * The set of live SSTables is recorded in a MANIFEST file that is replaced
+ * atomically, so a crash leaves either the old or the new set.
+ * Safe for concurrent use; readers share a read lock and only swaps of the
+ * memtable or table set take the write lock.
+ *
+ * @author Bakorz
+ * @version 1.0
+ */
+public final class LsmStore implements Closeable {
+    /** Marker value for deleted keys, compared by identity */
+    static final byte[] TOMBSTONE = new byte[0];
+
+    /** Approximate memtable size in bytes at which it is flushed to an SSTable */
+    private static final long MEMTABLE_LIMIT = 4 * 1024 * 1024;
+
+    /** Number of SSTables that triggers a background compaction */
+    private static final int COMPACTION_TRIGGER = 4;
+
+    /** Name of the file listing the live SSTables */
+    private static final String MANIFEST = "MANIFEST";
+
+    /** Directory holding the store's files */
+    private final Path directory;
+
+    /** Guards the memtables, log and table list */
+    private final ReentrantReadWriteLock lock;
+
+    /** Thread that flushes frozen memtables and compacts tables */
+    private final ExecutorService background;
+
+    /** Memtable receiving new writes */
+    private ConcurrentSkipListMap<String, byte[]> memtable;
+
+    /** Approximate size of the memtable in bytes */
+    private long memtableBytes;
+
+    /** Frozen memtable being written to an SSTable, or null */
+    private ConcurrentSkipListMap<String, byte[]> frozen;
+
+    /** Log of the frozen memtable, deleted once its SSTable is recorded */
+    private Path frozenLog;
+
+    /** Log of the writes in the current memtable */
+    private WriteAheadLog log;
+
+    /** Live SSTables, newest first */
+    private List<SSTable> tables;
+
+    /** Number used for the next log or table file */
+    private long nextFileNumber;
+
+    /** Whether a compaction is queued or running */
+    private boolean compacting;
+
+    /**
+     * Opens the store in the given directory, creating it if necessary.
+     * Writes still in logs from the previous run are replayed and flushed to
+     * an SSTable.
+     *
+     * @param directory Directory holding the store's files
+     * @throws IOException if the store cannot be opened
+     */
+    public LsmStore(Path directory) throws IOException {
+        this.directory = directory;
+        this.lock = new ReentrantReadWriteLock();
+        this.background = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "lsm-background");
+            t.setDaemon(true);
+            return t;
+        });
+        this.memtable = new ConcurrentSkipListMap<>();
+        this.tables = new ArrayList<>();
+        Files.createDirectories(directory);
+        recover();
+    }
+
+    private static String fileName(long number, String extension) {
+        return String.format("%06d.%s", number, extension);
+    }
+
+    private static long fileNumber(Path file) {
+        String name = file.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(0, name.indexOf('.')));
+        } catch (RuntimeException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Loads the manifest, removes files it does not list, and replays and
+     * flushes any leftover logs.
+     */
+    private void recover() throws IOException {
+        Path manifest = directory.resolve(MANIFEST);
+        Set<String> live = new HashSet<>();
+        if (Files.exists(manifest)) {
+            for (String line : Files.readAllLines(manifest, StandardCharsets.UTF_8)) {
+                String[] parts = line.split(" ");
+                if (parts.length == 2 && parts[0].equals("next")) {
+                    nextFileNumber = Long.parseLong(parts[1]);
+                } else if (parts.length == 2 && parts[0].equals("table")) {
+                    tables.add(SSTable.open(directory.resolve(parts[1])));
+                    live.add(parts[1]);
+                }
+            }
+        }
+
+        List<Path> logs = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                nextFileNumber = Math.max(nextFileNumber, fileNumber(file) + 1);
+                if (name.endsWith(".log")) {
+                    logs.add(file);
+                } else if (name.endsWith(".sst") && !live.contains(name)) {
+                    // Output of a flush or compaction that never reached the manifest
+                    Files.delete(file);
+                }
+            }
+        }
+
+        logs.sort(Comparator.comparingLong(LsmStore::fileNumber));
+        for (Path file : logs) {
+            WriteAheadLog.replay(file, memtable::put);
+        }
+        if (!memtable.isEmpty()) {
+            tables.add(0, SSTable.write(directory.resolve(fileName(nextFileNumber++, "sst")),
+                    memtable.entrySet().iterator(), memtable.size()));
+            writeManifest();
+            memtable = new ConcurrentSkipListMap<>();
+        }
+        for (Path file : logs) {
+            Files.delete(file);
+        }
+
+        log = new WriteAheadLog(directory.resolve(fileName(nextFileNumber++, "log")));
+        scheduleCompaction();
+    }
+
+    /**
+     * Replaces the manifest with the current table list through a temporary
+     * file and an atomic rename. Called with the write lock held or during
+     * recovery.
+     */
+    private void writeManifest() throws IOException {
+        Path temp = directory.resolve(MANIFEST + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(temp.toFile());
+                Writer out = new OutputStreamWriter(file, StandardCharsets.UTF_8)) {
+            out.write("next " + nextFileNumber + "\n");
+            for (SSTable table : tables) {
+                out.write("table " + table.path().getFileName() + "\n");
+            }
+            out.flush();
+            file.getFD().sync();
+        }
+        Files.move(temp, directory.resolve(MANIFEST), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Returns the value stored for a key.
+     *
+     * @param key Key to look up
+     * @return Value, or null if the key is not present
+     * @throws IOException if an SSTable cannot be read
+     */
+    public byte[] get(String key) throws IOException {
+        lock.readLock().lock();
+        try {
+            byte[] value = memtable.get(key);
+            if (value == null && frozen != null) {
+                value = frozen.get(key);
+            }
+            for (int i = 0; value == null && i < tables.size(); i++) {
+                value = tables.get(i).get(key);
+            }
+            return value == TOMBSTONE ? null : value;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Stores a value for a key, replacing any previous value.
+     *
+     * @param key   Key to store
+     * @param value Value to store
+     * @throws IOException if the write-ahead log cannot be written
+     */
+    public void put(String key, byte[] value) throws IOException {
+        putAll(Collections.singletonMap(key, value));
+    }
+
+    /**
+     * Stores several values with one write-ahead log append.
+     *
+     * @param entries Keys with the values to store
+     * @throws IOException if the write-ahead log cannot be written
+     */
+    public void putAll(Map<String, byte[]> entries) throws IOException {
+        write(entries.entrySet());
+    }
+
+    /**
+     * Deletes a key.
+     *
+     * @param key Key to delete
+     * @throws IOException if the write-ahead log cannot be written
+     */
+    public void delete(String key) throws IOException {
+        deleteAll(Collections.singletonList(key));
+    }
+
+    /**
+     * Deletes several keys with one write-ahead log append.
+     *
+     * @param keys Keys to delete
+     * @throws IOException if the write-ahead log cannot be written
+     */
+    public void deleteAll(Collection<String> keys) throws IOException {
+        List<Map.Entry<String, byte[]>> entries = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            entries.add(new AbstractMap.SimpleImmutableEntry<>(key, TOMBSTONE));
+        }
+        write(entries);
+    }
+
+    private void write(Collection<Map.Entry<String, byte[]>> entries) throws IOException {
+        lock.writeLock().lock();
+        try {
+            log.append(entries);
+            for (Map.Entry<String, byte[]> entry : entries) {
+                memtable.put(entry.getKey(), entry.getValue());
+                memtableBytes += 48 + entry.getKey().length() * 2L + entry.getValue().length;
+            }
+            if (memtableBytes >= MEMTABLE_LIMIT && frozen == null) {
+                freezeMemtable();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Hands the memtable to the background thread for flushing and starts a
+     * new memtable and log. Called with the write lock held.
+     */
+    private void freezeMemtable() throws IOException {
+        frozen = memtable;
+        frozenLog = log.path();
+        log.close();
+        log = new WriteAheadLog(directory.resolve(fileName(nextFileNumber++, "log")));
+        memtable = new ConcurrentSkipListMap<>();
+        memtableBytes = 0;
+        submit(this::flushFrozen);
+    }
+
+    /**
+     * Queues background work unless the store is closing. Work that is not
+     * run is picked up on the next open: frozen memtables are replayed from
+     * their logs and compaction is retried.
+     *
+     * @param task Work to run on the background thread
+     * @return false if the work was not queued
+     */
+    private boolean submit(Runnable task) {
+        try {
+            background.execute(task);
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Writes the frozen memtable to an SSTable, records it in the manifest and
+     * deletes its log. Runs on the background thread.
+     */
+    private void flushFrozen() {
+        try {
+            long number;
+            lock.writeLock().lock();
+            try {
+                number = nextFileNumber++;
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            SSTable table = SSTable.write(directory.resolve(fileName(number, "sst")),
+                    frozen.entrySet().iterator(), frozen.size());
+
+            Path flushedLog;
+            lock.writeLock().lock();
+            try {
+                tables.add(0, table);
+                writeManifest();
+                frozen = null;
+                flushedLog = frozenLog;
+                frozenLog = null;
+                if (memtableBytes >= MEMTABLE_LIMIT) {
+                    freezeMemtable();
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+            Files.deleteIfExists(flushedLog);
+            scheduleCompaction();
+        } catch (IOException e) {
+            System.err.println("Error flushing memtable: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Queues a compaction if enough SSTables have accumulated and none is
+     * pending.
+     */
+    private void scheduleCompaction() {
+        lock.writeLock().lock();
+        try {
+            if (!compacting && tables.size() >= COMPACTION_TRIGGER) {
+                compacting = submit(this::compact);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Merges all current SSTables into one, dropping overwritten values and
+     * tombstones. Tables flushed meanwhile are newer than every merged table
+     * and stay in front of the result. Runs on the background thread.
+     */
+    private void compact() {
+        try {
+            List<SSTable> inputs;
+            long number;
+            lock.writeLock().lock();
+            try {
+                inputs = new ArrayList<>(tables);
+                number = nextFileNumber++;
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            List<Iterator<Map.Entry<String, byte[]>>> sources = new ArrayList<>();
+            long expectedKeys = 0;
+            for (SSTable table : inputs) {
+                sources.add(table.iterator(""));
+                expectedKeys += table.entryCount();
+            }
+            SSTable merged = SSTable.write(directory.resolve(fileName(number, "sst")),
+                    new MergingIterator(sources, true), expectedKeys);
+
+            lock.writeLock().lock();
+            try {
+                tables.removeAll(inputs);
+                tables.add(merged);
+                writeManifest();
+                for (SSTable table : inputs) {
+                    table.delete();
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } catch (IOException e) {
+            System.err.println("Error compacting tables: " + e.getMessage());
+        } finally {
+            lock.writeLock().lock();
+            try {
+                compacting = false;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Checks whether the store holds any live key.
+     *
+     * @return true if every key is absent or deleted
+     */
+    public boolean isEmpty() {
+        lock.readLock().lock();
+        try {
+            List<Iterator<Map.Entry<String, byte[]>>> sources = new ArrayList<>();
+            sources.add(memtable.entrySet().iterator());
+            if (frozen != null) {
+                sources.add(frozen.entrySet().iterator());
+            }
+            for (SSTable table : tables) {
+                sources.add(table.iterator(""));
+            }
+            return !new MergingIterator(sources, true).hasNext();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Visits every live key starting with a prefix, in key order, with its
+     * current value. An empty prefix visits the whole store.
+     *
+     * @param prefix   Key prefix, such as "MAL:"
+     * @param consumer Receives each key and value
+     */
+    public void scan(String prefix, BiConsumer<String, byte[]> consumer) {
+        lock.readLock().lock();
+        try {
+            List<Iterator<Map.Entry<String, byte[]>>> sources = new ArrayList<>();
+            sources.add(memtable.tailMap(prefix).entrySet().iterator());
+            if (frozen != null) {
+                sources.add(frozen.tailMap(prefix).entrySet().iterator());
+            }
+            for (SSTable table : tables) {
+                sources.add(table.iterator(prefix));
+            }
+
+            MergingIterator entries = new MergingIterator(sources, true);
+            while (entries.hasNext()) {
+                Map.Entry<String, byte[]> entry = entries.next();
+                if (!entry.getKey().startsWith(prefix)) {
+                    break;
+                }
+                consumer.accept(entry.getKey(), entry.getValue());
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Forces logged writes to the storage device.
+     *
+     * @throws IOException if the log cannot be synced
+     */
+    public void sync() throws IOException {
+        lock.writeLock().lock();
+        try {
+            log.sync();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Waits for background work, syncs the log and closes all files.
+     *
+     * @throws IOException if a file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        background.shutdown();
+        try {
+            background.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        lock.writeLock().lock();
+        try {
+            log.sync();
+            log.close();
+            for (SSTable table : tables) {
+                table.close();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
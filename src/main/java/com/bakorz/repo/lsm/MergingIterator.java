@@ -0,0 +1,103 @@
+package com.bakorz.repo.lsm;
+
+import java.util.*;
+
+/**
+ * Merges several key-ordered sources into one key-ordered sequence.
+ * Sources are given newest first; when several sources hold the same key only
+ * the newest entry is returned. Tombstones are either passed through (when
+ * the merged output still has older data beneath it) or dropped.
+ *
+ * @author Bakorz
+ * @version 1.0
+ */
+final class MergingIterator implements Iterator<Map.Entry<String, byte[]>> {
+    /** Current head of each non-exhausted source, smallest key first */
+    private final PriorityQueue<Head> heads;
+
+    /** Whether tombstones are dropped from the output */
+    private final boolean dropTombstones;
+
+    /** Next entry to return, or null when exhausted */
+    private Map.Entry<String, byte[]> next;
+
+    /**
+     * Creates an iterator over the given sources.
+     *
+     * @param sources        Key-ordered sources, newest first
+     * @param dropTombstones Whether to leave deleted keys out of the output
+     */
+    MergingIterator(List<Iterator<Map.Entry<String, byte[]>>> sources, boolean dropTombstones) {
+        this.heads = new PriorityQueue<>(Math.max(1, sources.size()));
+        this.dropTombstones = dropTombstones;
+        for (int rank = 0; rank < sources.size(); rank++) {
+            Iterator<Map.Entry<String, byte[]>> source = sources.get(rank);
+            if (source.hasNext()) {
+                heads.add(new Head(source.next(), rank, source));
+            }
+        }
+        this.next = advance();
+    }
+
+    private Map.Entry<String, byte[]> advance() {
+        while (!heads.isEmpty()) {
+            Head newest = heads.poll();
+            Map.Entry<String, byte[]> entry = newest.entry;
+            newest.advance(heads);
+
+            // Skip older versions of the same key
+            while (!heads.isEmpty() && heads.peek().entry.getKey().equals(entry.getKey())) {
+                heads.poll().advance(heads);
+            }
+
+            if (!dropTombstones || entry.getValue() != LsmStore.TOMBSTONE) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return next != null;
+    }
+
+    @Override
+    public Map.Entry<String, byte[]> next() {
+        if (next == null) {
+            throw new NoSuchElementException();
+        }
+        Map.Entry<String, byte[]> current = next;
+        next = advance();
+        return current;
+    }
+
+    /**
+     * Current entry of one source.
+     */
+    private static final class Head implements Comparable<Head> {
+        private Map.Entry<String, byte[]> entry;
+        private final int rank;
+        private final Iterator<Map.Entry<String, byte[]>> source;
+
+        private Head(Map.Entry<String, byte[]> entry, int rank, Iterator<Map.Entry<String, byte[]>> source) {
+            this.entry = entry;
+            this.rank = rank;
+            this.source = source;
+        }
+
+        /** Moves to the source's next entry and requeues it, if any */
+        private void advance(PriorityQueue<Head> heads) {
+            if (source.hasNext()) {
+                entry = source.next();
+                heads.add(this);
+            }
+        }
+
+        @Override
+        public int compareTo(Head other) {
+            int byKey = entry.getKey().compareTo(other.entry.getKey());
+            return byKey != 0 ? byKey : Integer.compare(rank, other.rank);
+        }
+    }
+}
@@ -0,0 +1,359 @@
+package com.bakorz.repo.lsm;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Immutable sorted table of keys and values on disk.
+ * Entries are written in key order into blocks of about 4 KB. The block index
+ * (first key and position of every block) and a bloom filter over all keys
+ * are stored after the blocks and kept in memory while the table is open, so
+ * a point read costs at most one block read.
+ * Deletes are stored as tombstone entries so they shadow older tables until
+ * compaction drops them.
+ * File layout: data blocks, block index, bloom filter, then a fixed-size
+ * footer with the index and filter positions, entry count and magic number.
+ *
+ * @author Bakorz
+ * @version 1.0
+ */
+final class SSTable implements Closeable {
+    /** Magic number identifying an SSTable footer */
+    private static final int MAGIC = 0x4C534D54;
+
+    /** Size of the footer in bytes (index offset, filter offset, entry count, magic) */
+    private static final int FOOTER_SIZE = 28;
+
+    /** Target size of a data block in bytes */
+    private static final int BLOCK_SIZE = 4096;
+
+    /** Path of the table file */
+    private final Path path;
+
+    /** Channel used for positional block reads */
+    private final FileChannel channel;
+
+    /** First key of each block */
+    private final String[] firstKeys;
+
+    /** File offset of each block */
+    private final long[] blockOffsets;
+
+    /** Length of each block in bytes */
+    private final int[] blockLengths;
+
+    /** Filter over all keys in the table */
+    private final BloomFilter filter;
+
+    /** Number of entries, including tombstones */
+    private final long entryCount;
+
+    private SSTable(Path path, FileChannel channel, String[] firstKeys, long[] blockOffsets, int[] blockLengths,
+            BloomFilter filter, long entryCount) {
+        this.path = path;
+        this.channel = channel;
+        this.firstKeys = firstKeys;
+        this.blockOffsets = blockOffsets;
+        this.blockLengths = blockLengths;
+        this.filter = filter;
+        this.entryCount = entryCount;
+    }
+
+    /**
+     * Writes sorted entries to a new table file and opens it.
+     *
+     * @param path         Path of the new table file
+     * @param entries      Entries in ascending key order; tombstones are
+     *                     LsmStore.TOMBSTONE
+     * @param expectedKeys Upper bound on the number of entries, for sizing the
+     *                     bloom filter
+     * @return Opened table
+     * @throws IOException if the file cannot be written
+     */
+    static SSTable write(Path path, Iterator<Map.Entry<String, byte[]>> entries, long expectedKeys)
+            throws IOException {
+        BloomFilter filter = BloomFilter.create(expectedKeys);
+        List<String> firstKeys = new ArrayList<>();
+        List<long[]> blocks = new ArrayList<>();
+        long entryCount = 0;
+
+        try (FileOutputStream file = new FileOutputStream(path.toFile());
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 64 * 1024))) {
+            ByteArrayOutputStream blockBytes = new ByteArrayOutputStream(BLOCK_SIZE * 2);
+            DataOutputStream block = new DataOutputStream(blockBytes);
+            while (entries.hasNext()) {
+                Map.Entry<String, byte[]> entry = entries.next();
+                if (blockBytes.size() == 0) {
+                    firstKeys.add(entry.getKey());
+                }
+                writeEntry(block, entry.getKey(), entry.getValue());
+                filter.add(entry.getKey());
+                entryCount++;
+
+                if (blockBytes.size() >= BLOCK_SIZE) {
+                    blocks.add(new long[] { out.size(), blockBytes.size() });
+                    blockBytes.writeTo(out);
+                    blockBytes.reset();
+                }
+            }
+            if (blockBytes.size() > 0) {
+                blocks.add(new long[] { out.size(), blockBytes.size() });
+                blockBytes.writeTo(out);
+            }
+
+            long indexOffset = out.size();
+            out.writeInt(blocks.size());
+            for (int i = 0; i < blocks.size(); i++) {
+                byte[] key = firstKeys.get(i).getBytes(StandardCharsets.UTF_8);
+                out.writeInt(key.length);
+                out.write(key);
+                out.writeLong(blocks.get(i)[0]);
+                out.writeInt((int) blocks.get(i)[1]);
+            }
+
+            long filterOffset = out.size();
+            filter.writeTo(out);
+
+            out.writeLong(indexOffset);
+            out.writeLong(filterOffset);
+            out.writeLong(entryCount);
+            out.writeInt(MAGIC);
+            out.flush();
+            file.getFD().sync();
+        }
+        return open(path);
+    }
+
+    private static void writeEntry(DataOutputStream block, String key, byte[] value) throws IOException {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        block.writeInt(keyBytes.length);
+        block.write(keyBytes);
+        if (value == LsmStore.TOMBSTONE) {
+            block.writeInt(-1);
+        } else {
+            block.writeInt(value.length);
+            block.write(value);
+        }
+    }
+
+    /**
+     * Opens an existing table, loading its block index and bloom filter.
+     *
+     * @param path Path of the table file
+     * @return Opened table
+     * @throws IOException if the file cannot be read or is not a table
+     */
+    static SSTable open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size < FOOTER_SIZE) {
+                throw new IOException("Truncated table " + path.getFileName());
+            }
+            ByteBuffer footer = read(channel, size - FOOTER_SIZE, FOOTER_SIZE);
+            long indexOffset = footer.getLong();
+            long filterOffset = footer.getLong();
+            long entryCount = footer.getLong();
+            if (footer.getInt() != MAGIC) {
+                throw new IOException("Bad magic in table " + path.getFileName());
+            }
+
+            ByteBuffer meta = read(channel, indexOffset, (int) (size - FOOTER_SIZE - indexOffset));
+            DataInputStream in = new DataInputStream(
+                    new ByteArrayInputStream(meta.array(), 0, meta.limit()));
+            int blockCount = in.readInt();
+            String[] firstKeys = new String[blockCount];
+            long[] offsets = new long[blockCount];
+            int[] lengths = new int[blockCount];
+            for (int i = 0; i < blockCount; i++) {
+                byte[] key = new byte[in.readInt()];
+                in.readFully(key);
+                firstKeys[i] = new String(key, StandardCharsets.UTF_8);
+                offsets[i] = in.readLong();
+                lengths[i] = in.readInt();
+            }
+            in.skipBytes((int) (filterOffset - indexOffset) - (meta.limit() - in.available()));
+            BloomFilter filter = BloomFilter.readFrom(in);
+
+            return new SSTable(path, channel, firstKeys, offsets, lengths, filter, entryCount);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of table");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Returns the path of the table file.
+     *
+     * @return Table file path
+     */
+    Path path() {
+        return path;
+    }
+
+    /**
+     * Returns the number of entries, including tombstones.
+     *
+     * @return Entry count
+     */
+    long entryCount() {
+        return entryCount;
+    }
+
+    /**
+     * Finds the block that would hold a key.
+     *
+     * @return Block number, or -1 if the key sorts before the first block
+     */
+    private int blockFor(String key) {
+        int low = 0;
+        int high = firstKeys.length - 1;
+        int found = -1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (firstKeys[middle].compareTo(key) <= 0) {
+                found = middle;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Looks up a key.
+     *
+     * @param key Key to look up
+     * @return Value, LsmStore.TOMBSTONE if the key was deleted, or null if the
+     *         table has no entry for the key
+     * @throws IOException if the table cannot be read
+     */
+    byte[] get(String key) throws IOException {
+        if (!filter.mightContain(key)) {
+            return null;
+        }
+
+        int block = blockFor(key);
+        if (block < 0) {
+            return null;
+        }
+
+        ByteBuffer buffer = read(channel, blockOffsets[block], blockLengths[block]);
+        while (buffer.hasRemaining()) {
+            String entryKey = readKey(buffer);
+            int comparison = entryKey.compareTo(key);
+            int valueLength = buffer.getInt();
+            if (comparison == 0) {
+                return readValue(buffer, valueLength);
+            }
+            if (comparison > 0) {
+                return null;
+            }
+            if (valueLength > 0) {
+                buffer.position(buffer.position() + valueLength);
+            }
+        }
+        return null;
+    }
+
+    private static String readKey(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        String key = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return key;
+    }
+
+    private static byte[] readValue(ByteBuffer buffer, int length) {
+        if (length < 0) {
+            return LsmStore.TOMBSTONE;
+        }
+        byte[] value = new byte[length];
+        buffer.get(value);
+        return value;
+    }
+
+    /**
+     * Iterates over the entries with keys at or after the given key, in key
+     * order, reading one block at a time.
+     *
+     * @param fromKey First key to return (inclusive)
+     * @return Iterator over the entries, including tombstones
+     */
+    Iterator<Map.Entry<String, byte[]>> iterator(String fromKey) {
+        return new Iterator<Map.Entry<String, byte[]>>() {
+            private int block = Math.max(0, blockFor(fromKey));
+            private ByteBuffer buffer;
+            private Map.Entry<String, byte[]> next = advance();
+
+            private Map.Entry<String, byte[]> advance() {
+                try {
+                    while (true) {
+                        if (buffer == null || !buffer.hasRemaining()) {
+                            if (block >= firstKeys.length) {
+                                return null;
+                            }
+                            buffer = read(channel, blockOffsets[block], blockLengths[block]);
+                            block++;
+                        }
+
+                        String key = readKey(buffer);
+                        byte[] value = readValue(buffer, buffer.getInt());
+                        if (key.compareTo(fromKey) >= 0) {
+                            return new AbstractMap.SimpleImmutableEntry<>(key, value);
+                        }
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Error reading table " + path.getFileName(), e);
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public Map.Entry<String, byte[]> next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                Map.Entry<String, byte[]> current = next;
+                next = advance();
+                return current;
+            }
+        };
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Closes the table and deletes its file.
+     *
+     * @throws IOException if the file cannot be deleted
+     */
+    void delete() throws IOException {
+        close();
+        Files.deleteIfExists(path);
+    }
+}
@@ -0,0 +1,150 @@
+package com.bakorz.repo.lsm;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of the writes held in a memtable, replayed on startup to
+ * recover writes that had not reached an SSTable yet.
+ * Each record is length-prefixed and carries a CRC32 of its payload, so a
+ * record torn by a crash is detected and replay stops there.
+ * Record layout: payload length, CRC32, then key length, key (UTF-8), value
+ * length (-1 for a delete) and value.
+ *
+ * @author Bakorz
+ * @version 1.0
+ */
+final class WriteAheadLog implements Closeable {
+    /** Path of the log file */
+    private final Path path;
+
+    /** Channel the log is appended through */
+    private final FileChannel channel;
+
+    /**
+     * Opens a log for appending, creating it if necessary.
+     *
+     * @param path Path of the log file
+     * @throws IOException if the file cannot be opened
+     */
+    WriteAheadLog(Path path) throws IOException {
+        this.path = path;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Returns the path of the log file.
+     *
+     * @return Log file path
+     */
+    Path path() {
+        return path;
+    }
+
+    /**
+     * Appends a batch of writes in one write call.
+     *
+     * @param entries Keys with their values, or LsmStore.TOMBSTONE for deletes
+     * @throws IOException if the log cannot be written
+     */
+    void append(Iterable<Map.Entry<String, byte[]>> entries) throws IOException {
+        int size = 0;
+        for (Map.Entry<String, byte[]> entry : entries) {
+            size += 16 + entry.getKey().length() * 3 + entry.getValue().length;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        CRC32 crc = new CRC32();
+        for (Map.Entry<String, byte[]> entry : entries) {
+            byte[] key = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            byte[] value = entry.getValue();
+            boolean tombstone = value == LsmStore.TOMBSTONE;
+            int payloadStart = buffer.position() + 8;
+            buffer.position(payloadStart);
+            buffer.putInt(key.length).put(key);
+            buffer.putInt(tombstone ? -1 : value.length);
+            if (!tombstone) {
+                buffer.put(value);
+            }
+
+            int payloadLength = buffer.position() - payloadStart;
+            crc.reset();
+            crc.update(buffer.array(), payloadStart, payloadLength);
+            buffer.putInt(payloadStart - 8, payloadLength);
+            buffer.putInt(payloadStart - 4, (int) crc.getValue());
+        }
+
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Forces appended records to the storage device.
+     *
+     * @throws IOException if the log cannot be synced
+     */
+    void sync() throws IOException {
+        channel.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Replays the records of a log in order, stopping at the first torn or
+     * corrupt record.
+     *
+     * @param path     Path of the log file
+     * @param consumer Receives each key with its value or LsmStore.TOMBSTONE
+     * @return Number of records replayed
+     * @throws IOException if the file cannot be read
+     */
+    static int replay(Path path, BiConsumer<String, byte[]> consumer) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+        CRC32 crc = new CRC32();
+        int records = 0;
+        while (buffer.remaining() >= 8) {
+            int payloadLength = buffer.getInt();
+            int checksum = buffer.getInt();
+            if (payloadLength < 8 || payloadLength > buffer.remaining()) {
+                break;
+            }
+
+            crc.reset();
+            crc.update(buffer.array(), buffer.position(), payloadLength);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+
+            byte[] key = new byte[buffer.getInt()];
+            buffer.get(key);
+            int valueLength = buffer.getInt();
+            byte[] value = LsmStore.TOMBSTONE;
+            if (valueLength >= 0) {
+                value = new byte[valueLength];
+                buffer.get(value);
+            }
+            consumer.accept(new String(key, StandardCharsets.UTF_8), value);
+            records++;
+        }
+
+        if (buffer.hasRemaining()) {
+            System.err.println("Ignoring torn tail of " + path.getFileName() + " after " + records + " records");
+        }
+        return records;
+    }
+}
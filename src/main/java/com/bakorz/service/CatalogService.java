@@ -2,7 +2,13 @@ package com.bakorz.service;
 
 import com.bakorz.model.*;
 import com.bakorz.repo.*;
+import java.time.Duration;
+import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 /**
@@ -12,6 +18,19 @@ import java.util.stream.Collectors;
  * Handles caching of media items to improve performance and reduce API calls.
  * Manages composite keys to prevent ID collisions between different media
  * sources.
+ * Queries of the APIs are also available as ...Async methods returning
+ * CompletableFuture, which send their requests without blocking, so a caller
+ * can run many of them concurrently. The blocking methods wait for the same
+ * requests.
+ * Reads and writes of the local cache run on a cache executor, so neither
+ * the caller's thread, such as the JavaFX thread, nor the HTTP client's
+ * threads block on the cache.
+ * Identical API queries made concurrently, such as two home screen sections
+ * asking for the same top-rated page or the same favorite, are coalesced
+ * into one request, and a result is reused for a few seconds after it
+ * arrives. Empty results are not reused, since the repositories return them
+ * in place of errors. Cancelling the future of a query cancels its requests
+ * once every caller sharing them has cancelled.
  * 
  * @author Bakorz
  * @version 1.0
@@ -24,7 +43,29 @@ public class CatalogService {
     private TmdbMediaRepo tmdbRepo;
 
     /** Repository for local file-based media caching */
-    private FileMediaRepo fileRepo;
+    private MediaRepo fileRepo;
+
+    /** Non-blocking view of the MAL repository */
+    private MalMediaRepo.Async malAsync;
+
+    /** Non-blocking view of the TMDB repository */
+    private TmdbMediaRepo.Async tmdbAsync;
+
+    /** Executor the local cache is read and written on */
+    private Executor cacheExecutor;
+
+    /** Non-blocking view of the local cache, reading it on the cache executor */
+    private AsyncMediaRepo fileAsync;
+
+    /** Number of threads of the default cache executor */
+    private static final int CACHE_THREADS = 2;
+
+    /** How long the result of an API query is reused for identical queries */
+    private static final Duration QUERY_REUSE_TIME = Duration.ofSeconds(5);
+
+    /** Coalesces identical API queries, keyed by query name and arguments */
+    private final SingleFlight<List<Object>, Object> queries = new SingleFlight<>(QUERY_REUSE_TIME,
+            CatalogService::isReusable);
 
     /**
      * Constructor for CatalogService.
@@ -33,10 +74,31 @@ public class CatalogService {
      * @param tmdbRepo TMDB repository
      * @param fileRepo File-based cache repository
      */
-    public CatalogService(MalMediaRepo malRepo, TmdbMediaRepo tmdbRepo, FileMediaRepo fileRepo) {
+    public CatalogService(MalMediaRepo malRepo, TmdbMediaRepo tmdbRepo, MediaRepo fileRepo) {
+        this(malRepo, tmdbRepo, fileRepo, Executors.newFixedThreadPool(CACHE_THREADS, r -> {
+            Thread t = new Thread(r, "catalog-cache");
+            t.setDaemon(true);
+            return t;
+        }));
+    }
+
+    /**
+     * Constructor for CatalogService with the executor the local cache is
+     * read and written on.
+     * 
+     * @param malRepo       MyAnimeList repository
+     * @param tmdbRepo      TMDB repository
+     * @param fileRepo      File-based cache repository
+     * @param cacheExecutor Executor running the cache reads and writes
+     */
+    public CatalogService(MalMediaRepo malRepo, TmdbMediaRepo tmdbRepo, MediaRepo fileRepo, Executor cacheExecutor) {
         this.malRepo = malRepo;
         this.tmdbRepo = tmdbRepo;
         this.fileRepo = fileRepo;
+        this.malAsync = malRepo.async();
+        this.tmdbAsync = tmdbRepo.async();
+        this.cacheExecutor = cacheExecutor;
+        this.fileAsync = AsyncMediaRepo.adapt(fileRepo, cacheExecutor);
     }
 
     /**
@@ -48,56 +110,86 @@ public class CatalogService {
      * @return List of matching MediaItems from all sources
      */
     public List<MediaItem> searchAll(String query) {
-        List<MediaItem> results = new ArrayList<>();
+        return searchAllAsync(query).join();
+    }
 
-        // Search MAL for anime
-        try {
-            List<MediaItem> animeResults = malRepo.searchByTitle(query);
-            for (MediaItem item : animeResults) {
-                cacheMediaItem(item);
-            }
-            results.addAll(animeResults);
-        } catch (Exception e) {
-            System.err.println("Error searching MAL: " + e.getMessage());
-        }
+    /**
+     * Searches MAL and TMDB concurrently for items matching the query.
+     * Results are cached for future retrieval. A source that fails
+     * contributes no results.
+     * 
+     * @param query Search query string
+     * @return Future of the matching anime followed by the matching movies and
+     *         TV shows
+     */
+    public CompletableFuture<List<MediaItem>> searchAllAsync(String query) {
+        return coalesced(() -> searchAllUncoalesced(query), "searchAll", query);
+    }
 
-        // Search TMDB for movies and TV shows
-        try {
-            List<MediaItem> tmdbResults = tmdbRepo.searchByTitle(query);
-            for (MediaItem item : tmdbResults) {
-                cacheMediaItem(item);
-            }
-            results.addAll(tmdbResults);
-        } catch (Exception e) {
-            System.err.println("Error searching TMDB: " + e.getMessage());
-        }
+    /**
+     * Searches MAL and TMDB concurrently, without coalescing.
+     */
+    private CompletableFuture<List<MediaItem>> searchAllUncoalesced(String query) {
+        CompletableFuture<List<MediaItem>> animeResults = cached(malAsync.searchByTitle(query), "MAL");
+        CompletableFuture<List<MediaItem>> tmdbResults = cached(tmdbAsync.searchByTitle(query), "TMDB");
+        return HttpTransport.cancelling(animeResults.thenCombine(tmdbResults, (anime, tmdb) -> {
+            List<MediaItem> results = new ArrayList<>(anime);
+            results.addAll(tmdb);
+            return results;
+        }), animeResults, tmdbResults);
+    }
 
-        return results;
+    /**
+     * Caches the results of a search once they arrive.
+     * 
+     * @param search Future of the search results
+     * @param source Name of the searched source, for logging
+     * @return Future of the results, or of an empty list if caching failed
+     */
+    private CompletableFuture<List<MediaItem>> cached(CompletableFuture<List<MediaItem>> search, String source) {
+        CompletableFuture<List<MediaItem>> page = cachedPage(search);
+        return HttpTransport.cancelling(page.exceptionally(e -> {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            System.err.println("Error searching " + source + ": " + cause.getMessage());
+            return new ArrayList<>();
+        }), page);
     }
 
     /**
-     * Caches a media item in the local file repository.
+     * Caches a page of media items in the local file repository with a single
+     * bulk save.
      * Uses composite keys (source prefix + ID) to prevent collisions between
      * different sources.
-     * Only caches if the item doesn't already exist in the cache.
+     * Only caches items that don't already exist in the cache.
+     * Runs on the cache executor.
      * 
-     * @param item The MediaItem to cache
+     * @param items The MediaItems to cache
      */
-    private void cacheMediaItem(MediaItem item) {
-        if (item == null || item.getId() == null) {
+    private void cacheMediaItems(List<? extends MediaItem> items) {
+        Map<MediaItem, String> originalIds = new LinkedHashMap<>();
+        for (MediaItem item : items) {
+            if (item == null || item.getId() == null || originalIds.containsKey(item)) {
+                continue;
+            }
+
+            SourceKey source = sourceOf(item);
+            boolean cached = source != null ? isCached(source, item.getId())
+                    : fileRepo.getById(getCacheKey(item)).isPresent();
+            if (!cached) {
+                // Temporarily change the ID to include source prefix for caching
+                originalIds.put(item, item.getId());
+                item.setId(getCacheKey(item));
+            }
+        }
+
+        if (originalIds.isEmpty()) {
             return;
         }
 
-        // Create a unique cache key by prefixing with source
-        String cacheKey = getCacheKey(item);
-        Optional<MediaItem> existing = fileRepo.getById(cacheKey);
-        if (!existing.isPresent()) {
-            // Temporarily change the ID to include source prefix for caching
-            String originalId = item.getId();
-            item.setId(cacheKey);
-            fileRepo.save(item);
-            // Restore original ID
-            item.setId(originalId);
+        fileRepo.saveAll(originalIds.keySet());
+        // Restore original IDs
+        for (Map.Entry<MediaItem, String> entry : originalIds.entrySet()) {
+            entry.getKey().setId(entry.getValue());
         }
     }
 
@@ -111,17 +203,60 @@ public class CatalogService {
      * @return Composite cache key string
      */
     private String getCacheKey(MediaItem item) {
-        String prefix;
+        SourceKey source = sourceOf(item);
+        String prefix = source != null ? source.getPrefix() : "FILE";
+        return prefix + ":" + item.getId();
+    }
+
+    /**
+     * Determines the source of a media item from its type.
+     * 
+     * @param item The MediaItem
+     * @return Source of the item, or null for other media types
+     */
+    private static SourceKey sourceOf(MediaItem item) {
         if (item instanceof Anime) {
-            prefix = "MAL";
+            return SourceKey.MAL;
         } else if (item instanceof Movie) {
-            prefix = "TMDB_MOVIE";
+            return SourceKey.TMDB_MOVIE;
         } else if (item instanceof TVShow) {
-            prefix = "TMDB_TV";
-        } else {
-            prefix = "FILE";
+            return SourceKey.TMDB_TV;
         }
-        return prefix + ":" + item.getId();
+        return null;
+    }
+
+    /**
+     * Looks up a cached item by its source and the ID it has at that source,
+     * on the cache executor.
+     * Numeric IDs, which all MAL and TMDB IDs are, are looked up by packed
+     * source key without building the composite String key.
+     * 
+     * @param source Source of the item
+     * @param id     ID of the item at its source
+     * @return Future of an Optional containing the cached MediaItem if found
+     */
+    private CompletableFuture<Optional<MediaItem>> getCached(SourceKey source, String id) {
+        int numericId = SourceKey.parseId(id);
+        if (numericId >= 0) {
+            return fileAsync.getBySourceId(source, numericId);
+        }
+        return fileAsync.getById(source.getPrefix() + ":" + id);
+    }
+
+    /**
+     * Checks whether an item is cached, for callers already running on the
+     * cache executor.
+     * 
+     * @param source Source of the item
+     * @param id     ID of the item at its source
+     * @return true if the item is in the cache
+     */
+    private boolean isCached(SourceKey source, String id) {
+        int numericId = SourceKey.parseId(id);
+        if (numericId >= 0) {
+            return fileRepo.getBySourceId(source, numericId).isPresent();
+        }
+        return fileRepo.getById(source.getPrefix() + ":" + id).isPresent();
     }
 
     /**
@@ -171,71 +306,88 @@ public class CatalogService {
      */
     public Optional<MediaItem> getById(String id, String mediaSource, String mediaType) {
         try {
-            switch (mediaSource) {
-                case "MAL":
-                    Optional<MediaItem> malResult = malRepo.getById(id);
+            return getByIdAsync(id, mediaSource, mediaType).join();
+        } catch (Exception e) {
+            System.err.println("Error getting media by ID from " + mediaSource + ": " + e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Retrieves a media item by ID, source, and optionally type, without
+     * blocking. Looks items up as getById(id, mediaSource, mediaType) does.
+     * 
+     * @param id          Media item ID
+     * @param mediaSource Source of the media (MAL, TMDB, FILE)
+     * @param mediaType   Optional type of media (ANIME, MOVIE, TV_SHOW)
+     * @return Future of an Optional containing the MediaItem if found
+     */
+    public CompletableFuture<Optional<MediaItem>> getByIdAsync(String id, String mediaSource, String mediaType) {
+        return coalesced(() -> getByIdUncoalesced(id, mediaSource, mediaType), "getById", id, mediaSource, mediaType);
+    }
+
+    /**
+     * Retrieves a media item by ID, source and type, without coalescing.
+     */
+    private CompletableFuture<Optional<MediaItem>> getByIdUncoalesced(String id, String mediaSource,
+            String mediaType) {
+        switch (mediaSource) {
+            case "MAL":
+                return HttpTransport.composeCancelling(malAsync.getById(id), malResult -> {
                     if (malResult.isPresent()) {
-                        return malResult;
+                        return CompletableFuture.completedFuture(malResult);
                     }
                     // Try cache with composite key
-                    Optional<MediaItem> cachedMal = fileRepo.getById("MAL:" + id);
-                    if (cachedMal.isPresent()) {
-                        // Restore original ID without prefix
-                        cachedMal.get().setId(id);
-                        return cachedMal;
-                    }
-                    return Optional.empty();
-                case "TMDB":
-                    // If mediaType is specified, try the specific cache key first
-                    if (mediaType != null) {
-                        String cacheKey = null;
-                        if ("MOVIE".equals(mediaType)) {
-                            cacheKey = "TMDB_MOVIE:" + id;
-                        } else if ("TV_SHOW".equals(mediaType)) {
-                            cacheKey = "TMDB_TV:" + id;
-                        }
+                    return getCachedWithId(SourceKey.MAL, id);
+                });
+            case "TMDB":
+                // If mediaType is specified, try the specific cache key first
+                SourceKey source = null;
+                if ("MOVIE".equals(mediaType)) {
+                    source = SourceKey.TMDB_MOVIE;
+                } else if ("TV_SHOW".equals(mediaType)) {
+                    source = SourceKey.TMDB_TV;
+                }
+                CompletableFuture<Optional<MediaItem>> cachedItem = source != null ? getCachedWithId(source, id)
+                        : CompletableFuture.completedFuture(Optional.empty());
 
-                        if (cacheKey != null) {
-                            Optional<MediaItem> cachedItem = fileRepo.getById(cacheKey);
-                            if (cachedItem.isPresent()) {
-                                // Restore original ID without prefix
-                                cachedItem.get().setId(id);
-                                return cachedItem;
-                            }
-                        }
+                return HttpTransport.composeCancelling(cachedItem, cached -> {
+                    if (cached.isPresent()) {
+                        return CompletableFuture.completedFuture(cached);
                     }
-
                     // Try API
-                    Optional<MediaItem> tmdbResult = tmdbRepo.getById(id);
-                    if (tmdbResult.isPresent()) {
-                        return tmdbResult;
-                    }
-
-                    // Fallback: try both cache keys if mediaType wasn't specified
-                    if (mediaType == null) {
-                        Optional<MediaItem> cachedMovie = fileRepo.getById("TMDB_MOVIE:" + id);
-                        if (cachedMovie.isPresent()) {
-                            cachedMovie.get().setId(id);
-                            return cachedMovie;
-                        }
-                        Optional<MediaItem> cachedTV = fileRepo.getById("TMDB_TV:" + id);
-                        if (cachedTV.isPresent()) {
-                            cachedTV.get().setId(id);
-                            return cachedTV;
+                    return HttpTransport.composeCancelling(tmdbAsync.getById(id), tmdbResult -> {
+                        if (tmdbResult.isPresent() || mediaType != null) {
+                            return CompletableFuture.completedFuture(tmdbResult);
                         }
-                    }
-                    return Optional.empty();
-                case "FILE":
-                    return fileRepo.getById(id);
-                default:
-                    return Optional.empty();
-            }
-        } catch (Exception e) {
-            System.err.println("Error getting media by ID from " + mediaSource + ": " + e.getMessage());
-            return Optional.empty();
+                        // Fallback: try both cache keys if mediaType wasn't specified
+                        return getCachedWithId(SourceKey.TMDB_MOVIE, id).thenCompose(cachedMovie -> cachedMovie
+                                .isPresent() ? CompletableFuture.completedFuture(cachedMovie)
+                                        : getCachedWithId(SourceKey.TMDB_TV, id));
+                    });
+                });
+            case "FILE":
+                return fileAsync.getById(id);
+            default:
+                return CompletableFuture.completedFuture(Optional.empty());
         }
     }
 
+    /**
+     * Looks up a cached item by its source and source ID, restoring the
+     * original ID without prefix on the item found.
+     * 
+     * @param source Source of the item
+     * @param id     ID of the item at its source
+     * @return Future of an Optional containing the cached MediaItem if found
+     */
+    private CompletableFuture<Optional<MediaItem>> getCachedWithId(SourceKey source, String id) {
+        return getCached(source, id).thenApply(cached -> {
+            cached.ifPresent(item -> item.setId(id));
+            return cached;
+        });
+    }
+
     /**
      * Retrieves top-rated anime from MyAnimeList.
      * Results are cached for future retrieval.
@@ -245,14 +397,26 @@ public class CatalogService {
      * @return List of top-rated Anime
      */
     public List<Anime> getTopRatedAnime(int limit, int offset) {
-        List<MediaItem> animeResults = malRepo.getTopRated(limit, offset);
-        for (MediaItem item : animeResults) {
-            cacheMediaItem(item);
-        }
-        return animeResults.stream()
-                .filter(item -> item instanceof Anime)
-                .map(item -> (Anime) item)
-                .collect(Collectors.toList());
+        return getTopRatedAnimeAsync(limit, offset).join();
+    }
+
+    /**
+     * Retrieves top-rated anime from MyAnimeList without blocking.
+     * Results are cached for future retrieval.
+     * 
+     * @param limit  Maximum number of results
+     * @param offset Starting position for pagination
+     * @return Future of the list of top-rated Anime
+     */
+    public CompletableFuture<List<Anime>> getTopRatedAnimeAsync(int limit, int offset) {
+        return coalesced(() -> {
+            CompletableFuture<List<MediaItem>> page = cachedPage(malAsync.getTopRated(limit, offset));
+            return HttpTransport.cancelling(page.thenApply(animeResults -> animeResults
+                    .stream()
+                    .filter(item -> item instanceof Anime)
+                    .map(item -> (Anime) item)
+                    .collect(Collectors.toList())), page);
+        }, "topRatedAnime", limit, offset);
     }
 
     /**
@@ -264,11 +428,20 @@ public class CatalogService {
      * @return List of top-rated MediaItems (Movies and TVShows)
      */
     public List<MediaItem> getTopRatedMoviesAndTV(int limit, int page) {
-        List<MediaItem> tmdbResults = tmdbRepo.getTopRated(limit, page);
-        for (MediaItem item : tmdbResults) {
-            cacheMediaItem(item);
-        }
-        return tmdbResults;
+        return getTopRatedMoviesAndTVAsync(limit, page).join();
+    }
+
+    /**
+     * Retrieves top-rated movies and TV shows from TMDB without blocking.
+     * Results are cached for future retrieval.
+     * 
+     * @param limit Maximum number of results
+     * @param page  Page number for pagination
+     * @return Future of the list of top-rated MediaItems (Movies and TVShows)
+     */
+    public CompletableFuture<List<MediaItem>> getTopRatedMoviesAndTVAsync(int limit, int page) {
+        return coalesced(() -> cachedPage(tmdbAsync.getTopRated(limit, page)),
+                "topRatedMoviesAndTV", limit, page);
     }
 
     /**
@@ -280,11 +453,20 @@ public class CatalogService {
      * @return List of latest Movies
      */
     public List<Movie> getLatestMovies(int limit, int page) {
-        List<Movie> movies = tmdbRepo.getLatestMovies(limit, page);
-        for (MediaItem item : movies) {
-            cacheMediaItem(item);
-        }
-        return movies;
+        return getLatestMoviesAsync(limit, page).join();
+    }
+
+    /**
+     * Retrieves latest movies from TMDB without blocking.
+     * Results are cached for future retrieval.
+     * 
+     * @param limit Maximum number of results
+     * @param page  Page number for pagination
+     * @return Future of the list of latest Movies
+     */
+    public CompletableFuture<List<Movie>> getLatestMoviesAsync(int limit, int page) {
+        return coalesced(() -> cachedPage(tmdbAsync.getLatestMovies(limit, page)),
+                "latestMovies", limit, page);
     }
 
     /**
@@ -296,11 +478,20 @@ public class CatalogService {
      * @return List of latest TVShows
      */
     public List<TVShow> getLatestTVShows(int limit, int page) {
-        List<TVShow> tvShows = tmdbRepo.getLatestTVShows(limit, page);
-        for (MediaItem item : tvShows) {
-            cacheMediaItem(item);
-        }
-        return tvShows;
+        return getLatestTVShowsAsync(limit, page).join();
+    }
+
+    /**
+     * Retrieves latest TV shows from TMDB without blocking.
+     * Results are cached for future retrieval.
+     * 
+     * @param limit Maximum number of results
+     * @param page  Page number for pagination
+     * @return Future of the list of latest TVShows
+     */
+    public CompletableFuture<List<TVShow>> getLatestTVShowsAsync(int limit, int page) {
+        return coalesced(() -> cachedPage(tmdbAsync.getLatestTVShows(limit, page)),
+                "latestTVShows", limit, page);
     }
 
     /**
@@ -311,10 +502,114 @@ public class CatalogService {
      * @return List of latest Anime
      */
     public List<Anime> getLatestAnime(int limit) {
-        List<Anime> anime = malRepo.getLatestAnime(limit);
-        for (MediaItem item : anime) {
-            cacheMediaItem(item);
+        return getLatestAnimeAsync(limit).join();
+    }
+
+    /**
+     * Retrieves latest anime from MyAnimeList without blocking.
+     * Results are cached for future retrieval.
+     * 
+     * @param limit Maximum number of results
+     * @return Future of the list of latest Anime
+     */
+    public CompletableFuture<List<Anime>> getLatestAnimeAsync(int limit) {
+        return coalesced(() -> cachedPage(malAsync.getLatestAnime(limit)),
+                "latestAnime", limit);
+    }
+
+    /**
+     * Gets the number of API queries that were not sent because an identical
+     * query was in flight or had just completed.
+     * 
+     * @return Merged and reused queries
+     */
+    public long getCoalescedQueryCount() {
+        return queries.getMergedCount() + queries.getReusedCount();
+    }
+
+    /**
+     * Runs a query through the single-flight group, sharing the result of an
+     * identical query in flight or completed within the reuse time.
+     * 
+     * @param <T>   Result type
+     * @param query Sends the query
+     * @param key   Query name followed by its arguments
+     * @return Future of the result, shared with identical queries
+     */
+    @SuppressWarnings("unchecked")
+    private <T> CompletableFuture<T> coalesced(Supplier<CompletableFuture<T>> query, Object... key) {
+        // Each query name always maps to the same result type
+        return (CompletableFuture<T>) queries.execute(Arrays.asList(key),
+                () -> (CompletableFuture<Object>) query.get());
+    }
+
+    /**
+     * Caches a page of media items on the cache executor once it arrives.
+     * 
+     * @param <T>  Media type
+     * @param page Future of the page
+     * @return Future of the same items, once cached
+     */
+    private <T extends MediaItem> CompletableFuture<List<T>> cachedPage(CompletableFuture<List<T>> page) {
+        return HttpTransport.cancelling(page.thenApplyAsync(this::cacheAndReturn, cacheExecutor), page);
+    }
+
+    /**
+     * Determines whether the result of a query may be reused for identical
+     * queries. Empty results may stand for failed requests, which the
+     * repositories log and answer with an empty result, so they are not.
+     * 
+     * @param result Result of a query
+     * @return true unless the result is an empty list or Optional
+     */
+    private static boolean isReusable(Object result) {
+        if (result instanceof Collection) {
+            return !((Collection<?>) result).isEmpty();
+        }
+        if (result instanceof Optional) {
+            return ((Optional<?>) result).isPresent();
         }
-        return anime;
+        return result != null;
+    }
+
+    /**
+     * Caches a page of media items and passes it on, for chaining after a
+     * request.
+     * 
+     * @param <T>   Media type
+     * @param items The MediaItems to cache
+     * @return The same items
+     */
+    private <T extends MediaItem> List<T> cacheAndReturn(List<T> items) {
+        cacheMediaItems(items);
+        return items;
+    }
+
+    /**
+     * Retrieves locally cached items matching a combination of genres, such as
+     * "Action and Fantasy but not Horror".
+     * 
+     * @param allOf  Genres an item must all have
+     * @param anyOf  Genres an item must have at least one of (ignored if empty)
+     * @param noneOf Genres an item must not have
+     * @return List of matching cached MediaItems
+     */
+    public List<MediaItem> getCachedByGenres(Collection<String> allOf, Collection<String> anyOf,
+            Collection<String> noneOf) {
+        return fileRepo.getByGenres(allOf, anyOf, noneOf);
+    }
+
+    /**
+     * Retrieves locally cached items of a type released within a date range,
+     * earliest first.
+     * 
+     * @param <T>  Media type
+     * @param type Media type class, or MediaItem.class for all types
+     * @param from First release date of the range (inclusive)
+     * @param to   Last release date of the range (inclusive)
+     * @return List of matching cached items ordered by release date
+     */
+    public <T extends MediaItem> List<T> getCachedReleasedBetween(Class<T> type, LocalDate from, LocalDate to) {
+        return fileRepo.getReleasedBetween(type, from, to);
     }
 }
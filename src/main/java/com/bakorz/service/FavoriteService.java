@@ -7,7 +7,7 @@ import java.util.*;
 /**
  * Service class for managing user favorite media items.
  * Provides operations to add, remove, check, and retrieve favorites.
- * Handles favorite persistence through FileFavoriteRepo.
+ * Handles favorite persistence through a FavoriteRepo (file or database).
  * Supports media type tracking to prevent ID collisions between different
  * sources.
  * 
@@ -16,14 +16,14 @@ import java.util.*;
  */
 public class FavoriteService {
     /** Repository for managing favorite data */
-    private FileFavoriteRepo favoriteRepo;
+    private FavoriteRepo favoriteRepo;
 
     /**
      * Constructor for FavoriteService.
      * 
-     * @param favoriteRepo FileFavoriteRepo instance
+     * @param favoriteRepo FavoriteRepo instance
      */
-    public FavoriteService(FileFavoriteRepo favoriteRepo) {
+    public FavoriteService(FavoriteRepo favoriteRepo) {
         this.favoriteRepo = favoriteRepo;
     }
 
@@ -38,7 +38,7 @@ public class FavoriteService {
      * @return true if favorite was added successfully, false if already exists
      */
     public boolean addFavorite(String userId, String mediaId, String mediaSource, String mediaType) {
-        if (isFavorited(userId, mediaId)) {
+        if (isFavorited(userId, mediaSource != null ? mediaSource : "FILE", mediaId)) {
             System.out.println("Media is already in favorites!");
             return false;
         }
@@ -84,6 +84,18 @@ public class FavoriteService {
         return favoriteRepo.removeFavoriteByUserAndMedia(userId, mediaId);
     }
 
+    /**
+     * Removes a media item from a specific source from user's favorites.
+     * 
+     * @param userId      User identifier
+     * @param mediaSource Source of media (MAL, TMDB, FILE)
+     * @param mediaId     Media item identifier
+     * @return true if favorite was removed successfully, false if not found
+     */
+    public boolean removeFavorite(String userId, String mediaSource, String mediaId) {
+        return favoriteRepo.removeFavoriteByUserAndMedia(userId, mediaSource, mediaId);
+    }
+
     /**
      * Checks if a media item is in user's favorites.
      * 
@@ -95,6 +107,18 @@ public class FavoriteService {
         return favoriteRepo.isFavorited(userId, mediaId);
     }
 
+    /**
+     * Checks if a media item from a specific source is in user's favorites.
+     * 
+     * @param userId      User identifier
+     * @param mediaSource Source of media (MAL, TMDB, FILE)
+     * @param mediaId     Media item identifier
+     * @return true if media is favorited by user
+     */
+    public boolean isFavorited(String userId, String mediaSource, String mediaId) {
+        return favoriteRepo.isFavorited(userId, mediaSource, mediaId);
+    }
+
     /**
      * Retrieves all favorite entries for a specific user.
      * 
@@ -0,0 +1,247 @@
+package com.bakorz.service;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent identical requests into one.
+ * The first caller for a key starts the request; callers asking for the same
+ * key while it is in flight get its result instead of sending their own.
+ * Optionally a completed result is reused for a short time, so requests that
+ * arrive just after it finished are answered without going out either.
+ * Requests that fail are never reused, nor are results that the group is
+ * told not to reuse, such as the empty results that repositories return in
+ * place of errors. The numbers of requests merged into one in flight and
+ * answered from a reused result are counted.
+ * Each caller gets its own view of the shared result. Cancelling it detaches
+ * only that caller, and once every caller of a request in flight has
+ * cancelled, the request itself is cancelled and forgotten.
+ *
+ * @param <K> Key identifying a request, with value-based equals and hashCode
+ * @param <V> Result type; results are shared between callers, who must not
+ *            modify them
+ * @author Bakorz
+ * @version 1.0
+ */
+public class SingleFlight<K, V> {
+    /** Number of entries above which expired ones are swept out */
+    private static final int MIN_SWEEP_SIZE = 64;
+
+    /** How long a completed result is reused, in nanoseconds; 0 for no reuse */
+    private final long reuseNanos;
+
+    /** Whether a successful result may be reused */
+    private final Predicate<? super V> reusable;
+
+    /** Requests in flight, and completed ones whose results are still reused */
+    private final Map<K, Call<V>> calls = new HashMap<>();
+
+    /** Size of calls at which expired entries are next swept out */
+    private int sweepSize = MIN_SWEEP_SIZE;
+
+    /** Requests that joined one already in flight */
+    private long merged;
+
+    /** Requests answered with a reused completed result */
+    private long reused;
+
+    /**
+     * Creates a single-flight group that only merges requests in flight.
+     */
+    public SingleFlight() {
+        this(Duration.ZERO);
+    }
+
+    /**
+     * Creates a single-flight group.
+     *
+     * @param reuseFor How long a completed result is reused for requests with
+     *                 the same key, or zero to only merge requests in flight
+     */
+    public SingleFlight(Duration reuseFor) {
+        this(reuseFor, result -> true);
+    }
+
+    /**
+     * Creates a single-flight group that reuses only some results.
+     *
+     * @param reuseFor How long a completed result is reused for requests with
+     *                 the same key, or zero to only merge requests in flight
+     * @param reusable Whether a successful result may be reused; results it
+     *                 rejects are still handed to the callers in flight
+     */
+    public SingleFlight(Duration reuseFor, Predicate<? super V> reusable) {
+        this.reuseNanos = reuseFor.toNanos();
+        this.reusable = reusable;
+    }
+
+    /**
+     * Gets the result of a request, sending it only if no identical request
+     * is in flight or has a reusable result.
+     * The caller gets its own view of the shared future, so cancelling it
+     * does not affect the other callers; cancelling the views of all the
+     * callers cancels the request's future.
+     *
+     * @param key     Identity of the request
+     * @param request Sends the request, called at most once per flight and
+     *                never while holding the lock
+     * @return Future of the result
+     */
+    public CompletableFuture<V> execute(K key, Supplier<CompletableFuture<V>> request) {
+        Call<V> call;
+        CompletableFuture<V> view;
+        synchronized (this) {
+            long now = System.nanoTime();
+            call = calls.get(key);
+            if (call != null && !call.isExpired(now)) {
+                if (call.result.isDone()) {
+                    reused++;
+                } else {
+                    merged++;
+                }
+                return join(key, call);
+            }
+            call = new Call<>();
+            calls.put(key, call);
+            sweepExpired(now);
+            // Counted before the request starts, so that callers who merge
+            // and cancel meanwhile cannot abandon it
+            view = join(key, call);
+        }
+
+        CompletableFuture<V> response;
+        try {
+            response = request.get();
+        } catch (RuntimeException e) {
+            response = CompletableFuture.failedFuture(e);
+        }
+        synchronized (this) {
+            call.response = response;
+        }
+        Call<V> started = call;
+        response.whenComplete((result, error) -> complete(key, started, result, error));
+        return view;
+    }
+
+    /**
+     * Gets the number of requests that joined an identical request in flight
+     * instead of being sent.
+     *
+     * @return Merged requests
+     */
+    public synchronized long getMergedCount() {
+        return merged;
+    }
+
+    /**
+     * Gets the number of requests answered with the reused result of an
+     * identical request that had just completed.
+     *
+     * @return Reused results
+     */
+    public synchronized long getReusedCount() {
+        return reused;
+    }
+
+    /**
+     * Adds a caller to a request, handing it a view of the shared result
+     * whose cancellation is counted. Called while holding the lock.
+     */
+    private CompletableFuture<V> join(K key, Call<V> call) {
+        call.callers++;
+        CompletableFuture<V> view = call.result.copy();
+        view.whenComplete((result, error) -> {
+            if (view.isCancelled()) {
+                leave(key, call);
+            }
+        });
+        return view;
+    }
+
+    /**
+     * Removes a caller that cancelled its view. The last one to leave a
+     * request in flight cancels it and removes its entry, so that later
+     * callers send the request again.
+     */
+    private void leave(K key, Call<V> call) {
+        CompletableFuture<V> abandoned = null;
+        synchronized (this) {
+            if (--call.callers == 0 && !call.result.isDone()) {
+                if (calls.get(key) == call) {
+                    calls.remove(key);
+                }
+                abandoned = call.response;
+            }
+        }
+        // Cancelled outside the lock, since it runs the request's callbacks
+        if (abandoned != null) {
+            abandoned.cancel(true);
+        }
+    }
+
+    /**
+     * Records the outcome of a request and hands it to everyone waiting.
+     * Entries are removed right away unless their result is reused.
+     */
+    private void complete(K key, Call<V> call, V result, Throwable error) {
+        synchronized (this) {
+            if (error == null && reuseNanos > 0 && reusable.test(result)) {
+                call.expiresAt = System.nanoTime() + reuseNanos;
+            } else if (calls.get(key) == call) {
+                calls.remove(key);
+            }
+        }
+        if (error != null) {
+            call.result.completeExceptionally(error);
+        } else {
+            call.result.complete(result);
+        }
+    }
+
+    /**
+     * Removes entries whose reused results have expired, once the map has
+     * doubled in size since the last sweep, so the cost is amortized over
+     * the requests that grew it.
+     */
+    private void sweepExpired(long now) {
+        if (calls.size() < sweepSize) {
+            return;
+        }
+        Iterator<Call<V>> it = calls.values().iterator();
+        while (it.hasNext()) {
+            if (it.next().isExpired(now)) {
+                it.remove();
+            }
+        }
+        sweepSize = Math.max(MIN_SWEEP_SIZE, calls.size() * 2);
+    }
+
+    /**
+     * One request and the future shared by its callers.
+     *
+     * @param <V> Result type
+     */
+    private static final class Call<V> {
+        /** Future completed with the outcome of the request */
+        final CompletableFuture<V> result = new CompletableFuture<>();
+
+        /** System.nanoTime() after which the result is no longer reused; guarded by the group */
+        long expiresAt;
+
+        /** Callers whose views are not cancelled; guarded by the group */
+        int callers;
+
+        /** Future of the request once it has been sent; guarded by the group */
+        CompletableFuture<V> response;
+
+        /** Whether the request has completed and its result may no longer be reused */
+        boolean isExpired(long now) {
+            return result.isDone() && now - expiresAt >= 0;
+        }
+    }
+}
@@ -7,7 +7,7 @@ import java.util.*;
 /**
  * Service class for managing user watch list and tracking.
  * Provides operations to add, remove, check, and retrieve watch entries.
- * Handles watch list persistence through FileWatchRepo.
+ * Handles watch list persistence through a WatchRepo (CSV or memory-mapped).
  * Supports tracking currently watching media across different sources.
  * 
  * @author Bakorz
@@ -15,14 +15,14 @@ import java.util.*;
  */
 public class TrackingService {
     /** Repository for managing watch list data */
-    private FileWatchRepo watchRepo;
+    private WatchRepo watchRepo;
 
     /**
      * Constructor for TrackingService.
      * 
-     * @param watchRepo FileWatchRepo instance
+     * @param watchRepo WatchRepo instance
      */
-    public TrackingService(FileWatchRepo watchRepo) {
+    public TrackingService(WatchRepo watchRepo) {
         this.watchRepo = watchRepo;
     }
 
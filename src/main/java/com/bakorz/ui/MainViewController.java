@@ -12,6 +12,9 @@ import javafx.scene.layout.*;
 import javafx.stage.Stage;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.stream.Collectors;
 
 /**
@@ -84,6 +87,13 @@ public class MainViewController {
 
     private final Map<String, Integer> pageCounters = new HashMap<>();
 
+    /** Reads the user's favorites and watch list off the FX thread */
+    private final ExecutorService localReads = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "section-loader");
+        t.setDaemon(true);
+        return t;
+    });
+
     @FXML
     public void initialize() {
         System.out.println("MainViewController FXML initialized!");
@@ -117,15 +127,14 @@ public class MainViewController {
     }
 
     private void performSearch(String query) {
-        new Thread(() -> {
-            try {
-                List<MediaItem> results = catalogService.searchAll(query);
+        catalogService.searchAllAsync(query).whenComplete((results, error) -> {
+            if (error != null) {
+                error.printStackTrace();
+                Platform.runLater(() -> showError("Search failed: " + error.getMessage()));
+            } else {
                 Platform.runLater(() -> showSearchResults(query, results));
-            } catch (Exception e) {
-                e.printStackTrace();
-                Platform.runLater(() -> showError("Search failed: " + e.getMessage()));
             }
-        }).start();
+        });
     }
 
     private void showSearchResults(String query, List<MediaItem> results) {
@@ -165,72 +174,97 @@ public class MainViewController {
         searchStage.show();
     }
 
+    /**
+     * Starts loading every section at once. Remote sections send their
+     * requests without blocking, local ones read their repositories on a
+     * background thread, and each fills in on the FX thread once loaded.
+     */
     private void loadAllSections() {
-        new Thread(() -> {
-            loadContinueWatching();
-            loadFavorites();
-            loadTopRatedMovies();
-            loadLatestMovies();
-            loadTopRatedTVShows();
-            loadLatestTVShows();
-            loadTopAnime();
-            loadAiringNowAnime();
-        }).start();
+        loadContinueWatching();
+        loadFavorites();
+        loadTopRatedMovies();
+        loadLatestMovies();
+        loadTopRatedTVShows();
+        loadLatestTVShows();
+        loadTopAnime();
+        loadAiringNowAnime();
     }
 
     private void loadContinueWatching() {
-        List<WatchEntry> watching = trackingService.getCurrentlyWatching(userId);
-        List<MediaItem> items = watching.stream()
-                .map(entry -> catalogService.getById(entry.getMediaId(), entry.getMediaSource()).orElse(null))
-                .filter(Objects::nonNull)
-                .collect(Collectors.toList());
-        Platform.runLater(() -> updateSection(continueWatchingContainer, items, true));
+        showWhenLoaded(CompletableFuture.supplyAsync(() -> trackingService.getCurrentlyWatching(userId), localReads)
+                .thenCompose(watching -> allFound(watching.stream()
+                        .map(entry -> catalogService.getByIdAsync(entry.getMediaId(), entry.getMediaSource(), null))
+                        .collect(Collectors.toList()))), continueWatchingContainer, true);
     }
 
     private void loadFavorites() {
-        List<Favorite> favorites = favoriteService.getUserFavorites(userId);
-        List<MediaItem> items = favorites.stream()
-                .map(fav -> catalogService.getById(fav.getMediaId(), fav.getMediaSource(), fav.getMediaType())
-                        .orElse(null))
-                .filter(Objects::nonNull)
-                .collect(Collectors.toList());
-        Platform.runLater(() -> updateSection(favoritesContainer, items, true));
+        showWhenLoaded(CompletableFuture.supplyAsync(() -> favoriteService.getUserFavorites(userId), localReads)
+                .thenCompose(favorites -> allFound(favorites.stream()
+                        .map(fav -> catalogService.getByIdAsync(fav.getMediaId(), fav.getMediaSource(),
+                                fav.getMediaType()))
+                        .collect(Collectors.toList()))), favoritesContainer, true);
     }
 
     private void loadTopRatedMovies() {
-        List<MediaItem> items = catalogService.getTopRatedMoviesAndTV(20, 1).stream()
+        showWhenLoaded(catalogService.getTopRatedMoviesAndTVAsync(20, 1).thenApply(items -> items.stream()
                 .filter(item -> item instanceof Movie)
                 .limit(10)
-                .collect(Collectors.toList());
-        Platform.runLater(() -> updateSection(topRatedMoviesContainer, items, false));
+                .collect(Collectors.toList())), topRatedMoviesContainer, false);
     }
 
     private void loadLatestMovies() {
-        List<Movie> movies = catalogService.getLatestMovies(10, 1);
-        Platform.runLater(() -> updateSection(latestMoviesContainer, new ArrayList<>(movies), false));
+        showWhenLoaded(catalogService.getLatestMoviesAsync(10, 1), latestMoviesContainer, false);
     }
 
     private void loadTopRatedTVShows() {
-        List<MediaItem> items = catalogService.getTopRatedMoviesAndTV(20, 1).stream()
+        showWhenLoaded(catalogService.getTopRatedMoviesAndTVAsync(20, 1).thenApply(items -> items.stream()
                 .filter(item -> item instanceof TVShow)
                 .limit(10)
-                .collect(Collectors.toList());
-        Platform.runLater(() -> updateSection(topRatedTVShowsContainer, items, false));
+                .collect(Collectors.toList())), topRatedTVShowsContainer, false);
     }
 
     private void loadLatestTVShows() {
-        List<TVShow> shows = catalogService.getLatestTVShows(10, 1);
-        Platform.runLater(() -> updateSection(latestTVShowsContainer, new ArrayList<>(shows), false));
+        showWhenLoaded(catalogService.getLatestTVShowsAsync(10, 1), latestTVShowsContainer, false);
     }
 
     private void loadTopAnime() {
-        List<Anime> anime = catalogService.getTopRatedAnime(10, 0);
-        Platform.runLater(() -> updateSection(topRatedAnimeContainer, new ArrayList<>(anime), false));
+        showWhenLoaded(catalogService.getTopRatedAnimeAsync(10, 0), topRatedAnimeContainer, false);
     }
 
     private void loadAiringNowAnime() {
-        List<Anime> anime = catalogService.getLatestAnime(10);
-        Platform.runLater(() -> updateSection(airingNowAnimeContainer, new ArrayList<>(anime), false));
+        showWhenLoaded(catalogService.getLatestAnimeAsync(10), airingNowAnimeContainer, false);
+    }
+
+    /**
+     * Collects the items found by several lookups once all have completed.
+     * 
+     * @param lookups Lookups in display order
+     * @return Future of the found items, in display order
+     */
+    private static CompletableFuture<List<MediaItem>> allFound(List<CompletableFuture<Optional<MediaItem>>> lookups) {
+        return CompletableFuture.allOf(lookups.toArray(new CompletableFuture<?>[0]))
+                .thenApply(done -> lookups.stream()
+                        .map(lookup -> lookup.join().orElse(null))
+                        .filter(Objects::nonNull)
+                        .collect(Collectors.toList()));
+    }
+
+    /**
+     * Fills a section on the FX thread once its items have loaded.
+     * 
+     * @param items       Future of the items to show
+     * @param container   Section container
+     * @param allowRemove Whether cards get a remove button
+     */
+    private void showWhenLoaded(CompletableFuture<? extends List<? extends MediaItem>> items, HBox container,
+            boolean allowRemove) {
+        items.whenComplete((loaded, error) -> {
+            if (error != null) {
+                error.printStackTrace();
+            } else {
+                Platform.runLater(() -> updateSection(container, new ArrayList<>(loaded), allowRemove));
+            }
+        });
     }
 
     @FXML
@@ -264,54 +298,55 @@ public class MainViewController {
     }
 
     private void loadMore(String sectionTitle, HBox container) {
-        new Thread(() -> {
-            try {
-                int page = pageCounters.get(sectionTitle);
-                page++;
-                pageCounters.put(sectionTitle, page);
-                List<MediaItem> newItems = new ArrayList<>();
-
-                switch (sectionTitle) {
-                    case "Top Rated Movies":
-                        newItems = catalogService.getTopRatedMoviesAndTV(20, page).stream()
-                                .filter(item -> item instanceof Movie)
-                                .limit(10)
-                                .collect(Collectors.toList());
-                        break;
-                    case "Latest Movies":
-                        newItems = new ArrayList<>(catalogService.getLatestMovies(10, page));
-                        break;
-                    case "Top Rated TV Shows":
-                        newItems = catalogService.getTopRatedMoviesAndTV(20, page).stream()
-                                .filter(item -> item instanceof TVShow)
-                                .limit(10)
-                                .collect(Collectors.toList());
-                        break;
-                    case "Latest TV Shows":
-                        newItems = new ArrayList<>(catalogService.getLatestTVShows(10, page));
-                        break;
-                    case "Top Rated Anime":
-                        int offset = page * 10;
-                        List<Anime> anime = catalogService.getTopRatedAnime(10, offset);
-                        newItems = new ArrayList<>(anime);
-                        break;
-                    case "Latest Anime":
-                        List<Anime> allAnime = catalogService.getLatestAnime(10 * page);
-                        newItems = new ArrayList<>(allAnime.stream().skip((page - 1) * 10L).limit(10)
-                                .collect(Collectors.toList()));
-                        break;
-                }
+        int page = pageCounters.get(sectionTitle);
+        page++;
+        pageCounters.put(sectionTitle, page);
+        CompletableFuture<List<MediaItem>> newItems;
+
+        switch (sectionTitle) {
+            case "Top Rated Movies":
+                newItems = catalogService.getTopRatedMoviesAndTVAsync(20, page).thenApply(items -> items.stream()
+                        .filter(item -> item instanceof Movie)
+                        .limit(10)
+                        .collect(Collectors.toList()));
+                break;
+            case "Latest Movies":
+                newItems = catalogService.getLatestMoviesAsync(10, page).thenApply(ArrayList::new);
+                break;
+            case "Top Rated TV Shows":
+                newItems = catalogService.getTopRatedMoviesAndTVAsync(20, page).thenApply(items -> items.stream()
+                        .filter(item -> item instanceof TVShow)
+                        .limit(10)
+                        .collect(Collectors.toList()));
+                break;
+            case "Latest TV Shows":
+                newItems = catalogService.getLatestTVShowsAsync(10, page).thenApply(ArrayList::new);
+                break;
+            case "Top Rated Anime":
+                int offset = page * 10;
+                newItems = catalogService.getTopRatedAnimeAsync(10, offset).thenApply(ArrayList::new);
+                break;
+            case "Latest Anime":
+                long skip = (page - 1) * 10L;
+                newItems = catalogService.getLatestAnimeAsync(10 * page).thenApply(allAnime -> allAnime.stream()
+                        .skip(skip).limit(10)
+                        .collect(Collectors.toList()));
+                break;
+            default:
+                return;
+        }
 
-                List<MediaItem> finalNewItems = newItems;
-                Platform.runLater(() -> {
-                    for (MediaItem item : finalNewItems) {
-                        container.getChildren().add(createMediaCard(item, false));
-                    }
-                });
-            } catch (Exception e) {
-                e.printStackTrace();
+        newItems.whenComplete((items, error) -> {
+            if (error != null) {
+                error.printStackTrace();
+                return;
             }
-        }).start();
+            Platform.runLater(() -> {
+                for (MediaItem item : items) {
+                    container.getChildren().add(createMediaCard(item, false));
+                }
+            });
+        });
     }
 
     private void updateSection(HBox container, List<MediaItem> items, boolean allowRemove) {
@@ -424,7 +459,7 @@ public class MainViewController {
         actionBox.setPadding(new Insets(20, 0, 0, 0));
 
         String source = determineMediaSource(media);
-        boolean isFavorite = favoriteService.isFavorited(userId, media.getId());
+        boolean isFavorite = favoriteService.isFavorited(userId, source, media.getId());
         boolean isWatching = trackingService.isWatching(userId, media.getId());
 
         Button favoriteBtn = new Button(isFavorite ? "❤ Remove from Favorites" : "♡ Add to Favorites");
@@ -432,7 +467,7 @@ public class MainViewController {
                 + "; -fx-text-fill: white; -fx-font-size: 14px; -fx-padding: 10px 20px;");
         favoriteBtn.setOnAction(e -> {
             if (isFavorite) {
-                favoriteService.removeFavorite(userId, media.getId());
+                favoriteService.removeFavorite(userId, source, media.getId());
                 favoriteBtn.setText("♡ Add to Favorites");
                 loadFavorites();
             } else {
@@ -0,0 +1,238 @@
+package com.bakorz.bench;
+
+import com.bakorz.model.*;
+import com.bakorz.repo.FileMediaRepo;
+import com.bakorz.repo.MediaRepo;
+import com.bakorz.repo.OffHeapMediaRepo;
+import com.sun.management.GarbageCollectionNotificationInfo;
+import java.io.*;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Files;
+import java.util.*;
+import javax.management.NotificationEmitter;
+import javax.management.openmbean.CompositeData;
+
+/**
+ * Compares garbage collection pauses of FileMediaRepo and OffHeapMediaRepo
+ * holding the same large catalog.
+ * Generates a media file, then runs each repository in its own JVM with the
+ * same heap settings: it loads the catalog, serves a mix of lookups, title
+ * searches and rankings while allocating request garbage, and reports the
+ * heap used by the catalog, the young and full collection pauses, and the
+ * throughput of the mix.
+ * Not run as part of the test suite. Run with
+ * <pre>
+ * java -cp target/classes:target/test-classes:$(deps) com.bakorz.bench.GcPauseBenchmark [items] [seconds]
+ * </pre>
+ * Defaults are 1,000,000 items and 30 seconds per repository.
+ *
+ * @author Bakorz
+ * @version 1.0
+ */
+public final class GcPauseBenchmark {
+    /** Heap and collector settings shared by both runs */
+    private static final List<String> JVM_OPTIONS = Arrays.asList("-Xms3g", "-Xmx3g", "-XX:+UseG1GC",
+            "-XX:MaxDirectMemorySize=4g");
+
+    /** Bytes of garbage allocated per simulated request */
+    private static final int REQUEST_GARBAGE = 16 * 1024;
+
+    private GcPauseBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("run")) {
+            run(args[1], args[2], Integer.parseInt(args[3]));
+            return;
+        }
+
+        int items = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 30;
+        File dir = Files.createTempDirectory("gc-bench").toFile();
+        File mediaFile = new File(dir, "media.csv");
+        generate(mediaFile, items);
+        System.out.println("Generated " + items + " items (" + mediaFile.length() / (1024 * 1024) + " MB)");
+
+        for (String mode : Arrays.asList("heap", "offheap")) {
+            // Each run copies the file, since opening it may rewrite it
+            File copy = new File(dir, mode + ".csv");
+            Files.copy(mediaFile.toPath(), copy.toPath());
+            List<String> command = new ArrayList<>();
+            command.add(new File(System.getProperty("java.home"), "bin/java").getPath());
+            command.addAll(JVM_OPTIONS);
+            command.addAll(Arrays.asList("-cp", System.getProperty("java.class.path"),
+                    GcPauseBenchmark.class.getName(), "run", mode, copy.getPath(), String.valueOf(seconds)));
+            Process process = new ProcessBuilder(command).inheritIO().start();
+            process.waitFor();
+        }
+    }
+
+    /**
+     * Writes a media file of generated movies, TV shows and anime through
+     * FileMediaRepo.
+     */
+    private static void generate(File mediaFile, int items) {
+        FileMediaRepo repo = new FileMediaRepo(mediaFile.getPath());
+        Random random = new Random(1);
+        List<MediaItem> batch = new ArrayList<>();
+        for (int i = 0; i < items; i++) {
+            batch.add(item(random, i));
+            if (batch.size() == 10_000) {
+                repo.saveAll(batch);
+                repo.flush();
+                batch.clear();
+            }
+        }
+        repo.saveAll(batch);
+        repo.flush();
+    }
+
+    private static MediaItem item(Random random, int i) {
+        MediaItem item;
+        if (i % 3 == 0) {
+            Movie movie = new Movie();
+            movie.setRuntime(80 + random.nextInt(100));
+            movie.setDirector("Director " + random.nextInt(5000));
+            movie.setImdbId("tt" + (1000000 + i));
+            item = movie;
+        } else if (i % 3 == 1) {
+            TVShow tvShow = new TVShow();
+            tvShow.setNumberOfSeasons(1 + random.nextInt(9));
+            tvShow.setNetworks(Collections.singletonList("Network " + random.nextInt(50)));
+            tvShow.setStatus("Ended");
+            item = tvShow;
+        } else {
+            Anime anime = new Anime();
+            anime.setMalId(i);
+            anime.setStudios(Collections.singletonList("Studio " + random.nextInt(200)));
+            anime.setSeason("spring");
+            item = anime;
+        }
+        item.setId("bench:" + i);
+        item.setTitle("Title " + Integer.toString(random.nextInt(1 << 30), 36) + " " + i);
+        StringBuilder description = new StringBuilder();
+        for (int w = 0, words = 20 + random.nextInt(60); w < words; w++) {
+            description.append(Integer.toString(random.nextInt(1 << 20), 36)).append(' ');
+        }
+        item.setDescription(description.toString());
+        item.setGenres(Arrays.asList("Genre " + random.nextInt(20), "Genre " + random.nextInt(20)));
+        item.setRating(random.nextInt(100) / 10.0);
+        item.setReleaseDate((1950 + random.nextInt(75)) + "-0" + (1 + random.nextInt(9)) + "-1" + random.nextInt(10));
+        item.setPosterUrl("https://image.tmdb.org/t/p/w500/" + Long.toString(random.nextLong() & Long.MAX_VALUE, 36)
+                + ".jpg");
+        item.setBackdropUrl("https://image.tmdb.org/t/p/original/"
+                + Long.toString(random.nextLong() & Long.MAX_VALUE, 36) + ".jpg");
+        return item;
+    }
+
+    /**
+     * Loads the catalog with one repository and measures collections while
+     * serving requests.
+     */
+    private static void run(String mode, String mediaFile, int seconds) throws Exception {
+        PauseRecorder pauses = new PauseRecorder();
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long heapBefore = usedHeapAfterGc(memory);
+
+        MediaRepo repo = mode.equals("offheap") ? new OffHeapMediaRepo(mediaFile) : new FileMediaRepo(mediaFile);
+        long catalogHeap = usedHeapAfterGc(memory) - heapBefore;
+
+        long fullGcStart = System.nanoTime();
+        System.gc();
+        long fullGcMillis = (System.nanoTime() - fullGcStart) / 1_000_000;
+
+        int size = repo.getAll().size();
+        usedHeapAfterGc(memory);
+        pauses.reset();
+        Random random = new Random(2);
+        long requests = 0;
+        long sink = 0;
+        long end = System.nanoTime() + seconds * 1_000_000_000L;
+        while (System.nanoTime() < end) {
+            int kind = random.nextInt(1000);
+            if (kind == 0) {
+                // Three base-36 characters, as typed into the search box
+                sink += repo.searchByTitle(Integer.toString(36 * 36 + random.nextInt(35 * 36 * 36), 36)).size();
+            } else if (kind < 10) {
+                sink += repo.getTopRated(20).size();
+            } else {
+                MediaItem item = repo.getById("bench:" + random.nextInt(size)).orElse(null);
+                sink += item == null ? 0 : item.getDescription().length();
+            }
+            byte[] garbage = new byte[REQUEST_GARBAGE];
+            sink += garbage.length;
+            requests++;
+        }
+
+        System.out.printf("%-8s items=%d catalogHeap=%dMB fullGc=%dms youngGcs=%d youngPauseTotal=%dms "
+                + "youngPauseMax=%dms youngPauseP99=%dms requests/s=%d (%d)%n",
+                mode, size, catalogHeap / (1024 * 1024), fullGcMillis, pauses.count(), pauses.total(),
+                pauses.max(), pauses.percentile(0.99), requests / seconds, sink % 10);
+    }
+
+    private static long usedHeapAfterGc(MemoryMXBean memory) {
+        System.gc();
+        System.gc();
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    /**
+     * Records the duration of each collection other than explicit ones.
+     */
+    private static final class PauseRecorder {
+        private final List<Long> durations = Collections.synchronizedList(new ArrayList<>());
+
+        private PauseRecorder() {
+            for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+                ((NotificationEmitter) gc).addNotificationListener((notification, handback) -> {
+                    if (!notification.getType().equals(GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION)) {
+                        return;
+                    }
+                    GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo
+                            .from((CompositeData) notification.getUserData());
+                    // Concurrent cycles do not stop the application
+                    if (!info.getGcCause().equals("System.gc()") && !info.getGcName().contains("Concurrent")) {
+                        durations.add(info.getGcInfo().getDuration());
+                    }
+                }, null, null);
+            }
+        }
+
+        private void reset() {
+            durations.clear();
+        }
+
+        private int count() {
+            return durations.size();
+        }
+
+        private long total() {
+            synchronized (durations) {
+                long total = 0;
+                for (long duration : durations) {
+                    total += duration;
+                }
+                return total;
+            }
+        }
+
+        private long max() {
+            synchronized (durations) {
+                return durations.isEmpty() ? 0 : Collections.max(durations);
+            }
+        }
+
+        private long percentile(double fraction) {
+            synchronized (durations) {
+                if (durations.isEmpty()) {
+                    return 0;
+                }
+                List<Long> sorted = new ArrayList<>(durations);
+                Collections.sort(sorted);
+                return sorted.get((int) Math.min(sorted.size() - 1, Math.floor(fraction * sorted.size())));
+            }
+        }
+    }
+}
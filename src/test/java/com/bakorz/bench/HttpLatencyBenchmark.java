@@ -0,0 +1,168 @@
+package com.bakorz.bench;
+
+import com.bakorz.repo.HttpTransport;
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsServer;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.KeyStore;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManagerFactory;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures the latency of sequential API calls against a local HTTPS server
+ * serving a 6 KB body, made as MalMediaRepo and TmdbMediaRepo used to with an
+ * HttpsURLConnection per call, with the same but sending Connection: close so
+ * that every call opens a new connection and TLS session, and through the
+ * pooled HttpTransport. Sample time mode reports the p50 and p99 of each.
+ * Note that the old code did not open a new connection per call: it read
+ * each body to the end before disconnecting, and HttpURLConnection keeps a
+ * connection whose body was read to the end in its keep-alive cache.
+ * The server is the JDK HttpsServer with a self-signed certificate made by
+ * keytool, and speaks HTTP/1.1 only, so this measures connection and TLS
+ * session reuse but not HTTP/2 multiplexing.
+ * Not run as part of the test suite. Run with
+ * <pre>
+ * mvn test-compile
+ * java -cp target/classes:target/test-classes:$(deps) org.openjdk.jmh.Main HttpLatencyBenchmark
+ * </pre>
+ *
+ * @author Bakorz
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HttpLatencyBenchmark {
+    /** Size of the response body */
+    private static final int BODY_SIZE = 6 * 1024;
+
+    /** Password of the generated keystore */
+    private static final String PASSWORD = "benchmark";
+
+    private HttpsServer server;
+    private ExecutorService handlers;
+    private HttpTransport transport;
+    private URI uri;
+
+    @Setup
+    public void setup() throws Exception {
+        // Without TCP_NODELAY the server's separate header and body writes
+        // meet delayed ACKs, which adds about 40 ms to every call either way
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        SSLContext tls = selfSignedContext();
+        // Both clients pick up the default context, so they trust the server
+        SSLContext.setDefault(tls);
+        HttpsURLConnection.setDefaultSSLSocketFactory(tls.getSocketFactory());
+
+        StringBuilder json = new StringBuilder("[");
+        while (json.length() < BODY_SIZE - 40) {
+            json.append(json.length() == 1 ? "" : ",").append("{\"id\":").append(json.length())
+                    .append(",\"name\":\"Genre\"}");
+        }
+        byte[] body = json.append("]").toString().getBytes(StandardCharsets.UTF_8);
+
+        server = HttpsServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setHttpsConfigurator(new HttpsConfigurator(tls));
+        server.createContext("/genres", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        handlers = Executors.newCachedThreadPool();
+        server.setExecutor(handlers);
+        server.start();
+
+        uri = URI.create("https://127.0.0.1:" + server.getAddress().getPort() + "/genres");
+        transport = new HttpTransport(HttpTransport.DEFAULT_CONNECT_TIMEOUT, HttpTransport.DEFAULT_REQUEST_TIMEOUT,
+                null);
+    }
+
+    @TearDown
+    public void tearDown() {
+        server.stop(0);
+        handlers.shutdownNow();
+    }
+
+    @Benchmark
+    public int urlConnection() throws IOException {
+        return callUrlConnection(false);
+    }
+
+    @Benchmark
+    public int urlConnectionClosed() throws IOException {
+        return callUrlConnection(true);
+    }
+
+    @Benchmark
+    public int pooledTransport() throws IOException {
+        return transport.get(uri, body -> body.readAllBytes().length, "Accept", "application/json");
+    }
+
+    private int callUrlConnection(boolean close) throws IOException {
+        URL url = uri.toURL();
+        HttpsURLConnection conn = (HttpsURLConnection) url.openConnection();
+        try {
+            conn.setRequestMethod("GET");
+            conn.setRequestProperty("Accept", "application/json");
+            if (close) {
+                conn.setRequestProperty("Connection", "close");
+            }
+            if (conn.getResponseCode() != 200) {
+                throw new IOException("Failed : HTTP error code : " + conn.getResponseCode());
+            }
+            try (InputStream in = conn.getInputStream()) {
+                return in.readAllBytes().length;
+            }
+        } finally {
+            conn.disconnect();
+        }
+    }
+
+    /**
+     * Creates a TLS context with a self-signed certificate for 127.0.0.1,
+     * generated by the JDK's keytool, trusting only that certificate.
+     */
+    private static SSLContext selfSignedContext() throws Exception {
+        File keystore = new File(Files.createTempDirectory("latency-bench").toFile(), "server.p12");
+        String keytool = new File(System.getProperty("java.home"), "bin/keytool").getPath();
+        Process process = new ProcessBuilder(keytool, "-genkeypair", "-alias", "server", "-keyalg", "EC",
+                "-groupname", "secp256r1", "-dname", "CN=127.0.0.1", "-ext", "SAN=ip:127.0.0.1", "-validity", "2",
+                "-storetype", "PKCS12", "-keystore", keystore.getPath(), "-storepass", PASSWORD, "-keypass",
+                PASSWORD).inheritIO().start();
+        if (process.waitFor() != 0) {
+            throw new IOException("keytool failed with exit code " + process.exitValue());
+        }
+
+        KeyStore store = KeyStore.getInstance("PKCS12");
+        try (InputStream in = Files.newInputStream(keystore.toPath())) {
+            store.load(in, PASSWORD.toCharArray());
+        }
+        KeyManagerFactory keys = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keys.init(store, PASSWORD.toCharArray());
+        TrustManagerFactory trust = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        trust.init(store);
+
+        SSLContext tls = SSLContext.getInstance("TLS");
+        tls.init(keys.getKeyManagers(), trust.getTrustManagers(), null);
+        return tls;
+    }
+}
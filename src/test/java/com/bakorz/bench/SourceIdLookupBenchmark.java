@@ -0,0 +1,95 @@
+package com.bakorz.bench;
+
+import com.bakorz.model.Anime;
+import com.bakorz.model.MediaItem;
+import com.bakorz.repo.FileMediaRepo;
+import com.bakorz.repo.SourceKey;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Compares looking up cached MAL items by numeric ID through a composite
+ * String key, as CatalogService used to, with looking them up by packed
+ * source key.
+ * Measures a plain HashMap keyed by "MAL:" + id, FileMediaRepo.getById with
+ * the same key, and FileMediaRepo.getBySourceId, over a catalog of generated
+ * anime.
+ * Not run as part of the test suite. Run with
+ * <pre>
+ * mvn test-compile
+ * java -cp target/classes:target/test-classes:$(deps) org.openjdk.jmh.Main SourceIdLookupBenchmark
+ * </pre>
+ *
+ * @author Bakorz
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SourceIdLookupBenchmark {
+    /** Number of lookups IDs cycle through; a power of two */
+    private static final int LOOKUPS = 1 << 16;
+
+    /** Number of cached items */
+    @Param({ "10000", "1000000" })
+    public int items;
+
+    private Map<String, MediaItem> stringMap;
+    private FileMediaRepo repo;
+    private int[] ids;
+    private int next;
+
+    @Setup
+    public void setup() throws Exception {
+        File dir = Files.createTempDirectory("lookup-bench").toFile();
+        repo = new FileMediaRepo(new File(dir, "media.csv").getPath());
+        stringMap = new HashMap<>();
+        List<MediaItem> batch = new ArrayList<>();
+        for (int i = 0; i < items; i++) {
+            Anime anime = new Anime();
+            anime.setId(SourceKey.MAL.format(i * 7));
+            anime.setTitle("Anime " + i);
+            anime.setMalId(i * 7);
+            stringMap.put(anime.getId(), anime);
+            batch.add(anime);
+        }
+        repo.saveAll(batch);
+
+        // Mostly hits, with one miss in eight
+        Random random = new Random(1);
+        ids = new int[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            ids[i] = random.nextInt(items) * 7 + (random.nextInt(8) == 0 ? 1 : 0);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        repo.flush();
+    }
+
+    private int nextId() {
+        return ids[next++ & (LOOKUPS - 1)];
+    }
+
+    @Benchmark
+    public MediaItem stringKeyHashMap() {
+        return stringMap.get("MAL:" + nextId());
+    }
+
+    @Benchmark
+    public Optional<MediaItem> repoGetById() {
+        return repo.getById("MAL:" + nextId());
+    }
+
+    @Benchmark
+    public Optional<MediaItem> repoGetBySourceId() {
+        return repo.getBySourceId(SourceKey.MAL, nextId());
+    }
+}
@@ -0,0 +1,86 @@
+package com.bakorz.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.util.*;
+import org.junit.Test;
+
+/**
+ * Checks StringDictionary ordinals, list encoding and canonical instances
+ * against plain strings, and that a bounded dictionary stops growing at its
+ * capacity while canonical() keeps returning equal values. Also checks that
+ * TVShow and Anime keep creator, network and studio names as given instead of
+ * interning them.
+ */
+public class StringDictionaryTest {
+    @Test
+    public void encodesAndCanonicalizesValues() {
+        StringDictionary dictionary = new StringDictionary();
+        Random random = new Random(83);
+        Map<String, Integer> seen = new HashMap<>();
+
+        for (int i = 0; i < 2000; i++) {
+            String value = random.nextInt(10) == 0 ? null : "v" + random.nextInt(300);
+            int ordinal = dictionary.ordinalOf(value);
+            if (value == null) {
+                assertEquals(-1, ordinal);
+                assertNull(dictionary.canonical(null));
+                continue;
+            }
+            Integer expected = seen.putIfAbsent(value, seen.size());
+            assertEquals(expected != null ? expected : seen.size() - 1, ordinal);
+            assertEquals(value, dictionary.valueOf(ordinal));
+            // A fresh String still maps to the instance stored first
+            assertSame(dictionary.valueOf(ordinal), dictionary.canonical(new String(value)));
+        }
+        assertEquals(seen.size(), dictionary.size());
+
+        List<String> list = Arrays.asList("v1", null, "new", "v1");
+        assertEquals(list, dictionary.decode(dictionary.encode(list)));
+        assertEquals(Collections.emptyList(), dictionary.decode(dictionary.encode(Collections.<String>emptyList())));
+        assertNull(dictionary.encode(null));
+        assertNull(dictionary.decode(null));
+    }
+
+    @Test
+    public void boundedDictionaryStopsGrowing() {
+        StringDictionary dictionary = new StringDictionary(20);
+        for (int i = 0; i < 500; i++) {
+            String value = "name" + i;
+            assertEquals(value, dictionary.canonical(value));
+        }
+        assertEquals(20, dictionary.size());
+
+        // Values added before the dictionary filled up are still shared
+        assertSame(dictionary.canonical("name3"), dictionary.canonical(new String("name3")));
+        String late = new String("name400");
+        assertSame(late, dictionary.canonical(late));
+
+        assertEquals(7, dictionary.ordinalOf("name7"));
+        try {
+            dictionary.ordinalOf("name400");
+            fail("added a value past the capacity");
+        } catch (IllegalStateException expected) {
+            assertEquals(20, dictionary.size());
+        }
+    }
+
+    @Test
+    public void personAndCompanyNamesAreNotInterned() {
+        List<String> creators = Arrays.asList(new String("Creator"), "Other");
+        List<String> networks = Collections.singletonList(new String("Network"));
+        TVShow tvShow = new TVShow();
+        tvShow.setCreators(creators);
+        tvShow.setNetworks(networks);
+        assertSame(creators, tvShow.getCreators());
+        assertSame(networks, tvShow.getNetworks());
+
+        List<String> studios = Collections.singletonList(new String("Studio"));
+        Anime anime = new Anime();
+        anime.setStudios(studios);
+        assertSame(studios, anime.getStudios());
+    }
+}
@@ -0,0 +1,130 @@
+package com.bakorz.repo;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Local stand-in for the MAL and TMDB APIs, for tests of the API
+ * repositories and the services above them. Serves canned responses by
+ * request path, ignoring the query, answers unknown paths with 404, and can
+ * stream an endless body to a path so that tests can see when the client
+ * aborts the exchange.
+ */
+public final class ApiStub implements AutoCloseable {
+    /** How long an endless body is streamed at most */
+    private static final long STREAM_LIMIT_MILLIS = 30000;
+
+    private final HttpServer server;
+    private final ExecutorService handlers;
+    private final Map<String, Integer> statuses = new ConcurrentHashMap<>();
+    private final Map<String, String> bodies = new ConcurrentHashMap<>();
+    private final Set<String> streamed = ConcurrentHashMap.newKeySet();
+    private final List<String> requests = Collections.synchronizedList(new ArrayList<>());
+    private final Semaphore streaming = new Semaphore(0);
+    private final Semaphore aborted = new Semaphore(0);
+
+    public ApiStub() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", this::handle);
+        handlers = Executors.newCachedThreadPool();
+        server.setExecutor(handlers);
+        server.start();
+    }
+
+    /** Base URL of the server, without a trailing slash */
+    public String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    /** Answers requests to a path with a status and JSON body */
+    public void respond(String path, int status, String json) {
+        streamed.remove(path);
+        statuses.put(path, status);
+        bodies.put(path, json);
+    }
+
+    /** Answers requests to a path with a body that never ends */
+    public void stream(String path) {
+        streamed.add(path);
+    }
+
+    /** Waits for a request to a streamed path to start receiving its body */
+    public boolean awaitStreaming(long seconds) throws InterruptedException {
+        return streaming.tryAcquire(seconds, TimeUnit.SECONDS);
+    }
+
+    /** Waits for a client to go away while receiving a streamed body */
+    public boolean awaitAbort(long seconds) throws InterruptedException {
+        return aborted.tryAcquire(seconds, TimeUnit.SECONDS);
+    }
+
+    /** Paths and queries of the requests received so far, in order */
+    public List<String> requests() {
+        synchronized (requests) {
+            return new ArrayList<>(requests);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        handlers.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        String query = exchange.getRequestURI().getRawQuery();
+        requests.add(query != null ? path + "?" + query : path);
+        exchange.getRequestBody().readAllBytes();
+
+        if (streamed.contains(path)) {
+            streamEndlessly(exchange);
+            return;
+        }
+        Integer status = statuses.get(path);
+        byte[] body = (status != null ? bodies.get(path) : "{\"error\":\"not_found\"}")
+                .getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status != null ? status : 404, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * Sends the start of a JSON list and keeps adding elements until the
+     * client closes the connection, which counts as an abort.
+     */
+    private void streamEndlessly(HttpExchange exchange) throws IOException {
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream out = exchange.getResponseBody();
+        byte[] element = "{\"node\":{\"id\":1,\"title\":\"Endless\"}},".getBytes(StandardCharsets.UTF_8);
+        long deadline = System.currentTimeMillis() + STREAM_LIMIT_MILLIS;
+        try {
+            out.write("{\"data\":[".getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            streaming.release();
+            while (System.currentTimeMillis() < deadline) {
+                out.write(element);
+                out.flush();
+                Thread.sleep(10);
+            }
+        } catch (IOException e) {
+            aborted.release();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            exchange.close();
+        }
+    }
+}
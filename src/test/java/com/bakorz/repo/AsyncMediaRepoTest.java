@@ -0,0 +1,227 @@
+package com.bakorz.repo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.bakorz.model.*;
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks the non-blocking views of MalMediaRepo and TmdbMediaRepo, and the
+ * adapter running a blocking MediaRepo on an executor, against a local
+ * stand-in for the APIs: responses are mapped to media items, failed or
+ * malformed responses complete with an empty result instead of an exception,
+ * and cancelling a future aborts the HTTP exchange behind it, which the
+ * server sees as the client going away in the middle of the body.
+ */
+public class AsyncMediaRepoTest {
+    private static final long TIMEOUT_SECONDS = 10;
+
+    private static final String ANIME = "{\"id\":21,\"title\":\"One Piece\",\"synopsis\":\"Pirates.\","
+            + "\"mean\":8.7,\"rank\":50,\"popularity\":20,"
+            + "\"main_picture\":{\"medium\":\"https://cdn/m.jpg\",\"large\":\"https://cdn/l.jpg\"},"
+            + "\"genres\":[{\"id\":1,\"name\":\"Action\"},{\"id\":2,\"name\":\"Adventure\"}],"
+            + "\"media_type\":\"tv\",\"status\":\"currently_airing\",\"num_episodes\":0,"
+            + "\"start_date\":\"1999-10-20\",\"start_season\":{\"year\":1999,\"season\":\"fall\"},"
+            + "\"source\":\"manga\",\"studios\":[{\"id\":18,\"name\":\"Toei Animation\"}],"
+            + "\"average_episode_duration\":1440}";
+
+    private static final String MOVIE = "{\"id\":603,\"title\":\"The Matrix\",\"overview\":\"Red pill.\","
+            + "\"vote_average\":8.2,\"release_date\":\"1999-03-31\",\"poster_path\":\"/p.jpg\","
+            + "\"genres\":[{\"id\":28,\"name\":\"Action\"}],\"runtime\":136,\"imdb_id\":\"tt0133093\"}";
+
+    private static final String TV_SHOW = "{\"id\":1399,\"name\":\"Game of Thrones\",\"overview\":\"Winter.\","
+            + "\"first_air_date\":\"2011-04-17\",\"number_of_seasons\":8,\"episode_run_time\":[60],"
+            + "\"networks\":[{\"id\":49,\"name\":\"HBO\"}],\"created_by\":[{\"id\":9813,\"name\":\"David Benioff\"}]}";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ApiStub api;
+    private MalMediaRepo mal;
+    private TmdbMediaRepo tmdb;
+    private ExecutorService executor;
+
+    @Before
+    public void startApi() throws Exception {
+        api = new ApiStub();
+        HttpTransport transport = new HttpTransport(HttpTransport.DEFAULT_CONNECT_TIMEOUT,
+                HttpTransport.DEFAULT_REQUEST_TIMEOUT, null);
+        mal = new MalMediaRepo("client", transport, api.baseUrl() + "/v2/");
+        tmdb = new TmdbMediaRepo("key", transport, api.baseUrl() + "/3");
+        executor = Executors.newFixedThreadPool(2);
+    }
+
+    @After
+    public void stopApi() {
+        api.close();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void malResponsesAreMappedToAnime() throws Exception {
+        api.respond("/v2/anime", 200, "{\"data\":[{\"node\":" + ANIME + "}],\"paging\":{\"next\":\"x\"}}");
+        api.respond("/v2/anime/21", 200, ANIME);
+        api.respond("/v2/anime/ranking", 200, "{\"data\":[{\"node\":" + ANIME + ",\"ranking\":{\"rank\":50}}]}");
+
+        List<MediaItem> found = get(mal.async().searchByTitle("one piece"));
+        assertEquals(1, found.size());
+        assertOnePiece((Anime) found.get(0));
+        assertOnePiece((Anime) get(mal.async().getById("21")).get());
+        assertOnePiece((Anime) get(mal.async().getTopRated(5, 10)).get(0));
+        assertFalse(get(mal.async().getMovieById("21")).isPresent());
+
+        assertTrue(api.requests().contains("/v2/anime/ranking?ranking_type=all&limit=5&offset=10&fields=id,title,"
+                + "main_picture,synopsis,mean,rank,popularity,genres,media_type,status,num_episodes,start_season,"
+                + "source,studios"));
+    }
+
+    @Test
+    public void tmdbResponsesAreMappedToMoviesAndTVShows() throws Exception {
+        api.respond("/3/search/movie", 200, "{\"page\":1,\"results\":[{\"id\":603,\"title\":\"The Matrix\","
+                + "\"genre_ids\":[28,878]}],\"total_results\":1}");
+        api.respond("/3/search/tv", 200, "{\"results\":[" + TV_SHOW + "]}");
+        api.respond("/3/movie/603", 200, MOVIE);
+        api.respond("/3/tv/1399", 200, TV_SHOW);
+
+        List<MediaItem> found = get(tmdb.async().searchByTitle("the matrix"));
+        assertEquals(2, found.size());
+        assertEquals("The Matrix", found.get(0).getTitle());
+        assertEquals(Arrays.asList("Genre 28", "Genre 878"), found.get(0).getGenres());
+        assertEquals("Game of Thrones", found.get(1).getTitle());
+
+        Movie movie = (Movie) get(tmdb.async().getById("603")).get();
+        assertEquals("603", movie.getTmdbId());
+        assertEquals(136, movie.getRuntime());
+        assertEquals("tt0133093", movie.getImdbId());
+        assertEquals(Collections.singletonList("Action"), movie.getGenres());
+        assertEquals("https://image.tmdb.org/t/p/w500/p.jpg", movie.getPosterUrl());
+
+        // No movie has this ID, so getById falls back to the TV show
+        TVShow tvShow = (TVShow) get(tmdb.async().getById("1399")).get();
+        assertEquals(8, tvShow.getNumberOfSeasons());
+        assertEquals(60, tvShow.getEpisodeRuntime());
+        assertEquals(Collections.singletonList("HBO"), tvShow.getNetworks());
+        assertEquals(Collections.singletonList("David Benioff"), tvShow.getCreators());
+        assertTrue(api.requests().contains("/3/movie/1399?api_key=key"));
+    }
+
+    @Test
+    public void failedResponsesCompleteEmpty() throws Exception {
+        api.respond("/v2/anime", 500, "{\"error\":\"internal\"}");
+        api.respond("/v2/anime/1", 200, "{\"id\":1,\"title\":");
+        api.respond("/v2/anime/ranking", 200, "not json");
+        api.respond("/3/search/movie", 503, "");
+        api.respond("/3/search/tv", 200, "{\"results\":[{\"id\":\"not a number\"}]}");
+
+        assertTrue(get(mal.async().searchByTitle("x")).isEmpty());
+        assertFalse(get(mal.async().getById("1")).isPresent());
+        assertFalse(get(mal.async().getById("2")).isPresent());
+        assertTrue(get(mal.async().getTopRated(5)).isEmpty());
+        assertTrue(get(tmdb.async().searchByTitle("x")).isEmpty());
+        assertFalse(get(tmdb.async().getById("5")).isPresent());
+        assertTrue(get(tmdb.async().getTopRated(4)).isEmpty());
+    }
+
+    @Test
+    public void cancellingAbortsTheExchange() throws Exception {
+        api.stream("/v2/anime/ranking");
+        assertCancelAborts(mal.async().getTopRated(10));
+
+        api.stream("/3/movie/7");
+        assertCancelAborts(tmdb.async().getById("7"));
+
+        api.stream("/3/search/movie");
+        api.stream("/3/search/tv");
+        CompletableFuture<List<MediaItem>> search = tmdb.async().searchByTitle("x");
+        assertTrue(api.awaitStreaming(TIMEOUT_SECONDS));
+        assertCancelAborts(search);
+        assertTrue(api.awaitAbort(TIMEOUT_SECONDS));
+    }
+
+    @Test
+    public void adapterRunsQueriesOnItsExecutor() throws Exception {
+        FileMediaRepo file = new FileMediaRepo(new File(folder.getRoot(), "media.csv").getPath());
+        Movie movie = new Movie();
+        movie.setId("TMDB_MOVIE:603");
+        movie.setTitle("The Matrix");
+        movie.setGenres(Collections.singletonList("Action"));
+        file.save(movie);
+
+        AtomicInteger tasks = new AtomicInteger();
+        AsyncMediaRepo async = AsyncMediaRepo.adapt(file, task -> {
+            tasks.incrementAndGet();
+            executor.execute(task);
+        });
+        assertEquals("The Matrix", get(async.getById("TMDB_MOVIE:603")).get().getTitle());
+        assertEquals("The Matrix", get(async.getBySourceId(SourceKey.TMDB_MOVIE, 603)).get().getTitle());
+        assertFalse(get(async.getBySourceId(SourceKey.TMDB_TV, 603)).isPresent());
+        assertEquals(1, get(async.getByGenre("Action")).size());
+        assertEquals(4, tasks.get());
+
+        // A query that throws completes its future exceptionally
+        AsyncMediaRepo failing = AsyncMediaRepo.adapt(new FileMediaRepo(
+                new File(folder.getRoot(), "other.csv").getPath()) {
+            @Override
+            public Optional<MediaItem> getById(String id) {
+                throw new UnsupportedOperationException("no lookups");
+            }
+        }, executor);
+        try {
+            get(failing.getById("x"));
+            fail("completed normally");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof UnsupportedOperationException);
+        }
+    }
+
+    @Test
+    public void cancellingAnAdaptedQueryAbortsItsBlockingRequest() throws Exception {
+        api.respond("/v2/anime/21", 200, ANIME);
+        AsyncMediaRepo async = AsyncMediaRepo.adapt(mal, executor);
+        assertOnePiece((Anime) get(async.getById("21")).get());
+
+        api.stream("/v2/anime/ranking");
+        assertCancelAborts(async.getTopRated(10));
+
+        // The interrupted worker is reused for the next query
+        assertOnePiece((Anime) get(async.getById("21")).get());
+    }
+
+    private void assertCancelAborts(CompletableFuture<?> future) throws InterruptedException {
+        assertTrue(api.awaitStreaming(TIMEOUT_SECONDS));
+        assertTrue(future.cancel(true));
+        assertTrue(api.awaitAbort(TIMEOUT_SECONDS));
+    }
+
+    private static void assertOnePiece(Anime anime) {
+        assertEquals("21", anime.getId());
+        assertEquals(21, anime.getMalId());
+        assertEquals("One Piece", anime.getTitle());
+        assertEquals(8.7, anime.getRating(), 0);
+        assertEquals(Arrays.asList("Action", "Adventure"), anime.getGenres());
+        assertEquals(Collections.singletonList("Toei Animation"), anime.getStudios());
+        assertEquals("TV", anime.getAnimeType());
+        assertEquals("https://cdn/m.jpg", anime.getPosterUrl());
+        assertEquals(1999, anime.getYear());
+        assertEquals(24, anime.getDuration());
+    }
+
+    private static <T> T get(CompletableFuture<T> future) throws Exception {
+        return future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,87 @@
+package com.bakorz.repo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.bakorz.model.*;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+/**
+ * Checks that BulkFetcher returns the items found in the order of the IDs,
+ * skips IDs that are missing or fail, and keeps no more lookups in flight than
+ * its pool allows.
+ */
+public class BulkFetcherTest {
+    private static final int MAX_PARALLEL = 3;
+    private static final int IDS = 40;
+
+    @Test
+    public void keepsOrderAndSkipsMissingAndFailedLookups() {
+        BulkFetcher fetcher = new BulkFetcher("test-fetch", MAX_PARALLEL);
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < IDS; i++) {
+            ids.add(String.valueOf(i));
+        }
+
+        List<MediaItem> found = fetcher.fetchAll(ids, id -> {
+            int n = Integer.parseInt(id);
+            if (n % 7 == 3) {
+                throw new IllegalStateException("lookup of " + id + " failed");
+            }
+            // Later IDs finish first, so order cannot come from completion
+            sleep(IDS - n);
+            return n % 5 == 0 ? Optional.empty() : Optional.of(anime(id));
+        });
+
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < IDS; i++) {
+            if (i % 7 != 3 && i % 5 != 0) {
+                expected.add(String.valueOf(i));
+            }
+        }
+        List<String> actual = new ArrayList<>();
+        for (MediaItem item : found) {
+            actual.add(item.getId());
+        }
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void boundsLookupsInFlight() {
+        BulkFetcher fetcher = new BulkFetcher("test-fetch", MAX_PARALLEL);
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < IDS; i++) {
+            ids.add(String.valueOf(i));
+        }
+
+        List<MediaItem> found = fetcher.fetchAll(ids, id -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            sleep(5);
+            inFlight.decrementAndGet();
+            return Optional.of(anime(id));
+        });
+
+        assertEquals(IDS, found.size());
+        assertTrue(maxInFlight.get() <= MAX_PARALLEL);
+        assertTrue("lookups did not overlap", maxInFlight.get() > 1);
+    }
+
+    private static Anime anime(String id) {
+        Anime anime = new Anime();
+        anime.setId(id);
+        anime.setTitle("Anime " + id);
+        return anime;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.bakorz.repo;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.*;
+import org.junit.Test;
+
+/**
+ * Checks CompressedBitmap against java.util.BitSet: adds and removes that
+ * move a group back and forth across the 4096-value boundary between array
+ * and bitmap containers, and and/or/andNot over groups of every density, so
+ * each pairing of array and bitmap containers is combined, including results
+ * that land exactly on the boundary.
+ */
+public class CompressedBitmapTest {
+    /** Largest number of values an array container holds */
+    private static final int ARRAY_MAX = 4096;
+
+    /** Values per group, one group per high 16-bit key */
+    private static final int GROUP = 1 << 16;
+
+    /** Group sizes: empty, sparse, around the boundary, dense and full */
+    private static final int[] DENSITIES = {0, 1, 50, ARRAY_MAX - 1, ARRAY_MAX, ARRAY_MAX + 1, 9000, 40000, GROUP};
+
+    @Test
+    public void addAndRemoveAcrossTheContainerBoundary() {
+        Random random = new Random(31);
+        CompressedBitmap bitmap = new CompressedBitmap();
+        BitSet model = new BitSet();
+        // Values crowd into part of two groups, so adds and removes often hit
+        int range = 2 * ARRAY_MAX;
+
+        for (int round = 0; round < 8; round++) {
+            int target = round % 2 == 0 ? ARRAY_MAX + 200 : ARRAY_MAX - 200;
+            for (int key = 1; key <= 2; key++) {
+                int base = key * GROUP;
+                int count = model.get(base, base + GROUP).cardinality();
+                int ops = 0;
+                while (count != target) {
+                    int value = base + random.nextInt(range);
+                    if (count < target) {
+                        bitmap.add(value);
+                        count += model.get(value) ? 0 : 1;
+                        model.set(value);
+                    } else {
+                        bitmap.remove(value);
+                        count -= model.get(value) ? 1 : 0;
+                        model.clear(value);
+                    }
+                    // Check every step next to the boundary, where containers convert
+                    if (++ops % 97 == 0 || Math.abs(count - ARRAY_MAX) <= 2) {
+                        assertSame(model, bitmap);
+                    }
+                }
+                assertSame(model, bitmap);
+            }
+        }
+
+        // Drain a group completely, through the boundary down to nothing
+        for (int value = GROUP; value < 2 * GROUP; value++) {
+            bitmap.remove(value);
+            model.clear(value);
+        }
+        assertSame(model, bitmap);
+    }
+
+    @Test
+    public void setOperationsMatchBitSetAcrossContainerTypes() {
+        Random random = new Random(37);
+        for (int round = 0; round < 60; round++) {
+            BitSet modelA = randomGroups(random);
+            BitSet modelB = randomGroups(random);
+            CompressedBitmap a = bitmapOf(modelA);
+            CompressedBitmap b = bitmapOf(modelB);
+
+            BitSet and = (BitSet) modelA.clone();
+            and.and(modelB);
+            BitSet or = (BitSet) modelA.clone();
+            or.or(modelB);
+            BitSet andNot = (BitSet) modelA.clone();
+            andNot.andNot(modelB);
+
+            CompressedBitmap andResult = a.and(b);
+            CompressedBitmap orResult = a.or(b);
+            CompressedBitmap andNotResult = a.andNot(b);
+            assertSame(and, andResult);
+            assertSame(and, b.and(a));
+            assertSame(or, orResult);
+            assertSame(or, b.or(a));
+            assertSame(andNot, andNotResult);
+
+            // Results are usable operands and independent of their inputs
+            BitSet chained = (BitSet) or.clone();
+            chained.andNot(and);
+            assertSame(chained, orResult.andNot(andResult));
+            orResult.add(5 * GROUP);
+            andNotResult.remove(andNot.nextSetBit(0) < 0 ? 0 : andNot.nextSetBit(0));
+            assertSame(modelA, a);
+            assertSame(modelB, b);
+        }
+    }
+
+    @Test
+    public void operationsLandingOnTheBoundary() {
+        // Two arrays whose union is exactly 4096 values, and one more
+        BitSet low = new BitSet();
+        low.set(0, ARRAY_MAX / 2);
+        BitSet high = new BitSet();
+        high.set(ARRAY_MAX / 2, ARRAY_MAX);
+        BitSet union = (BitSet) low.clone();
+        union.or(high);
+        assertSame(union, bitmapOf(low).or(bitmapOf(high)));
+        high.set(ARRAY_MAX);
+        union.set(ARRAY_MAX);
+        assertSame(union, bitmapOf(low).or(bitmapOf(high)));
+
+        // Two bitmaps whose intersection and difference fall back to arrays
+        BitSet evens = new BitSet();
+        BitSet lowHalf = new BitSet();
+        for (int value = 0; value < GROUP; value += 2) {
+            evens.set(value);
+        }
+        lowHalf.set(0, 2 * ARRAY_MAX);
+        BitSet and = (BitSet) evens.clone();
+        and.and(lowHalf);
+        assertSame(and, bitmapOf(evens).and(bitmapOf(lowHalf)));
+        BitSet andNot = (BitSet) lowHalf.clone();
+        andNot.andNot(evens);
+        assertSame(andNot, bitmapOf(lowHalf).andNot(bitmapOf(evens)));
+    }
+
+    /** Builds a set over four groups, each of a random density */
+    private static BitSet randomGroups(Random random) {
+        BitSet model = new BitSet();
+        for (int key = 0; key < 4; key++) {
+            int base = key * GROUP;
+            int density = DENSITIES[random.nextInt(DENSITIES.length)];
+            if (density > GROUP / 2) {
+                model.set(base, base + GROUP);
+                for (int count = GROUP; count > density;) {
+                    int value = base + random.nextInt(GROUP);
+                    count -= model.get(value) ? 1 : 0;
+                    model.clear(value);
+                }
+            } else {
+                for (int count = 0; count < density;) {
+                    int value = base + random.nextInt(GROUP);
+                    count += model.get(value) ? 0 : 1;
+                    model.set(value);
+                }
+            }
+        }
+        return model;
+    }
+
+    private static CompressedBitmap bitmapOf(BitSet model) {
+        CompressedBitmap bitmap = new CompressedBitmap();
+        model.stream().forEach(bitmap::add);
+        return bitmap;
+    }
+
+    private static void assertSame(BitSet model, CompressedBitmap bitmap) {
+        assertEquals(model.cardinality(), bitmap.cardinality());
+        List<Integer> values = new ArrayList<>();
+        bitmap.forEach(values::add);
+        List<Integer> expected = new ArrayList<>();
+        model.stream().forEach(expected::add);
+        assertEquals(expected, values);
+        for (int value : expected) {
+            if (!bitmap.contains(value)) {
+                throw new AssertionError("missing " + value);
+            }
+        }
+        for (int i = 0; i < 64; i++) {
+            int probe = (i % 6) * GROUP + (i * 1031) % GROUP;
+            assertEquals(model.get(probe), bitmap.contains(probe));
+        }
+    }
+}
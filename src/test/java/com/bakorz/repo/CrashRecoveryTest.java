@@ -0,0 +1,430 @@
+package com.bakorz.repo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.bakorz.model.*;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks that the file repositories recover after a crash: a writer process
+ * killed at random points loses no acknowledged write, and files truncated or
+ * damaged at random points load every intact record and nothing else.
+ * Killing a process leaves its writes in the page cache, so that check covers
+ * atomic replaces and record framing but not fsync. Power loss is simulated
+ * separately: a batcher records what each fsync would have put on disk, and
+ * the repositories are reopened from only that.
+ */
+public class CrashRecoveryTest {
+    private static final int KILL_ROUNDS = 5;
+    private static final int MAX_ACKS_PER_ROUND = 150;
+    private static final int RECORDS = 60;
+    private static final int CUTS = 40;
+    private static final int POWER_LOSS_WRITES = 40;
+
+    /**
+     * Media writes between the explicit compactions of the power-loss runs,
+     * one below FileMediaRepo's segment limit, so no background compaction
+     * forces the media directory at a point that depends on timing
+     */
+    private static final int WRITES_PER_COMPACTION = 7;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void killedWriterLosesNoAcknowledgedWrite() throws Exception {
+        File dir = folder.getRoot();
+        Random random = new Random(7);
+        int next = 0;
+
+        for (int round = 0; round < KILL_ROUNDS; round++) {
+            Process writer = new ProcessBuilder(
+                    new File(System.getProperty("java.home"), "bin/java").getPath(),
+                    "-D" + FsyncBatcher.POLICY_PROPERTY + "=" + DurabilityPolicy.EVERY_WRITE,
+                    "-cp", System.getProperty("java.class.path"),
+                    Writer.class.getName(), dir.getPath(), String.valueOf(next))
+                    .redirectError(ProcessBuilder.Redirect.DISCARD)
+                    .start();
+
+            int acks = 1 + random.nextInt(MAX_ACKS_PER_ROUND);
+            int lastAck = -1;
+            try (BufferedReader out = new BufferedReader(
+                    new InputStreamReader(writer.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while (acks > 0 && (line = out.readLine()) != null) {
+                    // Skip the repositories' own load messages
+                    if (line.matches("\\d+")) {
+                        lastAck = Integer.parseInt(line);
+                        acks--;
+                    }
+                }
+                writer.destroyForcibly();
+                assertTrue(writer.waitFor(30, TimeUnit.SECONDS));
+            }
+            assertTrue("writer produced no output", lastAck >= next);
+
+            Set<Integer> favorites = new HashSet<>();
+            for (Favorite favorite : new FileFavoriteRepo(favoritesFile(dir), logFile(dir)).getAll()) {
+                favorites.add(Integer.parseInt(favorite.getFavoriteId().substring(1)));
+            }
+            Set<Integer> watched = new HashSet<>();
+            for (WatchEntry entry : new FileWatchRepo(watchFile(dir)).getAll()) {
+                watched.add(Integer.parseInt(entry.getWatchId().substring(1)));
+            }
+            Set<Integer> media = new HashSet<>();
+            for (MediaItem item : new FileMediaRepo(mediaFile(dir)).getAll()) {
+                media.add(Integer.parseInt(item.getId().substring(1)));
+            }
+
+            assertContiguousFromZero(favorites, lastAck);
+            assertContiguousFromZero(watched, lastAck);
+            assertContiguousFromZero(media, lastAck);
+            next = lastAck + 1;
+        }
+    }
+
+    @Test
+    public void powerLossLosesNoAcknowledgedWrite() throws Exception {
+        File dir = folder.newFolder("synced");
+        File image = writeUntilPowerLoss(dir, DurabilityPolicy.EVERY_WRITE);
+
+        assertContiguousFromZero(favoriteNumbers(image), POWER_LOSS_WRITES - 1);
+        assertContiguousFromZero(watchNumbers(image), POWER_LOSS_WRITES - 1);
+        assertContiguousFromZero(mediaNumbers(image), POWER_LOSS_WRITES - 1);
+    }
+
+    @Test
+    public void powerLossWithoutFsyncLosesAcknowledgedWrites() throws Exception {
+        // The same writes acknowledged without waiting for fsync must not all
+        // survive, or the simulation could not tell the policies apart
+        File dir = folder.newFolder("unsynced");
+        File image = writeUntilPowerLoss(dir, DurabilityPolicy.ON_SHUTDOWN);
+
+        assertFalse(favoriteNumbers(image).contains(POWER_LOSS_WRITES - 1));
+        assertFalse(watchNumbers(image).contains(POWER_LOSS_WRITES - 1));
+        assertFalse(mediaNumbers(image).contains(POWER_LOSS_WRITES - 1));
+    }
+
+    /**
+     * Writes POWER_LOSS_WRITES steps as the Writer process does, with a
+     * shared batcher that records what each fsync puts on disk, then returns
+     * a copy of the data directories holding only that.
+     * Each repository has its own directory, since a compaction forcing its
+     * directory would make the other repositories' latest renames durable
+     * too, and media compactions run at fixed points rather than in the
+     * background, so the image does not depend on timing.
+     */
+    private File writeUntilPowerLoss(File dir, DurabilityPolicy policy) throws Exception {
+        ForcedImage disk = new ForcedImage(dir.toPath());
+        FsyncBatcher previous = FsyncBatcher.replaceShared(new FsyncBatcher(policy, 0, disk::force));
+        try {
+            FileFavoriteRepo favorites = new FileFavoriteRepo(favoritesFile(dir), logFile(dir));
+            FileWatchRepo watch = new FileWatchRepo(watchFile(dir));
+            FileMediaRepo media = new FileMediaRepo(mediaFile(dir));
+            for (int i = 0; i < POWER_LOSS_WRITES; i++) {
+                assertTrue(favorites.addFavorite(favorite(i)));
+                assertTrue(watch.addWatchEntry(watchEntry(i)));
+                assertTrue(media.save(movie(i)));
+                media.flush();
+                if (i % WRITES_PER_COMPACTION == WRITES_PER_COMPACTION - 1) {
+                    media.compact();
+                }
+            }
+        } finally {
+            FsyncBatcher.replaceShared(previous);
+        }
+
+        File image = folder.newFolder(dir.getName() + "-image");
+        disk.restore(image.toPath());
+        return image;
+    }
+
+    private static Set<Integer> favoriteNumbers(File dir) {
+        Set<Integer> numbers = new HashSet<>();
+        for (Favorite favorite : new FileFavoriteRepo(favoritesFile(dir), logFile(dir)).getAll()) {
+            numbers.add(Integer.parseInt(favorite.getFavoriteId().substring(1)));
+        }
+        return numbers;
+    }
+
+    private static Set<Integer> watchNumbers(File dir) {
+        Set<Integer> numbers = new HashSet<>();
+        for (WatchEntry entry : new FileWatchRepo(watchFile(dir)).getAll()) {
+            numbers.add(Integer.parseInt(entry.getWatchId().substring(1)));
+        }
+        return numbers;
+    }
+
+    private static Set<Integer> mediaNumbers(File dir) {
+        Set<Integer> numbers = new HashSet<>();
+        for (MediaItem item : new FileMediaRepo(mediaFile(dir)).getAll()) {
+            numbers.add(Integer.parseInt(item.getId().substring(1)));
+        }
+        return numbers;
+    }
+
+    @Test
+    public void truncatedFilesLoadEveryIntactRecord() throws Exception {
+        File source = folder.newFolder("source");
+        FileFavoriteRepo favorites = new FileFavoriteRepo(favoritesFile(source), logFile(source));
+        FileWatchRepo watch = new FileWatchRepo(watchFile(source));
+        FileMediaRepo media = new FileMediaRepo(mediaFile(source));
+        for (int i = 0; i < RECORDS; i++) {
+            favorites.addFavorite(favorite(i));
+            watch.addWatchEntry(watchEntry(i));
+            media.save(movie(i));
+        }
+        media.flush();
+        // Fold the flushed segment into the snapshot that is cut below
+        media.compact();
+
+        Random random = new Random(11);
+        byte[] log = Files.readAllBytes(new File(logFile(source)).toPath());
+        byte[] watchCsv = Files.readAllBytes(new File(watchFile(source)).toPath());
+        byte[] mediaCsv = Files.readAllBytes(new File(mediaFile(source)).toPath());
+
+        for (int cut = 0; cut < CUTS; cut++) {
+            File dir = folder.newFolder("cut" + cut);
+
+            int logCut = random.nextInt(log.length + 1);
+            write(logFile(dir), Arrays.copyOf(log, logCut));
+            Set<String> expected = intactFields(log, logCut, 1);
+            FileFavoriteRepo recoveredFavorites = new FileFavoriteRepo(favoritesFile(dir), logFile(dir));
+            assertEquals(expected, favoriteIds(recoveredFavorites.getAll()));
+            recoveredFavorites.addFavorite(favorite(RECORDS));
+            expected.add("f" + RECORDS);
+            assertEquals(expected, favoriteIds(new FileFavoriteRepo(favoritesFile(dir), logFile(dir)).getAll()));
+
+            int watchCut = random.nextInt(watchCsv.length + 1);
+            write(watchFile(dir), Arrays.copyOf(watchCsv, watchCut));
+            expected = intactFields(watchCsv, watchCut, 0);
+            FileWatchRepo recoveredWatch = new FileWatchRepo(watchFile(dir));
+            assertEquals(expected, watchIds(recoveredWatch.getAll()));
+            recoveredWatch.addWatchEntry(watchEntry(RECORDS));
+            expected.add("w" + RECORDS);
+            assertEquals(expected, watchIds(new FileWatchRepo(watchFile(dir)).getAll()));
+
+            int mediaCut = random.nextInt(mediaCsv.length + 1);
+            write(mediaFile(dir), Arrays.copyOf(mediaCsv, mediaCut));
+            expected = intactFields(mediaCsv, mediaCut, 0);
+            FileMediaRepo recoveredMedia = new FileMediaRepo(mediaFile(dir));
+            assertEquals(expected, mediaIds(recoveredMedia.getAll()));
+            recoveredMedia.save(movie(RECORDS));
+            recoveredMedia.flush();
+            // Let the rewrite of the torn snapshot finish before reopening it
+            recoveredMedia.compact();
+            expected.add("m" + RECORDS);
+            assertEquals(expected, mediaIds(new FileMediaRepo(mediaFile(dir)).getAll()));
+
+            LazyFileMediaRepo lazy = new LazyFileMediaRepo(mediaFile(dir), 16);
+            assertEquals(expected, mediaIds(lazy.getAll()));
+        }
+    }
+
+    @Test
+    public void damagedRecordIsSkippedAndOthersLoad() throws Exception {
+        File dir = folder.getRoot();
+        FileWatchRepo watch = new FileWatchRepo(watchFile(dir));
+        for (int i = 0; i < RECORDS; i++) {
+            watch.addWatchEntry(watchEntry(i));
+        }
+
+        byte[] content = Files.readAllBytes(new File(watchFile(dir)).toPath());
+        List<String> lines = new ArrayList<>(Arrays.asList(new String(content, StandardCharsets.UTF_8).split("\n")));
+        String damaged = lines.get(RECORDS / 2);
+        lines.set(RECORDS / 2, damaged.replace(",user", ",usex"));
+        write(watchFile(dir), (String.join("\n", lines) + "\n").getBytes(StandardCharsets.UTF_8));
+
+        Set<String> loaded = watchIds(new FileWatchRepo(watchFile(dir)).getAll());
+        assertEquals(RECORDS - 1, loaded.size());
+        assertFalse(loaded.contains(damaged.substring(0, damaged.indexOf(','))));
+    }
+
+    private static void assertContiguousFromZero(Set<Integer> ids, int lastAck) {
+        for (int i = 0; i <= lastAck; i++) {
+            assertTrue("acknowledged write " + i + " was lost", ids.contains(i));
+        }
+        for (int id : ids) {
+            assertTrue("write " + id + " survived without its predecessors", id == 0 || ids.contains(id - 1));
+        }
+    }
+
+    /**
+     * Returns a field of every record that lies completely before the cut,
+     * including its checksum; its trailing newline may be cut off.
+     */
+    private static Set<String> intactFields(byte[] content, int cut, int field) {
+        Set<String> fields = new HashSet<>();
+        String[] lines = new String(content, StandardCharsets.UTF_8).split("\n");
+        int end = 0;
+        for (int i = 0; i < lines.length; i++) {
+            end += lines[i].length();
+            if (i > 0 && end <= cut) {
+                fields.add(lines[i].split(",")[field]);
+            }
+            end++;
+        }
+        return fields;
+    }
+
+    private static void write(String path, byte[] content) throws IOException {
+        Path file = new File(path).toPath();
+        Files.createDirectories(file.getParent());
+        Files.write(file, content);
+    }
+
+    private static Set<String> favoriteIds(List<Favorite> favorites) {
+        Set<String> ids = new HashSet<>();
+        for (Favorite favorite : favorites) {
+            ids.add(favorite.getFavoriteId());
+        }
+        return ids;
+    }
+
+    private static Set<String> watchIds(List<WatchEntry> entries) {
+        Set<String> ids = new HashSet<>();
+        for (WatchEntry entry : entries) {
+            ids.add(entry.getWatchId());
+        }
+        return ids;
+    }
+
+    private static Set<String> mediaIds(List<MediaItem> items) {
+        Set<String> ids = new HashSet<>();
+        for (MediaItem item : items) {
+            ids.add(item.getId());
+        }
+        return ids;
+    }
+
+    private static Favorite favorite(int i) {
+        return new Favorite("f" + i, "user" + i % 3, String.valueOf(i), "MAL", "ANIME");
+    }
+
+    private static WatchEntry watchEntry(int i) {
+        WatchEntry entry = new WatchEntry("w" + i, "user" + i % 3, String.valueOf(i));
+        entry.setMediaSource("TMDB");
+        return entry;
+    }
+
+    private static Movie movie(int i) {
+        Movie movie = new Movie();
+        movie.setId("m" + i);
+        movie.setTitle("Movie " + i);
+        movie.setDescription("Description of movie " + i);
+        movie.setGenres(Arrays.asList("Drama", "Action"));
+        movie.setRating(i % 10);
+        movie.setReleaseDate("2001-01-01");
+        movie.setRuntime(90 + i);
+        return movie;
+    }
+
+    private static String favoritesFile(File dir) {
+        return new File(dir, "favorites/favorite.csv").getPath();
+    }
+
+    private static String logFile(File dir) {
+        return new File(dir, "favorites/favorite.log").getPath();
+    }
+
+    private static String watchFile(File dir) {
+        return new File(dir, "watch/watch.csv").getPath();
+    }
+
+    private static String mediaFile(File dir) {
+        return new File(dir, "media/media.csv").getPath();
+    }
+
+    /**
+     * What the disk would hold after a power loss: the content of each file
+     * as of its last fsync. Forced content is kept per inode, so a file
+     * forced under its temporary name keeps that content once renamed.
+     * Forcing a directory makes its current entries durable, each with the
+     * content last forced for its inode, or empty if that was never forced,
+     * and drops entries removed from it; it never makes unforced appends to
+     * another file in the directory durable.
+     */
+    private static final class ForcedImage {
+        /** Directory the repositories write under */
+        private final Path root;
+
+        /** Durable content of each file, by path relative to the root */
+        private final Map<Path, byte[]> files = new HashMap<>();
+
+        /** Content of each file as of its last force, by file key */
+        private final Map<Object, byte[]> forced = new HashMap<>();
+
+        private ForcedImage(Path root) {
+            this.root = root.toAbsolutePath();
+        }
+
+        private synchronized void force(Path path) throws IOException {
+            Path absolute = path.toAbsolutePath();
+            if (Files.isDirectory(absolute)) {
+                files.keySet().removeIf(file -> root.resolve(file).getParent().equals(absolute));
+                try (DirectoryStream<Path> entries = Files.newDirectoryStream(absolute)) {
+                    for (Path entry : entries) {
+                        if (Files.isRegularFile(entry)
+                                && !entry.getFileName().toString().endsWith(DurableFiles.TEMP_SUFFIX)) {
+                            byte[] content = forced.get(fileKey(entry));
+                            files.put(root.relativize(entry), content != null ? content : new byte[0]);
+                        }
+                    }
+                }
+            } else if (Files.exists(absolute)) {
+                byte[] content = Files.readAllBytes(absolute);
+                forced.put(fileKey(absolute), content);
+                if (!absolute.getFileName().toString().endsWith(DurableFiles.TEMP_SUFFIX)) {
+                    files.put(root.relativize(absolute), content);
+                }
+            }
+        }
+
+        private static Object fileKey(Path file) throws IOException {
+            return Files.readAttributes(file, BasicFileAttributes.class).fileKey();
+        }
+
+        private synchronized void restore(Path target) throws IOException {
+            for (Map.Entry<Path, byte[]> file : files.entrySet()) {
+                Path copy = target.resolve(file.getKey());
+                Files.createDirectories(copy.getParent());
+                Files.write(copy, file.getValue());
+            }
+        }
+    }
+
+    /**
+     * Writer process killed by the test. Writes one favorite, watch entry and
+     * media item per step and prints the step number once all three are
+     * durable.
+     */
+    public static final class Writer {
+        public static void main(String[] args) {
+            File dir = new File(args[0]);
+            FileFavoriteRepo favorites = new FileFavoriteRepo(favoritesFile(dir), logFile(dir));
+            FileWatchRepo watch = new FileWatchRepo(watchFile(dir));
+            FileMediaRepo media = new FileMediaRepo(mediaFile(dir));
+
+            for (int i = Integer.parseInt(args[1]);; i++) {
+                favorites.addFavorite(favorite(i));
+                watch.addWatchEntry(watchEntry(i));
+                media.save(movie(i));
+                media.flush();
+                System.out.println(i);
+                System.out.flush();
+            }
+        }
+    }
+}
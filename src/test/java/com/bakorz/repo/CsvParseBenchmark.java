@@ -0,0 +1,212 @@
+package com.bakorz.repo;
+
+import com.bakorz.model.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Compares parsing media records with CsvTokenizer, as the file repositories
+ * do, with the parser it replaced: a List of Strings per line built by
+ * parseCSVLine, then String.split on the genre and additional-data lists.
+ * Both parse the same generated records in the stored format, with deflated
+ * descriptions, held in one char buffer as the loader decodes them; the old
+ * parser also gets a String per line, as BufferedReader.readLine gave it. One operation parses all records once.
+ * Lives in the repo package because the tokenizer and record format are
+ * package-private. Not run as part of the test suite. Run with the GC
+ * profiler to see bytes allocated per record:
+ * <pre>
+ * mvn test-compile
+ * java -cp target/classes:target/test-classes:$(deps) org.openjdk.jmh.Main CsvParseBenchmark -prof gc
+ * </pre>
+ *
+ * @author Bakorz
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CsvParseBenchmark {
+    /** Number of records parsed per operation */
+    @Param({ "200000" })
+    public int records;
+
+    private char[] text;
+    private int[] starts;
+    private CsvTokenizer tokenizer;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(1);
+        StringBuilder sb = new StringBuilder();
+        starts = new int[records + 1];
+        for (int i = 0; i < records; i++) {
+            starts[i] = sb.length();
+            sb.append(MediaCsvFormat.format(String.valueOf(i), item(i, random), true));
+        }
+        starts[records] = sb.length();
+        text = sb.toString().toCharArray();
+        tokenizer = new CsvTokenizer(',');
+    }
+
+    @Benchmark
+    public int tokenizer() {
+        int parsed = 0;
+        for (int i = 0; i < records; i++) {
+            if (MediaCsvFormat.parse(tokenizer.reset(text, starts[i], starts[i + 1]), true) != null) {
+                parsed++;
+            }
+        }
+        return parsed;
+    }
+
+    @Benchmark
+    public int splitting() {
+        int parsed = 0;
+        for (int i = 0; i < records; i++) {
+            if (LegacyParser.parse(new String(text, starts[i], starts[i + 1] - starts[i])) != null) {
+                parsed++;
+            }
+        }
+        return parsed;
+    }
+
+    private static MediaItem item(int i, Random random) {
+        List<String> genres = Arrays.asList("Action", "Drama", "Comedy").subList(0, 1 + random.nextInt(3));
+        MediaItem item;
+        switch (i % 3) {
+            case 0:
+                Movie movie = new Movie();
+                movie.setRuntime(90 + random.nextInt(60));
+                movie.setDirector("Director " + random.nextInt(1000));
+                item = movie;
+                break;
+            case 1:
+                TVShow show = new TVShow();
+                show.setNumberOfSeasons(1 + random.nextInt(9));
+                show.setNumberOfEpisodes(10 + random.nextInt(200));
+                show.setStatus("Ended");
+                item = show;
+                break;
+            default:
+                Anime anime = new Anime();
+                anime.setEpisodes(12 + random.nextInt(40));
+                anime.setStudios(Arrays.asList("Studio " + random.nextInt(50), "Partner, Inc"));
+                anime.setStatus("Finished Airing");
+                item = anime;
+                break;
+        }
+        item.setTitle("Title \"" + i + "\"");
+        item.setDescription("A description of item " + i + ", long enough to look like a real synopsis.");
+        item.setGenres(genres);
+        item.setRating(random.nextInt(100) / 10.0);
+        item.setReleaseDate("2001-02-03");
+        item.setPosterUrl("https://example.org/poster/" + i + ".jpg");
+        item.setBackdropUrl("https://example.org/backdrop/" + i + ".jpg");
+        return item;
+    }
+
+    /**
+     * The record parser the file repositories used before CsvTokenizer, kept
+     * as the baseline.
+     */
+    private static final class LegacyParser {
+        private static final Base64.Decoder BASE64 = Base64.getDecoder();
+
+        private static MediaItem parse(String line) {
+            try {
+                List<String> fields = parseCSVLine(line);
+                if (fields.size() < 10) {
+                    return null;
+                }
+
+                List<String> genres = fields.get(4).isEmpty() ? new ArrayList<>()
+                        : Arrays.asList(fields.get(4).split(";"));
+                double rating = fields.get(5).isEmpty() ? 0.0 : Double.parseDouble(fields.get(5));
+                String[] parts = fields.get(9).isEmpty() ? new String[0] : fields.get(9).split("\\|");
+                MediaItem item;
+                switch (fields.get(1).toLowerCase()) {
+                    case "movie":
+                        Movie movie = new Movie();
+                        if (parts.length >= 1 && !parts[0].isEmpty()) {
+                            movie.setRuntime(Integer.parseInt(parts[0]));
+                        }
+                        if (parts.length >= 2) {
+                            movie.setDirector(parts[1]);
+                        }
+                        item = movie;
+                        break;
+                    case "tvshow":
+                    case "tv_show":
+                        TVShow tvShow = new TVShow();
+                        if (parts.length >= 1 && !parts[0].isEmpty()) {
+                            tvShow.setNumberOfSeasons(Integer.parseInt(parts[0]));
+                        }
+                        if (parts.length >= 2 && !parts[1].isEmpty()) {
+                            tvShow.setNumberOfEpisodes(Integer.parseInt(parts[1]));
+                        }
+                        if (parts.length >= 3) {
+                            tvShow.setStatus(parts[2]);
+                        }
+                        item = tvShow;
+                        break;
+                    case "anime":
+                        Anime anime = new Anime();
+                        if (parts.length >= 1 && !parts[0].isEmpty()) {
+                            anime.setEpisodes(Integer.parseInt(parts[0]));
+                        }
+                        if (parts.length >= 2 && !parts[1].isEmpty()) {
+                            anime.setStudios(Arrays.asList(parts[1].split(";")));
+                        }
+                        if (parts.length >= 3) {
+                            anime.setStatus(parts[2]);
+                        }
+                        item = anime;
+                        break;
+                    default:
+                        return null;
+                }
+
+                item.setId(fields.get(0));
+                item.setTitle(fields.get(2));
+                item.setCompressedDescription(fields.get(3).isEmpty() ? null : BASE64.decode(fields.get(3)));
+                item.setGenres(genres);
+                item.setRating(rating);
+                item.setReleaseDate(fields.get(6));
+                item.setPosterUrl(fields.get(7));
+                item.setBackdropUrl(fields.get(8));
+                return item;
+            } catch (Exception e) {
+                return null;
+            }
+        }
+
+        private static List<String> parseCSVLine(String line) {
+            List<String> result = new ArrayList<>();
+            StringBuilder current = new StringBuilder();
+            boolean inQuotes = false;
+
+            for (int i = 0; i < line.length(); i++) {
+                char c = line.charAt(i);
+                if (c == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        current.append('"');
+                        i++;
+                    } else {
+                        inQuotes = !inQuotes;
+                    }
+                } else if (c == ',' && !inQuotes) {
+                    result.add(current.toString());
+                    current = new StringBuilder();
+                } else {
+                    current.append(c);
+                }
+            }
+            result.add(current.toString());
+            return result;
+        }
+    }
+}
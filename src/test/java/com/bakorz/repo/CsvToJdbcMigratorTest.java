@@ -0,0 +1,115 @@
+package com.bakorz.repo;
+
+import static org.junit.Assert.assertEquals;
+
+import com.bakorz.model.*;
+import java.io.File;
+import java.util.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks that CsvToJdbcMigrator copies existing CSV data files into an
+ * in-memory H2 database unchanged, favorites and watch entries in their add
+ * order, and that running the migration again over the same database leaves
+ * it as it was instead of duplicating rows.
+ */
+public class CsvToJdbcMigratorTest {
+    private static final String URL = "jdbc:h2:mem:migration;DB_CLOSE_DELAY=-1";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void migratesExistingCsvFilesIdempotently() throws Exception {
+        File dir = folder.getRoot();
+        String mediaFile = new File(dir, "media.csv").getPath();
+        String favoriteFile = new File(dir, "favorite.csv").getPath();
+        String favoriteLog = new File(dir, "favorite.log").getPath();
+        String watchFile = new File(dir, "watch.csv").getPath();
+        writeCsvFiles(mediaFile, favoriteFile, favoriteLog, watchFile);
+
+        // Read the files back as the migrator would find them on disk
+        FileMediaRepo media = new FileMediaRepo(mediaFile);
+        FileFavoriteRepo favorites = new FileFavoriteRepo(favoriteFile, favoriteLog);
+        FileWatchRepo watch = new FileWatchRepo(watchFile);
+        assertEquals(40, media.getAll().size());
+        assertEquals(29, favorites.getAll().size());
+        assertEquals(30, watch.getAll().size());
+
+        for (int run = 0; run < 2; run++) {
+            CsvToJdbcMigrator.migrate(URL, media, favorites, watch);
+
+            assertEquals(records(media.getAll()), records(new JdbcMediaRepo(URL).getAll()));
+            assertEquals(describeFavorites(favorites.getAll()), describeFavorites(new JdbcFavoriteRepo(URL).getAll()));
+            assertEquals(describeWatch(watch.getAll()), describeWatch(new JdbcWatchRepo(URL).getAll()));
+            assertEquals(new HashSet<>(Arrays.asList("m1", "m5", "m9", "m13", "m17", "m21", "m25", "m29", "m33",
+                    "m37")), ids(new JdbcMediaRepo(URL).getByGenre("Drama")));
+        }
+    }
+
+    private static void writeCsvFiles(String mediaFile, String favoriteFile, String favoriteLog, String watchFile) {
+        FileMediaRepo media = new FileMediaRepo(mediaFile);
+        for (int i = 0; i < 40; i++) {
+            MediaItem item = i % 3 == 0 ? new Movie() : i % 3 == 1 ? new TVShow() : new Anime();
+            item.setId("m" + i);
+            item.setTitle("Title \"" + i + "\", with a comma");
+            item.setDescription("Line one\nline two of " + i);
+            item.setGenres(Arrays.asList(i % 2 == 0 ? "Action" : "Comedy", i % 4 == 1 ? "Drama" : "Sci-Fi"));
+            item.setRating(i % 10);
+            item.setReleaseDate(i % 5 == 0 ? null : (1990 + i) + "-0" + (1 + i % 9) + "-15");
+            media.save(item);
+        }
+        media.flush();
+
+        FileFavoriteRepo favorites = new FileFavoriteRepo(favoriteFile, favoriteLog);
+        for (int i = 0; i < 30; i++) {
+            favorites.addFavorite(new Favorite("f" + i, "user" + i % 3, "m" + i % 7, i % 2 == 0 ? "MAL" : null,
+                    "ANIME"));
+        }
+        favorites.removeFavorite("f4");
+        favorites.update(new Favorite("f2", "user1", "m3", "TMDB", "MOVIE"));
+
+        FileWatchRepo watch = new FileWatchRepo(watchFile);
+        for (int i = 0; i < 30; i++) {
+            WatchEntry entry = new WatchEntry("w" + i, "user" + i % 4, "m" + i % 6);
+            entry.setMediaSource(i % 3 == 0 ? "TMDB" : null);
+            watch.addWatchEntry(entry);
+        }
+    }
+
+    private static Map<String, String> records(List<MediaItem> items) {
+        Map<String, String> records = new HashMap<>();
+        for (MediaItem item : items) {
+            records.put(item.getId(), MediaCsvFormat.format(item.getId(), item));
+        }
+        return records;
+    }
+
+    private static Set<String> ids(List<MediaItem> items) {
+        Set<String> ids = new HashSet<>();
+        for (MediaItem item : items) {
+            ids.add(item.getId());
+        }
+        return ids;
+    }
+
+    private static List<String> describeFavorites(List<Favorite> favorites) {
+        List<String> described = new ArrayList<>();
+        for (Favorite favorite : favorites) {
+            described.add(favorite.getFavoriteId() + "," + favorite.getUserId() + "," + favorite.getMediaSource()
+                    + "," + favorite.getMediaId() + "," + favorite.getMediaType());
+        }
+        return described;
+    }
+
+    private static List<String> describeWatch(List<WatchEntry> entries) {
+        List<String> described = new ArrayList<>();
+        for (WatchEntry entry : entries) {
+            described.add(entry.getWatchId() + "," + entry.getUserId() + "," + entry.getMediaId() + ","
+                    + entry.getMediaSource());
+        }
+        return described;
+    }
+}
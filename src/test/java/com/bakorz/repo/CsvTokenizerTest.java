@@ -0,0 +1,194 @@
+package com.bakorz.repo;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks CsvTokenizer field splitting on quoted delimiters, doubled-quote
+ * escapes, empty and trailing fields, nested lists and CRLF line ends, and
+ * its in-place number and base64 parsing against the JDK.
+ */
+public class CsvTokenizerTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void quotedDelimitersStayInTheirField() {
+        assertEquals(Arrays.asList("1", "Hello, World", "x"), fields("1,\"Hello, World\",x"));
+        assertEquals(Arrays.asList("a,b,c"), fields("\"a,b,c\""));
+    }
+
+    @Test
+    public void doubledQuotesAreUnescaped() {
+        assertEquals(Arrays.asList("say \"hi\"", "\"", ""), fields("\"say \"\"hi\"\"\",\"\"\"\",\"\""));
+        CsvTokenizer tokenizer = new CsvTokenizer(',').reset("\"A\"\"b\",c");
+        assertTrue(tokenizer.next());
+        assertTrue(tokenizer.equalsIgnoreCase("a\"B"));
+        assertFalse(tokenizer.equalsIgnoreCase("a\"\"B"));
+    }
+
+    @Test
+    public void emptyAndTrailingFieldsAreKept() {
+        assertEquals(Arrays.asList(""), fields(""));
+        assertEquals(Arrays.asList("", ""), fields(","));
+        assertEquals(Arrays.asList("a", "", "b", ""), fields("a,,b,"));
+        assertEquals(Arrays.asList("", "", ""), fields("\"\",,"));
+
+        CsvTokenizer tokenizer = new CsvTokenizer(',').reset("a,,");
+        assertTrue(tokenizer.skip(3));
+        assertTrue(tokenizer.isEmpty());
+        assertEquals("default", tokenizer.stringOr("default"));
+        assertFalse(tokenizer.next());
+        assertFalse(tokenizer.skip(1));
+    }
+
+    @Test
+    public void textAfterClosingQuoteIsDropped() {
+        assertEquals(Arrays.asList("a", "b"), fields("\"a\"junk,b"));
+    }
+
+    @Test
+    public void nestedListsSplitInsideEscapedFields() {
+        CsvTokenizer record = new CsvTokenizer(',').reset("id,\"12|Studio \"\"A\"\";B, Inc|Airing\"");
+        assertTrue(record.skip(2));
+        CsvTokenizer parts = record.split('|');
+        assertTrue(parts.next());
+        assertEquals(12, parts.intValue(0));
+        assertTrue(parts.next());
+        List<String> studios = new ArrayList<>();
+        CsvTokenizer names = parts.split(';');
+        while (names.next()) {
+            studios.add(names.string());
+        }
+        assertEquals(Arrays.asList("Studio \"A\"", "B, Inc"), studios);
+        assertTrue(parts.next());
+        assertEquals("Airing", parts.string());
+        assertFalse(parts.next());
+    }
+
+    @Test
+    public void matchesSplittingOfRandomRecords() {
+        Random random = new Random(5);
+        CsvTokenizer tokenizer = new CsvTokenizer(',');
+        for (int round = 0; round < 2000; round++) {
+            List<String> expected = new ArrayList<>();
+            StringBuilder line = new StringBuilder();
+            int count = 1 + random.nextInt(8);
+            for (int i = 0; i < count; i++) {
+                String value = randomValue(random);
+                expected.add(value);
+                if (i > 0) {
+                    line.append(',');
+                }
+                if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || random.nextBoolean()) {
+                    line.append('"').append(value.replace("\"", "\"\"")).append('"');
+                } else {
+                    line.append(value);
+                }
+            }
+
+            List<String> actual = new ArrayList<>();
+            tokenizer.reset(line.toString());
+            while (tokenizer.next()) {
+                actual.add(tokenizer.string());
+            }
+            assertEquals(line.toString(), expected, actual);
+        }
+    }
+
+    @Test
+    public void crlfLineEndsAreNotPartOfTheLastField() throws Exception {
+        File file = folder.newFile("crlf.csv");
+        Files.write(file.toPath(), "id,name\r\n1,a\r\n2,\"b\r\nc\"\r\n3,\r\n".getBytes(StandardCharsets.UTF_8));
+        List<List<String>> records = new ArrayList<>();
+        new ParallelCsvLoader<List<String>>(record -> {
+            List<String> values = new ArrayList<>();
+            while (record.next()) {
+                values.add(record.string());
+            }
+            return values;
+        }, values -> values.get(0)).stream(file, records::add);
+
+        assertEquals(Arrays.asList(Arrays.asList("1", "a"), Arrays.asList("2", "b\r\nc"), Arrays.asList("3", "")),
+                records);
+    }
+
+    @Test
+    public void numbersParseLikeTheJdk() {
+        Random random = new Random(9);
+        CsvTokenizer tokenizer = new CsvTokenizer(',');
+        for (int i = 0; i < 5000; i++) {
+            int value = random.nextInt();
+            tokenizer.reset(Integer.toString(value)).next();
+            assertEquals(value, tokenizer.intValue(0));
+
+            String decimal = (random.nextBoolean() ? "-" : "") + random.nextInt(100000) + "."
+                    + random.nextInt(1000000);
+            tokenizer.reset(decimal).next();
+            assertEquals(decimal, Double.parseDouble(decimal), tokenizer.doubleValue(0), 0.0);
+        }
+        for (String text : new String[] {"1e3", "NaN", "-Infinity", "0.30000000000000004", "12345678901234567.5"}) {
+            tokenizer.reset(text).next();
+            assertEquals(text, Double.parseDouble(text), tokenizer.doubleValue(0), 0.0);
+        }
+
+        tokenizer.reset(",").next();
+        assertEquals(7, tokenizer.intValue(7));
+        assertEquals(1.5, tokenizer.doubleValue(1.5), 0.0);
+        for (String bad : new String[] {"2147483648", "-", "1x", "+"}) {
+            tokenizer.reset(bad).next();
+            try {
+                tokenizer.intValue(0);
+                throw new AssertionError("parsed " + bad);
+            } catch (NumberFormatException expected) {
+                // Rejected like Integer.parseInt
+            }
+        }
+        tokenizer.reset("-2147483648").next();
+        assertEquals(Integer.MIN_VALUE, tokenizer.intValue(0));
+    }
+
+    @Test
+    public void base64DecodesLikeTheJdk() {
+        Random random = new Random(13);
+        CsvTokenizer tokenizer = new CsvTokenizer(',');
+        Base64.Encoder encoder = Base64.getEncoder().withoutPadding();
+        for (int length = 1; length < 40; length++) {
+            byte[] bytes = new byte[length];
+            random.nextBytes(bytes);
+            tokenizer.reset(encoder.encodeToString(bytes)).next();
+            assertArrayEquals(bytes, tokenizer.base64Value());
+        }
+        tokenizer.reset("").next();
+        assertEquals(null, tokenizer.base64Value());
+    }
+
+    private static List<String> fields(String line) {
+        List<String> fields = new ArrayList<>();
+        CsvTokenizer tokenizer = new CsvTokenizer(',').reset(line);
+        while (tokenizer.next()) {
+            fields.add(tokenizer.string());
+        }
+        return fields;
+    }
+
+    private static String randomValue(Random random) {
+        String alphabet = "ab ,\"|;é";
+        StringBuilder sb = new StringBuilder();
+        int length = random.nextInt(6);
+        for (int i = 0; i < length; i++) {
+            sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return sb.toString();
+    }
+}
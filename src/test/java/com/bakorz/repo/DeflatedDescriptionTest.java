@@ -0,0 +1,89 @@
+package com.bakorz.repo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.bakorz.model.*;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.function.Function;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks that descriptions survive compression unchanged, and that media files
+ * written with plain descriptions are read and upgraded to compressed ones by
+ * every file-based media repository.
+ */
+public class DeflatedDescriptionTest {
+    private static final String SYNOPSIS = "When a young girl discovers that her brother has been taken by a "
+            + "mysterious demon, she sets out with her best friend to find him. Along the way, the two learn "
+            + "that the world of magic is far more dangerous than they ever imagined.";
+
+    private static final List<String> DESCRIPTIONS = Arrays.asList(SYNOPSIS, "",
+            "Short, with \"quotes\"", "Line one\nline two, \"quoted\"\n", "Überraschung — 驚き 🎬 " + SYNOPSIS);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void descriptionsRoundTripAndShrink() {
+        for (String description : DESCRIPTIONS) {
+            assertEquals(description, DescriptionCodec.decompress(DescriptionCodec.compress(description)));
+        }
+        assertNull(DescriptionCodec.decompress(DescriptionCodec.compress(null)));
+
+        byte[] compressed = DescriptionCodec.compress(SYNOPSIS);
+        assertTrue(compressed.length + " bytes", compressed.length < SYNOPSIS.length() * 2 / 3);
+        assertEquals(SYNOPSIS, movie(0).getDescription());
+    }
+
+    @Test
+    public void plainFilesAreUpgraded() throws Exception {
+        check("file", path -> {
+            FileMediaRepo repo = new FileMediaRepo(path);
+            // The compactor rewrites the snapshot in the background
+            repo.compact();
+            return repo;
+        });
+        check("lazy", path -> new LazyFileMediaRepo(path, 10));
+        check("offheap", OffHeapMediaRepo::new);
+    }
+
+    private void check(String name, Function<String, MediaRepo> open) throws Exception {
+        File file = new File(folder.getRoot(), name + ".csv");
+        List<String> lines = new ArrayList<>();
+        lines.add(MediaCsvFormat.PLAIN_HEADER);
+        for (int i = 0; i < DESCRIPTIONS.size(); i++) {
+            lines.add(MediaCsvFormat.format("m" + i, movie(i)));
+        }
+        Files.write(file.toPath(), lines, StandardCharsets.UTF_8);
+
+        assertDescriptions(name, open.apply(file.getPath()));
+        String header = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8).get(0);
+        assertTrue(name + ": " + header, MediaCsvFormat.isDeflated(header));
+        assertTrue(name, RecordChecksum.isChecksummed(header));
+        assertDescriptions(name, open.apply(file.getPath()));
+    }
+
+    private static void assertDescriptions(String name, MediaRepo repo) {
+        for (int i = 0; i < DESCRIPTIONS.size(); i++) {
+            assertEquals(name, DESCRIPTIONS.get(i), repo.getById("m" + i).get().getDescription());
+        }
+    }
+
+    private static Movie movie(int i) {
+        Movie movie = new Movie();
+        movie.setId("m" + i);
+        movie.setTitle("Movie " + i);
+        movie.setDescription(DESCRIPTIONS.get(i));
+        movie.setGenres(Arrays.asList("Drama", "Fantasy"));
+        movie.setRating(7.5);
+        movie.setReleaseDate("2001-01-01");
+        return movie;
+    }
+}
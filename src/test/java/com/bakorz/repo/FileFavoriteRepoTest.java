@@ -0,0 +1,285 @@
+package com.bakorz.repo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.bakorz.model.Favorite;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks that FileFavoriteRepo reloads exactly the favorites written through
+ * its mutation log, and that the background compactor folds the log into the
+ * snapshot without losing or reviving any favorite. Also checks the user and
+ * media indexes against a full scan, in add order, which decides the favorite
+ * removed when a user has several for the same media, that records appended
+ * while a compaction runs survive it, and that a write that fails leaves the
+ * cache as it was.
+ */
+public class FileFavoriteRepoTest {
+    private static final int USERS = 4;
+    private static final int MEDIA = 10;
+    private static final int OPERATIONS = 600;
+
+    /** Log records after which the repository compacts its log */
+    private static final int COMPACTION_THRESHOLD = 200;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void logReplayMatchesModelAfterReopen() throws Exception {
+        File dir = folder.newFolder("round0");
+        FileFavoriteRepo repo = open(dir);
+        Map<String, String> model = new HashMap<>();
+        List<String> ids = new ArrayList<>();
+        Random random = new Random(17);
+
+        for (int op = 0; op < OPERATIONS; op++) {
+            int choice = random.nextInt(10);
+            if (choice < 5 || ids.isEmpty()) {
+                Favorite favorite = favorite("f" + op, random);
+                assertTrue(repo.addFavorite(favorite));
+                model.put(favorite.getFavoriteId(), describe(favorite));
+                ids.add(favorite.getFavoriteId());
+            } else if (choice < 7) {
+                String id = ids.remove(random.nextInt(ids.size()));
+                assertTrue(repo.removeFavorite(id));
+                model.remove(id);
+            } else if (choice < 8) {
+                String id = ids.get(random.nextInt(ids.size()));
+                Favorite favorite = repo.getFavoriteById(id).get();
+                assertTrue(repo.removeFavoriteByUserAndMedia(favorite.getUserId(), favorite.getMediaSource(),
+                        favorite.getMediaId()));
+                // Removes the first favorite of the user for that media, which may be another ID
+                model.clear();
+                ids.clear();
+                for (Favorite remaining : repo.getAll()) {
+                    model.put(remaining.getFavoriteId(), describe(remaining));
+                    ids.add(remaining.getFavoriteId());
+                }
+            } else {
+                String id = ids.get(random.nextInt(ids.size()));
+                Favorite favorite = favorite(id, random);
+                assertTrue(repo.update(favorite));
+                model.put(id, describe(favorite));
+            }
+
+            if (op % 97 == 0) {
+                dir = reopenedCopy(repo, dir, "reopen" + op);
+                repo = open(dir);
+                assertEquals(model, contents(repo));
+            }
+        }
+
+        assertEquals(model, contents(repo));
+        assertEquals(model, contents(open(reopenedCopy(repo, dir, "final"))));
+    }
+
+    @Test
+    public void compactionFoldsLogIntoSnapshot() throws Exception {
+        File dir = folder.getRoot();
+        FileFavoriteRepo repo = open(dir);
+        Map<String, String> model = new HashMap<>();
+        Random random = new Random(23);
+        for (int i = 0; i < COMPACTION_THRESHOLD + 50; i++) {
+            Favorite favorite = favorite("f" + i, random);
+            repo.addFavorite(favorite);
+            model.put(favorite.getFavoriteId(), describe(favorite));
+        }
+
+        Path log = new File(dir, "favorite.log").toPath();
+        long deadline = System.currentTimeMillis() + 10000;
+        while (Files.exists(log) && Files.readAllLines(log).size() > COMPACTION_THRESHOLD
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue("log was not compacted",
+                !Files.exists(log) || Files.readAllLines(log).size() <= COMPACTION_THRESHOLD);
+        assertTrue(Files.exists(new File(dir, "favorite.csv").toPath()));
+        assertEquals(model, contents(open(dir)));
+    }
+
+    @Test
+    public void appendsDuringCompactionStayInTheLog() throws Exception {
+        File dir = folder.getRoot();
+        FileFavoriteRepo repo = open(dir);
+        Random random = new Random(37);
+        // Keeps writing while the compactor folds each batch of COMPACTION_THRESHOLD records
+        for (int i = 0; i < COMPACTION_THRESHOLD * 10; i++) {
+            Favorite favorite = favorite("f" + i, random);
+            assertTrue(repo.addFavorite(favorite));
+            if (i % 3 == 2) {
+                assertTrue(repo.removeFavorite("f" + (i / 2)));
+            }
+            if (i % 7 == 0) {
+                String id = repo.getAll().get(0).getFavoriteId();
+                assertTrue(repo.update(favorite(id, random)));
+            }
+        }
+
+        // Each reopened copy sees the favorites as they were, whatever point the compactor had reached
+        Map<String, String> model = contents(repo);
+        for (int i = 0; i < 5; i++) {
+            assertEquals(model, contents(open(reopenedCopy(repo, dir, "copy" + i))));
+            Thread.sleep(20);
+        }
+    }
+
+    @Test
+    public void failedWritesLeaveTheCacheUnchanged() throws Exception {
+        File dir = folder.getRoot();
+        FileFavoriteRepo repo = open(dir);
+        Random random = new Random(31);
+        Favorite kept = favorite("f0", random);
+        assertTrue(repo.addFavorite(kept));
+        String keptBefore = describe(kept);
+
+        // A directory in place of the log makes every append fail
+        Path log = new File(dir, "favorite.log").toPath();
+        Path aside = new File(dir, "favorite.log.aside").toPath();
+        Files.move(log, aside);
+        Files.createDirectories(log.resolve("blocked"));
+        assertFalse(repo.addFavorite(favorite("f1", random)));
+        assertFalse(repo.getFavoriteById("f1").isPresent());
+        assertFalse(repo.removeFavorite("f0"));
+        assertFalse(repo.removeFavoriteByUserAndMedia(kept.getUserId(), kept.getMediaSource(), kept.getMediaId()));
+        assertFalse(repo.update(new Favorite("f0", "user9", "9", "MAL", "ANIME")));
+        assertEquals(Collections.singletonMap("f0", keptBefore), contents(repo));
+        assertIndexesMatchScan(repo);
+
+        Files.delete(log.resolve("blocked"));
+        Files.delete(log);
+        Files.move(aside, log);
+        assertTrue(repo.addFavorite(favorite("f2", random)));
+        assertEquals(contents(repo), contents(open(dir)));
+    }
+
+    @Test
+    public void indexesAgreeWithScanUnderRandomOperations() throws Exception {
+        FileFavoriteRepo repo = open(folder.newFolder("indexed"));
+        Random random = new Random(29);
+        List<String> ids = new ArrayList<>();
+
+        for (int op = 0; op < OPERATIONS; op++) {
+            int choice = random.nextInt(10);
+            if (choice < 5 || ids.isEmpty()) {
+                Favorite favorite = favorite("f" + op, random);
+                repo.addFavorite(favorite);
+                ids.add(favorite.getFavoriteId());
+            } else if (choice < 7) {
+                repo.removeFavorite(ids.remove(random.nextInt(ids.size())));
+            } else if (choice < 8) {
+                String userId = "user" + random.nextInt(USERS);
+                String mediaId = String.valueOf(random.nextInt(MEDIA));
+                String source = random.nextBoolean() ? "MAL" : "TMDB";
+                // getAll lists favorites in add order, so this is the one to be removed
+                Optional<Favorite> first = scanFirst(repo.getAll(), userId, source, mediaId);
+                assertEquals(first.isPresent(), repo.removeFavoriteByUserAndMedia(userId, source, mediaId));
+                if (first.isPresent()) {
+                    assertTrue(!repo.getFavoriteById(first.get().getFavoriteId()).isPresent());
+                    ids.remove(first.get().getFavoriteId());
+                }
+            } else {
+                // Mutate the stored instance in place before updating, as callers may do
+                Favorite stored = repo.getFavoriteById(ids.get(random.nextInt(ids.size()))).get();
+                stored.setUserId("user" + random.nextInt(USERS));
+                stored.setMediaId(String.valueOf(random.nextInt(MEDIA)));
+                repo.update(stored);
+            }
+            assertIndexesMatchScan(repo);
+        }
+    }
+
+    private static void assertIndexesMatchScan(FileFavoriteRepo repo) {
+        List<Favorite> all = repo.getAll();
+        for (int u = 0; u < USERS; u++) {
+            String userId = "user" + u;
+            List<String> scanned = new ArrayList<>();
+            for (Favorite favorite : all) {
+                if (favorite.getUserId().equals(userId)) {
+                    scanned.add(favorite.getFavoriteId());
+                }
+            }
+            List<String> indexed = new ArrayList<>();
+            for (Favorite favorite : repo.getFavoritesByUser(userId)) {
+                indexed.add(favorite.getFavoriteId());
+            }
+            assertEquals(scanned, indexed);
+
+            for (int m = 0; m < MEDIA; m++) {
+                String mediaId = String.valueOf(m);
+                boolean anySource = false;
+                for (String source : new String[] {"MAL", "TMDB"}) {
+                    boolean present = scanFirst(all, userId, source, mediaId).isPresent();
+                    assertEquals(present, repo.isFavorited(userId, source, mediaId));
+                    anySource |= present;
+                }
+                assertEquals(anySource, repo.isFavorited(userId, mediaId));
+            }
+        }
+    }
+
+    private static Optional<Favorite> scanFirst(List<Favorite> all, String userId, String source, String mediaId) {
+        for (Favorite favorite : all) {
+            if (favorite.getUserId().equals(userId) && favorite.getMediaSource().equals(source)
+                    && favorite.getMediaId().equals(mediaId)) {
+                return Optional.of(favorite);
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Copies the files of a repository to a new folder while holding its
+     * lock, which keeps its background compactor out, so the copy can be
+     * reopened while the old instance lives on.
+     */
+    private File reopenedCopy(FileFavoriteRepo repo, File dir, String name) throws Exception {
+        File copy = folder.newFolder(name);
+        synchronized (repo) {
+            for (String file : new String[] {"favorite.csv", "favorite.log"}) {
+                Path source = new File(dir, file).toPath();
+                if (Files.exists(source)) {
+                    Files.copy(source, new File(copy, file).toPath());
+                }
+            }
+        }
+        return copy;
+    }
+
+    private static Map<String, String> contents(FileFavoriteRepo repo) {
+        Map<String, String> contents = new HashMap<>();
+        for (Favorite favorite : repo.getAll()) {
+            contents.put(favorite.getFavoriteId(), describe(favorite));
+        }
+        for (int u = 0; u < USERS; u++) {
+            for (Favorite favorite : repo.getFavoritesByUser("user" + u)) {
+                assertEquals(describe(favorite), contents.get(favorite.getFavoriteId()));
+                assertTrue(repo.isFavorited(favorite.getUserId(), favorite.getMediaSource(), favorite.getMediaId()));
+            }
+        }
+        return contents;
+    }
+
+    private static String describe(Favorite favorite) {
+        return favorite.getUserId() + "," + favorite.getMediaId() + "," + favorite.getMediaSource() + ","
+                + favorite.getMediaType();
+    }
+
+    private static Favorite favorite(String id, Random random) {
+        boolean anime = random.nextBoolean();
+        return new Favorite(id, "user" + random.nextInt(USERS), String.valueOf(random.nextInt(MEDIA)),
+                anime ? "MAL" : "TMDB", anime ? "ANIME" : "MOVIE");
+    }
+
+    private static FileFavoriteRepo open(File dir) {
+        return new FileFavoriteRepo(new File(dir, "favorite.csv").getPath(), new File(dir, "favorite.log").getPath());
+    }
+}
@@ -0,0 +1,132 @@
+package com.bakorz.repo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.bakorz.model.WatchEntry;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks that the per-user indexes in FileWatchRepo agree with a full scan of
+ * all entries under random sequences of add, remove and update operations,
+ * and that a write that fails leaves the cache as it was.
+ */
+public class FileWatchRepoTest {
+    private static final int USERS = 5;
+    private static final int MEDIA = 8;
+    private static final int OPERATIONS = 2000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void indexesAgreeWithScanUnderRandomOperations() throws Exception {
+        File file = new File(folder.getRoot(), "watch.csv");
+        FileWatchRepo repo = new FileWatchRepo(file.getPath());
+        Random random = new Random(42);
+        List<String> watchIds = new ArrayList<>();
+
+        for (int op = 0; op < OPERATIONS; op++) {
+            int choice = random.nextInt(10);
+            if (choice < 5 || watchIds.isEmpty()) {
+                String watchId = "w" + op;
+                WatchEntry entry = new WatchEntry(watchId, randomUser(random), randomMedia(random));
+                entry.setMediaSource(random.nextBoolean() ? "MAL" : "TMDB");
+                assertTrue(repo.addWatchEntry(entry));
+                watchIds.add(watchId);
+            } else if (choice < 8) {
+                String watchId = watchIds.remove(random.nextInt(watchIds.size()));
+                assertTrue(repo.removeWatchEntry(watchId));
+            } else {
+                // Mutate the stored instance in place, as callers may do
+                String watchId = watchIds.get(random.nextInt(watchIds.size()));
+                WatchEntry entry = repo.getWatchEntryById(watchId).get();
+                entry.setUserId(randomUser(random));
+                entry.setMediaId(randomMedia(random));
+                assertTrue(repo.update(entry));
+            }
+
+            assertIndexesMatchScan(repo);
+        }
+
+        assertIndexesMatchScan(new FileWatchRepo(file.getPath()));
+    }
+
+    @Test
+    public void failedWritesLeaveTheCacheUnchanged() throws Exception {
+        File file = new File(folder.getRoot(), "watch.csv");
+        FileWatchRepo repo = new FileWatchRepo(file.getPath());
+        WatchEntry kept = new WatchEntry("w0", "user0", "0");
+        assertTrue(repo.addWatchEntry(kept));
+
+        // A non-empty directory in place of the file makes every snapshot rename fail
+        Path blocked = file.toPath().resolve("blocked");
+        Files.delete(file.toPath());
+        Files.createDirectories(blocked);
+        assertFalse(repo.addWatchEntry(new WatchEntry("w1", "user1", "1")));
+        assertFalse(repo.getWatchEntryById("w1").isPresent());
+        assertFalse(repo.removeWatchEntry("w0"));
+        assertFalse(repo.update(new WatchEntry("w0", "user2", "2")));
+        assertEquals(1, repo.getAll().size());
+        assertEquals("user0", repo.getWatchEntryById("w0").get().getUserId());
+        assertTrue(repo.getWatchEntryByUserAndMedia("user0", "0").isPresent());
+        assertIndexesMatchScan(repo);
+
+        Files.delete(blocked);
+        Files.delete(file.toPath());
+        assertTrue(repo.addWatchEntry(new WatchEntry("w2", "user1", "1")));
+        assertEquals(2, new FileWatchRepo(file.getPath()).getAll().size());
+    }
+
+    private static String randomUser(Random random) {
+        return "user" + random.nextInt(USERS);
+    }
+
+    private static String randomMedia(Random random) {
+        return String.valueOf(random.nextInt(MEDIA));
+    }
+
+    private static void assertIndexesMatchScan(FileWatchRepo repo) {
+        List<WatchEntry> all = repo.getAll();
+        for (int u = 0; u < USERS; u++) {
+            String userId = "user" + u;
+
+            Set<String> scanned = new HashSet<>();
+            for (WatchEntry entry : all) {
+                if (entry.getUserId().equals(userId)) {
+                    scanned.add(entry.getWatchId());
+                }
+            }
+            Set<String> indexed = new HashSet<>();
+            for (WatchEntry entry : repo.getWatchEntriesByUser(userId)) {
+                indexed.add(entry.getWatchId());
+            }
+            assertEquals(scanned, indexed);
+
+            for (int m = 0; m < MEDIA; m++) {
+                String mediaId = String.valueOf(m);
+                boolean present = false;
+                for (WatchEntry entry : all) {
+                    if (entry.getUserId().equals(userId) && entry.getMediaId().equals(mediaId)) {
+                        present = true;
+                        break;
+                    }
+                }
+
+                Optional<WatchEntry> found = repo.getWatchEntryByUserAndMedia(userId, mediaId);
+                assertEquals(present, found.isPresent());
+                if (found.isPresent()) {
+                    assertEquals(userId, found.get().getUserId());
+                    assertEquals(mediaId, found.get().getMediaId());
+                }
+            }
+        }
+    }
+}
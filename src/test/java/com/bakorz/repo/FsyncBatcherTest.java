@@ -0,0 +1,91 @@
+package com.bakorz.repo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.InterruptedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Test;
+
+/**
+ * Checks that FsyncBatcher shares one force between writers waiting on the
+ * same batch, and that a writer interrupted while another thread forces its
+ * batch gets an IOException with its interrupt status set again, instead of
+ * returning as if the write were durable.
+ */
+public class FsyncBatcherTest {
+    @Test
+    public void waitersOfOneBatchShareItsForce() throws Exception {
+        List<Path> forced = Collections.synchronizedList(new ArrayList<>());
+        FsyncBatcher batcher = new FsyncBatcher(DurabilityPolicy.EVERY_WRITE, 0, forced::add);
+        long first = batcher.register(Paths.get("a"));
+        long second = batcher.register(Paths.get("b"));
+        assertEquals(first, second);
+
+        batcher.awaitDurable(first);
+        batcher.awaitDurable(second);
+        assertEquals(Arrays.asList(Paths.get("a"), Paths.get("b")), forced);
+
+        batcher.awaitDurable(batcher.register(Paths.get("a")));
+        assertEquals(3, forced.size());
+    }
+
+    @Test
+    public void interruptedWaiterThrowsAndKeepsItsInterrupt() throws Exception {
+        CountDownLatch forcing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        FsyncBatcher batcher = new FsyncBatcher(DurabilityPolicy.EVERY_WRITE, 0, path -> {
+            forcing.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        // The first writer takes the batch and blocks inside its force
+        long ticket = batcher.register(Paths.get("a"));
+        Thread syncer = new Thread(() -> {
+            try {
+                batcher.awaitDurable(ticket);
+            } catch (Exception e) {
+                throw new AssertionError(e);
+            }
+        });
+        syncer.start();
+        assertTrue(forcing.await(10, TimeUnit.SECONDS));
+
+        // The second writer waits for that batch and is interrupted
+        AtomicReference<Throwable> thrown = new AtomicReference<>();
+        AtomicReference<Boolean> interrupted = new AtomicReference<>();
+        Thread waiter = new Thread(() -> {
+            try {
+                batcher.awaitDurable(ticket);
+                fail("returned before the batch was forced");
+            } catch (Throwable e) {
+                thrown.set(e);
+                interrupted.set(Thread.currentThread().isInterrupted());
+            }
+        });
+        waiter.start();
+        while (waiter.getState() != Thread.State.WAITING && waiter.isAlive()) {
+            Thread.sleep(1);
+        }
+        waiter.interrupt();
+        waiter.join(10000);
+
+        assertTrue(String.valueOf(thrown.get()), thrown.get() instanceof InterruptedIOException);
+        assertTrue(interrupted.get());
+
+        release.countDown();
+        syncer.join(10000);
+        // Once forced, the batch no longer blocks anyone
+        batcher.awaitDurable(ticket);
+    }
+}
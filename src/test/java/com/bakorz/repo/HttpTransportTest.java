@@ -0,0 +1,217 @@
+package com.bakorz.repo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks that HttpTransport negotiates compression with a local stand-in for
+ * the API servers, feeds the decompressed body to the JSON decoders and
+ * counts the bytes received and decoded, that asynchronous bodies are decoded
+ * as they arrive rather than once complete, and that a body which stops
+ * arriving is aborted at its deadline instead of blocking the caller.
+ */
+public class HttpTransportTest {
+    private static final int GENRES = 500;
+
+    private HttpServer server;
+    private HttpTransport transport;
+    private List<String> genres;
+    private byte[] json;
+    private final CountDownLatch stalled = new CountDownLatch(1);
+
+    @Before
+    public void startServer() throws IOException {
+        genres = new ArrayList<>();
+        StringBuilder body = new StringBuilder("[");
+        for (int i = 0; i < GENRES; i++) {
+            String genre = "Genre " + (i % 20) + " of a long list of genres";
+            genres.add(genre);
+            body.append(i == 0 ? "" : ",").append("{\"id\":").append(i).append(",\"name\":\"").append(genre).append("\"}");
+        }
+        json = body.append("]").toString().getBytes(StandardCharsets.UTF_8);
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/gzip", exchange -> {
+            String accepted = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+            byte[] sent = json;
+            if (accepted != null && accepted.contains("gzip")) {
+                exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+                sent = gzip(json);
+            }
+            respond(exchange, sent);
+        });
+        server.createContext("/deflate", exchange -> {
+            exchange.getResponseHeaders().set("Content-Encoding", "deflate");
+            respond(exchange, deflate(json, false));
+        });
+        server.createContext("/raw-deflate", exchange -> {
+            exchange.getResponseHeaders().set("Content-Encoding", "deflate");
+            respond(exchange, deflate(json, true));
+        });
+        server.createContext("/identity", exchange -> respond(exchange, json));
+        server.createContext("/stall", exchange -> {
+            // Sends the headers and half the body, then stops
+            exchange.sendResponseHeaders(200, json.length);
+            OutputStream out = exchange.getResponseBody();
+            out.write(json, 0, json.length / 2);
+            out.flush();
+            try {
+                stalled.await(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.close();
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+
+        transport = new HttpTransport(Duration.ofSeconds(5), Duration.ofSeconds(5), null);
+    }
+
+    @After
+    public void stopServer() {
+        stalled.countDown();
+        server.stop(0);
+    }
+
+    @Test
+    public void decodesGzipResponses() throws IOException {
+        assertEquals(genres, transport.get(uri("/gzip"), HttpTransportTest::names));
+        assertEquals(gzip(json).length, transport.getBytesReceived());
+        assertEquals(json.length, transport.getBytesDecoded());
+        assertTrue(transport.getBytesReceived() * 10 < transport.getBytesDecoded());
+    }
+
+    @Test
+    public void decodesGzipResponsesAsynchronously() {
+        assertEquals(genres, transport.getAsync(uri("/gzip"), HttpTransportTest::names).join());
+        assertEquals(gzip(json).length, transport.getBytesReceived());
+        assertEquals(json.length, transport.getBytesDecoded());
+    }
+
+    @Test
+    public void decodesZlibAndRawDeflateResponses() throws IOException {
+        assertEquals(genres, transport.get(uri("/deflate"), HttpTransportTest::names));
+        assertEquals(genres, transport.get(uri("/raw-deflate"), HttpTransportTest::names));
+        assertEquals(genres, transport.getAsync(uri("/raw-deflate"), HttpTransportTest::names).join());
+        assertEquals(3L * json.length, transport.getBytesDecoded());
+    }
+
+    @Test
+    public void countsUncompressedResponsesOnce() throws IOException {
+        assertEquals(genres, transport.get(uri("/identity"), HttpTransportTest::names));
+        assertEquals(json.length, transport.getBytesReceived());
+        assertEquals(json.length, transport.getBytesDecoded());
+    }
+
+    @Test
+    public void abortsBodiesPastTheirDeadline() {
+        HttpTransport impatient = new HttpTransport(Duration.ofSeconds(5), Duration.ofMillis(300), null);
+        long start = System.nanoTime();
+        try {
+            impatient.get(uri("/stall"), HttpTransportTest::names);
+            fail("decoded a body that never completed");
+        } catch (IOException e) {
+            assertTrue(String.valueOf(e), e instanceof HttpTimeoutException);
+        }
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+
+        start = System.nanoTime();
+        try {
+            impatient.getAsync(uri("/stall"), HttpTransportTest::names).get(10, TimeUnit.SECONDS);
+            fail("decoded a body that never completed");
+        } catch (ExecutionException e) {
+            assertTrue(String.valueOf(e.getCause()), e.getCause() instanceof HttpTimeoutException);
+        } catch (InterruptedException | TimeoutException e) {
+            throw new AssertionError(e);
+        }
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+
+        // Complete bodies are unaffected by the deadline
+        assertEquals(genres, impatient.getAsync(uri("/gzip"), HttpTransportTest::names).join());
+    }
+
+    @Test
+    public void decodesAsyncBodiesAsTheyArrive() throws InterruptedException {
+        CountDownLatch decoding = new CountDownLatch(1);
+        CompletableFuture<List<String>> stalling = transport.getAsync(uri("/stall"), body -> {
+            PushbackInputStream in = new PushbackInputStream(body);
+            int first = in.read();
+            if (first >= 0) {
+                in.unread(first);
+            }
+            decoding.countDown();
+            return names(in);
+        });
+        // Half the body is enough to start decoding
+        assertTrue(decoding.await(5, TimeUnit.SECONDS));
+        assertFalse(stalling.isDone());
+        stalling.cancel(true);
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://127.0.0.1:" + server.getAddress().getPort() + path);
+    }
+
+    private static List<String> names(InputStream body) throws IOException {
+        return JsonStreams.readNames(JsonStreams.reader(body));
+    }
+
+    private static void respond(HttpExchange exchange, byte[] body) throws IOException {
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static byte[] gzip(byte[] data) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(data);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] deflate(byte[] data, boolean raw) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, raw);
+        try (DeflaterOutputStream out = new DeflaterOutputStream(bytes, deflater)) {
+            out.write(data);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        } finally {
+            deflater.end();
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,150 @@
+package com.bakorz.repo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.bakorz.model.Favorite;
+import java.io.File;
+import java.util.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks JdbcFavoriteRepo on an in-memory H2 database against
+ * FileFavoriteRepo: the same random adds, replacements, updates and removals
+ * are applied to both, and every FavoriteRepo query must return the same
+ * favorites in the same add order. Also checks which favorite each form of
+ * removeFavoriteByUserAndMedia removes when a user has several for one media.
+ */
+public class JdbcFavoriteRepoTest {
+    private static final int USERS = 3;
+    private static final int MEDIA = 6;
+    private static final int OPERATIONS = 1500;
+    private static final String[] SOURCES = {"MAL", "TMDB", null};
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void matchesFileFavoriteRepoUnderRandomOperations() throws Exception {
+        FileFavoriteRepo file = openFile();
+        JdbcFavoriteRepo jdbc = new JdbcFavoriteRepo("jdbc:h2:mem:favoriteParity;DB_CLOSE_DELAY=-1");
+        Random random = new Random(67);
+
+        for (int op = 0; op < OPERATIONS; op++) {
+            int choice = random.nextInt(12);
+            if (choice < 5) {
+                // Mostly new IDs, sometimes replacing an existing favorite
+                Favorite favorite = favorite("f" + random.nextInt(op + 1), random);
+                assertEquals(file.addFavorite(favorite), jdbc.addFavorite(copy(favorite)));
+            } else if (choice < 6) {
+                String id = "f" + random.nextInt(op + 1);
+                assertEquals(id, file.removeFavorite(id), jdbc.removeFavorite(id));
+            } else if (choice < 8) {
+                String userId = user(random);
+                String mediaId = media(random);
+                assertEquals(file.removeFavoriteByUserAndMedia(userId, mediaId),
+                        jdbc.removeFavoriteByUserAndMedia(userId, mediaId));
+            } else if (choice < 10) {
+                String userId = user(random);
+                String source = SOURCES[random.nextInt(SOURCES.length)];
+                String mediaId = media(random);
+                assertEquals(file.removeFavoriteByUserAndMedia(userId, source, mediaId),
+                        jdbc.removeFavoriteByUserAndMedia(userId, source, mediaId));
+            } else {
+                Favorite favorite = favorite("f" + random.nextInt(op + 1), random);
+                assertEquals(file.update(favorite), jdbc.update(copy(favorite)));
+            }
+
+            assertQueriesMatch(file, jdbc, random);
+        }
+    }
+
+    @Test
+    public void removesTheEarliestMatchingFavorite() throws Exception {
+        FileFavoriteRepo file = openFile();
+        JdbcFavoriteRepo jdbc = new JdbcFavoriteRepo("jdbc:h2:mem:favoriteOrder;DB_CLOSE_DELAY=-1");
+        for (FavoriteRepo repo : Arrays.<FavoriteRepo>asList(file, jdbc)) {
+            repo.addFavorite(new Favorite("a", "u", "5", "MAL", "ANIME"));
+            repo.addFavorite(new Favorite("b", "u", "5", "TMDB", "MOVIE"));
+            repo.addFavorite(new Favorite("c", "u", "5", "MAL", "ANIME"));
+            repo.addFavorite(new Favorite("d", "u", "5", "MAL", "ANIME"));
+            // Updates and replacements keep their place in the add order
+            assertTrue(repo.update(new Favorite("c", "u", "5", "MAL", "TV_SHOW")));
+            assertTrue(repo.addFavorite(new Favorite("a", "u", "5", "MAL", "MOVIE")));
+
+            assertTrue(repo.removeFavoriteByUserAndMedia("u", "MAL", "5"));
+            assertEquals(Arrays.asList("b", "c", "d"), favoriteIds(repo.getFavoritesByUser("u")));
+            assertTrue(repo.removeFavoriteByUserAndMedia("u", "5"));
+            assertEquals(Arrays.asList("c", "d"), favoriteIds(repo.getFavoritesByUser("u")));
+            assertTrue(repo.removeFavoriteByUserAndMedia("u", "MAL", "5"));
+            assertEquals(Collections.singletonList("d"), favoriteIds(repo.getAll()));
+            assertFalse(repo.removeFavoriteByUserAndMedia("u", "TMDB", "5"));
+            assertFalse(repo.removeFavoriteByUserAndMedia("other", "5"));
+        }
+    }
+
+    private static void assertQueriesMatch(FavoriteRepo file, FavoriteRepo jdbc, Random random) {
+        assertEquals(describe(file.getAll()), describe(jdbc.getAll()));
+        String userId = user(random);
+        assertEquals(describe(file.getFavoritesByUser(userId)), describe(jdbc.getFavoritesByUser(userId)));
+
+        String favoriteId = "f" + random.nextInt(OPERATIONS);
+        assertEquals(file.getFavoriteById(favoriteId).map(JdbcFavoriteRepoTest::describe),
+                jdbc.getFavoriteById(favoriteId).map(JdbcFavoriteRepoTest::describe));
+
+        String mediaId = media(random);
+        String source = SOURCES[random.nextInt(SOURCES.length)];
+        assertEquals(file.isFavorited(userId, mediaId), jdbc.isFavorited(userId, mediaId));
+        assertEquals(file.isFavorited(userId, source, mediaId), jdbc.isFavorited(userId, source, mediaId));
+    }
+
+    private static List<String> describe(List<Favorite> favorites) {
+        List<String> described = new ArrayList<>();
+        for (Favorite favorite : favorites) {
+            described.add(describe(favorite));
+        }
+        return described;
+    }
+
+    /** Both repositories store a missing source as FILE */
+    private static String describe(Favorite favorite) {
+        return favorite.getFavoriteId() + "," + favorite.getUserId() + ","
+                + (favorite.getMediaSource() != null ? favorite.getMediaSource() : "FILE") + ","
+                + favorite.getMediaId() + "," + favorite.getMediaType();
+    }
+
+    private static List<String> favoriteIds(List<Favorite> favorites) {
+        List<String> ids = new ArrayList<>();
+        for (Favorite favorite : favorites) {
+            ids.add(favorite.getFavoriteId());
+        }
+        return ids;
+    }
+
+    /** A separate instance, since FileFavoriteRepo keeps the one it is given */
+    private static Favorite copy(Favorite favorite) {
+        return new Favorite(favorite.getFavoriteId(), favorite.getUserId(), favorite.getMediaId(),
+                favorite.getMediaSource(), favorite.getMediaType());
+    }
+
+    private static Favorite favorite(String id, Random random) {
+        return new Favorite(id, user(random), media(random), SOURCES[random.nextInt(SOURCES.length)],
+                random.nextBoolean() ? "ANIME" : "MOVIE");
+    }
+
+    private static String user(Random random) {
+        return "user" + random.nextInt(USERS);
+    }
+
+    private static String media(Random random) {
+        return String.valueOf(random.nextInt(MEDIA));
+    }
+
+    private FileFavoriteRepo openFile() throws Exception {
+        File dir = folder.newFolder();
+        return new FileFavoriteRepo(new File(dir, "favorite.csv").getPath(), new File(dir, "favorite.log").getPath());
+    }
+}
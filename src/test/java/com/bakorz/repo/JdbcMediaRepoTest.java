@@ -0,0 +1,198 @@
+package com.bakorz.repo;
+
+import static org.junit.Assert.assertEquals;
+
+import com.bakorz.model.*;
+import java.io.File;
+import java.time.LocalDate;
+import java.util.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks JdbcMediaRepo on an in-memory H2 database against FileMediaRepo:
+ * the same random saves, batch saves, updates and deletes are applied to
+ * both, and every MediaRepo query must return the same items. Where the
+ * order of tied items is unspecified, only the sort keys are compared.
+ */
+public class JdbcMediaRepoTest {
+    private static final int IDS = 60;
+    private static final int OPERATIONS = 1500;
+    private static final String[] WORDS = {"Star", "star", "Wars", "Night", "night!", "100%", "a_b", "Ghost"};
+    private static final String[] GENRES = {"Action", "action", "Drama", "Sci-Fi", "Comedy"};
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void matchesFileMediaRepoUnderRandomOperations() {
+        FileMediaRepo file = new FileMediaRepo(new File(folder.getRoot(), "media.csv").getPath());
+        JdbcMediaRepo jdbc = new JdbcMediaRepo("jdbc:h2:mem:mediaParity;DB_CLOSE_DELAY=-1");
+        Random random = new Random(61);
+
+        for (int op = 0; op < OPERATIONS; op++) {
+            int choice = random.nextInt(10);
+            if (choice < 4) {
+                MediaItem item = item(random);
+                assertEquals(file.save(item), jdbc.save(item));
+            } else if (choice < 5) {
+                List<MediaItem> batch = new ArrayList<>();
+                for (int i = random.nextInt(6); i > 0; i--) {
+                    batch.add(random.nextInt(8) == 0 ? null : item(random));
+                }
+                assertEquals(file.saveAll(batch), jdbc.saveAll(batch));
+            } else if (choice < 7) {
+                MediaItem item = item(random);
+                assertEquals(item.getId(), file.update(item), jdbc.update(item));
+            } else if (choice < 9) {
+                String id = id(random);
+                assertEquals(id, file.delete(id), jdbc.delete(id));
+            } else {
+                List<String> ids = Arrays.asList(id(random), id(random), id(random));
+                assertEquals(file.deleteAll(ids), jdbc.deleteAll(ids));
+            }
+
+            if (op % 10 == 0) {
+                assertQueriesMatch(file, jdbc, random);
+            }
+        }
+        assertQueriesMatch(file, jdbc, random);
+        file.flush();
+    }
+
+    private static void assertQueriesMatch(MediaRepo file, MediaRepo jdbc, Random random) {
+        assertEquals(records(file.getAll()), records(jdbc.getAll()));
+
+        String id = id(random);
+        assertEquals(id, file.getById(id).map(JdbcMediaRepoTest::record), jdbc.getById(id).map(JdbcMediaRepoTest::record));
+        assertEquals(file.getMovieById(id).isPresent(), jdbc.getMovieById(id).isPresent());
+        assertEquals(file.getTVShowById(id).isPresent(), jdbc.getTVShowById(id).isPresent());
+        assertEquals(file.getAnimeById(id).isPresent(), jdbc.getAnimeById(id).isPresent());
+
+        List<String> wanted = Arrays.asList(id(random), id(random), "missing", id(random), id(random));
+        assertEquals(ids(file.getAllByIds(wanted)), ids(jdbc.getAllByIds(wanted)));
+
+        String query = WORDS[random.nextInt(WORDS.length)].substring(0, 1 + random.nextInt(3));
+        assertEquals(query, idSet(file.searchByTitle(query)), idSet(jdbc.searchByTitle(query)));
+
+        String genre = GENRES[random.nextInt(GENRES.length)];
+        assertEquals(genre, idSet(file.getByGenre(genre)), idSet(jdbc.getByGenre(genre)));
+        List<String> allOf = genres(random);
+        List<String> anyOf = genres(random);
+        List<String> noneOf = genres(random);
+        assertEquals(idSet(file.getByGenres(allOf, anyOf, noneOf)), idSet(jdbc.getByGenres(allOf, anyOf, noneOf)));
+
+        int limit = random.nextInt(15);
+        assertEquals(ratings(file.getTopRated(limit)), ratings(jdbc.getTopRated(limit)));
+        assertEquals(days(file.getLatestMovies(limit)), days(jdbc.getLatestMovies(limit)));
+        assertEquals(days(file.getLatestTVShows(limit)), days(jdbc.getLatestTVShows(limit)));
+
+        LocalDate from = LocalDate.of(1995 + random.nextInt(20), 1 + random.nextInt(12), 1);
+        LocalDate to = from.plusDays(random.nextInt(4000));
+        for (Class<? extends MediaItem> type : Arrays.asList(MediaItem.class, Movie.class, TVShow.class, Anime.class)) {
+            List<? extends MediaItem> fromFile = file.getReleasedBetween(type, from, to);
+            List<? extends MediaItem> fromJdbc = jdbc.getReleasedBetween(type, from, to);
+            assertEquals(type.getSimpleName(), days(fromFile), days(fromJdbc));
+            assertEquals(type.getSimpleName(), idSet(fromFile), idSet(fromJdbc));
+        }
+    }
+
+    private static Map<String, String> records(List<MediaItem> items) {
+        Map<String, String> records = new HashMap<>();
+        for (MediaItem item : items) {
+            records.put(item.getId(), record(item));
+        }
+        return records;
+    }
+
+    private static String record(MediaItem item) {
+        return MediaCsvFormat.format(item.getId(), item);
+    }
+
+    private static List<String> ids(List<? extends MediaItem> items) {
+        List<String> ids = new ArrayList<>();
+        for (MediaItem item : items) {
+            ids.add(item.getId());
+        }
+        return ids;
+    }
+
+    private static Set<String> idSet(List<? extends MediaItem> items) {
+        return new HashSet<>(ids(items));
+    }
+
+    private static List<Double> ratings(List<? extends MediaItem> items) {
+        List<Double> ratings = new ArrayList<>();
+        for (MediaItem item : items) {
+            ratings.add(item.getRating());
+        }
+        return ratings;
+    }
+
+    private static List<Long> days(List<? extends MediaItem> items) {
+        List<Long> days = new ArrayList<>();
+        for (MediaItem item : items) {
+            days.add(RankingIndex.epochDay(item.getReleaseDate()));
+        }
+        return days;
+    }
+
+    private static List<String> genres(Random random) {
+        List<String> genres = new ArrayList<>();
+        for (int i = random.nextInt(3); i > 0; i--) {
+            genres.add(GENRES[random.nextInt(GENRES.length)]);
+        }
+        return genres;
+    }
+
+    private static String id(Random random) {
+        return "m" + random.nextInt(IDS);
+    }
+
+    private static MediaItem item(Random random) {
+        MediaItem item;
+        switch (random.nextInt(3)) {
+            case 0:
+                Movie movie = new Movie();
+                movie.setDirector("Director " + random.nextInt(5));
+                movie.setRuntime(80 + random.nextInt(60));
+                item = movie;
+                break;
+            case 1:
+                TVShow tvShow = new TVShow();
+                tvShow.setNumberOfSeasons(1 + random.nextInt(9));
+                tvShow.setStatus(random.nextBoolean() ? "Ended" : "Returning Series");
+                item = tvShow;
+                break;
+            default:
+                Anime anime = new Anime();
+                anime.setEpisodes(random.nextInt(100));
+                anime.setMalId(random.nextInt(50000));
+                item = anime;
+                break;
+        }
+        item.setId(id(random));
+        item.setTitle(WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)]);
+        item.setDescription("Description " + random.nextInt(1000));
+        item.setGenres(genres(random));
+        // Few distinct values, so ratings and dates tie often
+        item.setRating(random.nextInt(21) / 2.0);
+        int year = 1995 + random.nextInt(30);
+        switch (random.nextInt(5)) {
+            case 0:
+                item.setReleaseDate(null);
+                break;
+            case 1:
+                item.setReleaseDate(String.valueOf(year));
+                break;
+            case 2:
+                item.setReleaseDate(String.format("%d-%02d", year, 1 + random.nextInt(12)));
+                break;
+            default:
+                item.setReleaseDate(String.format("%d-%02d-%02d", year, 1 + random.nextInt(12), 1 + random.nextInt(28)));
+                break;
+        }
+        return item;
+    }
+}
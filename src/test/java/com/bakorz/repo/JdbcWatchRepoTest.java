@@ -0,0 +1,131 @@
+package com.bakorz.repo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.bakorz.model.WatchEntry;
+import java.io.File;
+import java.util.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks JdbcWatchRepo on an in-memory H2 database against FileWatchRepo:
+ * the same random adds, duplicate adds, updates and removals are applied to
+ * both, and every WatchRepo query must return the same entries in the same
+ * add order, including which entry a user and media lookup finds when the
+ * user has several for one media.
+ */
+public class JdbcWatchRepoTest {
+    private static final int USERS = 3;
+    private static final int MEDIA = 5;
+    private static final int OPERATIONS = 1500;
+    private static final String[] SOURCES = {"MAL", "TMDB", null};
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void matchesFileWatchRepoUnderRandomOperations() {
+        FileWatchRepo file = new FileWatchRepo(new File(folder.getRoot(), "watch.csv").getPath());
+        JdbcWatchRepo jdbc = new JdbcWatchRepo("jdbc:h2:mem:watchParity;DB_CLOSE_DELAY=-1");
+        Random random = new Random(71);
+
+        for (int op = 0; op < OPERATIONS; op++) {
+            int choice = random.nextInt(10);
+            if (choice < 5) {
+                // Mostly new IDs, sometimes one already added
+                WatchEntry entry = entry("w" + random.nextInt(op + 1), random);
+                assertEquals(file.addWatchEntry(entry), jdbc.addWatchEntry(copy(entry)));
+            } else if (choice < 7) {
+                String watchId = "w" + random.nextInt(op + 1);
+                assertEquals(watchId, file.removeWatchEntry(watchId), jdbc.removeWatchEntry(watchId));
+            } else {
+                WatchEntry entry = entry("w" + random.nextInt(op + 1), random);
+                assertEquals(file.update(entry), jdbc.update(copy(entry)));
+            }
+
+            assertQueriesMatch(file, jdbc, random);
+        }
+    }
+
+    @Test
+    public void findsTheEarliestEntryForUserAndMedia() {
+        FileWatchRepo file = new FileWatchRepo(new File(folder.getRoot(), "order.csv").getPath());
+        JdbcWatchRepo jdbc = new JdbcWatchRepo("jdbc:h2:mem:watchOrder;DB_CLOSE_DELAY=-1");
+        for (WatchRepo repo : Arrays.<WatchRepo>asList(file, jdbc)) {
+            assertTrue(repo.addWatchEntry(new WatchEntry("a", "u", "5")));
+            assertTrue(repo.addWatchEntry(new WatchEntry("b", "u", "6")));
+            assertTrue(repo.addWatchEntry(new WatchEntry("c", "u", "5")));
+            assertFalse(repo.addWatchEntry(new WatchEntry("a", "u", "7")));
+            // An updated entry keeps its place in the add order
+            assertTrue(repo.update(new WatchEntry("a", "u", "5")));
+            assertEquals("a", repo.getWatchEntryByUserAndMedia("u", "5").get().getWatchId());
+            assertEquals(Arrays.asList("a", "b", "c"), watchIds(repo.getWatchEntriesByUser("u")));
+
+            assertTrue(repo.removeWatchEntry("a"));
+            assertEquals("c", repo.getWatchEntryByUserAndMedia("u", "5").get().getWatchId());
+            assertTrue(repo.update(new WatchEntry("b", "u", "5")));
+            assertEquals("b", repo.getWatchEntryByUserAndMedia("u", "5").get().getWatchId());
+            assertFalse(repo.getWatchEntryByUserAndMedia("u", "6").isPresent());
+        }
+    }
+
+    private static void assertQueriesMatch(WatchRepo file, WatchRepo jdbc, Random random) {
+        assertEquals(describe(file.getAll()), describe(jdbc.getAll()));
+        String userId = user(random);
+        assertEquals(describe(file.getWatchEntriesByUser(userId)), describe(jdbc.getWatchEntriesByUser(userId)));
+
+        String watchId = "w" + random.nextInt(OPERATIONS);
+        assertEquals(file.getWatchEntryById(watchId).map(JdbcWatchRepoTest::describe),
+                jdbc.getWatchEntryById(watchId).map(JdbcWatchRepoTest::describe));
+        String mediaId = media(random);
+        assertEquals(file.getWatchEntryByUserAndMedia(userId, mediaId).map(JdbcWatchRepoTest::describe),
+                jdbc.getWatchEntryByUserAndMedia(userId, mediaId).map(JdbcWatchRepoTest::describe));
+    }
+
+    private static List<String> describe(List<WatchEntry> entries) {
+        List<String> described = new ArrayList<>();
+        for (WatchEntry entry : entries) {
+            described.add(describe(entry));
+        }
+        return described;
+    }
+
+    /** Both repositories store a missing source as FILE */
+    private static String describe(WatchEntry entry) {
+        return entry.getWatchId() + "," + entry.getUserId() + "," + entry.getMediaId() + ","
+                + (entry.getMediaSource() != null ? entry.getMediaSource() : "FILE");
+    }
+
+    private static List<String> watchIds(List<WatchEntry> entries) {
+        List<String> ids = new ArrayList<>();
+        for (WatchEntry entry : entries) {
+            ids.add(entry.getWatchId());
+        }
+        return ids;
+    }
+
+    /** A separate instance, since FileWatchRepo keeps the one it is given */
+    private static WatchEntry copy(WatchEntry entry) {
+        WatchEntry copy = new WatchEntry(entry.getWatchId(), entry.getUserId(), entry.getMediaId());
+        copy.setMediaSource(entry.getMediaSource());
+        return copy;
+    }
+
+    private static WatchEntry entry(String watchId, Random random) {
+        WatchEntry entry = new WatchEntry(watchId, user(random), media(random));
+        entry.setMediaSource(SOURCES[random.nextInt(SOURCES.length)]);
+        return entry;
+    }
+
+    private static String user(Random random) {
+        return "user" + random.nextInt(USERS);
+    }
+
+    private static String media(Random random) {
+        return String.valueOf(random.nextInt(MEDIA));
+    }
+}
@@ -0,0 +1,78 @@
+package com.bakorz.repo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.bakorz.model.Movie;
+import java.io.File;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks that LazyFileMediaRepo refuses records too long for the 24-bit
+ * length of its index entries, both when saving and when indexing an existing
+ * file, instead of storing a truncated length that reads back garbage.
+ */
+public class LazyFileMediaRepoTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void refusesToSaveRecordsTooLongToIndex() throws Exception {
+        File file = new File(folder.getRoot(), "media.csv");
+        LazyFileMediaRepo repo = new LazyFileMediaRepo(file.getPath(), 10);
+        assertTrue(repo.save(movie("small", "https://example.org/small.jpg")));
+        assertFalse(repo.save(movie("huge", longUrl())));
+        assertEquals(1, repo.saveAll(Arrays.asList(movie("huge", longUrl()), movie("other", "x"))));
+
+        assertFalse(repo.getById("huge").isPresent());
+        assertEquals("https://example.org/small.jpg", repo.getById("small").get().getPosterUrl());
+
+        LazyFileMediaRepo reopened = new LazyFileMediaRepo(file.getPath(), 10);
+        assertEquals(new HashSet<>(Arrays.asList("small", "other")), ids(reopened));
+        assertTrue(file.length() < LazyFileMediaRepo.MAX_RECORD_LENGTH);
+    }
+
+    @Test
+    public void skipsRecordsTooLongToIndexWhenOpening() throws Exception {
+        File file = new File(folder.getRoot(), "media.csv");
+        try (Writer out = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            out.write(MediaCsvFormat.HEADER + "\n");
+            out.write(MediaCsvFormat.format("before", movie("before", "a"), true) + "\n");
+            out.write(MediaCsvFormat.format("huge", movie("huge", longUrl()), true) + "\n");
+            out.write(MediaCsvFormat.format("after", movie("after", "b"), true) + "\n");
+        }
+
+        LazyFileMediaRepo repo = new LazyFileMediaRepo(file.getPath(), 10);
+        assertEquals(new HashSet<>(Arrays.asList("before", "after")), ids(repo));
+        assertEquals("b", repo.getById("after").get().getPosterUrl());
+        assertFalse(repo.getById("huge").isPresent());
+    }
+
+    private static Set<String> ids(LazyFileMediaRepo repo) {
+        Set<String> ids = new HashSet<>();
+        repo.getAll().forEach(item -> ids.add(item.getId()));
+        return ids;
+    }
+
+    /** A field that makes its record one byte longer than an index entry allows */
+    private static String longUrl() {
+        char[] url = new char[LazyFileMediaRepo.MAX_RECORD_LENGTH + 1];
+        Arrays.fill(url, 'x');
+        return new String(url);
+    }
+
+    private static Movie movie(String id, String posterUrl) {
+        Movie movie = new Movie();
+        movie.setId(id);
+        movie.setTitle("Movie " + id);
+        movie.setPosterUrl(posterUrl);
+        return movie;
+    }
+}
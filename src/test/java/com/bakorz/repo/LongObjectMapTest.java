@@ -0,0 +1,56 @@
+package com.bakorz.repo;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.*;
+import org.junit.Test;
+
+/**
+ * Checks LongObjectMap against a HashMap under random puts and removes over a
+ * small key space, so probe runs collide, wrap and are shifted back often.
+ */
+public class LongObjectMapTest {
+    private static final int OPERATIONS = 200_000;
+
+    @Test
+    public void matchesHashMap() {
+        Random random = new Random(3);
+        LongObjectMap<String> map = new LongObjectMap<>();
+        Map<Long, String> expected = new HashMap<>();
+
+        for (int i = 0; i < OPERATIONS; i++) {
+            // Same IDs under different sources differ only in the high bits
+            long key = SourceKey.values()[random.nextInt(3)].pack(random.nextInt(2000));
+            switch (random.nextInt(3)) {
+                case 0:
+                    assertEquals(expected.put(key, "v" + i), map.put(key, "v" + i));
+                    break;
+                case 1:
+                    assertEquals(expected.remove(key), map.remove(key));
+                    break;
+                default:
+                    assertEquals(expected.get(key), map.get(key));
+                    break;
+            }
+            assertEquals(expected.size(), map.size());
+        }
+
+        for (Map.Entry<Long, String> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), map.get(entry.getKey()));
+        }
+        map.clear();
+        assertEquals(0, map.size());
+        assertEquals(null, map.get(SourceKey.MAL.pack(1)));
+    }
+
+    @Test
+    public void parsesOnlyCanonicalKeys() {
+        assertEquals(SourceKey.MAL.pack(123), SourceKey.parse("MAL:123"));
+        assertEquals(SourceKey.TMDB_TV.pack(0), SourceKey.parse("TMDB_TV:0"));
+        assertEquals(SourceKey.TMDB_MOVIE.pack(Integer.MAX_VALUE), SourceKey.parse("TMDB_MOVIE:2147483647"));
+        for (String key : Arrays.asList("MAL:0123", "MAL:-1", "MAL:", "MAL:12a", "MAL:2147483648", "FILE:1",
+                "TMDB:5", "123", "MALX:1")) {
+            assertEquals(key, SourceKey.NONE, SourceKey.parse(key));
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.bakorz.repo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.bakorz.model.Anime;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import org.junit.Test;
+
+/**
+ * Checks the streaming decoders of MalMediaRepo against fixture responses
+ * shaped like the MAL API's: fields are mapped to Anime, null fields leave
+ * the defaults, and unknown fields and nested objects are skipped, including
+ * nested objects with fields named like the ones that are read.
+ */
+public class MalMediaRepoTest {
+    @Test
+    public void decodesAnimeList() throws IOException {
+        List<Anime> anime;
+        try (InputStream body = fixture("mal-anime-list.json")) {
+            anime = MalMediaRepo.decodeAnimeList(body);
+        }
+        assertEquals(2, anime.size());
+
+        Anime fma = anime.get(0);
+        assertEquals("5114", fma.getId());
+        assertEquals(5114, fma.getMalId());
+        assertEquals("Fullmetal Alchemist: Brotherhood", fma.getTitle());
+        assertEquals("After a horrific alchemy experiment goes wrong...\n\n"
+                + "In their quest for the Philosopher's Stone...", fma.getDescription());
+        assertEquals(9.1, fma.getRating(), 0);
+        assertEquals(9.1, fma.getMalScore(), 0);
+        assertEquals(1, fma.getMalRank());
+        assertEquals(3, fma.getMalPopularity());
+        assertEquals("https://cdn.myanimelist.net/images/anime/1208/94745.jpg", fma.getPosterUrl());
+        assertEquals("https://cdn.myanimelist.net/images/anime/1208/94745l.jpg", fma.getBackdropUrl());
+        // A genre with a null name is left out
+        assertEquals(Arrays.asList("Action", "Adventure"), fma.getGenres());
+        assertEquals("TV", fma.getAnimeType());
+        assertEquals("finished_airing", fma.getStatus());
+        assertEquals(64, fma.getEpisodes());
+        assertEquals("2009-04-05", fma.getReleaseDate());
+        assertEquals("2009-04-05", fma.getAired());
+        // The nested "extra" object of the season and the top-level season are skipped
+        assertEquals("spring", fma.getSeason());
+        assertEquals(2009, fma.getYear());
+        assertEquals("manga", fma.getSource());
+        assertEquals(Collections.singletonList("Bones"), fma.getStudios());
+
+        Anime hxh = anime.get(1);
+        assertEquals("11061", hxh.getId());
+        assertEquals("Hunter x Hunter (2011)", hxh.getTitle());
+        assertNull(hxh.getDescription());
+        assertNull(hxh.getPosterUrl());
+        assertEquals(0, hxh.getRating(), 0);
+        assertEquals(0, hxh.getMalRank());
+        assertTrue(hxh.getGenres().isEmpty());
+        assertEquals(148, hxh.getEpisodes());
+        assertNull(hxh.getSeason());
+        assertNull(hxh.getSource());
+        assertNull(hxh.getStudios());
+    }
+
+    @Test
+    public void decodesSingleAnime() throws IOException {
+        Anime anime;
+        try (InputStream body = fixture("mal-anime.json")) {
+            anime = MalMediaRepo.decodeAnime(body);
+        }
+        // The recommended anime's id and title must not replace these
+        assertEquals("5114", anime.getId());
+        assertEquals("Fullmetal Alchemist: Brotherhood", anime.getTitle());
+        assertEquals("https://cdn.myanimelist.net/images/anime/1208/94745.jpg", anime.getPosterUrl());
+        assertNull(anime.getBackdropUrl());
+        assertEquals(Collections.singletonList("Action"), anime.getGenres());
+        // Seconds per episode, rounded down to minutes
+        assertEquals(24, anime.getDuration());
+        assertEquals("finished_airing", anime.getStatus());
+    }
+
+    @Test
+    public void decodesMissingOrNullDataAsEmpty() throws IOException {
+        assertTrue(MalMediaRepo.decodeAnimeList(json("{\"paging\":{}}")).isEmpty());
+        assertTrue(MalMediaRepo.decodeAnimeList(json("{\"data\":null}")).isEmpty());
+        assertTrue(MalMediaRepo.decodeAnimeList(json("{\"data\":[]}")).isEmpty());
+        // An entry without a node contributes nothing
+        assertTrue(MalMediaRepo.decodeAnimeList(json("{\"data\":[{\"ranking\":{\"rank\":1}}]}")).isEmpty());
+    }
+
+    private static InputStream fixture(String name) {
+        InputStream body = MalMediaRepoTest.class.getResourceAsStream(name);
+        if (body == null) {
+            throw new IllegalStateException("Missing fixture " + name);
+        }
+        return body;
+    }
+
+    private static InputStream json(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
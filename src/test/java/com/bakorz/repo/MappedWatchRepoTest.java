@@ -0,0 +1,220 @@
+package com.bakorz.repo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.bakorz.model.WatchEntry;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks that MappedWatchRepo agrees with a model map under random operations,
+ * reloads the same entries after reopening, and recovers the states a crash
+ * can leave behind: a slot written but not yet counted, a reused slot whose
+ * flag was not yet set, and a torn dictionary line.
+ */
+public class MappedWatchRepoTest {
+    private static final int USERS = 5;
+    private static final int MEDIA = 8;
+    private static final int OPERATIONS = 3000;
+
+    /** Offset of the slot count in the slot file header */
+    private static final int SLOT_COUNT_OFFSET = 8;
+
+    /** Size of the slot file header */
+    private static final int HEADER_SIZE = 16;
+
+    /** Size of one slot */
+    private static final int SLOT_SIZE = 20;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void agreesWithModelAndAfterReopen() throws Exception {
+        File dir = folder.getRoot();
+        // Force every write, so the ordered forces run as well
+        MappedWatchRepo repo = new MappedWatchRepo(slotFile(dir).getPath(), dictionaryFile(dir).getPath(),
+                new FsyncBatcher(DurabilityPolicy.EVERY_WRITE, 0));
+        Map<String, String> model = new HashMap<>();
+        Random random = new Random(3);
+        List<String> watchIds = new ArrayList<>();
+
+        for (int op = 0; op < OPERATIONS; op++) {
+            int choice = random.nextInt(10);
+            if (choice < 5 || watchIds.isEmpty()) {
+                WatchEntry entry = entry("w" + op, "user" + random.nextInt(USERS), String.valueOf(random.nextInt(MEDIA)));
+                assertTrue(repo.addWatchEntry(entry));
+                assertFalse(repo.addWatchEntry(entry));
+                model.put(entry.getWatchId(), describe(entry));
+                watchIds.add(entry.getWatchId());
+            } else if (choice < 8) {
+                String watchId = watchIds.remove(random.nextInt(watchIds.size()));
+                assertTrue(repo.removeWatchEntry(watchId));
+                assertFalse(repo.removeWatchEntry(watchId));
+                model.remove(watchId);
+            } else {
+                String watchId = watchIds.get(random.nextInt(watchIds.size()));
+                WatchEntry entry = entry(watchId, "user" + random.nextInt(USERS), String.valueOf(random.nextInt(MEDIA)));
+                assertTrue(repo.update(entry));
+                model.put(watchId, describe(entry));
+            }
+
+            if (op % 500 == 0) {
+                assertMatches(model, repo);
+            }
+        }
+
+        assertMatches(model, repo);
+        assertMatches(model, open(dir));
+    }
+
+    @Test
+    public void slotWrittenButNotCountedIsIgnored() throws Exception {
+        File dir = folder.newFolder("source");
+        MappedWatchRepo repo = open(dir);
+        for (int i = 0; i < 10; i++) {
+            repo.addWatchEntry(entry("w" + i, "user" + i % 3, String.valueOf(i)));
+        }
+
+        // A crash after the last slot was written but before the count was raised
+        File crashed = copy(dir, "uncounted");
+        try (RandomAccessFile slots = new RandomAccessFile(slotFile(crashed), "rw")) {
+            slots.seek(SLOT_COUNT_OFFSET);
+            int count = slots.readInt();
+            slots.seek(SLOT_COUNT_OFFSET);
+            slots.writeInt(count - 1);
+        }
+
+        MappedWatchRepo recovered = open(crashed);
+        assertEquals(9, recovered.getAll().size());
+        assertFalse(recovered.getWatchEntryById("w9").isPresent());
+        assertTrue(recovered.addWatchEntry(entry("w10", "user1", "10")));
+        assertEquals(10, open(crashed).getAll().size());
+        assertTrue(open(crashed).getWatchEntryById("w10").isPresent());
+    }
+
+    @Test
+    public void reusedSlotWithoutFlagDoesNotReviveTheOldEntry() throws Exception {
+        File dir = folder.newFolder("source");
+        MappedWatchRepo repo = open(dir);
+        for (int i = 0; i < 5; i++) {
+            repo.addWatchEntry(entry("w" + i, "user0", String.valueOf(i)));
+        }
+        repo.removeWatchEntry("w2");
+        // Reuses the slot of w2
+        repo.addWatchEntry(entry("w5", "user1", "5"));
+
+        // A crash after the fields of w5 were written but before its flag was
+        File crashed = copy(dir, "unflagged");
+        try (RandomAccessFile slots = new RandomAccessFile(slotFile(crashed), "rw")) {
+            slots.seek(HEADER_SIZE + 2 * SLOT_SIZE);
+            slots.writeInt(0);
+        }
+
+        MappedWatchRepo recovered = open(crashed);
+        Set<String> ids = new HashSet<>();
+        for (WatchEntry entry : recovered.getAll()) {
+            ids.add(entry.getWatchId());
+        }
+        assertEquals(new HashSet<>(Arrays.asList("w0", "w1", "w3", "w4")), ids);
+        assertEquals(4, recovered.getWatchEntriesByUser("user0").size());
+        assertTrue(recovered.getWatchEntriesByUser("user1").isEmpty());
+    }
+
+    @Test
+    public void tornDictionaryFreesSlotsThatReferToIt() throws Exception {
+        File dir = folder.newFolder("source");
+        MappedWatchRepo repo = open(dir);
+        for (int i = 0; i < 6; i++) {
+            repo.addWatchEntry(entry("w" + i, "user0", String.valueOf(i)));
+        }
+
+        // A crash while the dictionary line of the media ID "5" was being written
+        File crashed = copy(dir, "torn");
+        try (RandomAccessFile dictionary = new RandomAccessFile(dictionaryFile(crashed), "rw")) {
+            dictionary.setLength(dictionary.length() - 1);
+        }
+
+        MappedWatchRepo recovered = open(crashed);
+        assertEquals(5, recovered.getAll().size());
+        assertFalse(recovered.getWatchEntryById("w5").isPresent());
+
+        assertTrue(recovered.addWatchEntry(entry("w6", "user2", "new-media")));
+        MappedWatchRepo reopened = open(crashed);
+        assertEquals(6, reopened.getAll().size());
+        assertEquals("new-media", reopened.getWatchEntryById("w6").get().getMediaId());
+        assertEquals("4", reopened.getWatchEntryByUserAndMedia("user0", "4").get().getMediaId());
+    }
+
+    private static void assertMatches(Map<String, String> model, MappedWatchRepo repo) {
+        Map<String, String> stored = new HashMap<>();
+        List<WatchEntry> all = repo.getAll();
+        for (WatchEntry entry : all) {
+            stored.put(entry.getWatchId(), describe(entry));
+            assertEquals(describe(entry), describe(repo.getWatchEntryById(entry.getWatchId()).get()));
+        }
+        assertEquals(model, stored);
+
+        for (int u = 0; u < USERS; u++) {
+            String userId = "user" + u;
+            List<String> scanned = new ArrayList<>();
+            for (WatchEntry entry : all) {
+                if (entry.getUserId().equals(userId)) {
+                    scanned.add(describe(entry));
+                }
+            }
+            List<String> indexed = new ArrayList<>();
+            for (WatchEntry entry : repo.getWatchEntriesByUser(userId)) {
+                indexed.add(describe(entry));
+            }
+            assertEquals(scanned, indexed);
+
+            for (int m = 0; m < MEDIA; m++) {
+                String mediaId = String.valueOf(m);
+                boolean present = false;
+                for (WatchEntry entry : all) {
+                    present |= entry.getUserId().equals(userId) && entry.getMediaId().equals(mediaId);
+                }
+                assertEquals(present, repo.getWatchEntryByUserAndMedia(userId, mediaId).isPresent());
+            }
+        }
+    }
+
+    private static String describe(WatchEntry entry) {
+        return entry.getWatchId() + "," + entry.getUserId() + "," + entry.getMediaId() + "," + entry.getMediaSource();
+    }
+
+    private static WatchEntry entry(String watchId, String userId, String mediaId) {
+        WatchEntry entry = new WatchEntry(watchId, userId, mediaId);
+        entry.setMediaSource(mediaId.hashCode() % 2 == 0 ? "MAL" : "TMDB");
+        return entry;
+    }
+
+    private static MappedWatchRepo open(File dir) {
+        return new MappedWatchRepo(slotFile(dir).getPath(), dictionaryFile(dir).getPath());
+    }
+
+    private File copy(File dir, String name) throws IOException {
+        File target = folder.newFolder(name);
+        Files.copy(slotFile(dir).toPath(), slotFile(target).toPath(), StandardCopyOption.REPLACE_EXISTING);
+        Files.copy(dictionaryFile(dir).toPath(), dictionaryFile(target).toPath(), StandardCopyOption.REPLACE_EXISTING);
+        return target;
+    }
+
+    private static File slotFile(File dir) {
+        return new File(dir, "watch.dat");
+    }
+
+    private static File dictionaryFile(File dir) {
+        return new File(dir, "watch.dict");
+    }
+}
@@ -0,0 +1,92 @@
+package com.bakorz.repo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.bakorz.model.*;
+import java.io.File;
+import java.nio.file.Path;
+import java.util.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks that FileMediaRepo reloads exactly what it flushed from its snapshot
+ * and delta segments, while background compactions merge segments under
+ * random saves, updates and deletes.
+ */
+public class MediaSegmentsTest {
+    private static final int ROUNDS = 60;
+    private static final int KEYS = 300;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void reloadsSnapshotPlusSegments() {
+        String mediaFile = new File(folder.getRoot(), "data/media.csv").getPath();
+        Path snapshot = new File(mediaFile).toPath();
+        Random random = new Random(5);
+        Map<String, String> expected = new HashMap<>();
+        FileMediaRepo repo = new FileMediaRepo(mediaFile);
+
+        for (int round = 0; round < ROUNDS; round++) {
+            for (int i = 0, changes = 1 + random.nextInt(40); i < changes; i++) {
+                String key = SourceKey.TMDB_MOVIE.format(random.nextInt(KEYS));
+                if (random.nextInt(4) == 0) {
+                    assertEquals(expected.remove(key) != null, repo.delete(key));
+                } else {
+                    String title = "Movie " + key + " round " + round;
+                    repo.save(movie(key, title));
+                    expected.put(key, title);
+                }
+            }
+            repo.flush();
+
+            if (random.nextInt(10) == 0) {
+                repo.compact();
+                assertEquals(0, MediaSegments.list(snapshot).size());
+                repo = new FileMediaRepo(mediaFile);
+            }
+        }
+
+        repo.compact();
+        assertEquals(expected, titles(new FileMediaRepo(mediaFile)));
+        assertEquals(expected, titles(new LazyFileMediaRepo(mediaFile, 16)));
+    }
+
+    @Test
+    public void readersOfTheSnapshotMergeSegments() {
+        String mediaFile = new File(folder.getRoot(), "media.csv").getPath();
+        FileMediaRepo repo = new FileMediaRepo(mediaFile);
+        repo.save(movie("a", "A"));
+        repo.flush();
+        repo.save(movie("b", "B"));
+        repo.delete("a");
+        repo.flush();
+
+        Map<String, String> expected = Collections.singletonMap("b", "B");
+        assertEquals(expected, titles(new FileMediaRepo(mediaFile)));
+        assertEquals(expected, titles(new OffHeapMediaRepo(mediaFile)));
+        assertEquals(0, MediaSegments.list(new File(mediaFile).toPath()).size());
+    }
+
+    private static Map<String, String> titles(MediaRepo repo) {
+        Map<String, String> titles = new HashMap<>();
+        for (MediaItem item : repo.getAll()) {
+            titles.put(item.getId(), item.getTitle());
+        }
+        return titles;
+    }
+
+    private static Movie movie(String id, String title) {
+        Movie movie = new Movie();
+        movie.setId(id);
+        movie.setTitle(title);
+        movie.setDescription("Description of " + title);
+        movie.setGenres(Arrays.asList("Drama"));
+        movie.setReleaseDate("2001-01-01");
+        return movie;
+    }
+}
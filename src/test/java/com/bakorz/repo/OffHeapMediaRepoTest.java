@@ -0,0 +1,242 @@
+package com.bakorz.repo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.bakorz.model.*;
+import java.io.File;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks that OffHeapMediaRepo answers every query like FileMediaRepo under
+ * random saves, updates and deletes, with slabs small enough that records
+ * span many slabs and the catalog is compacted repeatedly. Also checks that
+ * views read their lazy fields correctly when first accessed from several
+ * threads at once.
+ */
+public class OffHeapMediaRepoTest {
+    private static final int OPERATIONS = 1500;
+    private static final int SLAB_SIZE = 4096;
+    private static final List<String> GENRES = Arrays.asList("Action", "Drama", "Comedy", "Horror", "Sci-Fi");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void queriesAgreeWithFileRepoUnderRandomOperations() throws Exception {
+        String offHeapFile = new File(folder.getRoot(), "offheap/media.csv").getPath();
+        OffHeapMediaRepo offHeap = new OffHeapMediaRepo(offHeapFile, SLAB_SIZE);
+        FileMediaRepo reference = new FileMediaRepo(new File(folder.getRoot(), "file/media.csv").getPath());
+        Random random = new Random(17);
+        List<String> ids = new ArrayList<>();
+
+        for (int op = 0; op < OPERATIONS; op++) {
+            int choice = random.nextInt(10);
+            if (choice < 5 || ids.isEmpty()) {
+                MediaItem item = randomItem(random, "i" + op);
+                assertTrue(offHeap.save(item));
+                reference.save(item);
+                ids.add(item.getId());
+            } else if (choice < 8) {
+                MediaItem item = randomItem(random, ids.get(random.nextInt(ids.size())));
+                assertTrue(offHeap.update(item));
+                assertTrue(reference.update(item));
+            } else {
+                String id = ids.remove(random.nextInt(ids.size()));
+                assertTrue(offHeap.delete(id));
+                assertTrue(reference.delete(id));
+            }
+
+            if (op % 50 == 0) {
+                assertSameAnswers(reference, offHeap, random);
+            }
+        }
+
+        assertSameAnswers(reference, offHeap, random);
+        assertSameAnswers(reference, new OffHeapMediaRepo(offHeapFile, SLAB_SIZE), random);
+    }
+
+    @Test
+    public void viewsAreSnapshotsUntilUpdated() throws Exception {
+        OffHeapMediaRepo repo = new OffHeapMediaRepo(new File(folder.getRoot(), "media.csv").getPath(), SLAB_SIZE);
+        Random random = new Random(3);
+        MediaItem original = randomItem(random, "a");
+        repo.save(original);
+
+        MediaItem view = repo.getById("a").get();
+        assertEquals(MediaCsvFormat.format("a", original), MediaCsvFormat.format("a", view));
+        view.setDescription("Changed");
+        view.setRating(-1);
+        assertEquals(original.getDescription(), repo.getById("a").get().getDescription());
+
+        assertTrue(repo.update(view));
+        assertEquals("Changed", repo.getById("a").get().getDescription());
+        assertEquals(-1, repo.getTopRated(1).get(0).getRating(), 0);
+
+        // Views of removed records stay readable after the catalog moves on
+        MediaItem removed = repo.getById("a").get();
+        repo.delete("a");
+        for (int i = 0; i < 200; i++) {
+            repo.save(randomItem(random, "b" + i));
+            repo.delete("b" + i);
+        }
+        assertEquals("Changed", removed.getDescription());
+        assertFalse(repo.getById("a").isPresent());
+    }
+
+    @Test
+    public void viewsMaterializeOnceAcrossThreads() throws Exception {
+        OffHeapMediaRepo repo = new OffHeapMediaRepo(new File(folder.getRoot(), "shared.csv").getPath(), SLAB_SIZE);
+        Random random = new Random(29);
+        List<MediaItem> originals = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            MediaItem item = randomItem(random, "s" + i);
+            repo.save(item);
+            originals.add(item);
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            for (int round = 0; round < 20; round++) {
+                // Every thread reads the lazy fields of the same fresh views at once
+                List<MediaItem> views = repo.getAll();
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<List<String>>> reads = new ArrayList<>();
+                for (int t = 0; t < 8; t++) {
+                    reads.add(pool.submit(() -> {
+                        start.await();
+                        List<String> records = new ArrayList<>();
+                        for (MediaItem view : views) {
+                            records.add(view.getDescription() + "|" + view.getPosterUrl() + "|"
+                                    + view.getBackdropUrl());
+                        }
+                        return records;
+                    }));
+                }
+                start.countDown();
+
+                Map<String, String> expected = new HashMap<>();
+                for (MediaItem item : originals) {
+                    expected.put(item.getId(), item.getDescription() + "|" + item.getPosterUrl() + "|"
+                            + item.getBackdropUrl());
+                }
+                for (Future<List<String>> read : reads) {
+                    List<String> records = read.get(10, TimeUnit.SECONDS);
+                    for (int i = 0; i < views.size(); i++) {
+                        assertEquals(expected.get(views.get(i).getId()), records.get(i));
+                    }
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static void assertSameAnswers(MediaRepo expected, MediaRepo actual, Random random) {
+        assertEquals(records(expected.getAll()), records(actual.getAll()));
+
+        String query = "title " + random.nextInt(10);
+        assertEquals(records(expected.searchByTitle(query)), records(actual.searchByTitle(query)));
+
+        String genre = GENRES.get(random.nextInt(GENRES.size()));
+        assertEquals(records(expected.getByGenre(genre.toUpperCase())), records(actual.getByGenre(genre)));
+        List<String> allOf = Collections.singletonList(GENRES.get(random.nextInt(GENRES.size())));
+        List<String> anyOf = Arrays.asList(GENRES.get(random.nextInt(GENRES.size())), "Missing");
+        List<String> noneOf = Collections.singletonList(GENRES.get(random.nextInt(GENRES.size())));
+        assertEquals(records(expected.getByGenres(allOf, anyOf, noneOf)),
+                records(actual.getByGenres(allOf, anyOf, noneOf)));
+
+        // Ties may be broken differently, so compare the ranked values
+        List<Double> expectedRatings = new ArrayList<>();
+        expected.getTopRated(20).forEach(item -> expectedRatings.add(item.getRating()));
+        List<Double> actualRatings = new ArrayList<>();
+        actual.getTopRated(20).forEach(item -> actualRatings.add(item.getRating()));
+        assertEquals(expectedRatings, actualRatings);
+
+        List<Long> expectedDays = new ArrayList<>();
+        expected.getLatestMovies(15).forEach(item -> expectedDays.add(RankingIndex.epochDay(item.getReleaseDate())));
+        List<Long> actualDays = new ArrayList<>();
+        actual.getLatestMovies(15).forEach(item -> actualDays.add(RankingIndex.epochDay(item.getReleaseDate())));
+        assertEquals(expectedDays, actualDays);
+        assertEquals(expected.getLatestTVShows(Integer.MAX_VALUE).size(),
+                actual.getLatestTVShows(Integer.MAX_VALUE).size());
+
+        LocalDate from = LocalDate.of(2000 + random.nextInt(10), 1, 1);
+        LocalDate to = from.plusYears(3);
+        assertEquals(records(expected.getReleasedBetween(MediaItem.class, from, to)),
+                records(actual.getReleasedBetween(MediaItem.class, from, to)));
+        assertEquals(records(expected.getReleasedBetween(Anime.class, from, to)),
+                records(actual.getReleasedBetween(Anime.class, from, to)));
+
+        for (MediaItem item : expected.getAll()) {
+            assertEquals(MediaCsvFormat.format(item.getId(), item),
+                    MediaCsvFormat.format(item.getId(), actual.getById(item.getId()).get()));
+            assertEquals(item instanceof Movie, actual.getMovieById(item.getId()).isPresent());
+            assertEquals(item instanceof TVShow, actual.getTVShowById(item.getId()).isPresent());
+            assertEquals(item instanceof Anime, actual.getAnimeById(item.getId()).isPresent());
+        }
+    }
+
+    private static Set<String> records(List<? extends MediaItem> items) {
+        Set<String> records = new HashSet<>();
+        for (MediaItem item : items) {
+            records.add(MediaCsvFormat.format(item.getId(), item));
+        }
+        return records;
+    }
+
+    private static MediaItem randomItem(Random random, String id) {
+        MediaItem item;
+        int type = random.nextInt(3);
+        if (type == 0) {
+            Movie movie = new Movie();
+            movie.setRuntime(80 + random.nextInt(100));
+            movie.setDirector(random.nextBoolean() ? "Director " + random.nextInt(5) : null);
+            movie.setImdbId("tt" + random.nextInt(100000));
+            movie.setBudget(random.nextInt(1000) * 100000L);
+            movie.setRevenue(random.nextInt(1000) * 200000L);
+            item = movie;
+        } else if (type == 1) {
+            TVShow tvShow = new TVShow();
+            tvShow.setNumberOfSeasons(1 + random.nextInt(9));
+            tvShow.setNumberOfEpisodes(10 + random.nextInt(100));
+            tvShow.setStatus(random.nextBoolean() ? "Ended" : "Returning Series");
+            tvShow.setNetworks(Arrays.asList("Network " + random.nextInt(4)));
+            tvShow.setCreators(Arrays.asList("Creator " + random.nextInt(4), "Créatrice"));
+            tvShow.setTmdbId(String.valueOf(random.nextInt(100000)));
+            item = tvShow;
+        } else {
+            Anime anime = new Anime();
+            anime.setAnimeType("TV");
+            anime.setEpisodes(12 + random.nextInt(40));
+            anime.setStudios(Arrays.asList("Studio " + random.nextInt(6)));
+            anime.setMalId(random.nextInt(50000));
+            anime.setMalScore(random.nextInt(100) / 10.0);
+            anime.setSeason(random.nextBoolean() ? "spring" : "fall");
+            anime.setYear(2000 + random.nextInt(25));
+            item = anime;
+        }
+
+        item.setId(id);
+        item.setTitle("Title " + random.nextInt(100) + (random.nextBoolean() ? " Ünïcode" : ""));
+        item.setDescription(random.nextBoolean() ? "A \"quoted\", long description " + random.nextInt() : null);
+        List<String> genres = new ArrayList<>();
+        for (String genre : GENRES) {
+            if (random.nextInt(3) == 0) {
+                genres.add(genre);
+            }
+        }
+        item.setGenres(genres);
+        item.setRating(random.nextInt(100) / 10.0);
+        item.setReleaseDate(random.nextInt(5) == 0 ? null
+                : LocalDate.of(1995 + random.nextInt(30), 1 + random.nextInt(12), 1 + random.nextInt(28)).toString());
+        item.setPosterUrl("https://example.com/p/" + random.nextInt(1000) + ".jpg");
+        return item;
+    }
+}
@@ -0,0 +1,75 @@
+package com.bakorz.repo;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks that ParallelCsvLoader parses a file split into many ranges exactly
+ * as a sequential reading would: quoted newlines, doubled quotes, CRLF line
+ * ends and records longer than a range stay whole, later duplicates win, and
+ * streaming yields the records in file order.
+ */
+public class ParallelCsvLoaderTest {
+    private static final int RECORDS = 20000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void parallelLoadMatchesSequentialReading() throws Exception {
+        Random random = new Random(41);
+        StringBuilder csv = new StringBuilder("id,text\r\n");
+        Map<String, String> expected = new LinkedHashMap<>();
+        List<String> order = new ArrayList<>();
+        for (int i = 0; i < RECORDS; i++) {
+            // Some IDs repeat, so later records must replace earlier ones
+            String id = "r" + random.nextInt(RECORDS * 3 / 4);
+            String text = text(random, i == RECORDS / 2 ? 300 * 1024 : random.nextInt(60));
+            csv.append(id).append(",\"").append(text.replace("\"", "\"\"")).append('"')
+                    .append(random.nextBoolean() ? "\r\n" : "\n");
+            expected.remove(id);
+            expected.put(id, text);
+            order.add(id + "=" + text);
+        }
+        File file = folder.newFile("records.csv");
+        Files.write(file.toPath(), csv.toString().getBytes(StandardCharsets.UTF_8));
+
+        ParallelCsvLoader<String[]> loader = new ParallelCsvLoader<>(record -> {
+            if (!record.next()) {
+                return null;
+            }
+            String id = record.string();
+            return record.next() ? new String[] {id, record.string()} : null;
+        }, record -> record[0]);
+
+        ParallelCsvLoader.Result<String[]> result = loader.load(file);
+        assertEquals("id,text", result.header);
+        assertEquals(0, result.skipped);
+        Map<String, String> loaded = new LinkedHashMap<>();
+        for (Map.Entry<String, String[]> entry : result.records.entrySet()) {
+            loaded.put(entry.getKey(), entry.getValue()[1]);
+        }
+        assertEquals(expected, loaded);
+
+        List<String> streamed = new ArrayList<>();
+        loader.stream(file, record -> streamed.add(record[0] + "=" + record[1]));
+        assertEquals(order, streamed);
+    }
+
+    /** Random text with commas, quotes, newlines and multi-byte characters */
+    private static String text(Random random, int length) {
+        String alphabet = "abcxyz ,\"\n\ré中";
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,166 @@
+package com.bakorz.repo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import com.bakorz.model.*;
+import java.time.LocalDate;
+import java.util.*;
+import org.junit.Test;
+
+/**
+ * Checks RankingIndex top-rated, latest and date-range queries against
+ * sorting a model of the indexed items, under random adds, re-indexing and
+ * removals with tied ratings, tied dates, partial and unparsable dates, and
+ * queries for one media type or all of them.
+ */
+public class RankingIndexTest {
+    private static final int ORDINALS = 200;
+    private static final int OPERATIONS = 5000;
+    private static final List<Class<? extends MediaItem>> QUERY_TYPES = Arrays.asList(
+            MediaItem.class, Movie.class, TVShow.class, Anime.class);
+
+    @Test
+    public void queriesMatchSortedModel() {
+        RankingIndex index = new RankingIndex();
+        MediaItem[] items = new MediaItem[ORDINALS];
+        Random random = new Random(21);
+
+        for (int op = 0; op < OPERATIONS; op++) {
+            int ordinal = random.nextInt(ORDINALS);
+            if (random.nextInt(5) == 0) {
+                index.remove(ordinal);
+                items[ordinal] = null;
+            } else {
+                items[ordinal] = item(random);
+                index.add(ordinal, items[ordinal]);
+            }
+
+            if (op % 25 == 0) {
+                Class<? extends MediaItem> type = QUERY_TYPES.get(random.nextInt(QUERY_TYPES.size()));
+                int limit = random.nextInt(30);
+                assertEquals(expectedTopRated(items, type, limit), collectTopRated(index, type, limit));
+                assertEquals(expectedLatest(items, type, limit), collectLatest(index, type, limit));
+
+                long from = LocalDate.of(1990 + random.nextInt(40), 1, 1).toEpochDay();
+                long to = from + random.nextInt(3000) - 200;
+                List<Integer> between = new ArrayList<>();
+                index.releasedBetween(type, from, to, between::add);
+                assertEquals(expectedBetween(items, type, from, to), between);
+            }
+        }
+
+        List<Integer> all = new ArrayList<>();
+        index.releasedBetween(MediaItem.class, Long.MIN_VALUE, Long.MAX_VALUE, all::add);
+        assertEquals(expectedBetween(items, MediaItem.class, Long.MIN_VALUE, Long.MAX_VALUE), all);
+    }
+
+    @Test
+    public void parsesPartialDates() {
+        assertEquals(Long.valueOf(LocalDate.of(2009, 4, 5).toEpochDay()), RankingIndex.epochDay("2009-04-05"));
+        assertEquals(Long.valueOf(LocalDate.of(2009, 4, 1).toEpochDay()), RankingIndex.epochDay("2009-04"));
+        assertEquals(Long.valueOf(LocalDate.of(2009, 1, 1).toEpochDay()), RankingIndex.epochDay(" 2009 "));
+        assertEquals(Long.valueOf(LocalDate.of(1950, 6, 30).toEpochDay()), RankingIndex.epochDay("1950-06-30"));
+        assertNull(RankingIndex.epochDay(null));
+        assertNull(RankingIndex.epochDay(""));
+        assertNull(RankingIndex.epochDay("2009-13-01"));
+        assertNull(RankingIndex.epochDay("unknown"));
+    }
+
+    private static List<Integer> collectTopRated(RankingIndex index, Class<? extends MediaItem> type, int limit) {
+        List<Integer> ordinals = new ArrayList<>();
+        index.topRated(type, limit, ordinals::add);
+        return ordinals;
+    }
+
+    private static List<Integer> collectLatest(RankingIndex index, Class<? extends MediaItem> type, int limit) {
+        List<Integer> ordinals = new ArrayList<>();
+        index.latest(type, limit, ordinals::add);
+        return ordinals;
+    }
+
+    private static List<Integer> live(MediaItem[] items, Class<? extends MediaItem> type) {
+        List<Integer> ordinals = new ArrayList<>();
+        for (int ordinal = 0; ordinal < items.length; ordinal++) {
+            if (items[ordinal] != null && type.isInstance(items[ordinal])) {
+                ordinals.add(ordinal);
+            }
+        }
+        return ordinals;
+    }
+
+    /** Highest rating first, ties by ascending ordinal */
+    private static List<Integer> expectedTopRated(MediaItem[] items, Class<? extends MediaItem> type, int limit) {
+        List<Integer> ordinals = live(items, type);
+        ordinals.sort((a, b) -> {
+            int byRating = Double.compare(items[b].getRating(), items[a].getRating());
+            return byRating != 0 ? byRating : Integer.compare(a, b);
+        });
+        return ordinals.subList(0, Math.min(limit, ordinals.size()));
+    }
+
+    /** Latest date first, ties by descending ordinal; undated items left out */
+    private static List<Integer> expectedLatest(MediaItem[] items, Class<? extends MediaItem> type, int limit) {
+        List<Integer> ordinals = dated(items, type, Long.MIN_VALUE, Long.MAX_VALUE);
+        Collections.reverse(ordinals);
+        return ordinals.subList(0, Math.min(limit, ordinals.size()));
+    }
+
+    private static List<Integer> expectedBetween(MediaItem[] items, Class<? extends MediaItem> type, long from,
+            long to) {
+        return dated(items, type, from, to);
+    }
+
+    /** Items dated within the range, earliest first, ties by ascending ordinal */
+    private static List<Integer> dated(MediaItem[] items, Class<? extends MediaItem> type, long from, long to) {
+        List<Integer> ordinals = new ArrayList<>();
+        for (int ordinal : live(items, type)) {
+            Long day = RankingIndex.epochDay(items[ordinal].getReleaseDate());
+            if (day != null && day >= from && day <= to) {
+                ordinals.add(ordinal);
+            }
+        }
+        ordinals.sort((a, b) -> {
+            int byDay = Long.compare(RankingIndex.epochDay(items[a].getReleaseDate()),
+                    RankingIndex.epochDay(items[b].getReleaseDate()));
+            return byDay != 0 ? byDay : Integer.compare(a, b);
+        });
+        return ordinals;
+    }
+
+    private static MediaItem item(Random random) {
+        MediaItem item;
+        switch (random.nextInt(3)) {
+            case 0:
+                item = new Movie();
+                break;
+            case 1:
+                item = new TVShow();
+                break;
+            default:
+                item = new Anime();
+                break;
+        }
+        // Few distinct values, so ratings and dates tie often
+        item.setRating(random.nextInt(21) / 2.0);
+        int year = 1990 + random.nextInt(40);
+        switch (random.nextInt(6)) {
+            case 0:
+                item.setReleaseDate(null);
+                break;
+            case 1:
+                item.setReleaseDate("TBA");
+                break;
+            case 2:
+                item.setReleaseDate(String.valueOf(year));
+                break;
+            case 3:
+                item.setReleaseDate(String.format("%d-%02d", year, 1 + random.nextInt(12)));
+                break;
+            default:
+                item.setReleaseDate(String.format("%d-%02d-%02d", year, 1 + random.nextInt(12), 1 + random.nextInt(28)));
+                break;
+        }
+        return item;
+    }
+}
@@ -0,0 +1,148 @@
+package com.bakorz.repo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.bakorz.model.Movie;
+import com.bakorz.model.TVShow;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import org.junit.Test;
+
+/**
+ * Checks the streaming decoders of TmdbMediaRepo against fixture responses
+ * shaped like the TMDB API's: movie and TV show details and result pages are
+ * mapped to Movie and TVShow, null and empty fields leave the defaults, and
+ * unknown fields and nested objects are skipped, including collections,
+ * episodes and seasons with names, overviews and images of their own.
+ */
+public class TmdbMediaRepoTest {
+    @Test
+    public void decodesMovieDetails() throws IOException {
+        Movie movie;
+        try (InputStream body = fixture("tmdb-movie.json")) {
+            movie = TmdbMediaRepo.decodeMovie(body);
+        }
+        assertEquals("603", movie.getId());
+        assertEquals("603", movie.getTmdbId());
+        assertEquals("The Matrix", movie.getTitle());
+        assertEquals("Set in the 22nd century, The Matrix tells the story of a computer hacker...",
+                movie.getDescription());
+        assertEquals(8.2, movie.getRating(), 0);
+        assertEquals("1999-03-31", movie.getReleaseDate());
+        assertEquals("https://image.tmdb.org/t/p/w500/f89U3ADr1oiB1s9GkdPOEpXUk5H.jpg", movie.getPosterUrl());
+        // The collection's backdrop must not stand in for the movie's null one
+        assertNull(movie.getBackdropUrl());
+        assertEquals(Arrays.asList("Action", "Science Fiction"), movie.getGenres());
+        assertEquals(136, movie.getRuntime());
+        assertEquals(63000000L, movie.getBudget());
+        assertEquals(463517383L, movie.getRevenue());
+        assertEquals("tt0133093", movie.getImdbId());
+    }
+
+    @Test
+    public void decodesTVShowDetails() throws IOException {
+        TVShow tvShow;
+        try (InputStream body = fixture("tmdb-tv.json")) {
+            tvShow = TmdbMediaRepo.decodeTVShow(body);
+        }
+        // Episodes and seasons have names and overviews of their own
+        assertEquals("1399", tvShow.getId());
+        assertEquals("Game of Thrones", tvShow.getTitle());
+        assertEquals("Seven noble families fight for control of the mythical land of Westeros.",
+                tvShow.getDescription());
+        assertEquals(8.4, tvShow.getRating(), 0);
+        assertEquals("2011-04-17", tvShow.getReleaseDate());
+        assertEquals("2011-04-17", tvShow.getFirstAirDate());
+        assertEquals("2019-05-19", tvShow.getLastAirDate());
+        assertEquals("https://image.tmdb.org/t/p/original/2OMB0ynKlyIenMJWI2Dy9IWT4c.jpg", tvShow.getBackdropUrl());
+        assertEquals(Arrays.asList("Sci-Fi & Fantasy", "Drama"), tvShow.getGenres());
+        assertEquals(8, tvShow.getNumberOfSeasons());
+        assertEquals(73, tvShow.getNumberOfEpisodes());
+        assertEquals("Ended", tvShow.getStatus());
+        // Only the first episode runtime is kept
+        assertEquals(60, tvShow.getEpisodeRuntime());
+        assertEquals(Collections.singletonList("HBO"), tvShow.getNetworks());
+        assertEquals(Arrays.asList("David Benioff", "D. B. Weiss"), tvShow.getCreators());
+    }
+
+    @Test
+    public void decodesResultPages() throws IOException {
+        List<Movie> movies;
+        try (InputStream body = fixture("tmdb-movie-results.json")) {
+            movies = TmdbMediaRepo.decodeMovieResults(body);
+        }
+        assertEquals(3, movies.size());
+        Movie dune = movies.get(0);
+        assertEquals("693134", dune.getId());
+        assertEquals("Dune: Part Two", dune.getTitle());
+        // Result pages carry genre IDs instead of names
+        assertEquals(Arrays.asList("Genre 878", "Genre 12"), dune.getGenres());
+        assertEquals("https://image.tmdb.org/t/p/original/xOMo8BRK7PfcJv9JCnx7s5hj0PX.jpg", dune.getBackdropUrl());
+        Movie untitled = movies.get(1);
+        assertEquals("", untitled.getTitle());
+        assertNull(untitled.getPosterUrl());
+        assertNull(untitled.getReleaseDate());
+        assertTrue(untitled.getGenres().isEmpty());
+        assertNull(movies.get(2).getDescription());
+
+        List<TVShow> tvShows;
+        try (InputStream body = fixture("tmdb-tv-results.json")) {
+            tvShows = TmdbMediaRepo.decodeTVShowResults(body);
+        }
+        assertEquals(2, tvShows.size());
+        assertEquals("Game of Thrones", tvShows.get(0).getTitle());
+        assertEquals(Arrays.asList("Genre 10765", "Genre 18", "Genre 10759"), tvShows.get(0).getGenres());
+        assertEquals("The Last of Us", tvShows.get(1).getTitle());
+        assertNull(tvShows.get(1).getFirstAirDate());
+        assertNull(tvShows.get(1).getLastAirDate());
+    }
+
+    @Test
+    public void latestMoviesSkipUntitledAndStopAtTheLimit() throws IOException {
+        List<Movie> latest;
+        try (InputStream body = fixture("tmdb-movie-results.json")) {
+            latest = TmdbMediaRepo.decodeLatestMovies(body, 10);
+        }
+        assertEquals(Arrays.asList("Dune: Part Two", "Kung Fu Panda 4"), titles(latest));
+        try (InputStream body = fixture("tmdb-movie-results.json")) {
+            latest = TmdbMediaRepo.decodeLatestMovies(body, 1);
+        }
+        assertEquals(Collections.singletonList("Dune: Part Two"), titles(latest));
+        try (InputStream body = fixture("tmdb-tv-results.json")) {
+            assertEquals(1, TmdbMediaRepo.decodeFirstTVShows(body, 1).size());
+        }
+    }
+
+    @Test
+    public void decodesMissingOrNullResultsAsEmpty() throws IOException {
+        assertTrue(TmdbMediaRepo.decodeMovieResults(json("{\"page\":1,\"total_pages\":0}")).isEmpty());
+        assertTrue(TmdbMediaRepo.decodeTVShowResults(json("{\"results\":null}")).isEmpty());
+        assertTrue(TmdbMediaRepo.decodeLatestMovies(json("{\"status_code\":7}"), 10).isEmpty());
+        assertTrue(TmdbMediaRepo.decodeFirstTVShows(json("{\"results\":[]}"), 10).isEmpty());
+    }
+
+    private static List<String> titles(List<Movie> movies) {
+        List<String> titles = new ArrayList<>();
+        for (Movie movie : movies) {
+            titles.add(movie.getTitle());
+        }
+        return titles;
+    }
+
+    private static InputStream fixture(String name) {
+        InputStream body = TmdbMediaRepoTest.class.getResourceAsStream(name);
+        if (body == null) {
+            throw new IllegalStateException("Missing fixture " + name);
+        }
+        return body;
+    }
+
+    private static InputStream json(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
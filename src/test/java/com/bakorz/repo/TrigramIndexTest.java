@@ -0,0 +1,122 @@
+package com.bakorz.repo;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import com.bakorz.model.Anime;
+import com.bakorz.model.MediaItem;
+import java.io.File;
+import java.util.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks TrigramIndex search against a scan of the titles under random adds,
+ * replacements and removals, with both title stores, for queries shorter and
+ * longer than a trigram; and FileMediaRepo title search against a scan of its
+ * items.
+ */
+public class TrigramIndexTest {
+    private static final int ORDINALS = 300;
+    private static final int OPERATIONS = 30000;
+
+    /** Few distinct characters, so trigrams are shared and often non-contiguous */
+    private static final String ALPHABET = "abAB é中";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void searchMatchesScanWithStringTitles() {
+        checkAgainstScan(new TrigramIndex(), new Random(11));
+    }
+
+    @Test
+    public void searchMatchesScanWithPackedTitles() {
+        checkAgainstScan(new TrigramIndex(new PackedTitles()), new Random(12));
+    }
+
+    @Test
+    public void fileMediaRepoSearchMatchesScan() {
+        FileMediaRepo repo = new FileMediaRepo(new File(folder.getRoot(), "media.csv").getPath());
+        Random random = new Random(13);
+        for (int op = 0; op < 2000; op++) {
+            String id = "a" + random.nextInt(ORDINALS);
+            if (random.nextInt(4) == 0) {
+                repo.delete(id);
+            } else {
+                Anime anime = new Anime();
+                anime.setId(id);
+                anime.setTitle(title(random));
+                repo.save(anime);
+            }
+
+            if (op % 100 == 0) {
+                String query = query(random);
+                Set<String> expected = new HashSet<>();
+                for (MediaItem item : repo.getAll()) {
+                    if (item.getTitle().toLowerCase().contains(query.toLowerCase())) {
+                        expected.add(item.getId());
+                    }
+                }
+                Set<String> found = new HashSet<>();
+                for (MediaItem item : repo.searchByTitle(query)) {
+                    found.add(item.getId());
+                }
+                assertEquals(query, expected, found);
+            }
+        }
+        repo.flush();
+    }
+
+    private static void checkAgainstScan(TrigramIndex index, Random random) {
+        String[] titles = new String[ORDINALS];
+        for (int op = 0; op < OPERATIONS; op++) {
+            int ordinal = random.nextInt(ORDINALS);
+            if (random.nextInt(4) == 0) {
+                index.remove(ordinal);
+                titles[ordinal] = null;
+            } else {
+                String title = random.nextInt(50) == 0 ? null : title(random);
+                index.add(ordinal, title);
+                titles[ordinal] = TrigramIndex.normalize(title);
+            }
+
+            if (op % 10 == 0) {
+                String query = query(random);
+                assertArrayEquals(query, scan(titles, TrigramIndex.normalize(query)), index.search(query));
+            }
+        }
+    }
+
+    private static int[] scan(String[] titles, String normalized) {
+        List<Integer> matches = new ArrayList<>();
+        for (int ordinal = 0; ordinal < titles.length; ordinal++) {
+            if (titles[ordinal] != null && titles[ordinal].contains(normalized)) {
+                matches.add(ordinal);
+            }
+        }
+        int[] result = new int[matches.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = matches.get(i);
+        }
+        return result;
+    }
+
+    private static String title(Random random) {
+        return text(random, random.nextInt(24));
+    }
+
+    private static String query(Random random) {
+        return text(random, random.nextInt(6));
+    }
+
+    private static String text(Random random, int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        }
+        return sb.toString();
+    }
+}
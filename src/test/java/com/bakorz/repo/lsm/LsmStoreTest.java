@@ -0,0 +1,241 @@
+package com.bakorz.repo.lsm;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks LsmStore against a sorted model map: puts, gets and deletes while
+ * memtables flush to SSTables and the tables compact, deletes that must stay
+ * deleted once compaction drops their tombstones, reopening after clean
+ * closes and from a copy of the files taken while the store was running,
+ * and prefix scans in key order.
+ */
+public class LsmStoreTest {
+    /** Value size that makes a few thousand writes fill several memtables */
+    private static final int VALUE_SIZE = 4096;
+
+    /** Writes that fill one memtable */
+    private static final int MEMTABLE_WRITES = 4 * 1024 * 1024 / VALUE_SIZE + 1;
+
+    private static final String[] PREFIXES = {"MAL:", "TMDB_MOVIE:", "TMDB_TV:", "FILE:"};
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void agreesWithModelAcrossFlushesCompactionsAndReopens() throws Exception {
+        Path dir = folder.getRoot().toPath();
+        TreeMap<String, byte[]> model = new TreeMap<>();
+        Random random = new Random(43);
+        LsmStore store = new LsmStore(dir);
+
+        for (int round = 0; round < 3; round++) {
+            for (int op = 0; op < 3 * MEMTABLE_WRITES; op++) {
+                String key = key(random, 1500);
+                if (random.nextInt(4) == 0) {
+                    store.delete(key);
+                    model.remove(key);
+                } else if (random.nextInt(10) == 0) {
+                    Map<String, byte[]> batch = new LinkedHashMap<>();
+                    for (int i = 0; i < 5; i++) {
+                        batch.put(key(random, 1500), value(random));
+                    }
+                    store.putAll(batch);
+                    model.putAll(batch);
+                } else {
+                    byte[] value = value(random);
+                    store.put(key, value);
+                    model.put(key, value);
+                }
+
+                if (op % 50 == 0) {
+                    String probe = key(random, 1500);
+                    assertArrayEquals(probe, model.get(probe), store.get(probe));
+                }
+            }
+            assertMatches(model, store);
+
+            store.close();
+            assertTrue("memtables were not flushed", tableCount(dir) > 0);
+            store = new LsmStore(dir);
+            assertMatches(model, store);
+        }
+        store.close();
+    }
+
+    @Test
+    public void deletedKeysStayDeletedThroughCompaction() throws Exception {
+        Path dir = folder.getRoot().toPath();
+        Random random = new Random(47);
+        Map<String, byte[]> kept = new TreeMap<>();
+        LsmStore store = new LsmStore(dir);
+        for (int i = 0; i < 200; i++) {
+            byte[] value = value(random);
+            store.put("victim" + i, value);
+            if (i % 2 == 1) {
+                kept.put("victim" + i, value);
+            }
+        }
+        // Each reopen flushes the writes of the previous run to its own table
+        store = reopen(store, dir);
+
+        // The tombstones go to a newer table than the values they delete
+        for (int i = 0; i < 200; i += 2) {
+            store.delete("victim" + i);
+        }
+        store = reopen(store, dir);
+        for (int table = 0; table < 2; table++) {
+            store.put("filler" + table, value(random));
+            store = reopen(store, dir);
+        }
+        // The fourth table triggered a compaction, which closing waited for
+        store.close();
+        assertEquals(1, tableCount(dir));
+
+        store = new LsmStore(dir);
+        for (int i = 0; i < 200; i++) {
+            assertArrayEquals("victim" + i, kept.get("victim" + i), store.get("victim" + i));
+        }
+        Map<String, byte[]> scanned = new TreeMap<>();
+        store.scan("victim", scanned::put);
+        assertEquals(kept.keySet(), scanned.keySet());
+        store.close();
+    }
+
+    @Test
+    public void reopensFromFilesOfARunningStore() throws Exception {
+        Path dir = folder.newFolder("running").toPath();
+        TreeMap<String, byte[]> model = new TreeMap<>();
+        Random random = new Random(53);
+        LsmStore store = new LsmStore(dir);
+        for (int i = 0; i < MEMTABLE_WRITES + 300; i++) {
+            String key = key(random, 5000);
+            byte[] value = value(random);
+            store.put(key, value);
+            model.put(key, value);
+        }
+        for (int i = 0; i < 100; i++) {
+            String key = model.firstKey();
+            store.delete(key);
+            model.remove(key);
+        }
+
+        // Wait until the flush has deleted the frozen memtable's log and the
+        // background thread is idle, then copy the files as a crash would leave them
+        long deadline = System.currentTimeMillis() + 10000;
+        while ((tableCount(dir) == 0 || logCount(dir) > 1) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, tableCount(dir));
+        store.sync();
+        Path copy = folder.newFolder("copy").toPath();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files) {
+                Files.copy(file, copy.resolve(file.getFileName()));
+            }
+        }
+
+        // The live log is replayed into a second table and replaced by a new log
+        LsmStore reopened = new LsmStore(copy);
+        assertMatches(model, reopened);
+        assertEquals(2, tableCount(copy));
+        assertEquals(1, logCount(copy));
+        reopened.close();
+        store.close();
+    }
+
+    @Test
+    public void prefixScansReturnLiveKeysInOrder() throws Exception {
+        Path dir = folder.getRoot().toPath();
+        TreeMap<String, byte[]> model = new TreeMap<>();
+        Random random = new Random(59);
+        LsmStore store = new LsmStore(dir);
+        for (int op = 0; op < 2 * MEMTABLE_WRITES; op++) {
+            String key = PREFIXES[random.nextInt(PREFIXES.length)] + random.nextInt(2000);
+            if (random.nextInt(5) == 0) {
+                store.delete(key);
+                model.remove(key);
+            } else {
+                byte[] value = value(random);
+                store.put(key, value);
+                model.put(key, value);
+            }
+
+            if (op % 700 == 0) {
+                for (String prefix : PREFIXES) {
+                    assertScan(model.subMap(prefix, prefix + Character.MAX_VALUE), store, prefix);
+                }
+                assertScan(model, store, "");
+                assertScan(Collections.emptyMap(), store, "MAL:x");
+            }
+        }
+        assertFalse(store.isEmpty());
+        store.close();
+    }
+
+    private static void assertScan(Map<String, byte[]> expected, LsmStore store, String prefix) {
+        List<String> keys = new ArrayList<>();
+        List<byte[]> values = new ArrayList<>();
+        store.scan(prefix, (key, value) -> {
+            keys.add(key);
+            values.add(value);
+        });
+        assertEquals(prefix, new ArrayList<>(expected.keySet()), keys);
+        int i = 0;
+        for (byte[] value : expected.values()) {
+            assertArrayEquals(keys.get(i), value, values.get(i++));
+        }
+    }
+
+    private static void assertMatches(TreeMap<String, byte[]> model, LsmStore store) throws IOException {
+        assertScan(model, store, "");
+        for (Map.Entry<String, byte[]> entry : model.entrySet()) {
+            assertArrayEquals(entry.getKey(), entry.getValue(), store.get(entry.getKey()));
+        }
+        assertNull(store.get("missing"));
+        assertEquals(model.isEmpty(), store.isEmpty());
+    }
+
+    private static LsmStore reopen(LsmStore store, Path dir) throws IOException {
+        store.close();
+        return new LsmStore(dir);
+    }
+
+    private static long tableCount(Path dir) throws IOException {
+        return count(dir, ".sst");
+    }
+
+    private static long logCount(Path dir) throws IOException {
+        return count(dir, ".log");
+    }
+
+    private static long count(Path dir, String extension) throws IOException {
+        long count = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files) {
+                count += file.getFileName().toString().endsWith(extension) ? 1 : 0;
+            }
+        }
+        return count;
+    }
+
+    private static String key(Random random, int keys) {
+        return "key" + random.nextInt(keys);
+    }
+
+    private static byte[] value(Random random) {
+        byte[] value = new byte[VALUE_SIZE];
+        random.nextBytes(value);
+        return value;
+    }
+}
@@ -0,0 +1,189 @@
+package com.bakorz.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.bakorz.model.*;
+import com.bakorz.repo.ApiStub;
+import com.bakorz.repo.FileMediaRepo;
+import com.bakorz.repo.HttpTransport;
+import com.bakorz.repo.MalMediaRepo;
+import com.bakorz.repo.TmdbMediaRepo;
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks CatalogService against a local stand-in for the MAL and TMDB APIs
+ * and a file cache: search results are mapped and cached under their source
+ * keys, lookups fall back to the cache when the API has no answer, failed
+ * queries complete with empty results that are not reused, every cache
+ * read and write runs on the cache executor instead of the thread completing
+ * the request, and cancelling a query aborts its HTTP exchange once every
+ * caller sharing it has cancelled.
+ */
+public class CatalogServiceTest {
+    private static final long TIMEOUT_SECONDS = 10;
+
+    private static final String ANIME = "{\"id\":21,\"title\":\"One Piece\",\"genres\":[{\"name\":\"Action\"}]}";
+    private static final String MOVIE = "{\"id\":603,\"title\":\"The Matrix\",\"genre_ids\":[28]}";
+    private static final String TV_SHOW = "{\"id\":1399,\"name\":\"Game of Thrones\",\"genre_ids\":[18]}";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ApiStub api;
+    private FileMediaRepo cache;
+    private ExecutorService pool;
+    private final AtomicInteger cacheTasks = new AtomicInteger();
+    private CatalogService catalog;
+
+    @Before
+    public void startApi() throws Exception {
+        api = new ApiStub();
+        HttpTransport transport = new HttpTransport(HttpTransport.DEFAULT_CONNECT_TIMEOUT,
+                HttpTransport.DEFAULT_REQUEST_TIMEOUT, null);
+        cache = new FileMediaRepo(new File(folder.getRoot(), "media.csv").getPath());
+        pool = Executors.newFixedThreadPool(2);
+        Executor cacheExecutor = task -> {
+            cacheTasks.incrementAndGet();
+            pool.execute(task);
+        };
+        catalog = new CatalogService(new MalMediaRepo("client", transport, api.baseUrl() + "/v2/"),
+                new TmdbMediaRepo("key", transport, api.baseUrl() + "/3"), cache, cacheExecutor);
+    }
+
+    @After
+    public void stopApi() {
+        api.close();
+        pool.shutdownNow();
+    }
+
+    @Test
+    public void searchResultsAreMappedAndCached() throws Exception {
+        api.respond("/v2/anime", 200, "{\"data\":[{\"node\":" + ANIME + "}]}");
+        api.respond("/3/search/movie", 200, "{\"results\":[" + MOVIE + "]}");
+        api.respond("/3/search/tv", 200, "{\"results\":[" + TV_SHOW + "]}");
+
+        List<MediaItem> found = get(catalog.searchAllAsync("x"));
+        assertEquals(Arrays.asList("21", "603", "1399"), ids(found));
+        assertTrue(found.get(0) instanceof Anime);
+        assertTrue(found.get(1) instanceof Movie);
+        assertTrue(found.get(2) instanceof TVShow);
+        assertEquals(Collections.singletonList("Genre 28"), found.get(1).getGenres());
+
+        assertEquals("One Piece", cache.getById("MAL:21").get().getTitle());
+        assertEquals("The Matrix", cache.getById("TMDB_MOVIE:603").get().getTitle());
+        assertEquals("Game of Thrones", cache.getById("TMDB_TV:1399").get().getTitle());
+        assertTrue(cacheTasks.get() >= 2);
+    }
+
+    @Test
+    public void lookupsFallBackToTheCache() throws Exception {
+        api.respond("/v2/anime", 200, "{\"data\":[{\"node\":" + ANIME + "}]}");
+        api.respond("/3/search/movie", 200, "{\"results\":[" + MOVIE + "]}");
+        api.respond("/3/search/tv", 200, "{\"results\":[" + TV_SHOW + "]}");
+        get(catalog.searchAllAsync("x"));
+        Movie local = new Movie();
+        local.setId("local-1");
+        local.setTitle("Home Video");
+        cache.save(local);
+
+        // The detail endpoints answer 404, so each lookup ends in the cache
+        int tasks = cacheTasks.get();
+        MediaItem anime = get(catalog.getByIdAsync("21", "MAL", null)).get();
+        assertEquals("21", anime.getId());
+        assertEquals("One Piece", anime.getTitle());
+        assertEquals("Game of Thrones", get(catalog.getByIdAsync("1399", "TMDB", null)).get().getTitle());
+
+        // A known media type reads the cache before asking the API
+        assertEquals("The Matrix", get(catalog.getByIdAsync("603", "TMDB", "MOVIE")).get().getTitle());
+        assertFalse(api.requests().contains("/3/movie/603?api_key=key"));
+
+        assertEquals("Home Video", get(catalog.getByIdAsync("local-1", "FILE", null)).get().getTitle());
+        assertFalse(get(catalog.getByIdAsync("local-2", "FILE", null)).isPresent());
+        assertTrue(cacheTasks.get() - tasks >= 5);
+    }
+
+    @Test
+    public void failedQueriesCompleteEmpty() throws Exception {
+        api.respond("/v2/anime", 500, "");
+        api.respond("/v2/anime/ranking", 200, "{\"data\":[{\"node\":{\"id\":");
+        api.respond("/3/search/movie", 500, "");
+        api.respond("/3/movie/now_playing", 502, "");
+
+        assertTrue(get(catalog.searchAllAsync("x")).isEmpty());
+        assertTrue(get(catalog.getTopRatedAnimeAsync(10, 0)).isEmpty());
+        assertTrue(get(catalog.getLatestAnimeAsync(10)).isEmpty());
+        assertTrue(get(catalog.getLatestMoviesAsync(10, 1)).isEmpty());
+        assertTrue(get(catalog.getTopRatedMoviesAndTVAsync(10, 1)).isEmpty());
+        assertFalse(get(catalog.getByIdAsync("9", "MAL", null)).isPresent());
+        assertFalse(get(catalog.getByIdAsync("9", "TMDB", null)).isPresent());
+        assertTrue(cache.getAll().isEmpty());
+    }
+
+    @Test
+    public void emptyResultsOfFailedQueriesAreNotReused() throws Exception {
+        api.respond("/v2/anime/ranking", 500, "");
+        assertTrue(get(catalog.getTopRatedAnimeAsync(10, 0)).isEmpty());
+
+        api.respond("/v2/anime/ranking", 200, "{\"data\":[{\"node\":" + ANIME + "}]}");
+        assertEquals(1, get(catalog.getTopRatedAnimeAsync(10, 0)).size());
+        assertEquals(0, catalog.getCoalescedQueryCount());
+        // A result with items is reused
+        assertEquals(1, get(catalog.getTopRatedAnimeAsync(10, 0)).size());
+        assertEquals(1, catalog.getCoalescedQueryCount());
+    }
+
+    @Test
+    public void cancellingEveryCallerAbortsTheExchange() throws Exception {
+        api.stream("/v2/anime/ranking");
+        CompletableFuture<List<Anime>> first = catalog.getTopRatedAnimeAsync(10, 0);
+        CompletableFuture<List<Anime>> second = catalog.getTopRatedAnimeAsync(10, 0);
+        assertTrue(api.awaitStreaming(TIMEOUT_SECONDS));
+        first.cancel(true);
+        // The other caller still waits for the shared request
+        assertFalse(api.awaitAbort(1));
+        second.cancel(true);
+        assertTrue(api.awaitAbort(TIMEOUT_SECONDS));
+
+        // Through the cache lookup and the movie request of a TMDB lookup
+        api.stream("/3/movie/7");
+        CompletableFuture<Optional<MediaItem>> lookup = catalog.getByIdAsync("7", "TMDB", "MOVIE");
+        assertTrue(api.awaitStreaming(TIMEOUT_SECONDS));
+        lookup.cancel(true);
+        assertTrue(api.awaitAbort(TIMEOUT_SECONDS));
+
+        api.stream("/3/search/movie");
+        api.stream("/3/search/tv");
+        CompletableFuture<List<MediaItem>> search = catalog.searchAllAsync("x");
+        assertTrue(api.awaitStreaming(TIMEOUT_SECONDS));
+        assertTrue(api.awaitStreaming(TIMEOUT_SECONDS));
+        search.cancel(true);
+        assertTrue(api.awaitAbort(TIMEOUT_SECONDS));
+        assertTrue(api.awaitAbort(TIMEOUT_SECONDS));
+    }
+
+    private static List<String> ids(List<MediaItem> items) {
+        List<String> ids = new ArrayList<>();
+        for (MediaItem item : items) {
+            ids.add(item.getId());
+        }
+        return ids;
+    }
+
+    private static <T> T get(CompletableFuture<T> future) throws Exception {
+        return future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+}
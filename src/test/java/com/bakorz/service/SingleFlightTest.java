@@ -0,0 +1,164 @@
+package com.bakorz.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+/**
+ * Checks that SingleFlight sends one request per key for concurrent callers,
+ * reuses results only within the reuse time and never reuses failures or
+ * rejected results, and that a request is cancelled only once every caller
+ * sharing it has cancelled.
+ */
+public class SingleFlightTest {
+    private static final int THREADS = 8;
+    private static final int CALLS_PER_THREAD = 200;
+
+    @Test
+    public void concurrentCallersShareOneRequest() throws Exception {
+        SingleFlight<String, Integer> flight = new SingleFlight<>();
+        AtomicInteger sent = new AtomicInteger();
+        CompletableFuture<Integer> response = new CompletableFuture<>();
+        List<CompletableFuture<Integer>> results = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch start = new CountDownLatch(1);
+
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < CALLS_PER_THREAD; i++) {
+                    results.add(flight.execute("top-rated", () -> {
+                        sent.incrementAndGet();
+                        return response;
+                    }));
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(1, sent.get());
+        assertEquals(THREADS * CALLS_PER_THREAD - 1, flight.getMergedCount());
+        response.complete(42);
+        for (CompletableFuture<Integer> result : results) {
+            assertEquals(42, (int) result.join());
+        }
+
+        // Without reuse, the next call after completion is sent again
+        flight.execute("top-rated", () -> {
+            sent.incrementAndGet();
+            return CompletableFuture.completedFuture(43);
+        });
+        assertEquals(2, sent.get());
+    }
+
+    @Test
+    public void reusesResultsOnlyWithinReuseTime() throws Exception {
+        SingleFlight<String, Integer> flight = new SingleFlight<>(Duration.ofMillis(200));
+        AtomicInteger sent = new AtomicInteger();
+
+        assertEquals(1, (int) flight.execute("a", () -> CompletableFuture.completedFuture(sent.incrementAndGet())).join());
+        assertEquals(1, (int) flight.execute("a", () -> CompletableFuture.completedFuture(sent.incrementAndGet())).join());
+        assertEquals(2, (int) flight.execute("b", () -> CompletableFuture.completedFuture(sent.incrementAndGet())).join());
+        assertEquals(1, flight.getReusedCount());
+
+        Thread.sleep(300);
+        assertEquals(3, (int) flight.execute("a", () -> CompletableFuture.completedFuture(sent.incrementAndGet())).join());
+    }
+
+    @Test
+    public void failuresAreNotReusedAndCancellingOneCallerKeepsTheOthers() {
+        SingleFlight<String, Integer> flight = new SingleFlight<>(Duration.ofMinutes(1));
+        CompletableFuture<Integer> failing = new CompletableFuture<>();
+        CompletableFuture<Integer> first = flight.execute("a", () -> failing);
+        CompletableFuture<Integer> second = flight.execute("a", () -> failing);
+        first.cancel(true);
+        failing.completeExceptionally(new IllegalStateException("offline"));
+
+        assertTrue(second.isCompletedExceptionally());
+        assertFalse(second.isCancelled());
+        assertEquals(7, (int) flight.execute("a", () -> CompletableFuture.completedFuture(7)).join());
+        assertEquals(1, flight.getMergedCount());
+        assertEquals(0, flight.getReusedCount());
+    }
+
+    @Test
+    public void rejectedResultsAreSharedInFlightButNotReused() {
+        SingleFlight<String, List<Integer>> flight = new SingleFlight<>(Duration.ofMinutes(1),
+                result -> !result.isEmpty());
+        AtomicInteger sent = new AtomicInteger();
+        CompletableFuture<List<Integer>> empty = new CompletableFuture<>();
+        CompletableFuture<List<Integer>> first = flight.execute("a", () -> {
+            sent.incrementAndGet();
+            return empty;
+        });
+        CompletableFuture<List<Integer>> second = flight.execute("a", () -> {
+            sent.incrementAndGet();
+            return empty;
+        });
+        empty.complete(Collections.emptyList());
+        assertTrue(first.join().isEmpty());
+        assertTrue(second.join().isEmpty());
+        assertEquals(1, sent.get());
+
+        // The empty result is gone, the next one is kept
+        assertEquals(Collections.singletonList(2),
+                flight.execute("a", () -> CompletableFuture.completedFuture(Collections.singletonList(2))).join());
+        assertEquals(Collections.singletonList(2),
+                flight.execute("a", () -> CompletableFuture.completedFuture(Collections.singletonList(3))).join());
+        assertEquals(1, flight.getMergedCount());
+        assertEquals(1, flight.getReusedCount());
+    }
+
+    @Test
+    public void requestIsCancelledOnceEveryCallerHasCancelled() {
+        SingleFlight<String, Integer> flight = new SingleFlight<>(Duration.ofMinutes(1));
+        CompletableFuture<Integer> response = new CompletableFuture<>();
+        CompletableFuture<Integer> first = flight.execute("a", () -> response);
+        CompletableFuture<Integer> second = flight.execute("a", () -> response);
+        CompletableFuture<Integer> third = flight.execute("a", () -> response);
+
+        first.cancel(true);
+        second.cancel(true);
+        assertFalse(response.isCancelled());
+        third.cancel(true);
+        assertTrue(response.isCancelled());
+
+        // The abandoned request is forgotten, so the next caller sends its own
+        CompletableFuture<Integer> next = new CompletableFuture<>();
+        CompletableFuture<Integer> fourth = flight.execute("a", () -> next);
+        assertFalse(fourth.isDone());
+        next.complete(5);
+        assertEquals(5, (int) fourth.join());
+        assertEquals(2, flight.getMergedCount());
+    }
+
+    @Test
+    public void cancellingAfterCompletionKeepsTheReusedResult() {
+        SingleFlight<String, Integer> flight = new SingleFlight<>(Duration.ofMinutes(1));
+        CompletableFuture<Integer> response = new CompletableFuture<>();
+        CompletableFuture<Integer> first = flight.execute("a", () -> response);
+        response.complete(1);
+        assertFalse(first.cancel(true));
+
+        CompletableFuture<Integer> reused = flight.execute("a", () -> CompletableFuture.completedFuture(2));
+        reused.cancel(true);
+        assertEquals(1, (int) flight.execute("a", () -> CompletableFuture.completedFuture(3)).join());
+        assertEquals(2, flight.getReusedCount());
+    }
+}